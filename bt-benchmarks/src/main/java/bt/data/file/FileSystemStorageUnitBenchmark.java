@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.data.file;
+
+import bt.data.StorageUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares concurrent random block access in the positional I/O based {@link FileSystemStorageUnit}
+ * with the original synchronized implementation ({@link SynchronizedFileSystemStorageUnit}).
+ *
+ * <p>Run with: {@code java -jar bt-benchmarks/target/benchmarks.jar FileSystemStorageUnitBenchmark}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class FileSystemStorageUnitBenchmark {
+
+    private static final String FILE_NAME = "benchmark.bin";
+    private static final int BLOCK_SIZE = 16 * 1024;
+
+    @Param({"positional", "synchronized"})
+    public String mode;
+
+    @Param({"67108864"})
+    public long fileSize;
+
+    private Path root;
+    private StorageUnit unit;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        root = Files.createTempDirectory("bt-benchmark");
+
+        switch (mode) {
+            case "positional": {
+                unit = new FileSystemStorageUnit(new FileHandleCache(1), root, FILE_NAME, fileSize);
+                break;
+            }
+            case "synchronized": {
+                unit = new SynchronizedFileSystemStorageUnit(root, FILE_NAME, fileSize);
+                break;
+            }
+            default: {
+                throw new IllegalArgumentException("Unknown mode: " + mode);
+            }
+        }
+
+        // pre-fill the file, so that reads hit the actual data
+        byte[] block = new byte[BLOCK_SIZE];
+        ThreadLocalRandom.current().nextBytes(block);
+        for (long offset = 0; offset < fileSize; offset += BLOCK_SIZE) {
+            unit.writeBlock(block, offset);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        unit.close();
+        Files.deleteIfExists(root.resolve(FILE_NAME));
+        Files.deleteIfExists(root);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        ByteBuffer buffer;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            buffer = ByteBuffer.allocateDirect(BLOCK_SIZE);
+        }
+    }
+
+    @Benchmark
+    public ByteBuffer readRandomBlock(ThreadState state) {
+        ByteBuffer buffer = state.buffer;
+        buffer.clear();
+        unit.readBlock(buffer, randomBlockOffset());
+        return buffer;
+    }
+
+    @Benchmark
+    public ByteBuffer writeRandomBlock(ThreadState state) {
+        ByteBuffer buffer = state.buffer;
+        buffer.clear();
+        unit.writeBlock(buffer, randomBlockOffset());
+        return buffer;
+    }
+
+    private long randomBlockOffset() {
+        return ThreadLocalRandom.current().nextLong(fileSize / BLOCK_SIZE) * BLOCK_SIZE;
+    }
+}
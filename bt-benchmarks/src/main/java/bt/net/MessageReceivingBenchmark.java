@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.net;
+
+import bt.data.DataDescriptor;
+import bt.data.Storage;
+import bt.event.EventBus;
+import bt.metainfo.Torrent;
+import bt.metainfo.TorrentId;
+import bt.protocol.Message;
+import bt.protocol.StandardBittorrentProtocol;
+import bt.runtime.Config;
+import bt.service.IRuntimeLifecycleBinder.LifecycleEvent;
+import bt.service.LifecycleBinding;
+import bt.service.RuntimeLifecycleBinder;
+import bt.torrent.TorrentDescriptor;
+import bt.torrent.TorrentRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Measures how fast messages from a large number of peer connections are received and decoded
+ * by the {@link MessageDispatcher}, depending on the number of network threads
+ * (see {@link Config#setNumOfNetworkThreads(int)}).
+ *
+ * <p>Each operation is a burst of {@link #MESSAGES_PER_CONNECTION} messages sent to each of the connections;
+ * the operation completes, when all of the messages have been decoded.
+ *
+ * <p>Run with: {@code java -jar bt-benchmarks/target/benchmarks.jar MessageReceivingBenchmark}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageReceivingBenchmark {
+
+    private static final int MESSAGES_PER_CONNECTION = 64;
+    private static final int HAVE_MESSAGE_LENGTH = 9;
+    private static final long TIMEOUT_MILLIS = 30_000;
+
+    @Param({"1", "2", "4"})
+    public int numOfNetworkThreads;
+
+    @Param({"1000"})
+    public int numOfConnections;
+
+    private RuntimeLifecycleBinder lifecycleBinder;
+    private ServerSocketChannel serverChannel;
+    private List<SocketChannel> clientChannels;
+    private List<PeerConnection> connections;
+    private AtomicLong messagesReceived;
+    private ByteBuffer burst;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        TorrentId torrentId = TorrentId.fromBytes(new byte[TorrentId.length()]);
+        Config config = new Config();
+        config.setNumOfNetworkThreads(numOfNetworkThreads);
+
+        lifecycleBinder = new RuntimeLifecycleBinder();
+        EventBus eventBus = new EventBus();
+        ConnectionPool pool = new ConnectionPool();
+        SharedSelector selector = new SharedSelector(Selector.open());
+        lifecycleBinder.onShutdown(() -> {
+            try {
+                selector.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        new MessageDispatcher(lifecycleBinder, pool, new SingleTorrentRegistry(torrentId), eventBus, selector, config);
+        lifecycleBinder.visitBindings(LifecycleEvent.STARTUP, binding -> binding.getRunnable().run());
+        // let the receivers subscribe to events
+        Thread.sleep(500);
+
+        StandardBittorrentProtocol protocol = new StandardBittorrentProtocol(Collections.emptyMap());
+        messagesReceived = new AtomicLong();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        clientChannels = new ArrayList<>(numOfConnections);
+        connections = new ArrayList<>(numOfConnections);
+        for (int i = 0; i < numOfConnections; i++) {
+            SocketChannel clientChannel = SocketChannel.open(serverChannel.getLocalAddress());
+            clientChannels.add(clientChannel);
+
+            SocketChannel channel = serverChannel.accept();
+            channel.configureBlocking(false);
+            Peer peer = new InetPeer((InetSocketAddress) channel.getRemoteAddress());
+            MessageReader reader = new MessageReader(peer, channel, protocol, 64 * 1024);
+            PeerConnection connection = new SocketPeerConnection(peer, channel, new CountingMessageWorker(reader));
+            connection.setTorrentId(torrentId);
+            connections.add(connection);
+            pool.addConnectionIfAbsent(connection);
+            eventBus.firePeerConnected(torrentId, peer);
+        }
+
+        burst = ByteBuffer.allocate(MESSAGES_PER_CONNECTION * HAVE_MESSAGE_LENGTH);
+        for (int i = 0; i < MESSAGES_PER_CONNECTION; i++) {
+            burst.putInt(HAVE_MESSAGE_LENGTH - Integer.BYTES);
+            burst.put((byte) 4); // have
+            burst.putInt(i);
+        }
+        burst.flip();
+
+        // make sure that all connections are being served
+        receiveBurst();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        lifecycleBinder.visitBindings(LifecycleEvent.SHUTDOWN, binding -> binding.getRunnable().run());
+        for (PeerConnection connection : connections) {
+            connection.closeQuietly();
+        }
+        for (SocketChannel channel : clientChannels) {
+            channel.close();
+        }
+        serverChannel.close();
+    }
+
+    @Benchmark
+    public long receiveBurst() throws Exception {
+        long expected = messagesReceived.get() + (long) numOfConnections * MESSAGES_PER_CONNECTION;
+        for (SocketChannel channel : clientChannels) {
+            ByteBuffer data = burst.duplicate();
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        long received;
+        while ((received = messagesReceived.get()) < expected) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Received only " + received + " of " + expected + " messages");
+            }
+            Thread.yield();
+        }
+        return received;
+    }
+
+    private class CountingMessageWorker implements PeerConnectionMessageWorker {
+
+        private final MessageReader reader;
+
+        CountingMessageWorker(MessageReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public Optional<Message> readMessage() throws IOException {
+            Message message = reader.readMessage();
+            if (message != null) {
+                messagesReceived.incrementAndGet();
+            }
+            return Optional.ofNullable(message);
+        }
+
+        @Override
+        public void writeMessage(Message message) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class ConnectionPool implements IPeerConnectionPool {
+
+        private final Map<Peer, PeerConnection> connections = new ConcurrentHashMap<>();
+
+        @Override
+        public PeerConnection getConnection(Peer peer) {
+            return connections.get(peer);
+        }
+
+        @Override
+        public void visitConnections(TorrentId torrentId, Consumer<PeerConnection> visitor) {
+            connections.values().forEach(visitor);
+        }
+
+        @Override
+        public int size() {
+            return connections.size();
+        }
+
+        @Override
+        public PeerConnection addConnectionIfAbsent(PeerConnection connection) {
+            PeerConnection existing = connections.putIfAbsent(connection.getRemotePeer(), connection);
+            return (existing == null) ? connection : existing;
+        }
+    }
+
+    private static class SingleTorrentRegistry implements TorrentRegistry {
+
+        private final TorrentId torrentId;
+        private final TorrentDescriptor descriptor;
+
+        SingleTorrentRegistry(TorrentId torrentId) {
+            this.torrentId = torrentId;
+            this.descriptor = new ActiveTorrentDescriptor();
+        }
+
+        @Override
+        public Collection<Torrent> getTorrents() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Collection<TorrentId> getTorrentIds() {
+            return Collections.singleton(torrentId);
+        }
+
+        @Override
+        public Optional<Torrent> getTorrent(TorrentId torrentId) {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<TorrentDescriptor> getDescriptor(Torrent torrent) {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<TorrentDescriptor> getDescriptor(TorrentId torrentId) {
+            return this.torrentId.equals(torrentId) ? Optional.of(descriptor) : Optional.empty();
+        }
+
+        @Override
+        public TorrentDescriptor getOrCreateDescriptor(Torrent torrent, Storage storage) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public TorrentDescriptor register(Torrent torrent, Storage storage) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public TorrentDescriptor register(TorrentId torrentId) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class ActiveTorrentDescriptor implements TorrentDescriptor {
+
+        @Override
+        public boolean isActive() {
+            return true;
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public void complete() {
+        }
+
+        @Override
+        public DataDescriptor getDataDescriptor() {
+            return null;
+        }
+    }
+}
@@ -20,6 +20,7 @@ import bt.Bt;
 import bt.BtClientBuilder;
 import bt.cli.Options.LogLevel;
 import bt.data.Storage;
+import bt.data.file.FileHandleCache;
 import bt.data.file.FileSystemStorage;
 import bt.dht.DHTConfig;
 import bt.dht.DHTModule;
@@ -126,7 +127,8 @@ public class CliClient  {
                 .disableAutomaticShutdown()
                 .build();
 
-        Storage storage = new FileSystemStorage(options.getTargetDirectory());
+        Storage storage = new FileSystemStorage(options.getTargetDirectory().toPath(),
+                runtime.service(FileHandleCache.class));
         PieceSelector selector = options.downloadSequentially() ?
                 SequentialSelector.sequential() : RarestFirstSelector.randomizedRarest();
 
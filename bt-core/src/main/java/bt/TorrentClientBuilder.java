@@ -16,11 +16,14 @@
 
 package bt;
 
+import bt.data.FilePriority;
 import bt.data.Storage;
+import bt.data.memory.InMemoryStorage;
 import bt.magnet.MagnetUri;
 import bt.magnet.MagnetUriParser;
 import bt.metainfo.IMetadataService;
 import bt.metainfo.Torrent;
+import bt.metainfo.TorrentFile;
 import bt.processor.ProcessingContext;
 import bt.processor.ProcessingStage;
 import bt.processor.listener.ListenerSource;
@@ -40,6 +43,7 @@ import java.util.List;
 import java.util.Objects;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 public class TorrentClientBuilder<B extends TorrentClientBuilder> extends BaseClientBuilder<B> {
@@ -51,6 +55,7 @@ public class TorrentClientBuilder<B extends TorrentClientBuilder> extends BaseCl
     private MagnetUri magnetUri;
 
     private PieceSelector pieceSelector;
+    private Function<TorrentFile, FilePriority> filePriorities;
 
     private List<Consumer<Torrent>> torrentConsumers;
 
@@ -75,6 +80,16 @@ public class TorrentClientBuilder<B extends TorrentClientBuilder> extends BaseCl
         return (B) this;
     }
 
+    /**
+     * Keep the torrent's data in memory instead of the file system (see {@link InMemoryStorage}).
+     *
+     * @param maxMemory Max amount of memory to allocate for the data, in bytes
+     * @since 1.6
+     */
+    public B inMemoryStorage(long maxMemory) {
+        return storage(new InMemoryStorage(maxMemory));
+    }
+
     /**
      * Set torrent file URL
      *
@@ -185,6 +200,22 @@ public class TorrentClientBuilder<B extends TorrentClientBuilder> extends BaseCl
        return selector(RarestFirstSelector.randomizedRarest());
     }
 
+    /**
+     * Set priorities of torrent's files.
+     * Files with {@link FilePriority#SKIP} priority will not be downloaded,
+     * and no storage will be allocated for them (except for the files,
+     * that share pieces with other files, that are not skipped).
+     * Pieces of files with higher priority are downloaded first.
+     *
+     * @param filePriorities Function, that returns priority for each of torrent's files
+     * @since 1.6
+     */
+    @SuppressWarnings("unchecked")
+    public B filePriorities(Function<TorrentFile, FilePriority> filePriorities) {
+        this.filePriorities = Objects.requireNonNull(filePriorities, "Missing file priorities");
+        return (B) this;
+    }
+
     /**
      * Stop processing, when the data has been downloaded.
      *
@@ -211,11 +242,12 @@ public class TorrentClientBuilder<B extends TorrentClientBuilder> extends BaseCl
 
         ProcessingContext context;
         if (torrentUrl != null) {
-            context = new TorrentContext(pieceSelector, storage, () -> fetchTorrentFromUrl(runtime, torrentUrl));
+            context = new TorrentContext(pieceSelector, storage,
+                    () -> fetchTorrentFromUrl(runtime, torrentUrl), filePriorities);
         } else if (torrentSupplier != null) {
-            context = new TorrentContext(pieceSelector, storage, torrentSupplier);
+            context = new TorrentContext(pieceSelector, storage, torrentSupplier, filePriorities);
         } else if (this.magnetUri != null) {
-            context = new MagnetContext(magnetUri, pieceSelector, storage);
+            context = new MagnetContext(magnetUri, pieceSelector, storage, filePriorities);
         } else {
             throw new IllegalStateException("Missing torrent supplier, torrent URL or magnet URI");
         }
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.data;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Storage unit, that supports non-blocking reads and writes.
+ *
+ * <p>Asynchronous operations return immediately, and the returned future is completed
+ * by the I/O subsystem, when the operation finishes. Several operations might be in flight at the same time,
+ * so each of them should be given its own buffer (or its own view of a buffer, see {@link ByteBuffer#duplicate()}).
+ * The buffer must not be accessed by the caller until the corresponding future completes.
+ *
+ * @since 1.6
+ */
+public interface AsyncStorageUnit extends StorageUnit {
+
+    /**
+     * Try to read a block of data into the provided buffer, starting with a given offset.
+     * Maximum number of bytes to be read is determined by {@link ByteBuffer#remaining()}.
+     *
+     * <p>If the unit does not have any data yet, then the future completes at once,
+     * and the buffer is left intact (same as {@link #readBlock(ByteBuffer, long)}).
+     *
+     * @param buffer Buffer to read bytes into
+     * @param offset Offset in storage unit, 0-based
+     * @return Future, that completes, when the read has finished;
+     *         completes exceptionally with {@link bt.BtException}, if an I/O error occurs
+     * @since 1.6
+     */
+    CompletableFuture<Void> readBlockAsync(ByteBuffer buffer, long offset);
+
+    /**
+     * Write a block of data from the provided buffer to this storage unit, starting with a given offset.
+     * Number of bytes to be written is determined by {@link ByteBuffer#remaining()}.
+     *
+     * @param buffer Buffer containing the block of data to write to this storage unit
+     * @param offset Offset in this storage unit's data to start writing to, 0-based
+     * @return Future, that completes, when all of the buffer's remaining data has been written;
+     *         completes exceptionally with {@link bt.BtException}, if an I/O error occurs
+     * @since 1.6
+     */
+    CompletableFuture<Void> writeBlockAsync(ByteBuffer buffer, long offset);
+}
@@ -17,18 +17,19 @@
 package bt.data;
 
 import bt.BtException;
-import bt.protocol.Protocols;
 
-import java.util.Arrays;
-import java.util.BitSet;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * Status of torrent's data.
  *
- * Instances of this class are thread-safe.
+ * Instances of this class are thread-safe. Status of pieces is kept in an array of 64-bit words,
+ * that are updated atomically without locking, so that checking the status of a piece is a single volatile read,
+ * and set operations on two bitfields (see {@link #andNot(Bitfield)}, {@link #intersects(Bitfield)})
+ * are performed one word (i.e. 64 pieces) at a time.
  *
  * @since 1.0
  */
@@ -44,12 +45,15 @@ public class Bitfield {
         /*EMPTY, PARTIAL,*/INCOMPLETE, COMPLETE, COMPLETE_VERIFIED
     }
 
+    private static final int ADDRESS_BITS_PER_WORD = 6;
+    private static final int BITS_PER_WORD = 1 << ADDRESS_BITS_PER_WORD;
+
     /**
-     * Standard bittorrent bitfield, where n-th bit
-     * (counting from high position to low)
-     * indicates the availability of n-th piece.
+     * Status of pieces, where n-th bit (counting from low position to high, as in {@link java.util.BitSet})
+     * of the word with index (i / 64) indicates the availability of piece i, with n = i % 64.
+     * Bits past the total number of pieces are never set.
      */
-    private final byte[] value;
+    private final AtomicLongArray words;
 
     /**
      * Total number of pieces in torrent.
@@ -59,7 +63,7 @@ public class Bitfield {
     /**
      * Number of pieces that have status {@link PieceStatus#COMPLETE_VERIFIED}.
      */
-    private volatile int piecesComplete;
+    private final AtomicInteger piecesComplete;
 
     /**
      * List of torrent's chunk descriptors.
@@ -67,8 +71,6 @@ public class Bitfield {
      */
     private final Optional<List<ChunkDescriptor>> chunks;
 
-    private final ReentrantLock lock;
-
     /**
      * Creates "local" bitfield from a list of chunk descriptors.
      *
@@ -78,9 +80,8 @@ public class Bitfield {
     public Bitfield(List<ChunkDescriptor> chunks) {
         this.chunks = Optional.of(chunks);
         this.piecesTotal = chunks.size();
-        this.value = new byte[getBitmaskLength(piecesTotal)];
-        this.piecesComplete = 0;
-        this.lock = new ReentrantLock();
+        this.words = new AtomicLongArray(getWordsLength(piecesTotal));
+        this.piecesComplete = new AtomicInteger();
     }
 
     /**
@@ -91,7 +92,10 @@ public class Bitfield {
      * @since 1.0
      */
     public Bitfield(int piecesTotal) {
-        this(new byte[getBitmaskLength(piecesTotal)], piecesTotal);
+        this.chunks = Optional.empty();
+        this.piecesTotal = piecesTotal;
+        this.words = new AtomicLongArray(getWordsLength(piecesTotal));
+        this.piecesComplete = new AtomicInteger();
     }
 
     /**
@@ -111,19 +115,36 @@ public class Bitfield {
                     "), bitmask length (" + value.length + "). Expected bitmask length: " + expectedBitmaskLength);
         }
 
-        this.value = value;
         this.chunks = Optional.empty();
         this.piecesTotal = piecesTotal;
-        this.piecesComplete = getPiecesComplete(value);
-        this.lock = new ReentrantLock();
+        this.words = new AtomicLongArray(getWordsLength(piecesTotal));
+
+        int piecesComplete = 0;
+        for (int i = 0; i < piecesTotal; i++) {
+            // high bit of each byte corresponds to the piece with the lowest index
+            if ((value[i >>> 3] & (0x80 >>> (i & 7))) != 0) {
+                words.set(wordIndex(i), words.get(wordIndex(i)) | bitMask(i));
+                piecesComplete++;
+            }
+        }
+        this.piecesComplete = new AtomicInteger(piecesComplete);
     }
 
     private static int getBitmaskLength(int piecesTotal) {
         return (int) Math.ceil(piecesTotal / 8d);
     }
 
-    private static int getPiecesComplete(byte[] value) {
-        return BitSet.valueOf(value).cardinality();
+    private static int getWordsLength(int piecesTotal) {
+        return (piecesTotal + BITS_PER_WORD - 1) >>> ADDRESS_BITS_PER_WORD;
+    }
+
+    private static int wordIndex(int pieceIndex) {
+        return pieceIndex >>> ADDRESS_BITS_PER_WORD;
+    }
+
+    private static long bitMask(int pieceIndex) {
+        // shift is performed modulo 64
+        return 1L << pieceIndex;
     }
 
     /**
@@ -133,12 +154,16 @@ public class Bitfield {
      * @since 1.0
      */
     public byte[] getBitmask() {
-        lock.lock();
-        try {
-            return Arrays.copyOf(value, value.length);
-        } finally {
-            lock.unlock();
+        byte[] bitmask = new byte[getBitmaskLength(piecesTotal)];
+        for (int w = 0; w < words.length(); w++) {
+            long word = words.get(w);
+            while (word != 0) {
+                int i = (w << ADDRESS_BITS_PER_WORD) + Long.numberOfTrailingZeros(word);
+                bitmask[i >>> 3] |= (0x80 >>> (i & 7));
+                word &= word - 1;
+            }
         }
+        return bitmask;
     }
 
     /**
@@ -154,7 +179,7 @@ public class Bitfield {
      * @since 1.0
      */
     public int getPiecesComplete() {
-        return piecesComplete;
+        return piecesComplete.get();
     }
 
     /**
@@ -163,7 +188,7 @@ public class Bitfield {
      * @since 1.0
      */
     public int getPiecesRemaining() {
-        return piecesTotal - piecesComplete;
+        return piecesTotal - piecesComplete.get();
     }
 
     /**
@@ -177,15 +202,7 @@ public class Bitfield {
 
         PieceStatus status;
 
-        boolean verified;
-        lock.lock();
-        try {
-            verified = Protocols.getBit(value, pieceIndex) == 1;
-        } finally {
-            lock.unlock();
-        }
-
-        if (verified) {
+        if (isSet(pieceIndex)) {
             status = PieceStatus.COMPLETE_VERIFIED;
         } else if (chunks.isPresent()) {
             ChunkDescriptor chunk = chunks.get().get(pieceIndex);
@@ -209,8 +226,8 @@ public class Bitfield {
      * @since 1.1
      */
     public boolean isComplete(int pieceIndex) {
-        PieceStatus pieceStatus = getPieceStatus(pieceIndex);
-        return (pieceStatus == PieceStatus.COMPLETE || pieceStatus == PieceStatus.COMPLETE_VERIFIED);
+        validatePieceIndex(pieceIndex);
+        return isSet(pieceIndex) || (chunks.isPresent() && chunks.get().get(pieceIndex).isComplete());
     }
 
     /**
@@ -221,8 +238,12 @@ public class Bitfield {
      * @since 1.1
      */
     public boolean isVerified(int pieceIndex) {
-        PieceStatus pieceStatus = getPieceStatus(pieceIndex);
-        return pieceStatus == PieceStatus.COMPLETE_VERIFIED;
+        validatePieceIndex(pieceIndex);
+        return isSet(pieceIndex);
+    }
+
+    private boolean isSet(int pieceIndex) {
+        return (words.get(wordIndex(pieceIndex)) & bitMask(pieceIndex)) != 0;
     }
 
     /**
@@ -235,12 +256,147 @@ public class Bitfield {
     public void markVerified(int pieceIndex) {
         assertChunkComplete(pieceIndex);
 
-        lock.lock();
-        try {
-            Protocols.setBit(value, pieceIndex);
-            piecesComplete = getPiecesComplete(value);
-        } finally {
-            lock.unlock();
+        int wordIndex = wordIndex(pieceIndex);
+        long bitMask = bitMask(pieceIndex);
+        long word;
+        do {
+            word = words.get(wordIndex);
+            if ((word & bitMask) != 0) {
+                // already verified
+                return;
+            }
+        } while (!words.compareAndSet(wordIndex, word, word | bitMask));
+
+        piecesComplete.incrementAndGet();
+    }
+
+    /**
+     * Find the first piece, that has status {@link PieceStatus#COMPLETE_VERIFIED},
+     * starting with the provided piece index (inclusive).
+     *
+     * @param fromIndex Piece index (0-based) to start the search from
+     * @return Index of the next verified piece or -1, if there are no such pieces
+     * @since 1.6
+     */
+    public int nextSetBit(int fromIndex) {
+        if (fromIndex < 0) {
+            throw new IndexOutOfBoundsException("Negative index: " + fromIndex);
+        }
+        if (fromIndex >= piecesTotal) {
+            return -1;
+        }
+        int w = wordIndex(fromIndex);
+        // mask out the pieces before fromIndex
+        long word = words.get(w) & (-1L << fromIndex);
+        while (true) {
+            if (word != 0) {
+                return (w << ADDRESS_BITS_PER_WORD) + Long.numberOfTrailingZeros(word);
+            }
+            if (++w == words.length()) {
+                return -1;
+            }
+            word = words.get(w);
+        }
+    }
+
+    /**
+     * Check if there is at least one piece, that has status {@link PieceStatus#COMPLETE_VERIFIED}
+     * both in this and in the other bitfield.
+     *
+     * @param other Bitfield with the same number of pieces
+     * @since 1.6
+     */
+    public boolean intersects(Bitfield other) {
+        validateSameSize(other);
+        for (int w = 0; w < words.length(); w++) {
+            if ((words.get(w) & other.words.get(w)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the pieces, that have status {@link PieceStatus#COMPLETE_VERIFIED} in this bitfield,
+     * but not in the other one, e.g. the pieces of a remote peer, that the local peer does not have yet.
+     *
+     * @param other Bitfield with the same number of pieces
+     * @return New bitfield, which is a snapshot of the difference at the time of invocation.
+     *         It is not backed by chunk descriptors, even if this bitfield is.
+     * @since 1.6
+     */
+    public Bitfield andNot(Bitfield other) {
+        validateSameSize(other);
+        Bitfield result = new Bitfield(piecesTotal);
+        int count = 0;
+        for (int w = 0; w < words.length(); w++) {
+            long word = words.get(w) & ~other.words.get(w);
+            result.words.set(w, word);
+            count += Long.bitCount(word);
+        }
+        result.piecesComplete.set(count);
+        return result;
+    }
+
+    /**
+     * Same as {@code andNot(other).getPiecesComplete()}, but without creating an intermediate bitfield.
+     *
+     * @param other Bitfield with the same number of pieces
+     * @return Number of pieces, that have status {@link PieceStatus#COMPLETE_VERIFIED} in this bitfield,
+     *         but not in the other one
+     * @since 1.6
+     */
+    public int andNotCardinality(Bitfield other) {
+        validateSameSize(other);
+        int count = 0;
+        for (int w = 0; w < words.length(); w++) {
+            count += Long.bitCount(words.get(w) & ~other.words.get(w));
+        }
+        return count;
+    }
+
+    /**
+     * Same as {@code andNotCardinality(other) > 0}, but stops at the first matching piece.
+     *
+     * @param other Bitfield with the same number of pieces
+     * @return true if there is at least one piece, that has status {@link PieceStatus#COMPLETE_VERIFIED}
+     *         in this bitfield, but not in the other one
+     * @since 1.6
+     */
+    public boolean hasPiecesNotIn(Bitfield other) {
+        validateSameSize(other);
+        for (int w = 0; w < words.length(); w++) {
+            if ((words.get(w) & ~other.words.get(w)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Same as {@link #hasPiecesNotIn(Bitfield)}, but only pieces, that are present in the mask, are taken into account.
+     *
+     * @param other Bitfield with the same number of pieces
+     * @param mask Bitfield with the same number of pieces
+     * @return true if there is at least one piece, that has status {@link PieceStatus#COMPLETE_VERIFIED}
+     *         in this bitfield and in the mask, but not in the other bitfield
+     * @since 1.6
+     */
+    public boolean hasPiecesNotIn(Bitfield other, Bitfield mask) {
+        validateSameSize(other);
+        validateSameSize(mask);
+        for (int w = 0; w < words.length(); w++) {
+            if ((words.get(w) & mask.words.get(w) & ~other.words.get(w)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void validateSameSize(Bitfield other) {
+        if (other.piecesTotal != piecesTotal) {
+            throw new IllegalArgumentException("Bitfields have different number of pieces: " +
+                    piecesTotal + " != " + other.piecesTotal);
         }
     }
 
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package bt.data;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Calculates the hash of a chunk incrementally, as its blocks are being received.
+ *
+ * <p>Blocks are hashed in the order of their offsets. Blocks, that arrive ahead of the current position,
+ * wait in a small reorder window, until the gap before them has been filled.
+ * If the window overflows, or the same part of the chunk is received more than once
+ * (in which case it's not known, which version of the data ends up in the storage),
+ * the hasher gives up, and the chunk should be verified by reading its data from the storage.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @since 1.6
+ */
+public class ChunkHasher {
+
+    private final MessageDigest digest;
+    private final byte[] expectedChecksum;
+    private final long length;
+    private final int maxPendingBlocks;
+
+    private final TreeMap<Long, byte[]> pendingBlocks;
+    private long position;
+    private boolean failed;
+    private Boolean verified;
+
+    /**
+     * @param digest Fresh message digest
+     * @param expectedChecksum Expected hash of the chunk's data
+     * @param length Chunk's length
+     * @param maxPendingBlocks Max number of out-of-order blocks to keep, while waiting for the preceding blocks
+     * @since 1.6
+     */
+    public ChunkHasher(MessageDigest digest, byte[] expectedChecksum, long length, int maxPendingBlocks) {
+        this.digest = digest;
+        this.expectedChecksum = expectedChecksum;
+        this.length = length;
+        this.maxPendingBlocks = maxPendingBlocks;
+        this.pendingBlocks = new TreeMap<>();
+    }
+
+    /**
+     * Consume a block of the chunk's data. The remaining bytes of the buffer are consumed;
+     * buffer's position is not changed.
+     *
+     * @param offset Block's offset in the chunk
+     * @param block Block's data
+     * @return false, if the hasher has given up, and the chunk's data should be verified from the storage
+     * @since 1.6
+     */
+    public synchronized boolean update(long offset, ByteBuffer block) {
+        if (failed) {
+            return false;
+        }
+
+        int blockLength = block.remaining();
+        if (offset < position || offset > length - blockLength) {
+            // duplicate or invalid block
+            return fail();
+        }
+
+        if (offset == position) {
+            consume(block.duplicate());
+            Map.Entry<Long, byte[]> next;
+            while ((next = pendingBlocks.firstEntry()) != null && next.getKey() <= position) {
+                if (next.getKey() < position) {
+                    // pending block overlaps with the newly consumed data
+                    return fail();
+                }
+                pendingBlocks.pollFirstEntry();
+                consume(ByteBuffer.wrap(next.getValue()));
+            }
+        } else {
+            if (pendingBlocks.size() >= maxPendingBlocks || overlapsWithPending(offset, blockLength)) {
+                return fail();
+            }
+            byte[] copy = new byte[blockLength];
+            block.duplicate().get(copy);
+            pendingBlocks.put(offset, copy);
+        }
+        return true;
+    }
+
+    private boolean overlapsWithPending(long offset, int blockLength) {
+        Map.Entry<Long, byte[]> previous = pendingBlocks.floorEntry(offset);
+        if (previous != null && previous.getKey() + previous.getValue().length > offset) {
+            return true;
+        }
+        Long next = pendingBlocks.ceilingKey(offset);
+        return next != null && next < offset + blockLength;
+    }
+
+    private void consume(ByteBuffer data) {
+        position += data.remaining();
+        digest.update(data);
+    }
+
+    private boolean fail() {
+        failed = true;
+        pendingBlocks.clear();
+        return false;
+    }
+
+    /**
+     * @return true, if all of the chunk's data has been consumed, and the chunk can be verified
+     *         without reading its data from the storage
+     * @since 1.6
+     */
+    public synchronized boolean isComplete() {
+        return !failed && position == length;
+    }
+
+    /**
+     * @return true, if the hasher has given up
+     * @since 1.6
+     */
+    public synchronized boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Compare the hash of the consumed data with the expected chunk's checksum.
+     *
+     * @return true, if the chunk's data is correct
+     * @throws IllegalStateException if the hasher is not complete
+     * @since 1.6
+     */
+    public synchronized boolean verify() {
+        if (!isComplete()) {
+            throw new IllegalStateException("Not all of the chunk's data has been consumed: " + position + " of " + length);
+        }
+        if (verified == null) {
+            verified = Arrays.equals(expectedChecksum, digest.digest());
+        }
+        return verified;
+    }
+}
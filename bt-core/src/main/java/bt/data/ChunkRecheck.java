@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package bt.data;
+
+import bt.data.digest.Digester;
+import bt.data.range.ByteRange;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Checks the data of a list of chunks, e.g. upon startup.
+ *
+ * <p>Chunks are read sequentially in the order of their appearance in the torrent (i.e. in the order of files),
+ * each with a single read, by the calling thread. The data is then hashed in memory by the hashing executor,
+ * while the next chunks are being read. The number of chunks, that have been read, but not hashed yet,
+ * is limited by the read-ahead; their buffers are reused.
+ *
+ * <p>Chunks, that have some of their data missing (e.g. a file has not been created yet),
+ * are skipped without reading anything.
+ *
+ * @since 1.6
+ */
+class ChunkRecheck {
+
+    private final Digester digester;
+    private final Executor hashingExecutor;
+    private final int readAhead;
+
+    private final List<ChunkDescriptor> chunks;
+    private final Bitfield bitfield;
+    private final VerificationListener listener;
+
+    private final Semaphore inFlight;
+    private final Queue<byte[]> freeBuffers;
+    private final Queue<Throwable> errors;
+    private final Map<StorageUnit, Long> unitSizes;
+
+    private int chunksChecked;
+    private int chunksVerified;
+
+    /**
+     * @param hashingExecutor Executor for hashing tasks; may run them in the calling thread
+     * @param readAhead Max number of chunks, that have been read, but not hashed yet
+     */
+    ChunkRecheck(Digester digester,
+                 Executor hashingExecutor,
+                 int readAhead,
+                 List<ChunkDescriptor> chunks,
+                 Bitfield bitfield,
+                 VerificationListener listener) {
+        if (readAhead < 1) {
+            throw new IllegalArgumentException("Invalid read-ahead: " + readAhead);
+        }
+        this.digester = digester;
+        this.hashingExecutor = hashingExecutor;
+        this.readAhead = readAhead;
+        this.chunks = chunks;
+        this.bitfield = bitfield;
+        this.listener = listener;
+        this.inFlight = new Semaphore(readAhead);
+        this.freeBuffers = new ConcurrentLinkedQueue<>();
+        this.errors = new ConcurrentLinkedQueue<>();
+        this.unitSizes = new IdentityHashMap<>();
+    }
+
+    /**
+     * Check all chunks, waiting for the hashing to complete.
+     *
+     * @return Errors, that happened during verification
+     */
+    Queue<Throwable> run() {
+        int bufferSize = (int) chunks.stream().mapToLong(ChunkDescriptor::length).max().orElse(0);
+
+        for (int i = 0; i < chunks.size() && errors.isEmpty(); i++) {
+            ChunkDescriptor chunk = chunks.get(i);
+            if (!isDataPresent(chunk)) {
+                // if any part of this chunk's data is missing,
+                // then the chunk is neither complete nor verified
+                onChecked(false);
+                continue;
+            }
+
+            inFlight.acquireUninterruptibly();
+            byte[] buffer = freeBuffers.poll();
+            if (buffer == null) {
+                buffer = new byte[bufferSize];
+            }
+
+            int length = (int) chunk.length();
+            try {
+                chunk.getData().getBytes(ByteBuffer.wrap(buffer, 0, length));
+            } catch (Throwable e) {
+                errors.add(e);
+                release(buffer);
+                break;
+            }
+            submitHashing(i, chunk, buffer, length);
+        }
+
+        // wait until all chunks have been hashed
+        inFlight.acquireUninterruptibly(readAhead);
+        inFlight.release(readAhead);
+        return errors;
+    }
+
+    /**
+     * @return false, if some of the chunk's data is known to be missing;
+     *         true doesn't mean that all of the data is present, because storage units may contain gaps
+     *         before their reported size (see {@link StorageUnit#size()})
+     */
+    private boolean isDataPresent(ChunkDescriptor chunk) {
+        boolean[] present = new boolean[]{true};
+        chunk.getData().visitUnits((unit, off, lim) -> {
+            // stat each file only once, even if it's shared by many chunks
+            long size = unitSizes.computeIfAbsent(unit, StorageUnit::size);
+            if (size < lim) {
+                present[0] = false;
+                return false;
+            }
+            return true;
+        });
+        return present[0];
+    }
+
+    private void submitHashing(int chunkIndex, ChunkDescriptor chunk, byte[] buffer, int length) {
+        try {
+            hashingExecutor.execute(() -> {
+                boolean verified = false;
+                try {
+                    verified = Arrays.equals(chunk.getChecksum(), digest(buffer, length));
+                    if (verified) {
+                        bitfield.markVerified(chunkIndex);
+                    }
+                } catch (Throwable e) {
+                    errors.add(e);
+                } finally {
+                    release(buffer);
+                }
+                onChecked(verified);
+            });
+        } catch (Throwable e) {
+            errors.add(e);
+            release(buffer);
+        }
+    }
+
+    private byte[] digest(byte[] buffer, int length) {
+        Optional<MessageDigest> messageDigest = digester.createMessageDigest();
+        if (messageDigest.isPresent()) {
+            // hash directly from the buffer
+            messageDigest.get().update(buffer, 0, length);
+            return messageDigest.get().digest();
+        } else {
+            return digester.digest(new ByteRange(buffer, 0, length));
+        }
+    }
+
+    private void release(byte[] buffer) {
+        freeBuffers.add(buffer);
+        inFlight.release();
+    }
+
+    private synchronized void onChecked(boolean verified) {
+        chunksChecked++;
+        if (verified) {
+            chunksVerified++;
+        }
+        try {
+            listener.onProgress(chunksChecked, chunksVerified, chunks.size());
+        } catch (Throwable e) {
+            errors.add(e);
+        }
+    }
+}
@@ -17,6 +17,7 @@
 package bt.data;
 
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Implements data verification strategy.
@@ -35,6 +36,24 @@ public interface ChunkVerifier {
      */
     boolean verify(List<ChunkDescriptor> chunks, Bitfield bitfield);
 
+    /**
+     * Conducts verification of the provided list of chunks and updates bitfield with the results,
+     * reporting progress to the listener.
+     * Default implementation notifies the listener only once, after all chunks have been checked.
+     *
+     * @param chunks List of chunks
+     * @param bitfield Bitfield
+     * @param listener Progress listener
+     * @return true if all chunks have been verified successfully (meaning that all data is present and correct)
+     * @since 1.6
+     */
+    default boolean verify(List<ChunkDescriptor> chunks, Bitfield bitfield, VerificationListener listener) {
+        int verifiedBefore = bitfield.getPiecesComplete();
+        boolean complete = verify(chunks, bitfield);
+        listener.onProgress(chunks.size(), bitfield.getPiecesComplete() - verifiedBefore, chunks.size());
+        return complete;
+    }
+
     /**
      * Conducts verification of the provided chunk.
      *
@@ -43,4 +62,26 @@ public interface ChunkVerifier {
      * @since 1.2
      */
     boolean verify(ChunkDescriptor chunk);
+
+    /**
+     * Conducts verification of the provided chunk's data, that has not been written to the storage yet.
+     *
+     * @param chunk Chunk
+     * @param data Chunk's data; must be exactly the size of the chunk
+     * @return true if the data is correct
+     * @since 1.6
+     */
+    boolean verify(ChunkDescriptor chunk, byte[] data);
+
+    /**
+     * Creates a hasher, that verifies the provided chunk's data incrementally, as the blocks are being received,
+     * so that the data does not need to be read back from the storage, when the chunk is complete.
+     *
+     * @param chunk Chunk, that does not have any data yet
+     * @return Hasher or {@link Optional#empty()}, if incremental verification is not supported
+     * @since 1.6
+     */
+    default Optional<ChunkHasher> createHasher(ChunkDescriptor chunk) {
+        return Optional.empty();
+    }
 }
@@ -40,4 +40,13 @@ public interface DataDescriptor extends Closeable {
      * @since 1.0
      */
     Bitfield getBitfield();
+
+    /**
+     * @return Priorities of torrent's pieces, as derived from the priorities of torrent's files.
+     *         By default all pieces have normal priority.
+     * @since 1.6
+     */
+    default PiecePriorities getPiecePriorities() {
+        return PiecePriorities.uniform(getChunkDescriptors().size());
+    }
 }
@@ -16,7 +16,16 @@
 
 package bt.data;
 
+import bt.data.file.FileHandleCache;
+import bt.data.file.HandleCacheAware;
+import bt.data.resume.NoOpResumeStateStore;
+import bt.data.resume.ResumeStateStore;
 import bt.metainfo.Torrent;
+import bt.metainfo.TorrentFile;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 /**
  *<p><b>Note that this class implements a service.
@@ -25,16 +34,68 @@ import bt.metainfo.Torrent;
 public class DataDescriptorFactory implements IDataDescriptorFactory {
 
     private ChunkVerifier verifier;
+    private ResumeStateStore resumeStateStore;
+    private FileHandleCache handleCache;
     private int transferBlockSize;
 
+    private final Set<DefaultDataDescriptor> descriptors;
+
+    public DataDescriptorFactory(ChunkVerifier verifier,
+                                 int transferBlockSize) {
+        this(verifier, new NoOpResumeStateStore(), transferBlockSize);
+    }
+
+    /**
+     * @since 1.6
+     */
     public DataDescriptorFactory(ChunkVerifier verifier,
+                                 ResumeStateStore resumeStateStore,
+                                 int transferBlockSize) {
+        this(verifier, resumeStateStore, null, transferBlockSize);
+    }
+
+    /**
+     * @param handleCache Cache of open files, that is offered to storages, that have been created without one
+     *                    (see {@link HandleCacheAware}), or null
+     * @since 1.6
+     */
+    public DataDescriptorFactory(ChunkVerifier verifier,
+                                 ResumeStateStore resumeStateStore,
+                                 FileHandleCache handleCache,
                                  int transferBlockSize) {
         this.verifier = verifier;
+        this.resumeStateStore = resumeStateStore;
+        this.handleCache = handleCache;
         this.transferBlockSize = transferBlockSize;
+        this.descriptors = ConcurrentHashMap.newKeySet();
     }
 
     @Override
     public DataDescriptor createDescriptor(Torrent torrent, Storage storage) {
-        return new DefaultDataDescriptor(storage, torrent, verifier, transferBlockSize);
+        return createDescriptor(torrent, storage, null);
+    }
+
+    @Override
+    public DataDescriptor createDescriptor(Torrent torrent,
+                                           Storage storage,
+                                           Function<TorrentFile, FilePriority> filePriorities) {
+        if (handleCache != null && storage instanceof HandleCacheAware) {
+            ((HandleCacheAware) storage).bindDefaultHandleCache(handleCache);
+        }
+        DefaultDataDescriptor descriptor = new DefaultDataDescriptor(
+                storage, torrent, verifier, resumeStateStore, filePriorities, transferBlockSize);
+        descriptors.add(descriptor);
+        return descriptor;
+    }
+
+    /**
+     * Save the current state of all open data descriptors to the resume state store.
+     * Descriptors save their state on close, so closed descriptors are just forgotten.
+     *
+     * @since 1.6
+     */
+    public void saveResumeStates() {
+        descriptors.removeIf(DefaultDataDescriptor::isClosed);
+        descriptors.forEach(DefaultDataDescriptor::saveResumeState);
     }
 }
@@ -18,50 +18,126 @@ package bt.data;
 
 import bt.BtException;
 import bt.data.digest.Digester;
+import bt.data.range.ByteRange;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
+import java.util.Optional;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Default chunk verifier.
+ *
+ * <p>Lists of chunks (e.g. the whole torrent upon startup) are read sequentially by the calling thread
+ * and hashed in memory by a bounded pool of hashing threads (see {@link ChunkRecheck}).
+ *
+ *<p><b>Note that this class implements a service.
+ * Hence, is not a part of the public API and is a subject to change.</b></p>
+ */
 public class DefaultChunkVerifier implements ChunkVerifier {
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultChunkVerifier.class);
 
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
     private Digester digester;
     private int numOfHashingThreads;
+    private int hashingReorderWindow;
+
+    private volatile Executor hashingExecutor;
 
     public DefaultChunkVerifier(Digester digester, int numOfHashingThreads) {
+        this(digester, numOfHashingThreads, 0);
+    }
+
+    /**
+     * @param hashingReorderWindow Max number of out-of-order blocks per chunk,
+     *                             that are kept in memory for incremental hashing;
+     *                             0 disables incremental hashing
+     * @since 1.6
+     */
+    public DefaultChunkVerifier(Digester digester, int numOfHashingThreads, int hashingReorderWindow) {
+        this(digester, numOfHashingThreads, hashingReorderWindow, null);
+    }
+
+    /**
+     * @param hashingReorderWindow Max number of out-of-order blocks per chunk,
+     *                             that are kept in memory for incremental hashing;
+     *                             0 disables incremental hashing
+     * @param hashingExecutor Shared executor with {@code numOfHashingThreads} threads, that will be used
+     *                        to verify lists of chunks; if null, the verifier creates its' own pool
+     *                        upon first use
+     * @since 1.6
+     */
+    public DefaultChunkVerifier(Digester digester,
+                                int numOfHashingThreads,
+                                int hashingReorderWindow,
+                                Executor hashingExecutor) {
         this.digester = digester;
         this.numOfHashingThreads = numOfHashingThreads;
+        this.hashingReorderWindow = hashingReorderWindow;
+        this.hashingExecutor = hashingExecutor;
     }
 
     @Override
     public boolean verify(List<ChunkDescriptor> chunks, Bitfield bitfield) {
+        return verify(chunks, bitfield, (checked, verified, total) -> {});
+    }
+
+    @Override
+    public boolean verify(List<ChunkDescriptor> chunks, Bitfield bitfield, VerificationListener listener) {
         if (chunks.size() != bitfield.getPiecesTotal()) {
             throw new IllegalArgumentException("Bitfield has different size than the list of chunks. Bitfield size: " +
                     bitfield.getPiecesTotal() + ", number of chunks: " + chunks.size());
         }
 
-        ChunkDescriptor[] arr = chunks.toArray(new ChunkDescriptor[chunks.size()]);
+        Executor executor;
+        int readAhead;
         if (numOfHashingThreads > 1) {
-            collectParallel(arr, bitfield);
+            executor = getHashingExecutor();
+            // keep all hashing threads busy, while the next chunks are being read
+            readAhead = numOfHashingThreads * 2;
         } else {
-            createWorker(arr, 0, arr.length, bitfield).run();
+            executor = Runnable::run;
+            readAhead = 1;
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Verifying torrent data with {} hashing threads", Math.max(1, numOfHashingThreads));
+        }
+
+        Collection<Throwable> errors = new ChunkRecheck(digester, executor, readAhead, chunks, bitfield, listener).run();
+        if (!errors.isEmpty()) {
+            errors.forEach(e -> LOGGER.error("Unexpected error during verification of torrent data", e));
+            throw new BtException("Failed to verify torrent data:" +
+                    errors.stream().map(this::errorToString).reduce(String::concat).get());
         }
-        // try to purge all data that was loaded by the verifiers
-        System.gc();
 
         return bitfield.getPiecesRemaining() == 0;
     }
 
+    private Executor getHashingExecutor() {
+        if (hashingExecutor == null) {
+            synchronized (this) {
+                if (hashingExecutor == null) {
+                    // created once and reused for all subsequent verifications
+                    hashingExecutor = Executors.newFixedThreadPool(numOfHashingThreads, r -> {
+                        Thread t = new Thread(r, "bt.data.verifier-" + THREAD_COUNTER.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+                }
+            }
+        }
+        return hashingExecutor;
+    }
+
     @Override
     public boolean verify(ChunkDescriptor chunk) {
         byte[] expected = chunk.getChecksum();
@@ -69,82 +145,24 @@ public class DefaultChunkVerifier implements ChunkVerifier {
         return Arrays.equals(expected, actual);
     }
 
-    private List<ChunkDescriptor> collectParallel(ChunkDescriptor[] chunks, Bitfield bitfield) {
-        int n = numOfHashingThreads;
-        ExecutorService workers = Executors.newFixedThreadPool(n);
-
-        List<Future<?>> futures = new ArrayList<>();
-
-        int batchSize = chunks.length / n;
-        int i, limit = 0;
-        while ((i = limit) < chunks.length) {
-            if (futures.size() == n - 1) {
-                // assign the remaining bits to the last worker
-                limit = chunks.length;
-            } else {
-                limit = i + batchSize;
-            }
-            futures.add(workers.submit(createWorker(chunks, i, Math.min(chunks.length, limit), bitfield)));
-        }
-
-        if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("Verifying torrent data with {} workers", futures.size());
-        }
-
-        Set<Throwable> errors = ConcurrentHashMap.newKeySet();
-        futures.forEach(f -> {
-            try {
-                f.get();
-            } catch (Exception e) {
-                LOGGER.error("Unexpected error during verification of torrent data", e);
-                errors.add(e);
-            }
-        });
-
-        workers.shutdown();
-        while (!workers.isTerminated()) {
-            try {
-                Thread.sleep(100);
-            } catch (InterruptedException e) {
-                throw new BtException("Unexpectedly interrupted");
-            }
-        }
-
-        if (!errors.isEmpty()) {
-            throw new BtException("Failed to verify torrent data:" +
-                    errors.stream().map(this::errorToString).reduce(String::concat).get());
+    @Override
+    public boolean verify(ChunkDescriptor chunk, byte[] data) {
+        if (data.length != chunk.length()) {
+            throw new IllegalArgumentException("Data length (" + data.length +
+                    ") is different from chunk length (" + chunk.length() + ")");
         }
-
-        return Arrays.asList(chunks);
+        byte[] expected = chunk.getChecksum();
+        byte[] actual = digester.digest(new ByteRange(data));
+        return Arrays.equals(expected, actual);
     }
 
-    private Runnable createWorker(ChunkDescriptor[] chunks,
-                                  int from,
-                                  int to,
-                                  Bitfield bitfield) {
-        return () -> {
-            int i = from;
-            while (i < to) {
-                // optimization to speedup the initial verification of torrent's data
-                int[] emptyUnits = new int[]{0};
-                chunks[i].getData().visitUnits((u, off, lim) -> {
-                    if (u.size() == 0) {
-                        emptyUnits[0]++;
-                    }
-                    return true;
-                });
-
-                // if any of this chunk's storage units is empty,
-                // then the chunk is neither complete nor verified
-                if (emptyUnits[0] == 0) {
-                    boolean verified = verify(chunks[i]);
-                    if (verified) {
-                        bitfield.markVerified(i);
-                    }
-                }
-                i++;
-            }
-        };
+    @Override
+    public Optional<ChunkHasher> createHasher(ChunkDescriptor chunk) {
+        if (hashingReorderWindow <= 0) {
+            return Optional.empty();
+        }
+        return digester.createMessageDigest()
+                .map(digest -> new ChunkHasher(digest, chunk.getChecksum(), chunk.length(), hashingReorderWindow));
     }
 
     private String errorToString(Throwable e) {
@@ -19,14 +19,22 @@ package bt.data;
 import bt.BtException;
 import bt.data.range.BlockRange;
 import bt.data.range.Ranges;
+import bt.data.resume.ResumeState;
+import bt.data.resume.ResumeStateStore;
 import bt.metainfo.Torrent;
 import bt.metainfo.TorrentFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 class DefaultDataDescriptor implements DataDescriptor {
@@ -40,21 +48,39 @@ class DefaultDataDescriptor implements DataDescriptor {
     private Bitfield bitfield;
 
     private List<StorageUnit> storageUnits;
+    private PiecePriorities piecePriorities;
 
     private ChunkVerifier verifier;
+    private ResumeStateStore resumeStateStore;
 
+    private volatile boolean closed;
+
+    public DefaultDataDescriptor(Storage storage,
+                                 Torrent torrent,
+                                 ChunkVerifier verifier,
+                                 ResumeStateStore resumeStateStore,
+                                 int transferBlockSize) {
+        this(storage, torrent, verifier, resumeStateStore, null, transferBlockSize);
+    }
+
+    /**
+     * @param filePriorities Priorities of torrent files or null, if all files should be downloaded
+     */
     public DefaultDataDescriptor(Storage storage,
                                  Torrent torrent,
                                  ChunkVerifier verifier,
+                                 ResumeStateStore resumeStateStore,
+                                 Function<TorrentFile, FilePriority> filePriorities,
                                  int transferBlockSize) {
         this.storage = storage;
         this.torrent = torrent;
         this.verifier = verifier;
+        this.resumeStateStore = resumeStateStore;
 
-        init(transferBlockSize);
+        init(filePriorities, transferBlockSize);
     }
 
-    private void init(long transferBlockSize) {
+    private void init(Function<TorrentFile, FilePriority> filePriorities, long transferBlockSize) {
         List<TorrentFile> files = torrent.getFiles();
 
         long totalSize = torrent.getSize();
@@ -66,16 +92,23 @@ class DefaultDataDescriptor implements DataDescriptor {
 
         int chunksTotal = (int) Math.ceil(totalSize / chunkSize);
         List<ChunkDescriptor> chunks = new ArrayList<>(chunksTotal + 1);
+        List<BlockRange<DataRange>> chunkBlocks = new ArrayList<>(chunksTotal + 1);
 
         Iterator<byte[]> chunkHashes = torrent.getChunkHashes().iterator();
-        this.storageUnits = files.stream().map(f -> storage.getUnit(torrent, f)).collect(Collectors.toList());
+        if (filePriorities == null) {
+            this.storageUnits = files.stream().map(f -> storage.getUnit(torrent, f)).collect(Collectors.toList());
+        } else {
+            int piecesTotal = (int) ((totalSize + chunkSize - 1) / chunkSize);
+            this.piecePriorities = PiecePriorities.fromFiles(files, chunkSize, piecesTotal, filePriorities);
+            this.storageUnits = createStorageUnits(files, chunkSize, filePriorities, piecePriorities);
+        }
 
         // filter out empty files (and create them at once)
         List<StorageUnit> nonEmptyStorageUnits = new ArrayList<>();
         for (StorageUnit unit : storageUnits) {
             if (unit.capacity() > 0) {
                 nonEmptyStorageUnits.add(unit);
-            } else {
+            } else if (!(unit instanceof SkippedStorageUnit)) {
                 try {
                     // TODO: think about adding some explicit "initialization/creation" method
                     unit.writeBlock(new byte[0], 0);
@@ -101,7 +134,9 @@ class DefaultDataDescriptor implements DataDescriptor {
                     throw new BtException("Wrong number of chunk hashes in the torrent: too few");
                 }
 
-                chunks.add(buildChunkDescriptor(subrange, transferBlockSize, chunkHashes.next()));
+                BlockRange<DataRange> blockData = Ranges.blockRange(subrange, transferBlockSize);
+                chunkBlocks.add(blockData);
+                chunks.add(buildChunkDescriptor(blockData, chunkHashes.next()));
 
                 remaining -= chunkSize;
             }
@@ -111,24 +146,240 @@ class DefaultDataDescriptor implements DataDescriptor {
             throw new BtException("Wrong number of chunk hashes in the torrent: too many");
         }
 
-        this.bitfield = buildBitfield(chunks);
+        if (piecePriorities == null) {
+            this.piecePriorities = PiecePriorities.uniform(chunks.size());
+        }
+        this.bitfield = buildBitfield(chunks, chunkBlocks);
         this.chunkDescriptors = chunks;
     }
 
-    private ChunkDescriptor buildChunkDescriptor(DataRange data, long blockSize, byte[] checksum) {
-        BlockRange<DataRange> blockData = Ranges.blockRange(data, blockSize);
+    /**
+     * Storage units are created only for the files, that have at least one wanted piece;
+     * other files are represented by placeholders, that never touch the storage.
+     */
+    private List<StorageUnit> createStorageUnits(List<TorrentFile> files,
+                                                 long chunkSize,
+                                                 Function<TorrentFile, FilePriority> filePriorities,
+                                                 PiecePriorities priorities) {
+        List<StorageUnit> units = new ArrayList<>(files.size());
+        int skippedCount = 0;
+        long offset = 0;
+        for (TorrentFile file : files) {
+            long size = file.getSize();
+            boolean wanted;
+            if (size == 0) {
+                wanted = filePriorities.apply(file) != FilePriority.SKIP;
+            } else {
+                // file can still be partially written, if it shares a boundary piece with a wanted file
+                wanted = false;
+                int lastPiece = (int) ((offset + size - 1) / chunkSize);
+                for (int i = (int) (offset / chunkSize); i <= lastPiece; i++) {
+                    if (priorities.isWanted(i)) {
+                        wanted = true;
+                        break;
+                    }
+                }
+            }
+
+            if (wanted) {
+                units.add(storage.getUnit(torrent, file));
+            } else {
+                units.add(new SkippedStorageUnit(String.join("/", file.getPathElements()), size));
+                skippedCount++;
+            }
+            offset += size;
+        }
+
+        if (skippedCount > 0 && LOGGER.isInfoEnabled()) {
+            LOGGER.info("Skipping {} of {} files in torrent: {}", skippedCount, files.size(), torrent.getName());
+        }
+        return units;
+    }
+
+    private ChunkDescriptor buildChunkDescriptor(BlockRange<DataRange> blockData, byte[] checksum) {
         DataRange synchronizedData = Ranges.synchronizedDataRange(blockData);
         BlockSet synchronizedBlockSet = Ranges.synchronizedBlockSet(blockData.getBlockSet());
 
         return new DefaultChunkDescriptor(synchronizedData, synchronizedBlockSet, checksum);
     }
 
-    private Bitfield buildBitfield(List<ChunkDescriptor> chunks) {
+    private Bitfield buildBitfield(List<ChunkDescriptor> chunks, List<BlockRange<DataRange>> chunkBlocks) {
         Bitfield bitfield = new Bitfield(chunks.size());
-        verifier.verify(chunks, bitfield);
+
+        Optional<ResumeState> resumeState = resumeStateStore.load(torrent.getTorrentId());
+        if (!resumeState.isPresent() || !isCompatible(resumeState.get(), chunks.size())) {
+            verifier.verify(chunks, bitfield, new ProgressLogger());
+            return bitfield;
+        }
+
+        ResumeState state = resumeState.get();
+        Bitfield savedBitfield = new Bitfield(state.getBitmask(), state.getPiecesTotal());
+        boolean[] trusted = getTrustedChunks(state, chunks.size());
+
+        List<Integer> untrustedIndices = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            if (!trusted[i]) {
+                untrustedIndices.add(i);
+            } else if (savedBitfield.isVerified(i)) {
+                bitfield.markVerified(i);
+            } else {
+                BitSet presentBlocks = state.getPartialPieces().get(i);
+                if (presentBlocks != null) {
+                    restoreBlocks(chunkBlocks.get(i), presentBlocks);
+                }
+            }
+        }
+
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("Restored state of torrent data from the previous session: {} of {} pieces need to be re-checked ({})",
+                    untrustedIndices.size(), chunks.size(), torrent.getName());
+        }
+
+        if (!untrustedIndices.isEmpty()) {
+            List<ChunkDescriptor> untrustedChunks = new ArrayList<>(untrustedIndices.size());
+            untrustedIndices.forEach(i -> untrustedChunks.add(chunks.get(i)));
+
+            Bitfield untrustedBitfield = new Bitfield(untrustedChunks.size());
+            verifier.verify(untrustedChunks, untrustedBitfield, new ProgressLogger());
+            for (int i = 0; i < untrustedIndices.size(); i++) {
+                if (untrustedBitfield.isVerified(i)) {
+                    bitfield.markVerified(untrustedIndices.get(i));
+                }
+            }
+        }
         return bitfield;
     }
 
+    @Override
+    public PiecePriorities getPiecePriorities() {
+        return piecePriorities;
+    }
+
+    private boolean isCompatible(ResumeState state, int chunksTotal) {
+        if (state.getPiecesTotal() != chunksTotal
+                || state.getBitmask().length != (chunksTotal + 7) / 8
+                || state.getFileCount() != storageUnits.size()) {
+            LOGGER.warn("Ignoring saved state of torrent data, because it does not match the torrent: {}", torrent.getName());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * A chunk can be trusted, if none of the files, that it spans, have been modified since the state was saved.
+     */
+    private boolean[] getTrustedChunks(ResumeState state, int chunksTotal) {
+        boolean[] trusted = new boolean[chunksTotal];
+        Arrays.fill(trusted, true);
+
+        long chunkSize = torrent.getChunkSize();
+        long offset = 0;
+        for (int i = 0; i < storageUnits.size(); i++) {
+            StorageUnit unit = storageUnits.get(i);
+            long capacity = unit.capacity();
+            if (capacity > 0 && !isUnchanged(unit, state, i)) {
+                int firstChunk = (int) (offset / chunkSize);
+                int lastChunk = (int) Math.min(chunksTotal - 1, (offset + capacity - 1) / chunkSize);
+                Arrays.fill(trusted, firstChunk, lastChunk + 1, false);
+            }
+            offset += capacity;
+        }
+        return trusted;
+    }
+
+    private static boolean isUnchanged(StorageUnit unit, ResumeState state, int fileIndex) {
+        long lastModified = state.getFileModificationTime(fileIndex);
+        if (lastModified < 0 || lastModified != unit.lastModified()) {
+            return false;
+        }
+        // nothing has been written since the state was saved, so the amount of data is the same
+        unit.restoreSize(state.getFileSize(fileIndex));
+        return state.getFileSize(fileIndex) == unit.size();
+    }
+
+    private static void restoreBlocks(BlockRange<DataRange> blockData, BitSet presentBlocks) {
+        BlockSet blockSet = blockData.getBlockSet();
+        if (presentBlocks.length() > blockSet.blockCount()) {
+            // state is inconsistent with the torrent; let the blocks be downloaded once more
+            return;
+        }
+        for (int i = presentBlocks.nextSetBit(0); i >= 0; i = presentBlocks.nextSetBit(i + 1)) {
+            long blockLength = (i == blockSet.blockCount() - 1) ? blockSet.lastBlockSize() : blockSet.blockSize();
+            blockData.markAvailable(i * blockSet.blockSize(), blockLength);
+        }
+    }
+
+    /**
+     * Logs progress of the verification of torrent's data in steps of 10%
+     */
+    private class ProgressLogger implements VerificationListener {
+
+        private int lastReportedStep;
+
+        @Override
+        public void onProgress(int chunksChecked, int chunksVerified, int chunksTotal) {
+            int step = (int) (chunksChecked * 10L / chunksTotal);
+            if (step > lastReportedStep) {
+                lastReportedStep = step;
+                if (LOGGER.isInfoEnabled()) {
+                    LOGGER.info("Checked {} of {} pieces ({} verified): {}",
+                            chunksChecked, chunksTotal, chunksVerified, torrent.getName());
+                }
+            }
+        }
+    }
+
+    /**
+     * Save current state of the torrent's data, so that it can be quickly restored after restart.
+     */
+    void saveResumeState() {
+        try {
+            resumeStateStore.save(torrent.getTorrentId(), captureResumeState());
+        } catch (Exception e) {
+            LOGGER.error("Failed to save state of torrent data: " + torrent.getName(), e);
+        }
+    }
+
+    private ResumeState captureResumeState() {
+        // capture the bitfield before the files' stats,
+        // so that the files can't look older than the pieces, that have been verified in them
+        byte[] bitmask = bitfield.getBitmask();
+        Bitfield verifiedPieces = new Bitfield(bitmask, bitfield.getPiecesTotal());
+
+        Map<Integer, BitSet> partialPieces = new HashMap<>();
+        for (int i = 0; i < chunkDescriptors.size(); i++) {
+            if (verifiedPieces.isVerified(i)) {
+                continue;
+            }
+            ChunkDescriptor chunk = chunkDescriptors.get(i);
+            // complete but unverified pieces are not saved, because they have failed verification
+            // or are being verified right now, and will be re-downloaded in any case
+            if (!chunk.isEmpty() && !chunk.isComplete()) {
+                BitSet presentBlocks = new BitSet(chunk.blockCount());
+                for (int j = 0; j < chunk.blockCount(); j++) {
+                    if (chunk.isPresent(j)) {
+                        presentBlocks.set(j);
+                    }
+                }
+                partialPieces.put(i, presentBlocks);
+            }
+        }
+
+        long[] fileSizes = new long[storageUnits.size()];
+        long[] fileModificationTimes = new long[storageUnits.size()];
+        for (int i = 0; i < storageUnits.size(); i++) {
+            StorageUnit unit = storageUnits.get(i);
+            fileModificationTimes[i] = unit.lastModified();
+            fileSizes[i] = unit.size();
+        }
+
+        return new ResumeState(bitfield.getPiecesTotal(), bitmask, fileSizes, fileModificationTimes, partialPieces);
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
     @Override
     public List<ChunkDescriptor> getChunkDescriptors() {
         return chunkDescriptors;
@@ -141,6 +392,10 @@ class DefaultDataDescriptor implements DataDescriptor {
 
     @Override
     public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
         storageUnits.forEach(unit -> {
             try {
                 unit.close();
@@ -148,6 +403,8 @@ class DefaultDataDescriptor implements DataDescriptor {
                 LOGGER.error("Failed to close storage unit: " + unit);
             }
         });
+        // save the state after the units have been closed, so that all pending changes are reflected in it
+        saveResumeState();
     }
 
     @Override
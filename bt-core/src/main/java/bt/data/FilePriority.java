@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package bt.data;
+
+/**
+ * Download priority of a single torrent file.
+ *
+ * @see PiecePriorities
+ * @since 1.6
+ */
+public enum FilePriority {
+
+    /**
+     * File is not downloaded. Storage is not created for the file,
+     * unless some of its data belongs to a piece, that is shared with a file, that is downloaded.
+     *
+     * @since 1.6
+     */
+    SKIP,
+
+    /**
+     * @since 1.6
+     */
+    LOW,
+
+    /**
+     * @since 1.6
+     */
+    NORMAL,
+
+    /**
+     * @since 1.6
+     */
+    HIGH
+}
@@ -17,6 +17,9 @@
 package bt.data;
 
 import bt.metainfo.Torrent;
+import bt.metainfo.TorrentFile;
+
+import java.util.function.Function;
 
 /**
  * Factory of torrent data descriptors.
@@ -38,4 +41,22 @@ public interface IDataDescriptorFactory {
      * @since 1.0
      */
     DataDescriptor createDescriptor(Torrent torrent, Storage storage);
+
+    /**
+     * Create a data descriptor for a given torrent
+     * with the storage provided as the data back-end,
+     * taking into account the priorities of torrent's files.
+     *
+     * Implementations should not create storage units for the files with {@link FilePriority#SKIP} priority,
+     * unless such files share pieces with other files, that are wanted.
+     *
+     * @param filePriorities Priorities of torrent's files or null, if all files should be downloaded
+     * @return Data descriptor
+     * @since 1.6
+     */
+    default DataDescriptor createDescriptor(Torrent torrent,
+                                            Storage storage,
+                                            Function<TorrentFile, FilePriority> filePriorities) {
+        return createDescriptor(torrent, storage);
+    }
 }
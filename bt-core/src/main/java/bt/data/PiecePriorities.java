@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package bt.data;
+
+import bt.metainfo.TorrentFile;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Download priorities of torrent's pieces, derived from the priorities of the files, that the pieces span.
+ *
+ * <p>Priority of a piece is the highest priority of its files, so a piece is skipped only if all of its files are skipped.
+ * Pieces, that are not skipped, are called "wanted". Set of wanted pieces is available in form of a {@link Bitfield}
+ * (see {@link #getWantedPieces()}), so that it can be combined with bitfields of peers word-at-a-time.
+ *
+ * @since 1.6
+ */
+public class PiecePriorities {
+
+    private final FilePriority[] priorities;
+    private final Bitfield wantedPieces;
+    private final boolean skippingPieces;
+    private final boolean mixedPriorities;
+
+    /**
+     * Create priorities, where all pieces have {@link FilePriority#NORMAL} priority.
+     *
+     * @param piecesTotal Total number of pieces in torrent
+     * @since 1.6
+     */
+    public static PiecePriorities uniform(int piecesTotal) {
+        FilePriority[] priorities = new FilePriority[piecesTotal];
+        Arrays.fill(priorities, FilePriority.NORMAL);
+        return new PiecePriorities(priorities);
+    }
+
+    /**
+     * Calculate priorities of pieces based on priorities of torrent files.
+     *
+     * @param files Torrent files in the same order as they appear in torrent's metainfo
+     * @param chunkSize Size of a piece
+     * @param piecesTotal Total number of pieces in torrent
+     * @param filePriorities Priority of each file
+     * @since 1.6
+     */
+    public static PiecePriorities fromFiles(List<TorrentFile> files,
+                                            long chunkSize,
+                                            int piecesTotal,
+                                            Function<TorrentFile, FilePriority> filePriorities) {
+        FilePriority[] priorities = new FilePriority[piecesTotal];
+        Arrays.fill(priorities, FilePriority.SKIP);
+
+        long offset = 0;
+        for (TorrentFile file : files) {
+            long size = file.getSize();
+            if (size > 0) {
+                FilePriority priority = filePriorities.apply(file);
+                int firstPiece = (int) (offset / chunkSize);
+                int lastPiece = (int) Math.min(piecesTotal - 1, (offset + size - 1) / chunkSize);
+                for (int i = firstPiece; i <= lastPiece; i++) {
+                    if (priority.compareTo(priorities[i]) > 0) {
+                        priorities[i] = priority;
+                    }
+                }
+            }
+            offset += size;
+        }
+        return new PiecePriorities(priorities);
+    }
+
+    private PiecePriorities(FilePriority[] priorities) {
+        this.priorities = priorities;
+        this.wantedPieces = new Bitfield(priorities.length);
+
+        boolean skippingPieces = false;
+        FilePriority wantedPriority = null;
+        boolean mixedPriorities = false;
+        for (int i = 0; i < priorities.length; i++) {
+            FilePriority priority = priorities[i];
+            if (priority == FilePriority.SKIP) {
+                skippingPieces = true;
+            } else {
+                wantedPieces.markVerified(i);
+                if (wantedPriority == null) {
+                    wantedPriority = priority;
+                } else if (wantedPriority != priority) {
+                    mixedPriorities = true;
+                }
+            }
+        }
+        this.skippingPieces = skippingPieces;
+        this.mixedPriorities = mixedPriorities;
+    }
+
+    /**
+     * @return Total number of pieces in torrent
+     * @since 1.6
+     */
+    public int getPiecesTotal() {
+        return priorities.length;
+    }
+
+    /**
+     * @param pieceIndex Piece index (0-based)
+     * @return Priority of the piece
+     * @since 1.6
+     */
+    public FilePriority getPriority(int pieceIndex) {
+        return priorities[pieceIndex];
+    }
+
+    /**
+     * @param pieceIndex Piece index (0-based)
+     * @return true, if the piece is not skipped
+     * @since 1.6
+     */
+    public boolean isWanted(int pieceIndex) {
+        return priorities[pieceIndex] != FilePriority.SKIP;
+    }
+
+    /**
+     * @return Bitfield, where wanted pieces are marked as verified. Must not be modified.
+     * @since 1.6
+     */
+    public Bitfield getWantedPieces() {
+        return wantedPieces;
+    }
+
+    /**
+     * @return true, if at least one piece is skipped
+     * @since 1.6
+     */
+    public boolean isSkippingPieces() {
+        return skippingPieces;
+    }
+
+    /**
+     * @return true, if wanted pieces have different priorities
+     * @since 1.6
+     */
+    public boolean hasMixedPriorities() {
+        return mixedPriorities;
+    }
+
+    /**
+     * @param bitfield Status of torrent's data
+     * @return Number of wanted pieces, that have not been verified yet
+     * @since 1.6
+     */
+    public int getWantedPiecesRemaining(Bitfield bitfield) {
+        return skippingPieces ? wantedPieces.andNotCardinality(bitfield) : bitfield.getPiecesRemaining();
+    }
+}
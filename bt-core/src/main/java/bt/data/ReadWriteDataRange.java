@@ -16,37 +16,45 @@
 
 package bt.data;
 
+import bt.data.range.Ranges;
+
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @since 1.2
  */
 class ReadWriteDataRange implements DataRange {
 
-    private final List<StorageUnit> units;
+    /**
+     * All units of the original range. Subranges share this array (and the offsets index below)
+     * with the range they have been created from, so that building a subrange does not copy anything.
+     */
+    private final StorageUnit[] units;
+
+    /**
+     * This is a "map" of "virtual addresses" (offsets) into the range's files.
+     * Size of this map is equal to the number of files plus one.
+     * The number x at some position n is the "virtual" offset that designates the beginning
+     * of the n-th file, counting from the beginning of the very first file (regardless of this range's offset in it).
+     * The last number is the total capacity of all files.
+     *
+     * Addresses are non-decreasing, which allows to find the file, that contains some offset, with a binary search.
+     */
+    private final long[] unitOffsets;
+
     private final int firstUnit;
     private final int lastUnit;
     private final long offsetInFirstUnit;
     private final long limitInLastUnit;
 
-    private final long length;
-
     /**
-     * This is a "map" of this range's "virtual addresses" (offsets) into the range's files.
-     * Size of this map is equal to the number of range's files.
-     * The number x at some position n is the "virtual" offset that designates the beginning
-     * of the n-th file. So, a request to build a range beginning with offset x,
-     * will translate to offset 0 in the n-th file (i.e. the beginning of the file).
-     *
-     * Obviously, the number at position 0 is always 0
-     * and translates into the offset in the first file in the range (this offset is set upon creation of the range).
-     *
-     * Also, it's guaranted that the address at position n+1 is always greater than address at position n.
+     * "Virtual" address of the beginning of this range
      */
-    private long[] fileOffsets;
+    private final long begin;
+    private final long length;
 
     /**
      * Create a data range.
@@ -60,81 +68,80 @@ class ReadWriteDataRange implements DataRange {
     public ReadWriteDataRange(List<StorageUnit> units,
                               long offsetInFirstUnit,
                               long limitInLastUnit) {
-        this(units,
-             0,
-             offsetInFirstUnit,
-             units.size() - 1,
-             limitInLastUnit);
-    }
-
-    private ReadWriteDataRange(List<StorageUnit> units,
-                               int firstUnit,
-                               long offsetInFirstUnit,
-                               int lastUnit,
-                               long limitInLastUnit) {
 
         if (units.isEmpty()) {
             throw new IllegalArgumentException("Empty list of units");
         }
-        if (firstUnit < 0 || firstUnit > units.size() - 1) {
-            throw new IllegalArgumentException("Invalid first unit index: " + firstUnit + ", expected 0.." + (units.size() - 1));
-        }
-        if (lastUnit < 0 || lastUnit > units.size() - 1) {
-            throw new IllegalArgumentException("Invalid last unit index: " + lastUnit + ", expected 0.." + (units.size() - 1));
-        }
-        if (firstUnit > lastUnit) {
-            throw new IllegalArgumentException("First unit index is greater than last unit index: " + firstUnit + " > " + lastUnit);
-        }
-        if (offsetInFirstUnit < 0 || offsetInFirstUnit > units.get(firstUnit).capacity() - 1) {
+        StorageUnit firstUnit = units.get(0);
+        StorageUnit lastUnit = units.get(units.size() - 1);
+        if (offsetInFirstUnit < 0 || offsetInFirstUnit > firstUnit.capacity() - 1) {
             throw new IllegalArgumentException("Invalid offset in first unit: " + offsetInFirstUnit +
-                    ", expected 0.." + (units.get(firstUnit).capacity() - 1));
+                    ", expected 0.." + (firstUnit.capacity() - 1));
         }
-        if (limitInLastUnit <= 0 || limitInLastUnit > units.get(lastUnit).capacity()) {
+        if (limitInLastUnit <= 0 || limitInLastUnit > lastUnit.capacity()) {
             throw new IllegalArgumentException("Invalid limit in last unit: " + limitInLastUnit +
-                    ", expected 1.." + (units.get(lastUnit).capacity()));
+                    ", expected 1.." + (lastUnit.capacity()));
         }
-        if (firstUnit == lastUnit && offsetInFirstUnit >= limitInLastUnit) {
+        if (units.size() == 1 && offsetInFirstUnit >= limitInLastUnit) {
             throw new IllegalArgumentException("Offset is greater than limit in a single-unit range: " +
                     offsetInFirstUnit + " >= " + limitInLastUnit);
         }
 
+        this.units = units.toArray(new StorageUnit[units.size()]);
+        this.unitOffsets = calculateOffsets(this.units);
+
+        this.firstUnit = 0;
+        this.lastUnit = this.units.length - 1;
+        this.offsetInFirstUnit = offsetInFirstUnit;
+        this.limitInLastUnit = limitInLastUnit;
+
+        this.begin = offsetInFirstUnit;
+        this.length = unitOffsets[this.lastUnit] + limitInLastUnit - offsetInFirstUnit;
+    }
+
+    private ReadWriteDataRange(StorageUnit[] units,
+                               long[] unitOffsets,
+                               int firstUnit,
+                               long offsetInFirstUnit,
+                               int lastUnit,
+                               long limitInLastUnit) {
         this.units = units;
-        this.fileOffsets = calculateOffsets(units, offsetInFirstUnit);
+        this.unitOffsets = unitOffsets;
 
         this.firstUnit = firstUnit;
         this.lastUnit = lastUnit;
         this.offsetInFirstUnit = offsetInFirstUnit;
         this.limitInLastUnit = limitInLastUnit;
 
-        this.length = calculateLength(units, offsetInFirstUnit, limitInLastUnit);
+        this.begin = unitOffsets[firstUnit] + offsetInFirstUnit;
+        this.length = unitOffsets[lastUnit] + limitInLastUnit - begin;
     }
 
-    private static long calculateLength(List<StorageUnit> units, long offsetInFirstUnit, long limitInLastUnit) {
-        long size;
-        if (units.size() == 1) {
-            size = limitInLastUnit - offsetInFirstUnit;
-        } else {
-            size = units.get(0).capacity() - offsetInFirstUnit;
-            for (int i = 1; i < units.size() - 1; i++) {
-                size += units.get(i).capacity();
-            }
-            size += limitInLastUnit;
+    private static long[] calculateOffsets(StorageUnit[] units) {
+        long[] unitOffsets = new long[units.length + 1];
+        for (int i = 0; i < units.length; i++) {
+            unitOffsets[i + 1] = unitOffsets[i] + units[i].capacity();
         }
-        return size;
+        return unitOffsets;
     }
 
-    private static long[] calculateOffsets(List<StorageUnit> units, long offsetInFirstUnit) {
-        long[] fileOffsets = new long[units.size()];
-        // first "virtual" address (first file begins with offset 0)
-        fileOffsets[0] = 0;
-        if (units.size() > 1) {
-            // it's possible that chunk does not have access to the entire first file
-            fileOffsets[1] = units.get(0).capacity() - offsetInFirstUnit;
-        }
-        for (int i = 2; i < units.size(); i++) {
-            fileOffsets[i] = fileOffsets[i - 1] + units.get(i - 1).capacity();
+    /**
+     * @return Index of the last unit in [from, to], that begins at or before the given "virtual" address.
+     *         Provided that the address is less than the end of unit {@code to}, this is the unit that contains it
+     *         (empty units are skipped, because the next unit begins at the same address).
+     */
+    private int findUnit(long address, int from, int to) {
+        int low = from, high = to;
+        while (low < high) {
+            // round up, so that the loop always makes progress
+            int mid = (low + high + 1) >>> 1;
+            if (unitOffsets[mid] <= address) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
         }
-        return fileOffsets;
+        return low;
     }
 
     @Override
@@ -156,68 +163,24 @@ class ReadWriteDataRange implements DataRange {
         if (offset == 0 && length == length()) {
             return this;
         }
-
-        int firstRequestedFileIndex,
-            lastRequestedFileIndex;
-
-        long offsetInFirstRequestedFile,
-             limitInLastRequestedFile;
-
-        // determine the file that the requested block begins in
-        firstRequestedFileIndex = -1;
-        for (int i = 0; i < units.size(); i++) {
-            if (offset < fileOffsets[i]) {
-                firstRequestedFileIndex = i - 1;
-                break;
-            } else if (i == units.size() - 1) {
-                // reached the last file
-                firstRequestedFileIndex = i;
-            }
-        }
-
-        offsetInFirstRequestedFile = offset - fileOffsets[firstRequestedFileIndex];
-        if (firstRequestedFileIndex == 0) {
-            // if the first requested file is the first file in chunk,
-            // then we need to begin from this chunk's offset in that file
-            // (in case this chunk has access only to a portion of the file)
-            offsetInFirstRequestedFile += offsetInFirstUnit;
-        }
-
-        lastRequestedFileIndex = firstRequestedFileIndex;
-        long remaining = length;
-        do {
-            // determine which files overlap with the requested block
-            if (firstRequestedFileIndex == lastRequestedFileIndex) {
-                remaining -= (units.get(lastRequestedFileIndex).capacity() - offsetInFirstRequestedFile);
-            } else {
-                remaining -= units.get(lastRequestedFileIndex).capacity();
-            }
-        } while (remaining > 0 && ++lastRequestedFileIndex < units.size());
-
-        if (lastRequestedFileIndex >= units.size()) {
+        if (length > length() - offset) {
             // data in this chunk is insufficient to fulfill the block request
             throw new IllegalArgumentException("Insufficient data (offset: " + offset + ", requested length: " + length + ")");
         }
-        // if remaining is negative now, then we need to
-        // strip off some data from the last file
-        limitInLastRequestedFile = units.get(lastRequestedFileIndex).capacity() + remaining;
-
-        if (lastRequestedFileIndex == units.size() - 1) {
-            if (limitInLastRequestedFile > limitInLastUnit) {
-                // data in this chunk is insufficient to fulfill the block request
-                throw new IllegalArgumentException("Insufficient data (offset: " + offset + ", requested length: " + length + ")");
-            }
-        }
 
-        List<StorageUnit> _units = new ArrayList<>();
-        int len = lastRequestedFileIndex - firstRequestedFileIndex;
-        _units.addAll(Arrays.asList(Arrays.copyOfRange(units.toArray(
-                new StorageUnit[len]), firstRequestedFileIndex, lastRequestedFileIndex + 1)));
+        long start = begin + offset;
+        long end = start + length;
+
+        int firstRequestedUnit = findUnit(start, firstUnit, lastUnit);
+        int lastRequestedUnit = findUnit(end - 1, firstRequestedUnit, lastUnit);
 
         return new ReadWriteDataRange(
-                _units,
-                offsetInFirstRequestedFile,
-                limitInLastRequestedFile);
+                units,
+                unitOffsets,
+                firstRequestedUnit,
+                start - unitOffsets[firstRequestedUnit],
+                lastRequestedUnit,
+                end - unitOffsets[lastRequestedUnit]);
     }
 
     @Override
@@ -235,78 +198,250 @@ class ReadWriteDataRange implements DataRange {
         }
 
         byte[] block = new byte[(int) length()];
-        ByteBuffer buffer = ByteBuffer.wrap(block);
+        getBytes(ByteBuffer.wrap(block));
+        return block;
+    }
 
-        visitUnits(new DataRangeVisitor() {
-            int offsetInBlock = 0;
+    @Override
+    public void getBytes(ByteBuffer buffer) {
+        if (buffer.remaining() > length()) {
+            throw new IllegalArgumentException(String.format(
+                    "Insufficient data in this range (expected max %d bytes, requested: %d)", length(), buffer.remaining()));
+        }
 
-            @Override
-            public boolean visitUnit(StorageUnit unit, long off, long lim) {
-                long len = lim - off;
-                if (len > Integer.MAX_VALUE) {
-                    throw new IllegalStateException("Too much data requested");
-                }
+        int limit = buffer.limit();
+        try {
+            for (int i = firstUnit; i <= lastUnit && buffer.hasRemaining(); i++) {
+                long off = unitOffset(i);
+                int position = buffer.position();
+                int len = (int) Math.min(buffer.remaining(), unitLimit(i) - off);
+                buffer.limit(position + len);
+                units[i].readBlock(buffer, off);
+                // unit might not advance the buffer, e.g. when reading from a missing file
+                buffer.limit(limit);
+                buffer.position(position + len);
+            }
+        } finally {
+            buffer.limit(limit);
+        }
+    }
 
-                if (((long) offsetInBlock) + len > Integer.MAX_VALUE) {
-                    // overflow -- isn't supposed to happen unless the algorithm in range is incorrect
-                    throw new IllegalStateException("Integer overflow while constructing block");
-                }
+    @Override
+    public void putBytes(byte[] block) {
+        putBytes(ByteBuffer.wrap(block).asReadOnlyBuffer());
+    }
 
-                buffer.limit(offsetInBlock + (int) len);
-                buffer.position(offsetInBlock);
-                unit.readBlock(buffer, off);
-                offsetInBlock += len;
+    @Override
+    public void putBytes(ByteBuffer buffer) {
+        if (!buffer.hasRemaining()) {
+            return;
+        } else if (buffer.remaining() > length()) {
+            throw new IllegalArgumentException(String.format(
+                    "Data does not fit in this range (expected max %d bytes, actual: %d)", length(), buffer.remaining()));
+        }
 
-                return true;
+        int limit = buffer.limit();
+        try {
+            for (int i = firstUnit; i <= lastUnit && buffer.hasRemaining(); i++) {
+                long off = unitOffset(i);
+                int position = buffer.position();
+                int len = (int) Math.min(buffer.remaining(), unitLimit(i) - off);
+                buffer.limit(position + len);
+                units[i].writeBlock(buffer, off);
+                buffer.limit(limit);
+                buffer.position(position + len);
             }
-        });
+        } finally {
+            buffer.limit(limit);
+        }
+    }
 
-        return block;
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Each unit's part of the data is read with a single call to {@link StorageUnit#readBlocks(ByteBuffer[], long)}.
+     */
+    @Override
+    public void getBytes(ByteBuffer[] buffers) {
+        long length = Ranges.remaining(buffers);
+        if (length > length()) {
+            throw new IllegalArgumentException(String.format(
+                    "Insufficient data in this range (expected max %d bytes, requested: %d)", length(), length));
+        }
+        visitUnitParts(buffers, (unit, parts, off) -> unit.readBlocks(parts, off));
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Each unit's part of the data is written with a single call to {@link StorageUnit#writeBlocks(ByteBuffer[], long)}.
+     */
     @Override
-    public void putBytes(byte[] block) {
-        if (block.length == 0) {
-            return;
-        } else if (block.length > length()) {
+    public void putBytes(ByteBuffer[] buffers) {
+        long length = Ranges.remaining(buffers);
+        if (length > length()) {
+            throw new IllegalArgumentException(String.format(
+                    "Data does not fit in this range (expected max %d bytes, actual: %d)", length(), length));
+        }
+        visitUnitParts(buffers, (unit, parts, off) -> unit.writeBlocks(parts, off));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Parts of the range, that reside in {@link AsyncStorageUnit}s, are written concurrently;
+     * other units are written synchronously in the caller's thread,
+     * each with a single call to {@link StorageUnit#writeBlocks(ByteBuffer[], long)}.
+     */
+    @Override
+    public CompletableFuture<Void> putBytesAsync(ByteBuffer[] buffers) {
+        long length = Ranges.remaining(buffers);
+        if (length > length()) {
             throw new IllegalArgumentException(String.format(
-                    "Data does not fit in this range (expected max %d bytes, actual: %d)", length(), block.length));
+                    "Data does not fit in this range (expected max %d bytes, actual: %d)", length(), length));
         }
 
-        ByteBuffer buffer = ByteBuffer.wrap(block).asReadOnlyBuffer();
-        visitUnits(new DataRangeVisitor() {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        visitUnitParts(buffers, (unit, parts, off) -> {
+            if (unit instanceof AsyncStorageUnit) {
+                AsyncStorageUnit asyncUnit = (AsyncStorageUnit) unit;
+                for (ByteBuffer part : parts) {
+                    int len = part.remaining();
+                    futures.add(asyncUnit.writeBlockAsync(part, off));
+                    off += len;
+                }
+            } else {
+                unit.writeBlocks(parts, off);
+            }
+        });
+        return allOf(futures);
+    }
 
-            int offsetInBlock = 0;
-            int limitInBlock;
+    /**
+     * Split the remaining data of the buffers among the units of this range.
+     * Each unit is given its part as an array of views of the buffers, so that the parts can be processed concurrently.
+     * Upon return the position of each buffer is set to its limit.
+     */
+    private void visitUnitParts(ByteBuffer[] buffers, UnitPartVisitor visitor) {
+        ByteBuffer[] views = new ByteBuffer[buffers.length];
+        for (int i = 0; i < buffers.length; i++) {
+            views[i] = buffers[i].duplicate();
+        }
 
-            @Override
-            public boolean visitUnit(StorageUnit unit, long off, long lim) {
-                long fileSize = lim - off;
-                if (fileSize > Integer.MAX_VALUE) {
-                    throw new IllegalStateException("Unexpected file size -- insufficient data in block");
+        int current = 0;
+        List<ByteBuffer> parts = new ArrayList<>();
+        for (int i = firstUnit; i <= lastUnit && current < views.length; i++) {
+            long off = unitOffset(i);
+            long remainingInUnit = unitLimit(i) - off;
+            while (remainingInUnit > 0 && current < views.length) {
+                ByteBuffer view = views[current];
+                if (!view.hasRemaining()) {
+                    current++;
+                    continue;
                 }
+                int len = (int) Math.min(view.remaining(), remainingInUnit);
+                ByteBuffer part = view.duplicate();
+                part.limit(part.position() + len);
+                parts.add(part);
+                view.position(view.position() + len);
+                remainingInUnit -= len;
+            }
+            if (!parts.isEmpty()) {
+                visitor.visitUnitPart(units[i], parts.toArray(new ByteBuffer[parts.size()]), off);
+                parts.clear();
+            }
+        }
 
-                limitInBlock = Math.min(buffer.capacity(), offsetInBlock + (int) fileSize);
-                buffer.limit(limitInBlock);
-                buffer.position(offsetInBlock);
-                unit.writeBlock(buffer, off);
-                offsetInBlock = limitInBlock;
+        for (ByteBuffer buffer : buffers) {
+            buffer.position(buffer.limit());
+        }
+    }
+
+    private interface UnitPartVisitor {
+        void visitUnitPart(StorageUnit unit, ByteBuffer[] parts, long offset);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Parts of the range, that reside in {@link AsyncStorageUnit}s, are read concurrently;
+     * other units are read synchronously in the caller's thread.
+     */
+    @Override
+    public CompletableFuture<Void> getBytesAsync(ByteBuffer buffer) {
+        if (buffer.remaining() > length()) {
+            throw new IllegalArgumentException(String.format(
+                    "Insufficient data in this range (expected max %d bytes, requested: %d)", length(), buffer.remaining()));
+        }
+        return visitUnitsAsync(buffer, false);
+    }
 
-                return offsetInBlock < block.length - 1;
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Parts of the range, that reside in {@link AsyncStorageUnit}s, are written concurrently;
+     * other units are written synchronously in the caller's thread.
+     */
+    @Override
+    public CompletableFuture<Void> putBytesAsync(ByteBuffer buffer) {
+        if (buffer.remaining() > length()) {
+            throw new IllegalArgumentException(String.format(
+                    "Data does not fit in this range (expected max %d bytes, actual: %d)", length(), buffer.remaining()));
+        }
+        return visitUnitsAsync(buffer, true);
+    }
+
+    private CompletableFuture<Void> visitUnitsAsync(ByteBuffer buffer, boolean write) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(lastUnit - firstUnit + 1);
+        visitUnits((unit, off, lim) -> {
+            int position = buffer.position();
+            int len = (int) Math.min(buffer.remaining(), lim - off);
+            // each unit gets its own view of the buffer, because operations might run concurrently
+            ByteBuffer part = buffer.duplicate();
+            part.limit(position + len);
+            if (unit instanceof AsyncStorageUnit) {
+                AsyncStorageUnit asyncUnit = (AsyncStorageUnit) unit;
+                futures.add(write ? asyncUnit.writeBlockAsync(part, off) : asyncUnit.readBlockAsync(part, off));
+            } else if (write) {
+                unit.writeBlock(part, off);
+            } else {
+                unit.readBlock(part, off);
             }
+            buffer.position(position + len);
+            return buffer.hasRemaining();
         });
+
+        return allOf(futures);
+    }
+
+    private static CompletableFuture<Void> allOf(List<CompletableFuture<Void>> futures) {
+        switch (futures.size()) {
+            case 0: {
+                return CompletableFuture.completedFuture(null);
+            }
+            case 1: {
+                return futures.get(0);
+            }
+            default: {
+                return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]));
+            }
+        }
     }
 
     @Override
     public void visitUnits(DataRangeVisitor visitor) {
-        long off, lim;
-
         for (int i = firstUnit; i <= lastUnit; i++) {
-            StorageUnit file = units.get(i);
-            off = (i == firstUnit) ? offsetInFirstUnit : 0;
-            lim = (i == lastUnit) ? limitInLastUnit : file.capacity();
-
-            visitor.visitUnit(file, off, lim);
+            if (!visitor.visitUnit(units[i], unitOffset(i), unitLimit(i))) {
+                break;
+            }
         }
     }
+
+    private long unitOffset(int unitIndex) {
+        return (unitIndex == firstUnit) ? offsetInFirstUnit : 0;
+    }
+
+    private long unitLimit(int unitIndex) {
+        return (unitIndex == lastUnit) ? limitInLastUnit : units[unitIndex].capacity();
+    }
 }
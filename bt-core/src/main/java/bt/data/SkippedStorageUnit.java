@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package bt.data;
+
+import bt.BtException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Placeholder for a skipped torrent file, that does not share any pieces with the files, that are downloaded.
+ * No storage is created for such file: the unit is always empty, reads return zeros and writes are rejected.
+ *
+ * @see FilePriority#SKIP
+ */
+class SkippedStorageUnit implements StorageUnit {
+
+    private final String path;
+    private final long capacity;
+
+    SkippedStorageUnit(String path, long capacity) {
+        this.path = path;
+        this.capacity = capacity;
+    }
+
+    @Override
+    public void readBlock(ByteBuffer buffer, long offset) {
+        if (offset < 0 || offset > capacity - buffer.remaining()) {
+            throw new BtException("Illegal arguments: offset (" + offset + "), length (" + buffer.remaining() + ")");
+        }
+        while (buffer.hasRemaining()) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    @Override
+    public byte[] readBlock(long offset, int length) {
+        byte[] block = new byte[length];
+        readBlock(ByteBuffer.wrap(block), offset);
+        return block;
+    }
+
+    @Override
+    public void writeBlock(ByteBuffer buffer, long offset) {
+        throw new BtException("File is skipped: " + path);
+    }
+
+    @Override
+    public void writeBlock(byte[] block, long offset) {
+        throw new BtException("File is skipped: " + path);
+    }
+
+    @Override
+    public long capacity() {
+        return capacity;
+    }
+
+    @Override
+    public long size() {
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + capacity + " B, skipped) " + path;
+    }
+
+    @Override
+    public void close() {
+        // nothing to close
+    }
+}
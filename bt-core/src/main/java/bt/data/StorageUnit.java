@@ -16,9 +16,13 @@
 
 package bt.data;
 
+import bt.BtException;
+
 import java.io.Closeable;
+import java.io.IOException;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * Storage for a single torrent file
@@ -89,6 +93,51 @@ public interface StorageUnit extends Closeable {
      */
     void writeBlock(byte[] block, long offset);
 
+    /**
+     * Read a contiguous block of data into a sequence of buffers, starting with a given offset.
+     * Buffers are filled in order, as if they were a single buffer (see {@link java.nio.channels.ScatteringByteChannel}).
+     * <p>Total number of bytes to be read is the sum of {@link Buffer#remaining()} of all buffers.
+     * Storage must throw an exception, if the block does not fit in the storage.
+     * <p>Implementations should read the block with a single operation, if possible.
+     * Default implementation reads each buffer separately.
+     *
+     * @param buffers Buffers to read bytes into
+     * @param offset Index to start reading from (0-based)
+     *
+     * @since 1.6
+     */
+    default void readBlocks(ByteBuffer[] buffers, long offset) {
+        for (ByteBuffer buffer : buffers) {
+            int length = buffer.remaining();
+            int position = buffer.position();
+            readBlock(buffer, offset);
+            // unit might not advance the buffer, e.g. when reading from a missing file
+            buffer.position(position + length);
+            offset += length;
+        }
+    }
+
+    /**
+     * Write a contiguous block of data from a sequence of buffers to this storage, starting with a given offset.
+     * Buffers are written in order, as if they were a single buffer (see {@link java.nio.channels.GatheringByteChannel}).
+     * <p>Total number of bytes to be written is the sum of {@link Buffer#remaining()} of all buffers.
+     * Storage must throw an exception, if the block does not fit in the storage.
+     * <p>Implementations should write the block with a single operation, if possible.
+     * Default implementation writes each buffer separately.
+     *
+     * @param buffers Buffers containing the block of data to write to this storage
+     * @param offset Offset in this storage's data to start writing to (0-based)
+     *
+     * @since 1.6
+     */
+    default void writeBlocks(ByteBuffer[] buffers, long offset) {
+        for (ByteBuffer buffer : buffers) {
+            int length = buffer.remaining();
+            writeBlock(buffer, offset);
+            offset += length;
+        }
+    }
+
     /**
      * Get total maximum capacity of this storage.
      *
@@ -100,8 +149,80 @@ public interface StorageUnit extends Closeable {
     /**
      * Get current amount of data in this storage.
      *
+     * <p>This is the end of the furthest data, that has been written into this storage,
+     * rather than the total length of the written data. If blocks are written out of order,
+     * the storage may contain gaps (e.g. holes in a file, or zero-filled regions of a preallocated file)
+     * anywhere before this offset. Hence the size only tells that there is no data beyond it,
+     * but not that all of the data before it is present.
+     *
      * @return Current amount of data in this storage
      * @since 1.1
      */
     long size();
+
+    /**
+     * Restore the amount of data in this storage, as it was reported by {@link #size()} in a previous session.
+     * <p>Called upon startup, if the data has not been modified since then (see {@link #lastModified()}).
+     * Storage, that can't tell the amount of data from the underlying medium
+     * (e.g. a file, that has been preallocated to its full size), may use it as its current size.
+     * Like {@link #size()}, the restored value is the end of the furthest written data,
+     * so it does not guarantee that there are no gaps before it.
+     * Default implementation does nothing.
+     *
+     * @param size Amount of data in this storage at the end of the previous session
+     * @since 1.6
+     */
+    default void restoreSize(long size) {
+        // do nothing
+    }
+
+    /**
+     * Get the time of the last modification of this storage's data.
+     * <p>Used to detect, whether the data has been changed between sessions
+     * (e.g. to decide if the previously verified pieces can be trusted without re-hashing).
+     * Default implementation returns -1, which means that the time is not known.
+     *
+     * @return Time of the last modification in milliseconds since the epoch,
+     *         or -1, if the data does not exist or the time is not known
+     * @since 1.6
+     */
+    default long lastModified() {
+        return -1;
+    }
+
+    /**
+     * Transfer a block of data, starting with a given offset, directly to the target channel.
+     * <p>Implementations should avoid copying the data to an intermediate buffer, if possible
+     * (e.g. by using {@link java.nio.channels.FileChannel#transferTo(long, long, WritableByteChannel)}).
+     * Default implementation reads the block into a temporary buffer.
+     * <p>Storage must throw an exception if
+     * <blockquote>
+     * <code>offset &gt; {@link #capacity()} - length</code>
+     * </blockquote>
+     * or if the requested block is not fully available in the underlying storage
+     * (e.g. if the file has been truncated), rather than transfer nothing.
+     *
+     * @param offset Index to start transferring from (0-based)
+     * @param length Max number of bytes to transfer
+     * @param target Target channel
+     * @return Number of bytes actually transferred, which may be less than {@code length}
+     *         (e.g. if the target is a non-blocking channel)
+     * @throws IOException if an I/O error happens, when writing to the target channel
+     * @since 1.6
+     */
+    default long transferTo(long offset, long length, WritableByteChannel target) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Length is too large: " + length);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        readBlock(buffer, offset);
+        // storage does not have the data (e.g. the file does not exist);
+        // transferring nothing would make the caller wait for the block forever
+        if (buffer.hasRemaining()) {
+            throw new BtException("Block is not available in the storage (offset: " + offset +
+                    ", requested block length: " + length + ", available: " + buffer.position() + ")");
+        }
+        buffer.flip();
+        return target.write(buffer);
+    }
 }
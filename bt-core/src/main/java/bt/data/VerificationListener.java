@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package bt.data;
+
+/**
+ * Receives progress updates of the verification of torrent's data (e.g. the initial check on startup).
+ *
+ * @since 1.6
+ */
+@FunctionalInterface
+public interface VerificationListener {
+
+    /**
+     * Called each time a chunk has been checked (including the chunks,
+     * that were skipped, because some of their data is missing).
+     * Invocations are never concurrent, but may come from different threads.
+     *
+     * @param chunksChecked Number of chunks, that have been checked so far
+     * @param chunksVerified Number of chunks, that have been checked so far and turned out to be complete and correct
+     * @param chunksTotal Total number of chunks to check
+     * @since 1.6
+     */
+    void onProgress(int chunksChecked, int chunksVerified, int chunksTotal);
+}
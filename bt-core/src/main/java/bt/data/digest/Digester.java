@@ -19,6 +19,9 @@ package bt.data.digest;
 import bt.data.DataRange;
 import bt.data.range.Range;
 
+import java.security.MessageDigest;
+import java.util.Optional;
+
 /**
  * Calculates hash of some binary data.
  * Implementations may use different hashing algorithms.
@@ -44,4 +47,17 @@ public interface Digester {
      * @since 1.3
      */
     byte[] digest(Range<?> data);
+
+    /**
+     * Creates a new message digest, that can be used to calculate the hash incrementally,
+     * e.g. as the data is being received.
+     *
+     * @return Message digest for the same algorithm, that is used by this digester,
+     *         or {@link Optional#empty()}, if incremental hashing is not supported
+     *
+     * @since 1.6
+     */
+    default Optional<MessageDigest> createMessageDigest() {
+        return Optional.empty();
+    }
 }
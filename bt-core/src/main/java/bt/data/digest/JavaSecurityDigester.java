@@ -22,6 +22,7 @@ import bt.data.range.Range;
 
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Optional;
 
 public class JavaSecurityDigester implements Digester {
 
@@ -79,6 +80,11 @@ public class JavaSecurityDigester implements Digester {
         return digest.digest();
     }
 
+    @Override
+    public Optional<MessageDigest> createMessageDigest() {
+        return Optional.of(createDigest());
+    }
+
     private MessageDigest createDigest() {
         try {
             return MessageDigest.getInstance(algorithm);
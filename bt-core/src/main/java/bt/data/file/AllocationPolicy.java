@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package bt.data.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Determines, how disk space is allocated for new files of a file-system based storage.
+ *
+ * @see FileSystemStorage#FileSystemStorage(java.nio.file.Path, FileHandleCache, AllocationPolicy)
+ * @since 1.6
+ */
+public enum AllocationPolicy {
+
+    /**
+     * Files are created empty and grow as blocks are written into them.
+     * Because blocks arrive in random order, this may leave the data fragmented on disk.
+     *
+     * @since 1.6
+     */
+    LAZY {
+        @Override
+        void allocate(FileChannel channel, long capacity) {
+            // do nothing
+        }
+    },
+
+    /**
+     * Files are extended to their full size upon creation, without writing any data.
+     * On file systems, that support sparse files, this does not reserve any disk space.
+     *
+     * @since 1.6
+     */
+    SPARSE {
+        @Override
+        void allocate(FileChannel channel, long capacity) throws IOException {
+            if (capacity > 0) {
+                // extend the file by writing the last byte
+                channel.write(ByteBuffer.allocate(1), capacity - 1);
+            }
+        }
+    },
+
+    /**
+     * Files are filled with zeros up to their full size upon creation,
+     * so that the file system reserves all of the file's space at once
+     * (which usually results in a sequential on-disk layout).
+     * Creating a file takes time proportional to its size, and writes to the file wait until it's done.
+     *
+     * @since 1.6
+     */
+    FULL {
+        @Override
+        void allocate(FileChannel channel, long capacity) throws IOException {
+            ByteBuffer zeros = ByteBuffer.allocateDirect((int) Math.min(capacity, ZEROS_BUFFER_SIZE));
+            long position = 0;
+            while (position < capacity) {
+                zeros.clear();
+                zeros.limit((int) Math.min(zeros.capacity(), capacity - position));
+                while (zeros.hasRemaining()) {
+                    position += channel.write(zeros, position);
+                }
+            }
+        }
+    };
+
+    private static final int ZEROS_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Allocate space for a newly created (empty) file.
+     *
+     * @param channel Channel of the file
+     * @param capacity Full size of the file
+     */
+    abstract void allocate(FileChannel channel, long capacity) throws IOException;
+}
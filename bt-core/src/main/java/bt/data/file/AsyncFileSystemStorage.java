@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.data.file;
+
+import bt.data.AsyncStorageUnit;
+import bt.data.StorageUnit;
+
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * File-system based storage, that performs I/O asynchronously.
+ *
+ * <p>Files are stored in the same layout as in {@link FileSystemStorage},
+ * but storage units implement {@link AsyncStorageUnit}, so that the data worker can keep
+ * many reads and writes in flight at the same time instead of waiting for each of them in turn.
+ * This is mostly beneficial for devices, that process several requests in parallel (e.g. NVMe drives).
+ *
+ * @since 1.6
+ */
+public class AsyncFileSystemStorage extends FileSystemStorage {
+
+    private final ExecutorService executor;
+
+    /**
+     * Create an asynchronous file-system storage inside a given directory.
+     * I/O completions will be handled by the JVM's default thread pool.
+     *
+     * @param rootDirectory Root directory for this storage. All torrent files will be stored inside this directory.
+     * @since 1.6
+     */
+    public AsyncFileSystemStorage(Path rootDirectory) {
+        this(rootDirectory, null);
+    }
+
+    /**
+     * Create an asynchronous file-system storage inside a given directory.
+     *
+     * @param rootDirectory Root directory for this storage. All torrent files will be stored inside this directory.
+     * @param executor Executor, that will handle I/O completions; the caller is responsible for shutting it down
+     * @since 1.6
+     */
+    public AsyncFileSystemStorage(Path rootDirectory, ExecutorService executor) {
+        super(rootDirectory);
+        this.executor = executor;
+    }
+
+    @Override
+    StorageUnit createUnit(Path torrentDirectory, String normalizedPath, long capacity) {
+        return new AsyncFileSystemStorageUnit(torrentDirectory, normalizedPath, capacity, executor);
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.data.file;
+
+import bt.BtException;
+import bt.data.AsyncStorageUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * File-system based storage unit, that performs I/O via {@link AsynchronousFileChannel}.
+ *
+ * <p>Any number of reads and writes can be in flight simultaneously;
+ * synchronous operations are implemented on top of the asynchronous ones and block the caller until completion.
+ *
+ * <p>Each unit keeps its own channel open from the first access until the unit is closed,
+ * i.e. the number of open files is not limited by a {@link FileHandleCache}.
+ *
+ * @since 1.6
+ */
+class AsyncFileSystemStorageUnit implements AsyncStorageUnit {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncFileSystemStorageUnit.class);
+
+    private final Path parent, file;
+    private final long capacity;
+    private final ExecutorService executor;
+
+    private volatile AsynchronousFileChannel channel;
+    private final Object lock;
+
+    /**
+     * @param executor Executor, that will run completion handlers; may be null, in which case the JVM's default
+     *                 thread pool is used (see {@link AsynchronousFileChannel#open(Path, java.nio.file.OpenOption...)})
+     */
+    AsyncFileSystemStorageUnit(Path root, String path, long capacity, ExecutorService executor) {
+        this.file = root.resolve(path);
+        this.parent = file.getParent();
+        this.capacity = capacity;
+        this.executor = executor;
+        this.lock = new Object();
+    }
+
+    /**
+     * @return Open channel or null, if the file does not exist and {@code create} is false
+     */
+    private AsynchronousFileChannel getChannel(boolean create) {
+        AsynchronousFileChannel channel = this.channel;
+        if (channel != null) {
+            return channel;
+        }
+
+        synchronized (lock) {
+            if (this.channel != null) {
+                return this.channel;
+            }
+
+            if (!Files.exists(parent)) {
+                try {
+                    Files.createDirectories(parent);
+                } catch (IOException e) {
+                    throw new BtException("Failed to create file storage -- can't create (some of the) directories", e);
+                }
+            }
+
+            if (!Files.exists(file)) {
+                if (create) {
+                    try {
+                        Files.createFile(file);
+                    } catch (IOException e) {
+                        throw new BtException("Failed to create file storage -- " +
+                                "can't create new file: " + file.toAbsolutePath(), e);
+                    }
+                } else {
+                    return null;
+                }
+            }
+
+            try {
+                this.channel = AsynchronousFileChannel.open(file,
+                        EnumSet.of(StandardOpenOption.READ, StandardOpenOption.WRITE), executor);
+            } catch (IOException e) {
+                throw new BtException("Unexpected I/O error", e);
+            }
+            return this.channel;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> readBlockAsync(ByteBuffer buffer, long offset) {
+        if (offset < 0) {
+            throw new BtException("Illegal arguments: offset (" + offset + ")");
+        } else if (offset > capacity - buffer.remaining()) {
+            throw new BtException("Received a request to read past the end of file (offset: " + offset +
+                    ", requested block length: " + buffer.remaining() + ", file size: " + capacity);
+        }
+
+        AsynchronousFileChannel channel = getChannel(false);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (channel == null || !buffer.hasRemaining()) {
+            future.complete(null);
+        } else {
+            channel.read(buffer, offset, offset, new CompletionHandler<Integer, Long>() {
+                @Override
+                public void completed(Integer read, Long position) {
+                    // stop at the end of file, it might not have been fully written yet
+                    if (read < 0 || !buffer.hasRemaining()) {
+                        future.complete(null);
+                    } else {
+                        long next = position + read;
+                        channel.read(buffer, next, next, this);
+                    }
+                }
+
+                @Override
+                public void failed(Throwable e, Long position) {
+                    future.completeExceptionally(new BtException("Failed to read bytes (offset: " + offset +
+                            ", position: " + position + ", file size: " + capacity + ")", e));
+                }
+            });
+        }
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<Void> writeBlockAsync(ByteBuffer buffer, long offset) {
+        if (offset < 0) {
+            throw new BtException("Negative offset: " + offset);
+        } else if (offset > capacity - buffer.remaining()) {
+            throw new BtException("Received a request to write past the end of file (offset: " + offset +
+                    ", block length: " + buffer.remaining() + ", file size: " + capacity);
+        }
+
+        AsynchronousFileChannel channel = getChannel(true);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (!buffer.hasRemaining()) {
+            future.complete(null);
+        } else {
+            channel.write(buffer, offset, offset, new CompletionHandler<Integer, Long>() {
+                @Override
+                public void completed(Integer written, Long position) {
+                    if (!buffer.hasRemaining()) {
+                        future.complete(null);
+                    } else {
+                        long next = position + written;
+                        channel.write(buffer, next, next, this);
+                    }
+                }
+
+                @Override
+                public void failed(Throwable e, Long position) {
+                    future.completeExceptionally(new BtException("Failed to write bytes (offset: " + offset +
+                            ", position: " + position + ", file size: " + capacity + ")", e));
+                }
+            });
+        }
+        return future;
+    }
+
+    @Override
+    public void readBlock(ByteBuffer buffer, long offset) {
+        await(readBlockAsync(buffer, offset));
+    }
+
+    @Override
+    public byte[] readBlock(long offset, int length) {
+        if (length < 0) {
+            throw new BtException("Illegal arguments: offset (" + offset + "), length (" + length + ")");
+        }
+        byte[] block = new byte[length];
+        readBlock(ByteBuffer.wrap(block), offset);
+        return block;
+    }
+
+    @Override
+    public void writeBlock(ByteBuffer buffer, long offset) {
+        await(writeBlockAsync(buffer, offset));
+    }
+
+    @Override
+    public void writeBlock(byte[] block, long offset) {
+        writeBlock(ByteBuffer.wrap(block), offset);
+    }
+
+    private static void await(CompletableFuture<Void> future) {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof BtException) {
+                throw (BtException) e.getCause();
+            }
+            throw new BtException("Unexpected I/O error", e.getCause());
+        }
+    }
+
+    @Override
+    public long capacity() {
+        return capacity;
+    }
+
+    @Override
+    public long size() {
+        try {
+            return Files.exists(file) ? Files.size(file) : 0;
+        } catch (IOException e) {
+            throw new BtException("Unexpected I/O error", e);
+        }
+    }
+
+    @Override
+    public long lastModified() {
+        try {
+            return Files.exists(file) ? Files.getLastModifiedTime(file).toMillis() : -1;
+        } catch (IOException e) {
+            throw new BtException("Unexpected I/O error", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "(" + capacity + " B, async) " + file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    LOGGER.warn("Failed to close file: " + file, e);
+                } finally {
+                    channel = null;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.data.file;
+
+import bt.BtException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Bounded cache of open file channels, that can be shared by several file-system based storages.
+ *
+ * <p>When the number of open files exceeds the configured maximum,
+ * least recently used files, that are not currently in use, are closed.
+ * Files are re-opened transparently upon next access.
+ * Channels, that are in use during eviction, are closed as soon as they are released,
+ * so the maximum can be temporarily exceeded, if all open files are being accessed concurrently.
+ *
+ * <p>Files are opened and closed outside of the cache's lock, so that a slow file system operation
+ * does not hold up the access to the other files.
+ *
+ * @since 1.6
+ */
+public class FileHandleCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileHandleCache.class);
+
+    /**
+     * Default maximum number of open files: 256
+     *
+     * @since 1.6
+     */
+    public static final int DEFAULT_MAX_OPEN_FILES = 256;
+
+    private final int maxOpenFiles;
+    private final LinkedHashMap<Path, Handle> handles;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxOpenFiles Maximum number of files to keep open
+     * @since 1.6
+     */
+    public FileHandleCache(int maxOpenFiles) {
+        if (maxOpenFiles <= 0) {
+            throw new IllegalArgumentException("Invalid max number of open files: " + maxOpenFiles);
+        }
+        this.maxOpenFiles = maxOpenFiles;
+        // access-ordered, i.e. iteration starts with the least recently used file
+        this.handles = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Get an open channel for a given file, opening the file if necessary.
+     * Each invocation of this method must be followed by {@link #release(Handle)}.
+     *
+     * @param file Existing file
+     * @return Handle with an open channel
+     */
+    Handle acquire(Path file) {
+        Handle handle;
+        List<Handle> evicted;
+        synchronized (this) {
+            handle = handles.get(file);
+            // channel might have been closed as a side effect of interrupting one of the callers
+            if (handle != null && !handle.isClosed()) {
+                hits++;
+            } else {
+                misses++;
+                if (handle != null) {
+                    handles.remove(file);
+                    handle.evicted = true;
+                }
+                handle = new Handle(file);
+                handles.put(file, handle);
+            }
+            handle.users++;
+            evicted = evictIfNeeded();
+        }
+        closeChannels(evicted);
+
+        // file is opened outside of the cache's lock, so that other files can be accessed in the meantime
+        try {
+            handle.open();
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                handles.remove(file, handle);
+                handle.evicted = true;
+            }
+            release(handle);
+            throw e;
+        }
+        return handle;
+    }
+
+    /**
+     * @return Handles, that have been removed from the cache and should be closed
+     */
+    private List<Handle> evictIfNeeded() {
+        if (handles.size() <= maxOpenFiles) {
+            return Collections.emptyList();
+        }
+        List<Handle> evicted = new ArrayList<>();
+        Iterator<Handle> iter = handles.values().iterator();
+        while (handles.size() > maxOpenFiles && iter.hasNext()) {
+            Handle handle = iter.next();
+            if (handle.users == 0) {
+                iter.remove();
+                evictions++;
+                evicted.add(handle);
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Release a handle, that has been previously obtained via {@link #acquire(Path)}.
+     */
+    void release(Handle handle) {
+        List<Handle> closed;
+        synchronized (this) {
+            if (--handle.users > 0) {
+                return;
+            }
+            closed = handle.evicted ? Collections.singletonList(handle) : evictIfNeeded();
+        }
+        closeChannels(closed);
+    }
+
+    /**
+     * Close the file, if it's currently open.
+     * Pending operations on the file are allowed to complete before the file is actually closed.
+     */
+    void invalidate(Path file) {
+        Handle closed = null;
+        synchronized (this) {
+            Handle handle = handles.remove(file);
+            if (handle != null && invalidateHandle(handle)) {
+                closed = handle;
+            }
+        }
+        if (closed != null) {
+            closeChannel(closed);
+        }
+    }
+
+    /**
+     * Close all open files.
+     *
+     * @since 1.6
+     */
+    public void clear() {
+        List<Handle> closed = new ArrayList<>();
+        synchronized (this) {
+            handles.values().forEach(handle -> {
+                if (invalidateHandle(handle)) {
+                    closed.add(handle);
+                }
+            });
+            handles.clear();
+        }
+        closeChannels(closed);
+    }
+
+    /**
+     * @return true, if the handle is not in use and should be closed at once;
+     *         otherwise it will be closed, when the last user releases it
+     */
+    private boolean invalidateHandle(Handle handle) {
+        handle.evicted = true;
+        return handle.users == 0;
+    }
+
+    private static void closeChannels(List<Handle> handles) {
+        handles.forEach(FileHandleCache::closeChannel);
+    }
+
+    private static void closeChannel(Handle handle) {
+        try {
+            handle.close();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to close file: " + handle.file, e);
+        }
+    }
+
+    /**
+     * @return Maximum number of files to keep open
+     * @since 1.6
+     */
+    public int getMaxOpenFiles() {
+        return maxOpenFiles;
+    }
+
+    /**
+     * @return Number of currently open files
+     * @since 1.6
+     */
+    public synchronized int getOpenFilesCount() {
+        return handles.size();
+    }
+
+    /**
+     * @return Number of times, when an already open file has been accessed
+     * @since 1.6
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return Number of times, when a file had to be opened
+     * @since 1.6
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return Number of files, that have been closed to stay within the limit of open files
+     * @since 1.6
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "FileHandleCache{open files: " + handles.size() + "/" + maxOpenFiles +
+                ", hits: " + hits + ", misses: " + misses + ", evictions: " + evictions + "}";
+    }
+
+    static class Handle {
+
+        private final Path file;
+        // opened by the first user, outside of the cache's lock
+        private volatile FileChannel channel;
+
+        // guarded by cache's monitor
+        private int users;
+        private boolean evicted;
+
+        Handle(Path file) {
+            this.file = file;
+        }
+
+        private synchronized void open() {
+            if (channel == null) {
+                try {
+                    channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                } catch (IOException e) {
+                    throw new BtException("Failed to open file: " + file, e);
+                }
+            }
+        }
+
+        /**
+         * @return true, if the channel has been opened and then closed
+         */
+        private boolean isClosed() {
+            FileChannel channel = this.channel;
+            return channel != null && !channel.isOpen();
+        }
+
+        private synchronized void close() throws IOException {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+
+        FileChannel getChannel() {
+            return channel;
+        }
+    }
+}
@@ -62,12 +62,22 @@ import java.nio.file.Path;
  * {@code "/"         => "_/_"}<br>
  * {@code "/a/b/c"    => "_/a/b/c"}<br>
  *
+ * <p>Open files are managed by a {@link FileHandleCache}, which limits the number of files,
+ * that are kept open simultaneously. Unless a cache is provided explicitly,
+ * the storage uses the runtime's instance of the cache: {@code runtime.service(FileHandleCache.class)},
+ * so that all torrents of the runtime share the same limit.
+ *
+ * <p>By default, files are created empty and grow as data is written into them.
+ * Alternatively, space for the whole file can be allocated upon creation (see {@link AllocationPolicy}).
+ *
  * @since 1.0
  */
-public class FileSystemStorage implements Storage {
+public class FileSystemStorage implements Storage, HandleCacheAware {
 
     private final Path rootDirectory;
     private final PathNormalizer pathNormalizer;
+    private final HandleCacheReference handleCache;
+    private final AllocationPolicy allocationPolicy;
 
     /**
      * Create a file-system based storage inside a given directory.
@@ -81,9 +91,58 @@ public class FileSystemStorage implements Storage {
         this(rootDirectory.toPath());
     }
 
+    /**
+     * Create a file-system based storage inside a given directory.
+     * This storage will use the runtime's cache of open files, when attached to a runtime,
+     * or a private cache otherwise (see {@link #bindDefaultHandleCache(FileHandleCache)}).
+     *
+     * @param rootDirectory Root directory for this storage. All torrent files will be stored inside this directory.
+     * @since 1.3
+     */
     public FileSystemStorage(Path rootDirectory) {
+        this(rootDirectory, new HandleCacheReference(null, FileHandleCache.DEFAULT_MAX_OPEN_FILES), AllocationPolicy.LAZY);
+    }
+
+    /**
+     * Create a file-system based storage inside a given directory.
+     *
+     * @param rootDirectory Root directory for this storage. All torrent files will be stored inside this directory.
+     * @param handleCache Cache of open files, possibly shared with other storages
+     * @since 1.6
+     */
+    public FileSystemStorage(Path rootDirectory, FileHandleCache handleCache) {
+        this(rootDirectory, handleCache, AllocationPolicy.LAZY);
+    }
+
+    /**
+     * Create a file-system based storage inside a given directory.
+     *
+     * @param rootDirectory Root directory for this storage. All torrent files will be stored inside this directory.
+     * @param handleCache Cache of open files, possibly shared with other storages
+     * @param allocationPolicy Determines, how disk space is allocated for new files
+     * @since 1.6
+     */
+    public FileSystemStorage(Path rootDirectory, FileHandleCache handleCache, AllocationPolicy allocationPolicy) {
+        this(rootDirectory, new HandleCacheReference(handleCache, FileHandleCache.DEFAULT_MAX_OPEN_FILES), allocationPolicy);
+    }
+
+    private FileSystemStorage(Path rootDirectory, HandleCacheReference handleCache, AllocationPolicy allocationPolicy) {
         this.rootDirectory = rootDirectory;
         this.pathNormalizer = new PathNormalizer();
+        this.handleCache = handleCache;
+        this.allocationPolicy = allocationPolicy;
+    }
+
+    /**
+     * Use a given cache of open files, unless this storage has been created with an explicit cache,
+     * or has already opened some files with its private cache.
+     * Called by the runtime, so that all storages of the runtime share the same limit of open files.
+     *
+     * @since 1.6
+     */
+    @Override
+    public void bindDefaultHandleCache(FileHandleCache handleCache) {
+        this.handleCache.bindDefault(handleCache);
     }
 
     @Override
@@ -97,6 +156,17 @@ public class FileSystemStorage implements Storage {
             torrentDirectory = rootDirectory.resolve(normalizedName);
         }
         String normalizedPath = pathNormalizer.normalize(torrentFile.getPathElements());
-        return new FileSystemStorageUnit(torrentDirectory, normalizedPath, torrentFile.getSize());
+        return createUnit(torrentDirectory, normalizedPath, torrentFile.getSize());
+    }
+
+    /**
+     * Create a storage unit for a single file.
+     *
+     * @param torrentDirectory Directory, that all of the torrent's files are stored in
+     * @param normalizedPath Normalized path of the file, relative to {@code torrentDirectory}
+     * @param capacity File size
+     */
+    StorageUnit createUnit(Path torrentDirectory, String normalizedPath, long capacity) {
+        return new FileSystemStorageUnit(handleCache.get(), torrentDirectory, normalizedPath, capacity, allocationPolicy);
     }
 }
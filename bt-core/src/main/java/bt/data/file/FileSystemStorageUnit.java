@@ -18,82 +18,130 @@ package bt.data.file;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.concurrent.atomic.AtomicLong;
 
 import bt.BtException;
 import bt.data.StorageUnit;
+import bt.data.range.Ranges;
 
+/**
+ * File-system based storage unit.
+ *
+ * <p>Reads and writes are performed via positional I/O ({@link FileChannel#read(ByteBuffer, long)}
+ * and {@link FileChannel#write(ByteBuffer, long)}), which does not modify the channel's position.
+ * Hence concurrent operations on different parts of the same file do not wait for each other.
+ * Contiguous blocks, that are passed as several buffers, are read and written with a single vectored operation.
+ *
+ * <p>Open channels are managed by a {@link FileHandleCache}, which may close the file
+ * between operations, if the limit of open files has been reached.
+ *
+ * <p>Disk space for new files is allocated according to the {@link AllocationPolicy}.
+ * A file, that has been preallocated by this unit, reports the end of the furthest write into it
+ * as its size rather than its actual size, which is how a lazily allocated file grows as well.
+ */
 class FileSystemStorageUnit implements StorageUnit {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(FileSystemStorageUnit.class);
+    private final Path parent, file;
+    private final long capacity;
+    private final FileHandleCache handleCache;
+    private final AllocationPolicy allocationPolicy;
+
+    private volatile boolean initialized;
+    private final Object lock;
 
-    private Path parent, file;
-    private SeekableByteChannel sbc;
-    private long capacity;
+    // end of the furthest write into a preallocated file (not the amount of data written),
+    // or -1, if the actual size of the file is reported
+    private final AtomicLong writtenSize;
 
-    private volatile boolean closed;
+    FileSystemStorageUnit(FileHandleCache handleCache, Path root, String path, long capacity) {
+        this(handleCache, root, path, capacity, AllocationPolicy.LAZY);
+    }
 
-    FileSystemStorageUnit(Path root, String path, long capacity) {
+    FileSystemStorageUnit(FileHandleCache handleCache, Path root, String path, long capacity,
+                          AllocationPolicy allocationPolicy) {
         this.file = root.resolve(path);
         this.parent = file.getParent();
         this.capacity = capacity;
-        this.closed = true;
+        this.handleCache = handleCache;
+        this.allocationPolicy = allocationPolicy;
+        this.lock = new Object();
+        this.writtenSize = new AtomicLong(-1);
     }
 
+    /**
+     * @return Handle of the open file or null, if the file does not exist and {@code create} is false
+     */
     // TODO: this is temporary fix for verification upon app start
     // should be re-done (probably need additional API to know if storage unit is "empty")
-    private boolean init(boolean create) {
-
-        if (closed) {
-            if (!Files.exists(parent)) {
-                try {
-                    Files.createDirectories(parent);
-                } catch(IOException e) {
-                    if(create) {
-                        throw new BtException("Failed to create file storage -- can't create (some of the) directories", e);
+    private FileHandleCache.Handle acquireHandle(boolean create) {
+        if (!initialized) {
+            synchronized (lock) {
+                if (!initialized) {
+                    if (!Files.exists(parent)) {
+                        try {
+                            Files.createDirectories(parent);
+                        } catch (IOException e) {
+                            if (create) {
+                                throw new BtException("Failed to create file storage -- can't create (some of the) directories", e);
+                            }
+                            throw new BtException("Failed to create file storage -- unexpected I/O error", e);
+                        }
                     }
-                        throw new BtException("Failed to create file storage -- unexpected I/O error", e);
-                    }
-            }
 
-            if (!Files.exists(file)) {
-                if (create) {
-                    try {
-                        Files.createFile(file);
-                    } catch (IOException e) {
-                        throw new BtException("Failed to create file storage -- " +
-                                "can't create new file: " + file.toAbsolutePath(), e);
+                    if (!Files.exists(file)) {
+                        if (create) {
+                            try {
+                                Files.createFile(file);
+                            } catch (IOException e) {
+                                throw new BtException("Failed to create file storage -- " +
+                                        "can't create new file: " + file.toAbsolutePath(), e);
+                            }
+                            allocate();
+                        } else {
+                            return null;
+                        }
                     }
-                } else {
-                    return false;
+                    initialized = true;
                 }
             }
+        }
+        return handleCache.acquire(file);
+    }
 
+    private void allocate() {
+        if (allocationPolicy == AllocationPolicy.LAZY) {
+            return;
+        }
+        // other callers wait for the allocation to finish, because it's done before the unit is marked initialized
+        FileHandleCache.Handle handle = handleCache.acquire(file);
+        try {
+            allocationPolicy.allocate(handle.getChannel(), capacity);
+        } catch (IOException e) {
+            handleCache.release(handle);
+            // remove partially allocated file, so that the allocation will be retried upon next write
+            handleCache.invalidate(file);
             try {
-                sbc = Files.newByteChannel(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
-            } catch (IOException e) {
-                throw new BtException("Unexpected I/O error", e);
+                Files.deleteIfExists(file);
+            } catch (IOException e1) {
+                e.addSuppressed(e1);
             }
-
-            closed = false;
+            throw new BtException("Failed to allocate space for file: " + file.toAbsolutePath() +
+                    " (size: " + capacity + ", policy: " + allocationPolicy + ")", e);
         }
-        return true;
+        handleCache.release(handle);
+        writtenSize.set(0);
     }
 
-    @Override
-    public synchronized void readBlock(ByteBuffer buffer, long offset) {
+    private void onWritten(long end) {
+        writtenSize.accumulateAndGet(end, (size, e) -> (size < 0) ? size : Math.max(size, e));
+    }
 
-        if (closed) {
-            if (!init(false)) {
-                return;
-            }
-        }
+    @Override
+    public void readBlock(ByteBuffer buffer, long offset) {
 
         if (offset < 0) {
             throw new BtException("Illegal arguments: offset (" + offset + ")");
@@ -102,28 +150,23 @@ class FileSystemStorageUnit implements StorageUnit {
                     ", requested block length: " + buffer.remaining() + ", file size: " + capacity);
         }
 
-        try {
-            sbc.position(offset);
-            int read = 1;
-            while (buffer.hasRemaining() && read > 0) {
-              read = sbc.read(buffer);
-            }
+        FileHandleCache.Handle handle = acquireHandle(false);
+        if (handle == null) {
+            return;
+        }
 
+        try {
+            read(handle.getChannel(), buffer, offset);
         } catch (IOException e) {
             throw new BtException("Failed to read bytes (offset: " + offset +
                     ", requested block length: " + buffer.remaining() + ", file size: " + capacity + ")", e);
+        } finally {
+            handleCache.release(handle);
         }
     }
 
     @Override
-    public synchronized byte[] readBlock(long offset, int length) {
-
-        if (closed) {
-            if (!init(false)) {
-                // TODO: should we return null here? or init this "stub" in constructor?
-                return new byte[length];
-            }
-        }
+    public byte[] readBlock(long offset, int length) {
 
         if (offset < 0 || length < 0) {
             throw new BtException("Illegal arguments: offset (" + offset + "), length (" + length + ")");
@@ -132,27 +175,35 @@ class FileSystemStorageUnit implements StorageUnit {
                     ", requested block length: " + length + ", file size: " + capacity);
         }
 
+        FileHandleCache.Handle handle = acquireHandle(false);
+        if (handle == null) {
+            // TODO: should we return null here? or init this "stub" in constructor?
+            return new byte[length];
+        }
+
         try {
-            sbc.position(offset);
             ByteBuffer buf = ByteBuffer.allocate(length);
-            int read = 1;
-            while(buf.hasRemaining() && read > 0) {
-              read = sbc.read(buf);
-            }
+            read(handle.getChannel(), buf, offset);
             return buf.array();
-
         } catch (IOException e) {
             throw new BtException("Failed to read bytes (offset: " + offset +
                     ", requested block length: " + length + ", file size: " + capacity + ")", e);
+        } finally {
+            handleCache.release(handle);
         }
     }
 
-    @Override
-    public synchronized void writeBlock(ByteBuffer buffer, long offset) {
-
-        if (closed) {
-            init(true);
+    private static void read(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        long position = offset;
+        int read = 1;
+        while (buffer.hasRemaining() && read > 0) {
+            read = channel.read(buffer, position);
+            position += read;
         }
+    }
+
+    @Override
+    public void writeBlock(ByteBuffer buffer, long offset) {
 
         if (offset < 0) {
             throw new BtException("Negative offset: " + offset);
@@ -161,25 +212,21 @@ class FileSystemStorageUnit implements StorageUnit {
                     ", block length: " + buffer.remaining() + ", file size: " + capacity);
         }
 
+        long end = offset + buffer.remaining();
+        FileHandleCache.Handle handle = acquireHandle(true);
         try {
-            sbc.position(offset);
-            int written = 1;
-            while (buffer.hasRemaining() && written > 0) {
-              written = sbc.write(buffer);
-            }
-
+            write(handle.getChannel(), buffer, offset);
+            onWritten(end);
         } catch (IOException e) {
             throw new BtException("Failed to write bytes (offset: " + offset +
                     ", block length: " + buffer.remaining() + ", file size: " + capacity + ")", e);
+        } finally {
+            handleCache.release(handle);
         }
     }
 
     @Override
-    public synchronized void writeBlock(byte[] block, long offset) {
-
-        if (closed) {
-            init(true);
-        }
+    public void writeBlock(byte[] block, long offset) {
 
         if (offset < 0) {
             throw new BtException("Negative offset: " + offset);
@@ -188,17 +235,120 @@ class FileSystemStorageUnit implements StorageUnit {
                     ", block length: " + block.length + ", file size: " + capacity);
         }
 
+        FileHandleCache.Handle handle = acquireHandle(true);
         try {
-            sbc.position(offset);
-            ByteBuffer buf = ByteBuffer.wrap(block);
-            int written = 1;
-            while (buf.hasRemaining() && written > 0) {
-              written = sbc.write(buf);
-            }
-
+            write(handle.getChannel(), ByteBuffer.wrap(block), offset);
+            onWritten(offset + block.length);
         } catch (IOException e) {
             throw new BtException("Failed to write bytes (offset: " + offset +
                     ", block length: " + block.length + ", file size: " + capacity + ")", e);
+        } finally {
+            handleCache.release(handle);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Data is read with a single scattering read (see {@link VectoredIO}).
+     */
+    @Override
+    public void readBlocks(ByteBuffer[] buffers, long offset) {
+        if (buffers.length == 1) {
+            readBlock(buffers[0], offset);
+            return;
+        }
+
+        long length = Ranges.remaining(buffers);
+        if (offset < 0) {
+            throw new BtException("Illegal arguments: offset (" + offset + ")");
+        } else if (offset > capacity - length) {
+            throw new BtException("Received a request to read past the end of file (offset: " + offset +
+                    ", requested block length: " + length + ", file size: " + capacity);
+        }
+
+        FileHandleCache.Handle handle = acquireHandle(false);
+        if (handle == null) {
+            return;
+        }
+
+        try {
+            VectoredIO.read(handle.getChannel(), buffers, offset);
+        } catch (IOException e) {
+            throw new BtException("Failed to read bytes (offset: " + offset +
+                    ", requested block length: " + length + ", file size: " + capacity + ")", e);
+        } finally {
+            handleCache.release(handle);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Data is written with a single gathering write (see {@link VectoredIO}).
+     */
+    @Override
+    public void writeBlocks(ByteBuffer[] buffers, long offset) {
+        if (buffers.length == 1) {
+            writeBlock(buffers[0], offset);
+            return;
+        }
+
+        long length = Ranges.remaining(buffers);
+        if (offset < 0) {
+            throw new BtException("Negative offset: " + offset);
+        } else if (offset > capacity - length) {
+            throw new BtException("Received a request to write past the end of file (offset: " + offset +
+                    ", block length: " + length + ", file size: " + capacity);
+        }
+
+        FileHandleCache.Handle handle = acquireHandle(true);
+        try {
+            VectoredIO.write(handle.getChannel(), buffers, offset);
+            onWritten(offset + length);
+        } catch (IOException e) {
+            throw new BtException("Failed to write bytes (offset: " + offset +
+                    ", block length: " + length + ", file size: " + capacity + ")", e);
+        } finally {
+            handleCache.release(handle);
+        }
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        long position = offset;
+        int written = 1;
+        while (buffer.hasRemaining() && written > 0) {
+            written = channel.write(buffer, position);
+            position += written;
+        }
+    }
+
+    @Override
+    public long transferTo(long offset, long length, WritableByteChannel target) throws IOException {
+
+        if (offset < 0 || length < 0) {
+            throw new BtException("Illegal arguments: offset (" + offset + "), length (" + length + ")");
+        } else if (offset > capacity - length) {
+            throw new BtException("Received a request to read past the end of file (offset: " + offset +
+                    ", requested block length: " + length + ", file size: " + capacity);
+        }
+
+        FileHandleCache.Handle handle = acquireHandle(false);
+        if (handle == null) {
+            return StorageUnit.super.transferTo(offset, length, target);
+        }
+
+        try {
+            FileChannel channel = handle.getChannel();
+            // transfer past the end of the file does nothing, so the caller would wait for it forever
+            if (offset + length > channel.size()) {
+                throw new BtException("Block is past the end of file, which might have been truncated (offset: " +
+                        offset + ", requested block length: " + length + ", file size: " + channel.size() + ")");
+            }
+            // may be performed by the OS without copying data to user space
+            return channel.transferTo(offset, length, target);
+        } finally {
+            handleCache.release(handle);
         }
     }
 
@@ -207,9 +357,38 @@ class FileSystemStorageUnit implements StorageUnit {
         return capacity;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>For a file, that has been preallocated by this unit (see {@link AllocationPolicy}),
+     * this is the end of the furthest write into it, so that the file is not assumed to contain any data
+     * until the first write. Otherwise, and if the file existed before, this is the actual size of the file.
+     * In both cases, a single write near the end of the file makes all of the preceding regions count
+     * as present, even if they are still empty or zero-filled; a recheck will read and hash them,
+     * and the resulting chunks will simply fail verification.
+     */
     @Override
     public long size() {
+        long written = writtenSize.get();
+        if (written >= 0) {
+            return written;
+        }
+        return actualSize();
+    }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Applies only to preallocated files, which do not tell by their actual size, how much data they contain.
+     */
+    @Override
+    public void restoreSize(long size) {
+        if (allocationPolicy != AllocationPolicy.LAZY && size >= 0 && size < actualSize()) {
+            writtenSize.compareAndSet(-1, size);
+        }
+    }
+
+    private long actualSize() {
         try {
             return Files.exists(file) ? Files.size(file) : 0;
         } catch (IOException e) {
@@ -217,6 +396,15 @@ class FileSystemStorageUnit implements StorageUnit {
         }
     }
 
+    @Override
+    public long lastModified() {
+        try {
+            return Files.exists(file) ? Files.getLastModifiedTime(file).toMillis() : -1;
+        } catch (IOException e) {
+            throw new BtException("Unexpected I/O error", e);
+        }
+    }
+
     @Override
     public String toString() {
         return "(" + capacity + " B) " + file;
@@ -224,14 +412,9 @@ class FileSystemStorageUnit implements StorageUnit {
 
     @Override
     public void close() throws IOException {
-        if (!closed) {
-            try {
-                sbc.close();
-            } catch (IOException e) {
-                LOGGER.warn("Failed to close file: " + file, e);
-            } finally {
-                closed = true;
-            }
+        synchronized (lock) {
+            handleCache.invalidate(file);
+            initialized = false;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.data.file;
+
+/**
+ * Storage, that keeps its files open in a {@link FileHandleCache}.
+ * When attached to a runtime, such storage is offered the runtime's cache,
+ * so that all storages of the runtime share the same limit of open files.
+ *
+ * @since 1.6
+ */
+public interface HandleCacheAware {
+
+    /**
+     * Use a given cache of open files, unless this storage has been created with an explicit cache,
+     * or has already opened some files with its private cache.
+     *
+     * @param handleCache Runtime's cache of open files
+     * @since 1.6
+     */
+    void bindDefaultHandleCache(FileHandleCache handleCache);
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.data.file;
+
+/**
+ * Cache of open files, that is used by a storage. The cache is either provided explicitly,
+ * or bound later by the runtime (see {@link #bindDefault(FileHandleCache)}),
+ * or created privately, when the storage opens its first file.
+ *
+ * @since 1.6
+ */
+class HandleCacheReference {
+
+    private final int defaultMaxOpenFiles;
+    private FileHandleCache handleCache;
+
+    /**
+     * @param handleCache Explicitly provided cache or null
+     * @param defaultMaxOpenFiles Maximum number of open files for a private cache
+     */
+    HandleCacheReference(FileHandleCache handleCache, int defaultMaxOpenFiles) {
+        this.handleCache = handleCache;
+        this.defaultMaxOpenFiles = defaultMaxOpenFiles;
+    }
+
+    /**
+     * Use a given cache, unless a cache has been provided explicitly or has already been used.
+     */
+    synchronized void bindDefault(FileHandleCache handleCache) {
+        if (this.handleCache == null) {
+            this.handleCache = handleCache;
+        }
+    }
+
+    synchronized FileHandleCache get() {
+        if (handleCache == null) {
+            handleCache = new FileHandleCache(defaultMaxOpenFiles);
+        }
+        return handleCache;
+    }
+}
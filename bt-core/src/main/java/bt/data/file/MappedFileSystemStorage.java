@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.data.file;
+
+import bt.data.StorageUnit;
+
+import java.nio.file.Path;
+
+/**
+ * File-system based storage, that maps torrent files into memory.
+ *
+ * <p>Files are stored in the same layout as in {@link FileSystemStorage},
+ * but block reads and writes are performed via memory-mapped regions of the files
+ * instead of explicit system calls. Regions are mapped lazily and remain mapped
+ * until the corresponding storage unit is closed.
+ *
+ * <p>Note that mapped regions count towards the process' virtual address space,
+ * so on 32-bit JVMs the region size should be kept small.
+ *
+ * <p>Each storage unit keeps its file open, while it has mapped regions,
+ * so the limit of the {@link FileHandleCache} does not apply to this storage.
+ *
+ * @since 1.6
+ */
+public class MappedFileSystemStorage extends FileSystemStorage {
+
+    /**
+     * Default size of a single mapped region: 64 MB
+     *
+     * @since 1.6
+     */
+    public static final int DEFAULT_REGION_SIZE = 64 * 1024 * 1024;
+
+    private final int regionSize;
+
+    /**
+     * Create a memory-mapped file-system storage inside a given directory,
+     * using the default region size ({@link #DEFAULT_REGION_SIZE}).
+     *
+     * @param rootDirectory Root directory for this storage. All torrent files will be stored inside this directory.
+     * @since 1.6
+     */
+    public MappedFileSystemStorage(Path rootDirectory) {
+        this(rootDirectory, DEFAULT_REGION_SIZE);
+    }
+
+    /**
+     * Create a memory-mapped file-system storage inside a given directory.
+     *
+     * @param rootDirectory Root directory for this storage. All torrent files will be stored inside this directory.
+     * @param regionSize Maximum size of a single mapped region of a file, in bytes
+     * @since 1.6
+     */
+    public MappedFileSystemStorage(Path rootDirectory, int regionSize) {
+        super(rootDirectory);
+        if (regionSize <= 0) {
+            throw new IllegalArgumentException("Invalid region size: " + regionSize);
+        }
+        this.regionSize = regionSize;
+    }
+
+    @Override
+    StorageUnit createUnit(Path torrentDirectory, String normalizedPath, long capacity) {
+        return new MappedStorageUnit(torrentDirectory, normalizedPath, capacity, regionSize);
+    }
+}
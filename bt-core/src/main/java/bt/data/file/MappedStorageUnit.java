@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.data.file;
+
+import bt.BtException;
+import bt.data.StorageUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Storage unit, that maps the underlying file into memory.
+ *
+ * <p>The file is split into regions of fixed size (except for the last one, which can be smaller),
+ * and each region is mapped lazily upon first access.
+ * Once a region has been mapped, reads and writes are plain memory copies,
+ * that do not require any synchronization between the callers.
+ * Regions are mapped only by writes, which extend the file as needed;
+ * reads of the parts of the file, that are not mapped yet, are served up to the current end of file.
+ *
+ * <p>Note that this unit keeps its file open until it is closed, so that the mapped regions remain valid,
+ * i.e. the limit of open files of the storage's {@link FileHandleCache} does not apply to it.
+ *
+ * @since 1.6
+ */
+class MappedStorageUnit implements StorageUnit {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedStorageUnit.class);
+
+    private final Path parent, file;
+    private final long capacity;
+    private final int regionSize;
+
+    private final AtomicReferenceArray<MappedByteBuffer> regions;
+    private final Object lock;
+
+    private volatile FileChannel channel;
+    private volatile boolean closed;
+
+    MappedStorageUnit(Path root, String path, long capacity, int regionSize) {
+        if (regionSize <= 0) {
+            throw new IllegalArgumentException("Invalid region size: " + regionSize);
+        }
+        long regionCount = (capacity + regionSize - 1) / regionSize;
+        if (regionCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Region size is too small for a file of size " + capacity +
+                    ": " + regionSize);
+        }
+
+        this.file = root.resolve(path);
+        this.parent = file.getParent();
+        this.capacity = capacity;
+        this.regionSize = regionSize;
+        this.regions = new AtomicReferenceArray<>((int) regionCount);
+        this.lock = new Object();
+        this.closed = true;
+    }
+
+    private boolean init(boolean create) {
+        synchronized (lock) {
+            if (!closed) {
+                return true;
+            }
+
+            if (!Files.exists(parent)) {
+                try {
+                    Files.createDirectories(parent);
+                } catch (IOException e) {
+                    throw new BtException("Failed to create file storage -- can't create (some of the) directories", e);
+                }
+            }
+
+            if (!Files.exists(file)) {
+                if (create) {
+                    try {
+                        Files.createFile(file);
+                    } catch (IOException e) {
+                        throw new BtException("Failed to create file storage -- " +
+                                "can't create new file: " + file.toAbsolutePath(), e);
+                    }
+                } else {
+                    return false;
+                }
+            }
+
+            try {
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            } catch (IOException e) {
+                throw new BtException("Unexpected I/O error", e);
+            }
+
+            closed = false;
+            return true;
+        }
+    }
+
+    /**
+     * @param extend Whether the file may be extended, if it's smaller than the region's limit
+     * @return Mapped region or null, if {@code extend} is false and the region is not fully present in the file
+     */
+    private ByteBuffer getRegion(int regionIndex, boolean extend) {
+        MappedByteBuffer region = regions.get(regionIndex);
+        if (region == null) {
+            synchronized (lock) {
+                region = regions.get(regionIndex);
+                if (region == null) {
+                    if (closed) {
+                        throw new BtException("Storage unit has been closed: " + file);
+                    }
+                    long position = ((long) regionIndex) * regionSize;
+                    long size = Math.min(regionSize, capacity - position);
+                    try {
+                        if (!extend && channel.size() < position + size) {
+                            return null;
+                        }
+                        // will extend the file, if it's smaller than the region's limit
+                        region = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+                    } catch (IOException e) {
+                        throw new BtException("Failed to map region of file: " + file +
+                                " (position: " + position + ", size: " + size + ")", e);
+                    }
+                    regions.set(regionIndex, region);
+                }
+            }
+        }
+        // each caller gets its own position and limit
+        return region.duplicate();
+    }
+
+    @Override
+    public void readBlock(ByteBuffer buffer, long offset) {
+        if (offset < 0) {
+            throw new BtException("Illegal arguments: offset (" + offset + ")");
+        } else if (offset > capacity - buffer.remaining()) {
+            throw new BtException("Received a request to read past the end of file (offset: " + offset +
+                    ", requested block length: " + buffer.remaining() + ", file size: " + capacity);
+        }
+
+        if (closed) {
+            if (!init(false)) {
+                return;
+            }
+        }
+
+        if (offset + buffer.remaining() > fileSize()) {
+            // block is not fully present in the file, which might have been truncated
+            readFromChannel(buffer, offset);
+            return;
+        }
+
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            ByteBuffer region = getRegion((int) (position / regionSize), false);
+            if (region == null) {
+                // region has not been written yet, and mapping it would extend the file
+                readFromChannel(buffer, position);
+                return;
+            }
+            int offsetInRegion = (int) (position % regionSize);
+            int length = Math.min(buffer.remaining(), region.capacity() - offsetInRegion);
+
+            region.limit(offsetInRegion + length);
+            region.position(offsetInRegion);
+            buffer.put(region);
+
+            position += length;
+        }
+    }
+
+    private long fileSize() {
+        try {
+            return channel.size();
+        } catch (IOException e) {
+            throw new BtException("Unexpected I/O error", e);
+        }
+    }
+
+    private void readFromChannel(ByteBuffer buffer, long position) {
+        try {
+            // stop at the end of file, it might not have been fully written yet
+            int read = 1;
+            while (buffer.hasRemaining() && read > 0) {
+                read = channel.read(buffer, position);
+                position += read;
+            }
+        } catch (IOException e) {
+            throw new BtException("Failed to read bytes (position: " + position +
+                    ", requested block length: " + buffer.remaining() + ", file size: " + capacity + ")", e);
+        }
+    }
+
+    @Override
+    public byte[] readBlock(long offset, int length) {
+        if (offset < 0 || length < 0) {
+            throw new BtException("Illegal arguments: offset (" + offset + "), length (" + length + ")");
+        }
+        byte[] block = new byte[length];
+        readBlock(ByteBuffer.wrap(block), offset);
+        return block;
+    }
+
+    @Override
+    public void writeBlock(ByteBuffer buffer, long offset) {
+        if (offset < 0) {
+            throw new BtException("Negative offset: " + offset);
+        } else if (offset > capacity - buffer.remaining()) {
+            throw new BtException("Received a request to write past the end of file (offset: " + offset +
+                    ", block length: " + buffer.remaining() + ", file size: " + capacity);
+        }
+
+        if (closed) {
+            init(true);
+        }
+
+        int limit = buffer.limit();
+        long position = offset;
+        try {
+            while (buffer.hasRemaining()) {
+                ByteBuffer region = getRegion((int) (position / regionSize), true);
+                int offsetInRegion = (int) (position % regionSize);
+                int length = Math.min(buffer.remaining(), region.capacity() - offsetInRegion);
+
+                region.position(offsetInRegion);
+                buffer.limit(buffer.position() + length);
+                region.put(buffer);
+                buffer.limit(limit);
+
+                position += length;
+            }
+        } finally {
+            buffer.limit(limit);
+        }
+    }
+
+    @Override
+    public void writeBlock(byte[] block, long offset) {
+        writeBlock(ByteBuffer.wrap(block), offset);
+    }
+
+    @Override
+    public long transferTo(long offset, long length, WritableByteChannel target) throws IOException {
+        if (offset < 0 || length < 0) {
+            throw new BtException("Illegal arguments: offset (" + offset + "), length (" + length + ")");
+        } else if (offset > capacity - length) {
+            throw new BtException("Received a request to read past the end of file (offset: " + offset +
+                    ", requested block length: " + length + ", file size: " + capacity);
+        }
+
+        if (closed) {
+            if (!init(false)) {
+                return StorageUnit.super.transferTo(offset, length, target);
+            }
+        }
+
+        // transfer past the end of the file does nothing, so the caller would wait for it forever
+        long fileSize = fileSize();
+        if (offset + length > fileSize) {
+            throw new BtException("Block is past the end of file, which might have been truncated (offset: " +
+                    offset + ", requested block length: " + length + ", file size: " + fileSize + ")");
+        }
+
+        ByteBuffer region = getRegion((int) (offset / regionSize), false);
+        if (region == null) {
+            return channel.transferTo(offset, length, target);
+        }
+        // write directly from the mapped memory, at most one region at a time
+        int offsetInRegion = (int) (offset % regionSize);
+        int limit = (int) Math.min(region.capacity(), offsetInRegion + length);
+        region.limit(limit);
+        region.position(offsetInRegion);
+        return target.write(region);
+    }
+
+    @Override
+    public long capacity() {
+        return capacity;
+    }
+
+    @Override
+    public long size() {
+        try {
+            return Files.exists(file) ? Files.size(file) : 0;
+        } catch (IOException e) {
+            throw new BtException("Unexpected I/O error", e);
+        }
+    }
+
+    @Override
+    public long lastModified() {
+        try {
+            return Files.exists(file) ? Files.getLastModifiedTime(file).toMillis() : -1;
+        } catch (IOException e) {
+            throw new BtException("Unexpected I/O error", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "(" + capacity + " B, mapped) " + file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            try {
+                for (int i = 0; i < regions.length(); i++) {
+                    MappedByteBuffer region = regions.getAndSet(i, null);
+                    if (region != null) {
+                        // flush dirty pages; the mapping itself is released, when the buffer is garbage collected
+                        region.force();
+                    }
+                }
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to close file: " + file, e);
+            } finally {
+                channel = null;
+                closed = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package bt.data.file;
+
+import bt.BtException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Single file, that contains the payload of all files of a torrent, concatenated in the torrent's order.
+ *
+ * <p>The container is preallocated to its full size upon first write
+ * (sparsely, if supported by the file system). Open channel is managed by a {@link FileHandleCache},
+ * and is shared by all storage units, that reside in this container.
+ */
+class PackedContainer {
+
+    private final Path file;
+    private final long size;
+    private final FileHandleCache handleCache;
+    private final Runnable closeListener;
+
+    private volatile boolean initialized;
+    private final Object lock;
+
+    /**
+     * @param closeListener Invoked each time the container is closed
+     */
+    PackedContainer(FileHandleCache handleCache, Path file, long size, Runnable closeListener) {
+        this.file = file;
+        this.size = size;
+        this.handleCache = handleCache;
+        this.closeListener = closeListener;
+        this.lock = new Object();
+    }
+
+    /**
+     * @return Handle of the open container or null, if the container does not exist and {@code create} is false
+     */
+    FileHandleCache.Handle acquireHandle(boolean create) {
+        if (!initialized) {
+            synchronized (lock) {
+                if (!initialized) {
+                    if (!Files.exists(file)) {
+                        if (!create) {
+                            return null;
+                        }
+                        create();
+                    }
+                    initialized = true;
+                }
+            }
+        }
+        return handleCache.acquire(file);
+    }
+
+    private void create() {
+        try {
+            Path parent = file.getParent();
+            if (parent != null && !Files.exists(parent)) {
+                Files.createDirectories(parent);
+            }
+            Files.createFile(file);
+        } catch (IOException e) {
+            throw new BtException("Failed to create file storage -- " +
+                    "can't create new file: " + file.toAbsolutePath(), e);
+        }
+
+        if (size > 0) {
+            // extend the file to its final size by writing the last byte
+            FileHandleCache.Handle handle = handleCache.acquire(file);
+            try {
+                handle.getChannel().write(ByteBuffer.allocate(1), size - 1);
+            } catch (IOException e) {
+                throw new BtException("Failed to preallocate file: " + file.toAbsolutePath(), e);
+            } finally {
+                handleCache.release(handle);
+            }
+        }
+    }
+
+    void releaseHandle(FileHandleCache.Handle handle) {
+        handleCache.release(handle);
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return Full size of the container, i.e. total size of the torrent's files
+     */
+    long getSize() {
+        return size;
+    }
+
+    /**
+     * @return Current size of the container file or 0, if it does not exist
+     */
+    long getActualSize() {
+        try {
+            return Files.exists(file) ? Files.size(file) : 0;
+        } catch (IOException e) {
+            throw new BtException("Unexpected I/O error", e);
+        }
+    }
+
+    long getLastModified() {
+        try {
+            return Files.exists(file) ? Files.getLastModifiedTime(file).toMillis() : -1;
+        } catch (IOException e) {
+            throw new BtException("Unexpected I/O error", e);
+        }
+    }
+
+    void close() {
+        synchronized (lock) {
+            handleCache.invalidate(file);
+            initialized = false;
+        }
+        closeListener.run();
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package bt.data.file;
+
+import bt.BtException;
+import bt.data.Storage;
+import bt.data.StorageUnit;
+import bt.metainfo.Torrent;
+import bt.metainfo.TorrentFile;
+import bt.metainfo.TorrentId;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * File-system based storage, that keeps the payload of each torrent in a single container file.
+ *
+ * <p>Torrent's files are laid out in the container one after another, in the same order as in the torrent metainfo,
+ * i.e. the container's contents are exactly the torrent's byte stream. The container is preallocated
+ * to the total size of the torrent upon first write. This mode is intended for torrents with a large number
+ * of small files: instead of opening and writing lots of tiny files, all I/O is performed on a single file,
+ * and pieces, that span many files, are read and written sequentially.
+ *
+ * <p>Containers are named after the torrent's ID ({@code <hex-encoded id>.pack}) and are stored inside the root directory.
+ * To get the files in the usual layout (see {@link FileSystemStorage}), use {@link #export(Torrent, Path)}
+ * once the torrent has been downloaded.
+ *
+ * @since 1.6
+ */
+public class PackedFileSystemStorage implements Storage, HandleCacheAware {
+
+    private static final String CONTAINER_SUFFIX = ".pack";
+    private static final int DEFAULT_MAX_OPEN_FILES = 16;
+    private static final int EXPORT_BUFFER_SIZE = 1024 * 1024;
+
+    private final Path rootDirectory;
+    private final PathNormalizer pathNormalizer;
+    private final HandleCacheReference handleCache;
+
+    // torrents with open units; an entry is removed, when its container is closed
+    private final Map<TorrentId, PackedTorrent> torrents;
+
+    /**
+     * Create a packed file-system storage inside a given directory.
+     * This storage will use the runtime's cache of open files, when attached to a runtime,
+     * or a private cache otherwise (see {@link #bindDefaultHandleCache(FileHandleCache)}).
+     *
+     * @param rootDirectory Root directory for this storage. All containers will be stored inside this directory.
+     * @since 1.6
+     */
+    public PackedFileSystemStorage(Path rootDirectory) {
+        this(rootDirectory, new HandleCacheReference(null, DEFAULT_MAX_OPEN_FILES));
+    }
+
+    /**
+     * Create a packed file-system storage inside a given directory.
+     *
+     * @param rootDirectory Root directory for this storage. All containers will be stored inside this directory.
+     * @param handleCache Cache of open files, possibly shared with other storages
+     * @since 1.6
+     */
+    public PackedFileSystemStorage(Path rootDirectory, FileHandleCache handleCache) {
+        this(rootDirectory, new HandleCacheReference(handleCache, DEFAULT_MAX_OPEN_FILES));
+    }
+
+    private PackedFileSystemStorage(Path rootDirectory, HandleCacheReference handleCache) {
+        this.rootDirectory = rootDirectory;
+        this.pathNormalizer = new PathNormalizer();
+        this.handleCache = handleCache;
+        this.torrents = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Use a given cache of open files, unless this storage has been created with an explicit cache,
+     * or has already opened some files with its private cache.
+     * Called by the runtime, so that all storages of the runtime share the same limit of open files.
+     *
+     * @since 1.6
+     */
+    @Override
+    public void bindDefaultHandleCache(FileHandleCache handleCache) {
+        this.handleCache.bindDefault(handleCache);
+    }
+
+    @Override
+    public StorageUnit getUnit(Torrent torrent, TorrentFile torrentFile) {
+        return getUnit(getPackedTorrent(torrent), torrentFile);
+    }
+
+    private StorageUnit getUnit(PackedTorrent packedTorrent, TorrentFile torrentFile) {
+        long offset = packedTorrent.getOffset(torrentFile);
+        String normalizedPath = pathNormalizer.normalize(torrentFile.getPathElements());
+        return new PackedStorageUnit(packedTorrent.container, normalizedPath, offset, torrentFile.getSize());
+    }
+
+    private PackedTorrent getPackedTorrent(Torrent torrent) {
+        return torrents.computeIfAbsent(torrent.getTorrentId(), id -> new PackedTorrent(torrent));
+    }
+
+    private void release(TorrentId torrentId, PackedTorrent packedTorrent) {
+        torrents.remove(torrentId, packedTorrent);
+    }
+
+    /**
+     * @return Path to the container file of a given torrent (the file might not exist yet)
+     * @since 1.6
+     */
+    public Path getContainer(Torrent torrent) {
+        return getContainerPath(torrent.getTorrentId());
+    }
+
+    private Path getContainerPath(TorrentId torrentId) {
+        return rootDirectory.resolve(torrentId.toString() + CONTAINER_SUFFIX);
+    }
+
+    /**
+     * Copy the torrent's files from the container into a given directory,
+     * using the same layout as {@link FileSystemStorage}. The container itself is left intact.
+     *
+     * <p>The container is read sequentially, so this is expected to be done once the torrent is complete.
+     * Parts of the torrent, that have not been downloaded yet, are written as zeros.
+     *
+     * @param torrent Torrent metainfo
+     * @param targetDirectory Directory to store the files in
+     * @throws BtException if the container does not exist or an I/O error happens
+     * @since 1.6
+     */
+    public void export(Torrent torrent, Path targetDirectory) {
+        Path container = getContainer(torrent);
+        if (!Files.exists(container)) {
+            throw new BtException("Container does not exist: " + container);
+        }
+
+        // don't register the torrent, if it's not active, so that it's not kept after the export
+        PackedTorrent activeTorrent = torrents.get(torrent.getTorrentId());
+        PackedTorrent packedTorrent = (activeTorrent == null) ? new PackedTorrent(torrent) : activeTorrent;
+
+        FileHandleCache targetHandleCache = new FileHandleCache(1);
+        Storage target = new FileSystemStorage(targetDirectory, targetHandleCache);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(EXPORT_BUFFER_SIZE);
+
+        try {
+            for (TorrentFile file : torrent.getFiles()) {
+                StorageUnit source = getUnit(packedTorrent, file);
+                try (StorageUnit destination = target.getUnit(torrent, file)) {
+                    long position = 0;
+                    do {
+                        buffer.clear();
+                        buffer.limit((int) Math.min(buffer.capacity(), file.getSize() - position));
+                        // container is preallocated, so the read is always complete
+                        source.readBlock(buffer, position);
+                        buffer.flip();
+                        destination.writeBlock(buffer, position);
+                        position += buffer.limit();
+                    } while (position < file.getSize());
+                } catch (IOException e) {
+                    throw new BtException("Failed to export file: " + file.getPathElements(), e);
+                }
+            }
+        } finally {
+            targetHandleCache.clear();
+            // container of an active torrent remains open for its units
+            if (activeTorrent == null) {
+                packedTorrent.container.close();
+            }
+        }
+    }
+
+    /**
+     * Offset index of a single torrent's files in its container.
+     * Files are identified by their path elements, which are unique within a torrent,
+     * so that the index can be used with any instance of the torrent's metainfo (e.g. a re-parsed one).
+     */
+    private class PackedTorrent {
+
+        private final Map<List<String>, Long> offsets;
+        private final PackedContainer container;
+
+        PackedTorrent(Torrent torrent) {
+            List<TorrentFile> files = torrent.getFiles();
+            this.offsets = new HashMap<>(files.size() * 2);
+
+            long offset = 0;
+            for (TorrentFile file : files) {
+                offsets.put(file.getPathElements(), offset);
+                offset += file.getSize();
+            }
+            TorrentId torrentId = torrent.getTorrentId();
+            this.container = new PackedContainer(handleCache.get(), getContainerPath(torrentId), offset,
+                    () -> release(torrentId, this));
+        }
+
+        long getOffset(TorrentFile file) {
+            Long offset = offsets.get(file.getPathElements());
+            if (offset == null) {
+                throw new BtException("File does not belong to torrent: " + file.getPathElements());
+            }
+            return offset;
+        }
+    }
+}
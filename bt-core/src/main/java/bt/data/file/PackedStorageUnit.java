@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package bt.data.file;
+
+import bt.BtException;
+import bt.data.StorageUnit;
+import bt.data.range.Ranges;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Storage unit, that represents a single torrent file inside a {@link PackedContainer}.
+ *
+ * <p>All I/O is performed on the container's channel at the file's offset in the container,
+ * so that reading and writing a piece, that spans many small files, does not require opening any of them.
+ */
+class PackedStorageUnit implements StorageUnit {
+
+    private final PackedContainer container;
+    private final String path;
+    private final long offsetInContainer;
+    private final long capacity;
+
+    PackedStorageUnit(PackedContainer container, String path, long offsetInContainer, long capacity) {
+        this.container = container;
+        this.path = path;
+        this.offsetInContainer = offsetInContainer;
+        this.capacity = capacity;
+    }
+
+    @Override
+    public void readBlock(ByteBuffer buffer, long offset) {
+
+        if (offset < 0) {
+            throw new BtException("Illegal arguments: offset (" + offset + ")");
+        } else if (offset > capacity - buffer.remaining()) {
+            throw new BtException("Received a request to read past the end of file (offset: " + offset +
+                    ", requested block length: " + buffer.remaining() + ", file size: " + capacity);
+        }
+
+        FileHandleCache.Handle handle = container.acquireHandle(false);
+        if (handle == null) {
+            return;
+        }
+
+        try {
+            FileChannel channel = handle.getChannel();
+            long position = offsetInContainer + offset;
+            int read = 1;
+            while (buffer.hasRemaining() && read > 0) {
+                read = channel.read(buffer, position);
+                position += read;
+            }
+        } catch (IOException e) {
+            throw new BtException("Failed to read bytes (offset: " + offset +
+                    ", requested block length: " + buffer.remaining() + ", file size: " + capacity + ")", e);
+        } finally {
+            container.releaseHandle(handle);
+        }
+    }
+
+    @Override
+    public byte[] readBlock(long offset, int length) {
+        if (offset < 0 || length < 0) {
+            throw new BtException("Illegal arguments: offset (" + offset + "), length (" + length + ")");
+        }
+        byte[] block = new byte[length];
+        readBlock(ByteBuffer.wrap(block), offset);
+        return block;
+    }
+
+    @Override
+    public void writeBlock(ByteBuffer buffer, long offset) {
+
+        if (offset < 0) {
+            throw new BtException("Negative offset: " + offset);
+        } else if (offset > capacity - buffer.remaining()) {
+            throw new BtException("Received a request to write past the end of file (offset: " + offset +
+                    ", block length: " + buffer.remaining() + ", file size: " + capacity);
+        }
+
+        FileHandleCache.Handle handle = container.acquireHandle(true);
+        try {
+            FileChannel channel = handle.getChannel();
+            long position = offsetInContainer + offset;
+            int written = 1;
+            while (buffer.hasRemaining() && written > 0) {
+                written = channel.write(buffer, position);
+                position += written;
+            }
+        } catch (IOException e) {
+            throw new BtException("Failed to write bytes (offset: " + offset +
+                    ", block length: " + buffer.remaining() + ", file size: " + capacity + ")", e);
+        } finally {
+            container.releaseHandle(handle);
+        }
+    }
+
+    @Override
+    public void writeBlock(byte[] block, long offset) {
+        writeBlock(ByteBuffer.wrap(block), offset);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Data is read with a single scattering read (see {@link VectoredIO}).
+     */
+    @Override
+    public void readBlocks(ByteBuffer[] buffers, long offset) {
+        if (buffers.length == 1) {
+            readBlock(buffers[0], offset);
+            return;
+        }
+
+        long length = Ranges.remaining(buffers);
+        if (offset < 0) {
+            throw new BtException("Illegal arguments: offset (" + offset + ")");
+        } else if (offset > capacity - length) {
+            throw new BtException("Received a request to read past the end of file (offset: " + offset +
+                    ", requested block length: " + length + ", file size: " + capacity);
+        }
+
+        FileHandleCache.Handle handle = container.acquireHandle(false);
+        if (handle == null) {
+            return;
+        }
+
+        try {
+            VectoredIO.read(handle.getChannel(), buffers, offsetInContainer + offset);
+        } catch (IOException e) {
+            throw new BtException("Failed to read bytes (offset: " + offset +
+                    ", requested block length: " + length + ", file size: " + capacity + ")", e);
+        } finally {
+            container.releaseHandle(handle);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Data is written with a single gathering write (see {@link VectoredIO}).
+     */
+    @Override
+    public void writeBlocks(ByteBuffer[] buffers, long offset) {
+        if (buffers.length == 1) {
+            writeBlock(buffers[0], offset);
+            return;
+        }
+
+        long length = Ranges.remaining(buffers);
+        if (offset < 0) {
+            throw new BtException("Negative offset: " + offset);
+        } else if (offset > capacity - length) {
+            throw new BtException("Received a request to write past the end of file (offset: " + offset +
+                    ", block length: " + length + ", file size: " + capacity);
+        }
+
+        FileHandleCache.Handle handle = container.acquireHandle(true);
+        try {
+            VectoredIO.write(handle.getChannel(), buffers, offsetInContainer + offset);
+        } catch (IOException e) {
+            throw new BtException("Failed to write bytes (offset: " + offset +
+                    ", block length: " + length + ", file size: " + capacity + ")", e);
+        } finally {
+            container.releaseHandle(handle);
+        }
+    }
+
+    @Override
+    public long transferTo(long offset, long length, WritableByteChannel target) throws IOException {
+
+        if (offset < 0 || length < 0) {
+            throw new BtException("Illegal arguments: offset (" + offset + "), length (" + length + ")");
+        } else if (offset > capacity - length) {
+            throw new BtException("Received a request to read past the end of file (offset: " + offset +
+                    ", requested block length: " + length + ", file size: " + capacity);
+        }
+
+        FileHandleCache.Handle handle = container.acquireHandle(false);
+        if (handle == null) {
+            return StorageUnit.super.transferTo(offset, length, target);
+        }
+
+        try {
+            FileChannel channel = handle.getChannel();
+            // transfer past the end of the file does nothing, so the caller would wait for it forever
+            if (offsetInContainer + offset + length > channel.size()) {
+                throw new BtException("Block is past the end of container, which might have been truncated (offset: " +
+                        offset + ", requested block length: " + length + ", container size: " + channel.size() + ")");
+            }
+            return channel.transferTo(offsetInContainer + offset, length, target);
+        } finally {
+            container.releaseHandle(handle);
+        }
+    }
+
+    @Override
+    public long capacity() {
+        return capacity;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>This is the part of the file, that is covered by the container,
+     * which is always the full file, once the container has been preallocated.
+     */
+    @Override
+    public long size() {
+        long size = container.getActualSize() - offsetInContainer;
+        return Math.max(0, Math.min(size, capacity));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Files, that reside in the same container, share its modification time.
+     */
+    @Override
+    public long lastModified() {
+        return container.getLastModified();
+    }
+
+    @Override
+    public String toString() {
+        return "(" + capacity + " B, packed at " + offsetInContainer + ") " + container.getFile() + ":" + path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        container.close();
+    }
+}
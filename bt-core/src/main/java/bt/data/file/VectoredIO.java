@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.data.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Scattering reads and gathering writes at a given position in a file.
+ *
+ * <p>Unlike single-buffer I/O, {@link FileChannel} does not provide positional vectored operations,
+ * so the channel's position must be set before each operation. Position is shared by all users
+ * of the channel (see {@link FileHandleCache}), hence vectored operations on the same channel are serialized.
+ * Positional reads and writes are not affected and may run concurrently with them.
+ *
+ * @since 1.6
+ */
+class VectoredIO {
+
+    /**
+     * Read data into the buffers, until all buffers are full or the end of file is reached.
+     */
+    static void read(FileChannel channel, ByteBuffer[] buffers, long position) throws IOException {
+        synchronized (channel) {
+            channel.position(position);
+            int first = 0;
+            long read = 1;
+            while (read > 0) {
+                first = skipFull(buffers, first);
+                if (first == buffers.length) {
+                    break;
+                }
+                read = channel.read(buffers, first, buffers.length - first);
+            }
+        }
+    }
+
+    /**
+     * Write all remaining data of the buffers.
+     */
+    static void write(FileChannel channel, ByteBuffer[] buffers, long position) throws IOException {
+        synchronized (channel) {
+            channel.position(position);
+            int first = 0;
+            long written = 1;
+            while (written > 0) {
+                first = skipFull(buffers, first);
+                if (first == buffers.length) {
+                    break;
+                }
+                written = channel.write(buffers, first, buffers.length - first);
+            }
+        }
+    }
+
+    private static int skipFull(ByteBuffer[] buffers, int first) {
+        while (first < buffers.length && !buffers[first].hasRemaining()) {
+            first++;
+        }
+        return first;
+    }
+}
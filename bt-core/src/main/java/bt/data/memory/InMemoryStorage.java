@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package bt.data.memory;
+
+import bt.BtException;
+import bt.data.Storage;
+import bt.data.StorageUnit;
+import bt.metainfo.Torrent;
+import bt.metainfo.TorrentFile;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Storage, that keeps all data in memory. Useful for ephemeral swarms (e.g. relays and cache warmers),
+ * and for testing/benchmarking the networking and messaging without the overhead of the file system.
+ *
+ * <p>Memory is allocated lazily, in regions of fixed size, when the data is written for the first time.
+ * Parts of the files, that have not been written yet, are read as zeros.
+ * Total amount of allocated memory is limited; writes, that would exceed the limit, fail with {@link BtException}.
+ *
+ * <p>Data outlives the storage units (closing a unit does not release its memory),
+ * so that it's still available, if the same torrent is processed again by the same storage.
+ * Use {@link #remove(Torrent)} to release the memory, that is occupied by a torrent's data.
+ *
+ * @since 1.6
+ */
+public class InMemoryStorage implements Storage {
+
+    /**
+     * Default size of a single memory region: 1 MB
+     *
+     * @since 1.6
+     */
+    public static final int DEFAULT_REGION_SIZE = 1024 * 1024;
+
+    private final long maxMemory;
+    private final int regionSize;
+    private final boolean offHeap;
+
+    private final ConcurrentMap<String, InMemoryStorageUnit> units;
+    private final AtomicLong memoryUsed;
+
+    /**
+     * Create an in-memory storage, that keeps data on the heap.
+     *
+     * @param maxMemory Max amount of memory to allocate for data, in bytes
+     * @since 1.6
+     */
+    public InMemoryStorage(long maxMemory) {
+        this(maxMemory, false);
+    }
+
+    /**
+     * Create an in-memory storage.
+     *
+     * @param maxMemory Max amount of memory to allocate for data, in bytes
+     * @param offHeap Allocate direct (off-heap) buffers instead of heap buffers
+     * @since 1.6
+     */
+    public InMemoryStorage(long maxMemory, boolean offHeap) {
+        this(maxMemory, offHeap, DEFAULT_REGION_SIZE);
+    }
+
+    /**
+     * Create an in-memory storage.
+     *
+     * @param maxMemory Max amount of memory to allocate for data, in bytes
+     * @param offHeap Allocate direct (off-heap) buffers instead of heap buffers
+     * @param regionSize Size of a single memory region, in bytes
+     * @since 1.6
+     */
+    public InMemoryStorage(long maxMemory, boolean offHeap, int regionSize) {
+        if (maxMemory < 0) {
+            throw new IllegalArgumentException("Invalid memory limit: " + maxMemory);
+        } else if (regionSize <= 0) {
+            throw new IllegalArgumentException("Invalid region size: " + regionSize);
+        }
+        this.maxMemory = maxMemory;
+        this.regionSize = regionSize;
+        this.offHeap = offHeap;
+        this.units = new ConcurrentHashMap<>();
+        this.memoryUsed = new AtomicLong();
+    }
+
+    @Override
+    public StorageUnit getUnit(Torrent torrent, TorrentFile torrentFile) {
+        String key = getKey(torrent) + String.join("/", torrentFile.getPathElements());
+        return units.computeIfAbsent(key, k -> new InMemoryStorageUnit(this, k, torrentFile.getSize()));
+    }
+
+    /**
+     * Release the memory, that is occupied by a torrent's data.
+     * Storage units, that have been previously returned for this torrent, must not be used anymore.
+     *
+     * @param torrent Torrent
+     * @since 1.6
+     */
+    public void remove(Torrent torrent) {
+        String prefix = getKey(torrent);
+        units.entrySet().removeIf(entry -> {
+            if (entry.getKey().startsWith(prefix)) {
+                memoryUsed.addAndGet(-entry.getValue().release());
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private static String getKey(Torrent torrent) {
+        return torrent.getTorrentId() + ":";
+    }
+
+    /**
+     * @return Max amount of memory to allocate for data, in bytes
+     * @since 1.6
+     */
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    /**
+     * @return Amount of memory, that is currently allocated for data, in bytes
+     * @since 1.6
+     */
+    public long getMemoryUsed() {
+        return memoryUsed.get();
+    }
+
+    int getRegionSize() {
+        return regionSize;
+    }
+
+    boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * @throws BtException if the memory limit would be exceeded
+     */
+    void reserve(long bytes, String unitName) {
+        long used;
+        do {
+            used = memoryUsed.get();
+            if (used + bytes > maxMemory) {
+                throw new BtException("Memory limit exceeded (" + maxMemory + " bytes), when allocating " + bytes +
+                        " bytes for " + unitName + "; currently used: " + used + " bytes");
+            }
+        } while (!memoryUsed.compareAndSet(used, used + bytes));
+    }
+
+    void unreserve(long bytes) {
+        memoryUsed.addAndGet(-bytes);
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package bt.data.memory;
+
+import bt.BtException;
+import bt.data.StorageUnit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Storage unit, that keeps the data of a single torrent file in memory regions,
+ * which are allocated upon first write.
+ *
+ * @since 1.6
+ */
+class InMemoryStorageUnit implements StorageUnit {
+
+    private static final byte[] ZEROS = new byte[8192];
+
+    private final InMemoryStorage storage;
+    private final String name;
+    private final long capacity;
+    private final int regionSize;
+
+    private final AtomicReferenceArray<ByteBuffer> regions;
+    private final AtomicLong size;
+    private volatile boolean released;
+
+    InMemoryStorageUnit(InMemoryStorage storage, String name, long capacity) {
+        int regionSize = storage.getRegionSize();
+        long regionCount = (capacity + regionSize - 1) / regionSize;
+        if (regionCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Region size is too small for a file of size " + capacity +
+                    ": " + regionSize);
+        }
+
+        this.storage = storage;
+        this.name = name;
+        this.capacity = capacity;
+        this.regionSize = regionSize;
+        this.regions = new AtomicReferenceArray<>((int) regionCount);
+        this.size = new AtomicLong();
+    }
+
+    /**
+     * @return Region or null, if it has not been allocated yet
+     */
+    private ByteBuffer getRegion(int regionIndex, boolean allocate) {
+        if (released) {
+            throw new BtException("Storage unit has been released: " + name);
+        }
+        ByteBuffer region = regions.get(regionIndex);
+        if (region == null && allocate) {
+            int length = (int) Math.min(regionSize, capacity - ((long) regionIndex) * regionSize);
+            storage.reserve(length, name);
+            ByteBuffer allocated = storage.isOffHeap() ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
+            if (regions.compareAndSet(regionIndex, null, allocated)) {
+                region = allocated;
+            } else {
+                // allocated concurrently by another thread
+                storage.unreserve(length);
+                region = regions.get(regionIndex);
+            }
+        }
+        // each caller gets its own position and limit
+        return (region == null) ? null : region.duplicate();
+    }
+
+    @Override
+    public void readBlock(ByteBuffer buffer, long offset) {
+        if (offset < 0) {
+            throw new BtException("Illegal arguments: offset (" + offset + ")");
+        } else if (offset > capacity - buffer.remaining()) {
+            throw new BtException("Received a request to read past the end of file (offset: " + offset +
+                    ", requested block length: " + buffer.remaining() + ", file size: " + capacity);
+        }
+
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            int regionIndex = (int) (position / regionSize);
+            int offsetInRegion = (int) (position % regionSize);
+            ByteBuffer region = getRegion(regionIndex, false);
+            int regionLength = (int) Math.min(regionSize, capacity - ((long) regionIndex) * regionSize);
+            int length = Math.min(buffer.remaining(), regionLength - offsetInRegion);
+
+            if (region == null) {
+                // data has not been written yet
+                for (int remaining = length; remaining > 0; remaining -= ZEROS.length) {
+                    buffer.put(ZEROS, 0, Math.min(remaining, ZEROS.length));
+                }
+            } else {
+                region.limit(offsetInRegion + length);
+                region.position(offsetInRegion);
+                buffer.put(region);
+            }
+            position += length;
+        }
+    }
+
+    @Override
+    public byte[] readBlock(long offset, int length) {
+        if (offset < 0 || length < 0) {
+            throw new BtException("Illegal arguments: offset (" + offset + "), length (" + length + ")");
+        }
+        byte[] block = new byte[length];
+        readBlock(ByteBuffer.wrap(block), offset);
+        return block;
+    }
+
+    @Override
+    public void writeBlock(ByteBuffer buffer, long offset) {
+        if (offset < 0) {
+            throw new BtException("Negative offset: " + offset);
+        } else if (offset > capacity - buffer.remaining()) {
+            throw new BtException("Received a request to write past the end of file (offset: " + offset +
+                    ", block length: " + buffer.remaining() + ", file size: " + capacity);
+        }
+
+        int limit = buffer.limit();
+        long position = offset;
+        try {
+            while (buffer.hasRemaining()) {
+                ByteBuffer region = getRegion((int) (position / regionSize), true);
+                int offsetInRegion = (int) (position % regionSize);
+                int length = Math.min(buffer.remaining(), region.capacity() - offsetInRegion);
+
+                region.position(offsetInRegion);
+                buffer.limit(buffer.position() + length);
+                region.put(buffer);
+                buffer.limit(limit);
+
+                position += length;
+            }
+        } finally {
+            buffer.limit(limit);
+        }
+        updateSize(position);
+    }
+
+    private void updateSize(long end) {
+        long current;
+        while ((current = size.get()) < end) {
+            if (size.compareAndSet(current, end)) {
+                break;
+            }
+        }
+    }
+
+    @Override
+    public void writeBlock(byte[] block, long offset) {
+        writeBlock(ByteBuffer.wrap(block), offset);
+    }
+
+    @Override
+    public long transferTo(long offset, long length, WritableByteChannel target) throws IOException {
+        if (offset < 0 || length < 0) {
+            throw new BtException("Illegal arguments: offset (" + offset + "), length (" + length + ")");
+        } else if (offset > capacity - length) {
+            throw new BtException("Received a request to read past the end of file (offset: " + offset +
+                    ", requested block length: " + length + ", file size: " + capacity);
+        }
+
+        ByteBuffer region = getRegion((int) (offset / regionSize), false);
+        if (region == null) {
+            return StorageUnit.super.transferTo(offset, length, target);
+        }
+        // write directly from the region, at most one region at a time
+        int offsetInRegion = (int) (offset % regionSize);
+        int limit = (int) Math.min(region.capacity(), offsetInRegion + length);
+        region.limit(limit);
+        region.position(offsetInRegion);
+        return target.write(region);
+    }
+
+    @Override
+    public long capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return Offset of the end of the furthest block, that has been written so far
+     */
+    @Override
+    public long size() {
+        return size.get();
+    }
+
+    /**
+     * Release all memory regions. The unit can't be used after this method has been called.
+     *
+     * @return Amount of released memory, in bytes
+     */
+    long release() {
+        released = true;
+        long releasedBytes = 0;
+        for (int i = 0; i < regions.length(); i++) {
+            ByteBuffer region = regions.getAndSet(i, null);
+            if (region != null) {
+                releasedBytes += region.capacity();
+            }
+        }
+        return releasedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + capacity + " B, in-memory) " + name;
+    }
+
+    @Override
+    public void close() {
+        // data must be retained until the unit is released by the storage
+    }
+}
@@ -18,6 +18,9 @@ package bt.data.range;
 
 import bt.data.BlockSet;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * @since 1.3
  */
@@ -52,6 +55,18 @@ public class BlockRange<T extends Range<T>> implements Range<BlockRange<T>>, Del
         return blockSet;
     }
 
+    /**
+     * Mark a part of this range as available without writing any data,
+     * e.g. when the data is known to be already present in the underlying storage.
+     *
+     * @param offset Offset in this range (0-based)
+     * @param length Length of the available data
+     * @since 1.6
+     */
+    public void markAvailable(long offset, long length) {
+        blockSet.markAvailable(this.offset + offset, length);
+    }
+
     @Override
     public long length() {
         return delegate.length();
@@ -78,6 +93,48 @@ public class BlockRange<T extends Range<T>> implements Range<BlockRange<T>>, Del
         blockSet.markAvailable(offset, block.length);
     }
 
+    @Override
+    public void getBytes(ByteBuffer buffer) {
+        delegate.getBytes(buffer);
+    }
+
+    @Override
+    public void putBytes(ByteBuffer buffer) {
+        int length = buffer.remaining();
+        delegate.putBytes(buffer);
+        blockSet.markAvailable(offset, length);
+    }
+
+    @Override
+    public void getBytes(ByteBuffer[] buffers) {
+        delegate.getBytes(buffers);
+    }
+
+    @Override
+    public void putBytes(ByteBuffer[] buffers) {
+        long length = Ranges.remaining(buffers);
+        delegate.putBytes(buffers);
+        blockSet.markAvailable(offset, length);
+    }
+
+    @Override
+    public CompletableFuture<Void> getBytesAsync(ByteBuffer buffer) {
+        return delegate.getBytesAsync(buffer);
+    }
+
+    @Override
+    public CompletableFuture<Void> putBytesAsync(ByteBuffer buffer) {
+        int length = buffer.remaining();
+        // blocks become available only after they have actually been written
+        return delegate.putBytesAsync(buffer).thenRun(() -> blockSet.markAvailable(offset, length));
+    }
+
+    @Override
+    public CompletableFuture<Void> putBytesAsync(ByteBuffer[] buffers) {
+        long length = Ranges.remaining(buffers);
+        return delegate.putBytesAsync(buffers).thenRun(() -> blockSet.markAvailable(offset, length));
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public T getDelegate() {
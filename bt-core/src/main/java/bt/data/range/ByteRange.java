@@ -129,6 +129,28 @@ public class ByteRange implements Range<ByteRange> {
         buffer.position(position);
     }
 
+    @Override
+    public void getBytes(ByteBuffer buffer) {
+        if (buffer.remaining() > length()) {
+            throw new IllegalArgumentException(String.format(
+                    "Insufficient data in this range (expected max %d bytes, requested: %d)", length(), buffer.remaining()));
+        }
+        ByteBuffer source = this.buffer.duplicate();
+        source.limit(source.position() + buffer.remaining());
+        buffer.put(source);
+    }
+
+    @Override
+    public void putBytes(ByteBuffer buffer) {
+        if (buffer.remaining() > length()) {
+            throw new IllegalArgumentException(String.format(
+                    "Data does not fit in this range (expected max %d bytes, actual: %d)", length(), buffer.remaining()));
+        }
+        int position = this.buffer.position();
+        this.buffer.put(buffer);
+        this.buffer.position(position);
+    }
+
     private static void checkOffsetAndLimit(long offset, int limit, int available) {
         checkOffset(offset, available);
         checkLimit(limit, available);
@@ -82,7 +82,7 @@ class MutableBlockSet implements BlockSet {
     }
 
     @Override
-    public boolean isPresent(int blockIndex) {
+    public synchronized boolean isPresent(int blockIndex) {
         if (blockIndex < 0 || blockIndex >= blockCount) {
             throw new IllegalArgumentException("Invalid block index: " + blockIndex + ". Expected 0.." + (blockCount - 1));
         }
@@ -90,12 +90,12 @@ class MutableBlockSet implements BlockSet {
     }
 
     @Override
-    public boolean isComplete() {
+    public synchronized boolean isComplete() {
         return bitmask.cardinality() == blockCount;
     }
 
     @Override
-    public boolean isEmpty() {
+    public synchronized boolean isEmpty() {
         return bitmask.isEmpty();
     }
 
@@ -110,7 +110,7 @@ class MutableBlockSet implements BlockSet {
      * represented in it (i.e. 2 trailing bytes are trimmed). In such case only the first block will be
      * considered saved (i.e. the corresponding index in the bitmask will be set to 1).
      */
-    protected void markAvailable(long offset, long length) {
+    protected synchronized void markAvailable(long offset, long length) {
         // update bitmask with the info about the new blocks;
         // if only a part of some block is written,
         // then don't count it
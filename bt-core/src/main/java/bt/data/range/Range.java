@@ -16,6 +16,9 @@
 
 package bt.data.range;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Represents a range of binary data.
  *
@@ -69,4 +72,152 @@ public interface Range<T extends Range<T>> {
      * @since 1.3
      */
     void putBytes(byte[] block);
+
+    /**
+     * Read data from the beginning of this range into the buffer.
+     * The number of bytes read is equal to the buffer's remaining space,
+     * and upon return the buffer's position is advanced by that number.
+     *
+     * @param buffer Buffer with remaining space less than or equal to {@link #length()} of this range
+     * @throws IllegalArgumentException if the buffer's remaining space exceeds the length of this range
+     *
+     * @since 1.6
+     */
+    default void getBytes(ByteBuffer buffer) {
+        if (buffer.remaining() > length()) {
+            throw new IllegalArgumentException(String.format(
+                    "Insufficient data in this range (expected max %d bytes, requested: %d)", length(), buffer.remaining()));
+        }
+        if (buffer.hasRemaining()) {
+            buffer.put(getSubrange(0, buffer.remaining()).getBytes());
+        }
+    }
+
+    /**
+     * Put data from the buffer at the beginning of this range.
+     * All remaining bytes of the buffer are written, and upon return the buffer's position is equal to its limit.
+     *
+     * @param buffer Buffer with remaining data of length less than or equal to {@link #length()} of this range
+     * @throws IllegalArgumentException if data does not fit in this range
+     *
+     * @since 1.6
+     */
+    default void putBytes(ByteBuffer buffer) {
+        byte[] block = new byte[buffer.remaining()];
+        buffer.get(block);
+        putBytes(block);
+    }
+
+    /**
+     * Read data from the beginning of this range into a sequence of buffers (scattering read).
+     * Buffers are filled in order, as if they were a single buffer, and upon return
+     * the position of each buffer is advanced by the number of bytes read into it.
+     *
+     * <p>Implementations should read each part of the data, that resides in the same storage,
+     * with a single operation, if possible. Default implementation reads each buffer separately.
+     *
+     * @param buffers Buffers with total remaining space less than or equal to {@link #length()} of this range
+     * @throws IllegalArgumentException if the total remaining space of the buffers exceeds the length of this range
+     *
+     * @since 1.6
+     */
+    default void getBytes(ByteBuffer[] buffers) {
+        long length = Ranges.remaining(buffers);
+        if (length > length()) {
+            throw new IllegalArgumentException(String.format(
+                    "Insufficient data in this range (expected max %d bytes, requested: %d)", length(), length));
+        }
+        long offset = 0;
+        for (ByteBuffer buffer : buffers) {
+            if (buffer.hasRemaining()) {
+                int remaining = buffer.remaining();
+                getSubrange(offset, remaining).getBytes(buffer);
+                offset += remaining;
+            }
+        }
+    }
+
+    /**
+     * Put data from a sequence of buffers at the beginning of this range (gathering write).
+     * Buffers are written in order, as if they were a single buffer,
+     * and upon return the position of each buffer is equal to its limit.
+     *
+     * <p>Implementations should write each part of the data, that resides in the same storage,
+     * with a single operation, if possible. Default implementation writes each buffer separately.
+     *
+     * @param buffers Buffers with total remaining data of length less than or equal to {@link #length()} of this range
+     * @throws IllegalArgumentException if data does not fit in this range
+     *
+     * @since 1.6
+     */
+    default void putBytes(ByteBuffer[] buffers) {
+        long length = Ranges.remaining(buffers);
+        if (length > length()) {
+            throw new IllegalArgumentException(String.format(
+                    "Data does not fit in this range (expected max %d bytes, actual: %d)", length(), length));
+        }
+        long offset = 0;
+        for (ByteBuffer buffer : buffers) {
+            if (buffer.hasRemaining()) {
+                int remaining = buffer.remaining();
+                getSubrange(offset, remaining).putBytes(buffer);
+                offset += remaining;
+            }
+        }
+    }
+
+    /**
+     * Asynchronously read data from the beginning of this range into the buffer.
+     * The number of bytes read is equal to the buffer's remaining space.
+     * Buffer's position is advanced by that number immediately,
+     * but its contents must not be accessed until the returned future completes.
+     *
+     * <p>Default implementation performs the read synchronously in the caller's thread.
+     *
+     * @param buffer Buffer with remaining space less than or equal to {@link #length()} of this range
+     * @return Future, that completes, when all data has been read
+     * @throws IllegalArgumentException if the buffer's remaining space exceeds the length of this range
+     *
+     * @since 1.6
+     */
+    default CompletableFuture<Void> getBytesAsync(ByteBuffer buffer) {
+        getBytes(buffer);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Asynchronously put data from the buffer at the beginning of this range.
+     * All remaining bytes of the buffer are written. Buffer's position is set to its limit immediately,
+     * but its contents must not be modified until the returned future completes.
+     *
+     * <p>Default implementation performs the write synchronously in the caller's thread.
+     *
+     * @param buffer Buffer with remaining data of length less than or equal to {@link #length()} of this range
+     * @return Future, that completes, when all data has been written
+     * @throws IllegalArgumentException if data does not fit in this range
+     *
+     * @since 1.6
+     */
+    default CompletableFuture<Void> putBytesAsync(ByteBuffer buffer) {
+        putBytes(buffer);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Asynchronously put data from a sequence of buffers at the beginning of this range (gathering write).
+     * Buffers are written in order, as if they were a single buffer. Position of each buffer is set
+     * to its limit immediately, but buffers' contents must not be modified until the returned future completes.
+     *
+     * <p>Default implementation performs the write synchronously in the caller's thread.
+     *
+     * @param buffers Buffers with total remaining data of length less than or equal to {@link #length()} of this range
+     * @return Future, that completes, when all data has been written
+     * @throws IllegalArgumentException if data does not fit in this range
+     *
+     * @since 1.6
+     */
+    default CompletableFuture<Void> putBytesAsync(ByteBuffer[] buffers) {
+        putBytes(buffers);
+        return CompletableFuture.completedFuture(null);
+    }
 }
@@ -19,6 +19,7 @@ package bt.data.range;
 import bt.data.BlockSet;
 import bt.data.DataRange;
 
+import java.nio.ByteBuffer;
 import java.util.function.Function;
 
 /**
@@ -69,4 +70,16 @@ public class Ranges {
     public static BlockSet synchronizedBlockSet(BlockSet blockSet) {
         return new SynchronizedBlockSet(blockSet);
     }
+
+    /**
+     * @return Total number of remaining bytes in the buffers
+     * @since 1.6
+     */
+    public static long remaining(ByteBuffer[] buffers) {
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        return remaining;
+    }
 }
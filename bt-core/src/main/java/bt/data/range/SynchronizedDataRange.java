@@ -19,6 +19,8 @@ package bt.data.range;
 import bt.data.DataRange;
 import bt.data.DataRangeVisitor;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 
 /**
@@ -71,6 +73,41 @@ class SynchronizedDataRange<T extends Range<T>> implements DataRange, Delegating
         delegate.putBytes(block);
     }
 
+    @Override
+    public void getBytes(ByteBuffer buffer) {
+        delegate.getBytes(buffer);
+    }
+
+    @Override
+    public void putBytes(ByteBuffer buffer) {
+        delegate.putBytes(buffer);
+    }
+
+    @Override
+    public void getBytes(ByteBuffer[] buffers) {
+        delegate.getBytes(buffers);
+    }
+
+    @Override
+    public void putBytes(ByteBuffer[] buffers) {
+        delegate.putBytes(buffers);
+    }
+
+    @Override
+    public CompletableFuture<Void> getBytesAsync(ByteBuffer buffer) {
+        return delegate.getBytesAsync(buffer);
+    }
+
+    @Override
+    public CompletableFuture<Void> putBytesAsync(ByteBuffer buffer) {
+        return delegate.putBytesAsync(buffer);
+    }
+
+    @Override
+    public CompletableFuture<Void> putBytesAsync(ByteBuffer[] buffers) {
+        return delegate.putBytesAsync(buffers);
+    }
+
     @Override
     public T getDelegate() {
         return delegate.getDelegate();
@@ -16,6 +16,8 @@
 
 package bt.data.range;
 
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -123,6 +125,91 @@ class SynchronizedRange<T extends Range<T>> implements Range<T>, DelegatingRange
         }
     }
 
+    @Override
+    public void getBytes(ByteBuffer buffer) {
+        lock.readLock().lock();
+        try {
+            delegate.getBytes(buffer);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void putBytes(ByteBuffer buffer) {
+        lock.writeLock().lock();
+        try {
+            delegate.putBytes(buffer);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void getBytes(ByteBuffer[] buffers) {
+        lock.readLock().lock();
+        try {
+            delegate.getBytes(buffers);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void putBytes(ByteBuffer[] buffers) {
+        lock.writeLock().lock();
+        try {
+            delegate.putBytes(buffers);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Only issuing of the read is synchronized; the read itself may complete after the lock has been released.
+     */
+    @Override
+    public CompletableFuture<Void> getBytesAsync(ByteBuffer buffer) {
+        lock.readLock().lock();
+        try {
+            return delegate.getBytesAsync(buffer);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Only issuing of the write is synchronized; the write itself may complete after the lock has been released.
+     */
+    @Override
+    public CompletableFuture<Void> putBytesAsync(ByteBuffer buffer) {
+        lock.writeLock().lock();
+        try {
+            return delegate.putBytesAsync(buffer);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Only issuing of the write is synchronized; the write itself may complete after the lock has been released.
+     */
+    @Override
+    public CompletableFuture<Void> putBytesAsync(ByteBuffer[] buffers) {
+        lock.writeLock().lock();
+        try {
+            return delegate.putBytesAsync(buffers);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
     /**
      * @since 1.3
      */
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package bt.data.resume;
+
+import bt.BtException;
+import bt.metainfo.TorrentId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Stores resume states in a directory on the file system, one file per torrent.
+ *
+ * <p>Each state is first written to a temporary file, which then replaces the previous one,
+ * so that a crash in the middle of saving can't leave a corrupted state behind.
+ * Each save uses its own temporary file, so concurrent saves of the same torrent's state don't interfere.
+ *
+ * @since 1.6
+ */
+public class FileResumeStateStore implements ResumeStateStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileResumeStateStore.class);
+
+    private static final int MAGIC = 0x62747273; // "btrs"
+    private static final int VERSION = 1;
+
+    private static final String FILE_SUFFIX = ".resume";
+    private static final String TEMP_FILE_SUFFIX = ".resume.tmp";
+
+    private final Path directory;
+
+    /**
+     * @param directory Directory to keep the resume files in; will be created, if it does not exist
+     * @since 1.6
+     */
+    public FileResumeStateStore(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public Optional<ResumeState> load(TorrentId torrentId) {
+        Path file = getFile(torrentId);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                LOGGER.warn("Ignoring resume file with unknown format: {}", file);
+                return Optional.empty();
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                LOGGER.warn("Ignoring resume file with unsupported version ({}): {}", version, file);
+                return Optional.empty();
+            }
+            return Optional.of(readState(in, Files.size(file)));
+        } catch (Exception e) {
+            LOGGER.warn("Failed to read resume file: " + file, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @param maxLength Size of the resume file; none of the state's parts can be longer than that,
+     *                  so any greater length means that the file is corrupted
+     */
+    private static ResumeState readState(DataInputStream in, long maxLength) throws IOException {
+        int piecesTotal = checkLength(in.readInt(), maxLength * 8, "number of pieces");
+        int bitmaskLength = in.readInt();
+        if (bitmaskLength != (piecesTotal + 7L) / 8) {
+            throw new IOException("Length of bitmask (" + bitmaskLength +
+                    ") does not match the number of pieces (" + piecesTotal + ")");
+        }
+        byte[] bitmask = new byte[bitmaskLength];
+        in.readFully(bitmask);
+
+        // each file is described by two longs
+        int fileCount = checkLength(in.readInt(), maxLength / 16, "number of files");
+        long[] fileSizes = new long[fileCount];
+        long[] fileModificationTimes = new long[fileCount];
+        for (int i = 0; i < fileCount; i++) {
+            fileSizes[i] = in.readLong();
+            fileModificationTimes[i] = in.readLong();
+        }
+
+        int partialPieceCount = checkLength(in.readInt(), piecesTotal, "number of partial pieces");
+        Map<Integer, BitSet> partialPieces = new HashMap<>();
+        for (int i = 0; i < partialPieceCount; i++) {
+            int pieceIndex = in.readInt();
+            if (pieceIndex < 0 || pieceIndex >= piecesTotal) {
+                throw new IOException("Invalid piece index: " + pieceIndex + " (pieces total: " + piecesTotal + ")");
+            }
+            byte[] blocks = new byte[checkLength(in.readInt(), maxLength, "length of blocks bitmask")];
+            in.readFully(blocks);
+            partialPieces.put(pieceIndex, BitSet.valueOf(blocks));
+        }
+
+        return new ResumeState(piecesTotal, bitmask, fileSizes, fileModificationTimes, partialPieces);
+    }
+
+    private static int checkLength(int length, long maxLength, String name) throws IOException {
+        if (length < 0 || length > maxLength) {
+            throw new IOException("Invalid " + name + ": " + length);
+        }
+        return length;
+    }
+
+    @Override
+    public void save(TorrentId torrentId, ResumeState state) {
+        Path file = getFile(torrentId);
+        Path tempFile = null;
+        try {
+            Files.createDirectories(directory);
+            tempFile = Files.createTempFile(directory, torrentId.toString(), TEMP_FILE_SUFFIX);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeState(out, state);
+            }
+            try {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new BtException("Failed to save resume state for torrent ID: " + torrentId, e);
+        } finally {
+            if (tempFile != null) {
+                // does nothing, if the file has been moved
+                deleteQuietly(tempFile);
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to delete temporary resume file: " + file, e);
+        }
+    }
+
+    private static void writeState(DataOutputStream out, ResumeState state) throws IOException {
+        out.writeInt(state.getPiecesTotal());
+        byte[] bitmask = state.getBitmask();
+        out.writeInt(bitmask.length);
+        out.write(bitmask);
+
+        out.writeInt(state.getFileCount());
+        for (int i = 0; i < state.getFileCount(); i++) {
+            out.writeLong(state.getFileSize(i));
+            out.writeLong(state.getFileModificationTime(i));
+        }
+
+        Map<Integer, BitSet> partialPieces = state.getPartialPieces();
+        out.writeInt(partialPieces.size());
+        for (Map.Entry<Integer, BitSet> partialPiece : partialPieces.entrySet()) {
+            byte[] blocks = partialPiece.getValue().toByteArray();
+            out.writeInt(partialPiece.getKey());
+            out.writeInt(blocks.length);
+            out.write(blocks);
+        }
+    }
+
+    private Path getFile(TorrentId torrentId) {
+        return directory.resolve(torrentId.toString() + FILE_SUFFIX);
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package bt.data.resume;
+
+import bt.metainfo.TorrentId;
+
+import java.util.Optional;
+
+/**
+ * Resume state store, that does not persist anything.
+ * Used, when fast resume is disabled; hence the torrent's data is fully re-checked upon each start.
+ *
+ * @since 1.6
+ */
+public class NoOpResumeStateStore implements ResumeStateStore {
+
+    @Override
+    public Optional<ResumeState> load(TorrentId torrentId) {
+        return Optional.empty();
+    }
+
+    @Override
+    public void save(TorrentId torrentId, ResumeState state) {
+        // do nothing
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package bt.data.resume;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Snapshot of a torrent's local data, that is persisted between sessions
+ * to avoid re-hashing the data, that has not been changed since the last time.
+ *
+ * <p>Contains the bitmask of verified pieces, the size and the time of last modification
+ * of each of the torrent's files, and (optionally) the sets of present blocks
+ * for the pieces, that have been partially downloaded.
+ *
+ * @since 1.6
+ */
+public final class ResumeState {
+
+    private final int piecesTotal;
+    private final byte[] bitmask;
+    private final long[] fileSizes;
+    private final long[] fileModificationTimes;
+    private final Map<Integer, BitSet> partialPieces;
+
+    /**
+     * @param piecesTotal Total number of pieces in the torrent
+     * @param bitmask Bitmask of verified pieces, in the same format as {@link bt.data.Bitfield#getBitmask()}
+     * @param fileSizes Size of each of the torrent's files, in the order of their appearance in the torrent,
+     *                  as returned by {@link bt.data.StorageUnit#size()}
+     * @param fileModificationTimes Time of last modification of each of the torrent's files,
+     *                              as returned by {@link bt.data.StorageUnit#lastModified()}
+     * @param partialPieces Sets of present blocks, mapped by piece index
+     * @since 1.6
+     */
+    public ResumeState(int piecesTotal,
+                       byte[] bitmask,
+                       long[] fileSizes,
+                       long[] fileModificationTimes,
+                       Map<Integer, BitSet> partialPieces) {
+        if (fileSizes.length != fileModificationTimes.length) {
+            throw new IllegalArgumentException("Number of file sizes (" + fileSizes.length +
+                    ") is different from the number of modification times (" + fileModificationTimes.length + ")");
+        }
+        this.piecesTotal = piecesTotal;
+        this.bitmask = bitmask;
+        this.fileSizes = fileSizes;
+        this.fileModificationTimes = fileModificationTimes;
+        this.partialPieces = Collections.unmodifiableMap(partialPieces);
+    }
+
+    /**
+     * @return Total number of pieces in the torrent
+     * @since 1.6
+     */
+    public int getPiecesTotal() {
+        return piecesTotal;
+    }
+
+    /**
+     * @return Bitmask of verified pieces
+     * @since 1.6
+     */
+    public byte[] getBitmask() {
+        return bitmask;
+    }
+
+    /**
+     * @return Number of files in the torrent
+     * @since 1.6
+     */
+    public int getFileCount() {
+        return fileSizes.length;
+    }
+
+    /**
+     * @param fileIndex Index of the file in the torrent
+     * @return Size of the file at the moment, when this state was captured
+     * @since 1.6
+     */
+    public long getFileSize(int fileIndex) {
+        return fileSizes[fileIndex];
+    }
+
+    /**
+     * @param fileIndex Index of the file in the torrent
+     * @return Time of last modification of the file at the moment, when this state was captured
+     * @since 1.6
+     */
+    public long getFileModificationTime(int fileIndex) {
+        return fileModificationTimes[fileIndex];
+    }
+
+    /**
+     * @return Sets of present blocks for partially downloaded pieces, mapped by piece index
+     * @since 1.6
+     */
+    public Map<Integer, BitSet> getPartialPieces() {
+        return partialPieces;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package bt.data.resume;
+
+import bt.metainfo.TorrentId;
+
+import java.util.Optional;
+
+/**
+ * Persistent storage of torrents' resume states.
+ *
+ * @since 1.6
+ */
+public interface ResumeStateStore {
+
+    /**
+     * Load the last saved state of a torrent's data.
+     *
+     * @param torrentId Torrent ID
+     * @return Last saved state or {@link Optional#empty()},
+     *         if the state has never been saved or can't be read
+     * @since 1.6
+     */
+    Optional<ResumeState> load(TorrentId torrentId);
+
+    /**
+     * Save the current state of a torrent's data, replacing the previously saved state (if any).
+     *
+     * @param torrentId Torrent ID
+     * @param state Current state of the torrent's data
+     * @since 1.6
+     */
+    void save(TorrentId torrentId, ResumeState state);
+}
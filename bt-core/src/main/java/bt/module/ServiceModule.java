@@ -20,8 +20,12 @@ import bt.data.ChunkVerifier;
 import bt.data.DataDescriptorFactory;
 import bt.data.DefaultChunkVerifier;
 import bt.data.IDataDescriptorFactory;
+import bt.data.resume.FileResumeStateStore;
+import bt.data.resume.NoOpResumeStateStore;
+import bt.data.resume.ResumeStateStore;
 import bt.data.digest.Digester;
 import bt.data.digest.JavaSecurityDigester;
+import bt.data.file.FileHandleCache;
 import bt.event.EventBus;
 import bt.event.EventSink;
 import bt.event.EventSource;
@@ -39,6 +43,7 @@ import bt.net.PeerConnectionFactory;
 import bt.net.PeerConnectionPool;
 import bt.net.SharedSelector;
 import bt.net.SocketChannelConnectionAcceptor;
+import bt.net.buffer.BufferPool;
 import bt.peer.IPeerRegistry;
 import bt.peer.PeerRegistry;
 import bt.peer.PeerSourceFactory;
@@ -61,7 +66,11 @@ import bt.service.VersionAwareIdentityService;
 import bt.torrent.AdhocTorrentRegistry;
 import bt.torrent.TorrentRegistry;
 import bt.torrent.data.DataWorkerFactory;
+import bt.torrent.data.DataWorkerPool;
+import bt.torrent.data.DiskScheduler;
 import bt.torrent.data.IDataWorkerFactory;
+import bt.torrent.data.ReadCache;
+import bt.torrent.data.WriteBackCache;
 import bt.tracker.ITrackerService;
 import bt.tracker.TrackerFactory;
 import bt.tracker.TrackerService;
@@ -82,8 +91,12 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 import java.net.InetSocketAddress;
 import java.nio.channels.Selector;
+import java.nio.file.Path;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -197,20 +210,96 @@ public class ServiceModule implements Module {
 
     @Provides
     @Singleton
-    public ChunkVerifier provideVerifier(Config config, Digester digester) {
-        return new DefaultChunkVerifier(digester, config.getNumOfHashingThreads());
+    public ChunkVerifier provideVerifier(Config config, Digester digester, DataWorkerPool pool) {
+        return new DefaultChunkVerifier(digester, config.getNumOfHashingThreads(),
+                config.getHashingReorderWindow(), pool.getHashingExecutor());
     }
 
     @Provides
     @Singleton
-    public IDataDescriptorFactory provideDataDescriptorFactory(Config config, ChunkVerifier verifier) {
-        return new DataDescriptorFactory(verifier, config.getTransferBlockSize());
+    public ResumeStateStore provideResumeStateStore(Config config) {
+        Path directory = config.getFastResumeDirectory();
+        return (directory == null) ? new NoOpResumeStateStore() : new FileResumeStateStore(directory);
     }
 
     @Provides
     @Singleton
-    public IDataWorkerFactory provideDataWorkerFactory(IRuntimeLifecycleBinder lifecycleBinder, ChunkVerifier verifier) {
-        return new DataWorkerFactory(lifecycleBinder, verifier, config.getMaxIOQueueSize());
+    public IDataDescriptorFactory provideDataDescriptorFactory(Config config,
+                                                               ChunkVerifier verifier,
+                                                               ResumeStateStore resumeStateStore,
+                                                               FileHandleCache handleCache,
+                                                               IRuntimeLifecycleBinder lifecycleBinder) {
+        // file-system storages, that have been created without an explicit cache of open files,
+        // share the runtime's cache
+        DataDescriptorFactory factory = new DataDescriptorFactory(verifier, resumeStateStore, handleCache,
+                config.getTransferBlockSize());
+
+        if (config.getFastResumeDirectory() != null) {
+            long interval = config.getFastResumeSaveInterval().toMillis();
+            ScheduledExecutorService executor =
+                    Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "bt.data.resume-saver"));
+            lifecycleBinder.onStartup("Schedule periodic saving of fast resume state", () -> executor.scheduleWithFixedDelay(
+                    factory::saveResumeStates, interval, interval, TimeUnit.MILLISECONDS));
+            lifecycleBinder.onShutdown("Shutdown fast resume saver", executor::shutdownNow);
+        }
+        return factory;
+    }
+
+    @Provides
+    @Singleton
+    public WriteBackCache provideWriteBackCache(Config config) {
+        return new WriteBackCache(config.getWriteBackCacheSize());
+    }
+
+    @Provides
+    @Singleton
+    public ReadCache provideReadCache(Config config) {
+        return new ReadCache(config.getReadCacheSize());
+    }
+
+    @Provides
+    @Singleton
+    public BufferPool provideBlockBufferPool(Config config) {
+        return new BufferPool(config.getTransferBlockSize(), config.getMaxPooledBlockBuffers());
+    }
+
+    @Provides
+    @Singleton
+    public DataWorkerPool provideDataWorkerPool(Config config, IRuntimeLifecycleBinder lifecycleBinder) {
+        DataWorkerPool pool = new DataWorkerPool(config.getNumOfIOThreads(), config.getNumOfHashingThreads());
+        lifecycleBinder.onShutdown("Shutdown data worker threads", pool::shutdown);
+        return pool;
+    }
+
+    @Provides
+    @Singleton
+    public DiskScheduler provideDiskScheduler(Config config, IRuntimeLifecycleBinder lifecycleBinder) {
+        DiskScheduler scheduler = new DiskScheduler(config.getDiskSchedulerWindow(),
+                config.getDiskSchedulerMaxLatency());
+        if (scheduler.isEnabled()) {
+            lifecycleBinder.onShutdown("Shutdown disk scheduler", scheduler::shutdown);
+        }
+        return scheduler;
+    }
+
+    @Provides
+    @Singleton
+    public IDataWorkerFactory provideDataWorkerFactory(ChunkVerifier verifier,
+                                                       WriteBackCache writeBackCache,
+                                                       ReadCache readCache,
+                                                       DataWorkerPool pool,
+                                                       DiskScheduler diskScheduler,
+                                                       IPeerConnectionPool connectionPool) {
+        return new DataWorkerFactory(verifier, writeBackCache, readCache, pool, diskScheduler, connectionPool,
+                config.getMaxIOQueueSize());
+    }
+
+    @Provides
+    @Singleton
+    public FileHandleCache provideFileHandleCache(Config config, IRuntimeLifecycleBinder lifecycleBinder) {
+        FileHandleCache handleCache = new FileHandleCache(config.getMaxOpenFiles());
+        lifecycleBinder.onShutdown("Close open files", handleCache::clear);
+        return handleCache;
     }
 
     @Provides
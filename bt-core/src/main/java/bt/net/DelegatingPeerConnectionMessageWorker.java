@@ -40,4 +40,19 @@ class DelegatingPeerConnectionMessageWorker implements PeerConnectionMessageWork
     public void writeMessage(Message message) throws IOException {
         writer.writeMessage(message);
     }
+
+    @Override
+    public boolean flush() throws IOException {
+        return writer.flush();
+    }
+
+    @Override
+    public long getQueuedBytes() {
+        return writer.getQueuedBytes();
+    }
+
+    @Override
+    public boolean supportsBlockTransfer() {
+        return writer.supportsBlockTransfer();
+    }
 }
@@ -45,4 +45,18 @@ public interface IMessageDispatcher {
      * @since 1.0
      */
     void addMessageSupplier(Peer recipient, Supplier<Message> messageSupplier);
+
+    /**
+     * Notify the dispatcher, that there might be new messages to send to a remote peer
+     * (e.g. because some asynchronous operation has completed), so that the peer's message suppliers
+     * are visited without delay.
+     *
+     * <p>Default implementation does nothing, i.e. it's assumed that the suppliers are visited regularly.
+     *
+     * @param recipient Remote peer
+     * @since 1.6
+     */
+    default void notifyReady(Peer recipient) {
+        // do nothing
+    }
 }
@@ -17,6 +17,8 @@
 package bt.net;
 
 import bt.metainfo.TorrentId;
+import bt.net.buffer.BufferPool;
+import bt.net.buffer.PooledBuffer;
 import bt.protocol.DecodingContext;
 import bt.protocol.Handshake;
 import bt.protocol.Message;
@@ -59,21 +61,49 @@ class MSEHandshakeProcessor {
     private final TorrentRegistry torrentRegistry;
     private final MessageHandler<Message> messageHandler;
     private final EncryptionPolicy localEncryptionPolicy;
-    private final int bufferSize;
+    private final BufferPool bufferPool;
 
     MSEHandshakeProcessor(TorrentRegistry torrentRegistry,
                           MessageHandler<Message> messageHandler,
                           EncryptionPolicy localEncryptionPolicy,
                           int bufferSize,
                           int privateKeySize) {
+        this(torrentRegistry, messageHandler, localEncryptionPolicy, new BufferPool(bufferSize, 0), privateKeySize);
+    }
+
+    /**
+     * @param bufferPool Pool of network buffers, that are used during the handshake
+     *                   and by the message readers and writers of the established connections
+     * @since 1.6
+     */
+    MSEHandshakeProcessor(TorrentRegistry torrentRegistry,
+                          MessageHandler<Message> messageHandler,
+                          EncryptionPolicy localEncryptionPolicy,
+                          BufferPool bufferPool,
+                          int privateKeySize) {
         this.keyGenerator = new MSEKeyPairGenerator(privateKeySize);
         this.torrentRegistry = torrentRegistry;
         this.messageHandler = messageHandler;
         this.localEncryptionPolicy = localEncryptionPolicy;
-        this.bufferSize = bufferSize;
+        this.bufferPool = bufferPool;
     }
 
     PeerConnectionMessageWorker negotiateOutgoing(Peer peer, ByteChannel channel, TorrentId torrentId) throws IOException {
+        PooledBuffer in = bufferPool.acquire(bufferPool.getBufferSize());
+        PooledBuffer out = bufferPool.acquire(bufferPool.getBufferSize());
+        try {
+            return negotiateOutgoing(peer, channel, torrentId, in.getData(), out.getData());
+        } finally {
+            in.release();
+            out.release();
+        }
+    }
+
+    private PeerConnectionMessageWorker negotiateOutgoing(Peer peer,
+                                                          ByteChannel channel,
+                                                          TorrentId torrentId,
+                                                          ByteBuffer in,
+                                                          ByteBuffer out) throws IOException {
         if (LOGGER.isTraceEnabled()) {
             LOGGER.trace("Negotiating encryption for outgoing connection: {}", peer);
         }
@@ -95,8 +125,6 @@ class MSEHandshakeProcessor {
 
         // check if the encryption negotiation can be skipped or preemptively aborted
 
-        ByteBuffer in = ByteBuffer.allocateDirect(bufferSize);
-        ByteBuffer out = ByteBuffer.allocateDirect(bufferSize);
 
         ByteChannelReader reader = reader(channel);
 
@@ -230,11 +258,11 @@ class MSEHandshakeProcessor {
         switch (negotiatedEncryptionPolicy) {
             case REQUIRE_PLAINTEXT:
             case PREFER_PLAINTEXT: {
-                return createReaderWriter(peer, channel, in, out);
+                return createReaderWriter(peer, channel, in);
             }
             case PREFER_ENCRYPTED:
             case REQUIRE_ENCRYPTED: {
-                return createReaderWriter(peer, encryptedChannel, in, out);
+                return createReaderWriter(peer, encryptedChannel, in);
             }
             default: {
                 throw new IllegalStateException("Unknown encryption policy: " + negotiatedEncryptionPolicy.name());
@@ -243,6 +271,20 @@ class MSEHandshakeProcessor {
     }
 
     PeerConnectionMessageWorker negotiateIncoming(Peer peer, ByteChannel channel) throws IOException {
+        PooledBuffer in = bufferPool.acquire(bufferPool.getBufferSize());
+        PooledBuffer out = bufferPool.acquire(bufferPool.getBufferSize());
+        try {
+            return negotiateIncoming(peer, channel, in.getData(), out.getData());
+        } finally {
+            in.release();
+            out.release();
+        }
+    }
+
+    private PeerConnectionMessageWorker negotiateIncoming(Peer peer,
+                                                          ByteChannel channel,
+                                                          ByteBuffer in,
+                                                          ByteBuffer out) throws IOException {
         if (LOGGER.isTraceEnabled()) {
             LOGGER.trace("Negotiating encryption for incoming connection: {}", peer);
         }
@@ -262,8 +304,6 @@ class MSEHandshakeProcessor {
          * 5. A->B: ENCRYPT2(Payload Stream)
          */
 
-        ByteBuffer in = ByteBuffer.allocateDirect(bufferSize);
-        ByteBuffer out = ByteBuffer.allocateDirect(bufferSize);
         ByteChannelReader reader = reader(channel);
 
         // 1. A->B: Diffie Hellman Ya, PadA
@@ -285,7 +325,7 @@ class MSEHandshakeProcessor {
         if (consumed > 0 && context.getMessage() instanceof Handshake) {
             // decoding was successful, can use plaintext (if supported)
             assertPolicyIsCompatible(EncryptionPolicy.REQUIRE_PLAINTEXT);
-            return createReaderWriter(peer, channel, in, out);
+            return createReaderWriter(peer, channel, in);
         }
 
         int phase1Min = keyGenerator.getPublicKeySize();
@@ -425,11 +465,11 @@ class MSEHandshakeProcessor {
         switch (negotiatedEncryptionPolicy) {
             case REQUIRE_PLAINTEXT:
             case PREFER_PLAINTEXT: {
-                return createReaderWriter(peer, channel, in, out);
+                return createReaderWriter(peer, channel, in);
             }
             case PREFER_ENCRYPTED:
             case REQUIRE_ENCRYPTED: {
-                return createReaderWriter(peer, encryptedChannel, in, out);
+                return createReaderWriter(peer, encryptedChannel, in);
             }
             default: {
                 throw new IllegalStateException("Unknown encryption policy: " + negotiatedEncryptionPolicy.name());
@@ -448,9 +488,13 @@ class MSEHandshakeProcessor {
         }
     }
 
-    private PeerConnectionMessageWorker createReaderWriter(Peer peer, ByteChannel channel, ByteBuffer in, ByteBuffer out) {
-        MessageReader reader = new MessageReader(peer, channel, messageHandler, in);
-        MessageWriter writer = new MessageWriter(channel, peer, messageHandler, out);
+    private PeerConnectionMessageWorker createReaderWriter(Peer peer, ByteChannel channel, ByteBuffer in) {
+        // handshake buffers are returned to the pool, so copy the data, that has already been received
+        in.flip();
+        ByteBuffer received = ByteBuffer.allocate(in.remaining());
+        received.put(in);
+        MessageReader reader = new MessageReader(peer, channel, messageHandler, received, bufferPool);
+        MessageWriter writer = new MessageWriter(channel, peer, messageHandler, bufferPool);
         return new DelegatingPeerConnectionMessageWorker(reader, writer);
     }
 
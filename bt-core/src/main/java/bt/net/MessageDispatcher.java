@@ -32,6 +32,7 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.util.Collection;
 import java.util.Iterator;
@@ -39,6 +40,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -48,7 +50,29 @@ import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 /**
- * Default single-threaded message dispatcher implementation.
+ * Default message dispatcher implementation.
+ *
+ * <p>Messages are received and decoded by one or more threads (see {@link Config#getNumOfNetworkThreads()}).
+ * Each of these threads has its own selector and serves a part of the connections, that is determined
+ * by the hash code of the remote peer.
+ *
+ * <p>Received messages are dispatched to consumers, and outgoing messages are collected from suppliers,
+ * by one or more dispatching threads (see {@link Config#getNumOfDispatchingThreads()}).
+ * Each torrent is pinned to one of these threads, so the messages of a particular peer are processed in order,
+ * and the messaging agents of a torrent are never invoked concurrently. A peer is assigned to its torrent's thread,
+ * when it's first dispatched to after the connection has been established, and stays there, until it disconnects.
+ *
+ * <p>A dispatching thread does not poll the message suppliers of all peers on each iteration.
+ * Instead, it keeps a queue of peers, that might have something to send: a peer is added to the queue,
+ * when a message has been received from it or when its suppliers have signaled readiness
+ * (see {@link #notifyReady(Peer)}). When there is nothing to do, the thread waits for a signal.
+ * Suppliers of all peers are still visited periodically (see {@link Config#getMaxMessageProcessingInterval()}),
+ * because some of the messages are produced on timer.
+ *
+ * <p>Sending a message never blocks the dispatching thread: the data, that the peer's socket does not accept
+ * right away, is queued in the connection and sent by the receiving thread, when the socket becomes writable.
+ * Suppliers of a peer, whose queue has reached the high-water mark (see {@link Config#getSendQueueHighWaterMark()}),
+ * are not visited, until the queue has been drained.
  *
  *<p><b>Note that this class implements a service.
  * Hence, is not a part of the public API and is a subject to change.</b></p>
@@ -61,6 +85,10 @@ public class MessageDispatcher implements IMessageDispatcher {
     private final Map<Peer, Collection<Supplier<Message>>> suppliers;
 
     private TorrentRegistry torrentRegistry;
+    private final IPeerConnectionPool pool;
+
+    private final MessageDispatchingLoop[] dispatchingLoops;
+    private final Map<Peer, MessageDispatchingLoop> peerLoops;
 
     @Inject
     public MessageDispatcher(IRuntimeLifecycleBinder lifecycleBinder,
@@ -73,19 +101,58 @@ public class MessageDispatcher implements IMessageDispatcher {
         this.consumers = new ConcurrentHashMap<>();
         this.suppliers = new ConcurrentHashMap<>();
         this.torrentRegistry = torrentRegistry;
+        this.pool = pool;
+
+        int numOfDispatchers = config.getNumOfDispatchingThreads();
+        if (numOfDispatchers <= 0) {
+            throw new IllegalArgumentException("Invalid number of dispatching threads: " + numOfDispatchers);
+        }
+        this.dispatchingLoops = new MessageDispatchingLoop[numOfDispatchers];
+        this.peerLoops = new ConcurrentHashMap<>();
+        eventSource.onPeerDisconnected(e -> peerLoops.remove(e.getPeer()));
+        for (int i = 0; i < numOfDispatchers; i++) {
+            String threadName = (numOfDispatchers == 1) ?
+                    "bt.net.message-dispatcher" : "bt.net.message-dispatcher-" + (i + 1);
+            dispatchingLoops[i] = initializeMessageLoop(lifecycleBinder, pool, config, threadName);
+        }
 
-        Queue<PeerMessage> messages = new LinkedBlockingQueue<>(); // shared message queue
-        initializeMessageLoop(lifecycleBinder, pool, messages, config);
-        initializeMessageReceiver(eventSource, pool, selector, torrentRegistry, lifecycleBinder, messages);
+        int numOfReceivers = config.getNumOfNetworkThreads();
+        if (numOfReceivers <= 0) {
+            throw new IllegalArgumentException("Invalid number of network threads: " + numOfReceivers);
+        }
+        for (int i = 0; i < numOfReceivers; i++) {
+            // the first receiver uses the shared selector, others get their own
+            SharedSelector receiverSelector = (i == 0) ? selector : openSelector(lifecycleBinder);
+            String threadName = (numOfReceivers == 1) ? "bt.net.message-receiver" : "bt.net.message-receiver-" + (i + 1);
+            initializeMessageReceiver(eventSource, pool, receiverSelector, torrentRegistry, lifecycleBinder,
+                    i, numOfReceivers, threadName);
+        }
     }
 
-    private void initializeMessageLoop(IRuntimeLifecycleBinder lifecycleBinder,
-                                       IPeerConnectionPool pool,
-                                       Queue<PeerMessage> messages,
-                                       Config config) {
-        ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "bt.net.message-dispatcher"));
-        LoopControl loopControl = new LoopControl(config.getMaxMessageProcessingInterval().toMillis());
-        MessageDispatchingLoop loop = new MessageDispatchingLoop(pool, loopControl, messages::poll);
+    private static SharedSelector openSelector(IRuntimeLifecycleBinder lifecycleBinder) {
+        SharedSelector selector;
+        try {
+            selector = new SharedSelector(Selector.open());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to get I/O selector", e);
+        }
+        lifecycleBinder.onShutdown("Shutdown message receiver selector", () -> {
+            try {
+                selector.close();
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to close selector", e);
+            }
+        });
+        return selector;
+    }
+
+    private MessageDispatchingLoop initializeMessageLoop(IRuntimeLifecycleBinder lifecycleBinder,
+                                                        IPeerConnectionPool pool,
+                                                        Config config,
+                                                        String threadName) {
+        ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, threadName));
+        long sweepInterval = config.getMaxMessageProcessingInterval().toMillis();
+        MessageDispatchingLoop loop = new MessageDispatchingLoop(pool, sweepInterval);
         lifecycleBinder.onStartup("Initialize message dispatcher", () -> executor.execute(loop));
         lifecycleBinder.onShutdown("Shutdown message dispatcher", () -> {
             try {
@@ -94,6 +161,29 @@ public class MessageDispatcher implements IMessageDispatcher {
                 executor.shutdownNow();
             }
         });
+        return loop;
+    }
+
+    /**
+     * @return Dispatching loop, that the peer has been assigned to
+     */
+    private MessageDispatchingLoop getDispatchingLoop(Peer peer) {
+        if (dispatchingLoops.length == 1) {
+            return dispatchingLoops[0];
+        }
+        MessageDispatchingLoop loop = peerLoops.get(peer);
+        if (loop != null) {
+            return loop;
+        }
+        PeerConnection connection = pool.getConnection(peer);
+        TorrentId torrentId = (connection == null) ? null : connection.getTorrentId();
+        if (torrentId == null) {
+            // peer is not connected yet, so there's nothing to dispatch, and it does not matter, where it goes
+            return dispatchingLoops[0];
+        }
+        // handshake has been completed, so the peer's torrent won't change until it disconnects
+        return peerLoops.computeIfAbsent(peer,
+                p -> dispatchingLoops[Math.floorMod(torrentId.hashCode(), dispatchingLoops.length)]);
     }
 
     private void initializeMessageReceiver(EventSource eventSource,
@@ -101,11 +191,14 @@ public class MessageDispatcher implements IMessageDispatcher {
                                            SharedSelector selector,
                                            TorrentRegistry torrentRegistry,
                                            IRuntimeLifecycleBinder lifecycleBinder,
-                                           Queue<PeerMessage> messages) {
-        ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "bt.net.message-receiver"));
-        BiConsumer<Peer, Message> messageSink = (peer, message) ->
-                messages.add(new PeerMessage(Objects.requireNonNull(peer), Objects.requireNonNull(message)));
-        MessageReceivingLoop loop = new MessageReceivingLoop(eventSource, pool, selector, messageSink, torrentRegistry);
+                                           int receiverIndex,
+                                           int numOfReceivers,
+                                           String threadName) {
+        ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, threadName));
+        BiConsumer<Peer, Message> messageSink = (peer, message) -> getDispatchingLoop(Objects.requireNonNull(peer))
+                .addMessage(new PeerMessage(peer, Objects.requireNonNull(message)));
+        MessageReceivingLoop loop = new MessageReceivingLoop(eventSource, pool, selector, messageSink, torrentRegistry,
+                receiverIndex, numOfReceivers);
         lifecycleBinder.onStartup("Initialize message receiver", () -> executor.execute(loop));
         lifecycleBinder.onShutdown("Shutdown message receiver", () -> {
             try {
@@ -143,6 +236,8 @@ public class MessageDispatcher implements IMessageDispatcher {
         private final SharedSelector selector;
         private final BiConsumer<Peer, Message> messageSink;
         private final TorrentRegistry torrentRegistry;
+        private final int receiverIndex;
+        private final int numOfReceivers;
 
         private volatile boolean shutdown;
 
@@ -150,15 +245,29 @@ public class MessageDispatcher implements IMessageDispatcher {
                              IPeerConnectionPool pool,
                              SharedSelector selector,
                              BiConsumer<Peer, Message> messageSink,
-                             TorrentRegistry torrentRegistry) {
+                             TorrentRegistry torrentRegistry,
+                             int receiverIndex,
+                             int numOfReceivers) {
             this.eventSource = eventSource;
             this.pool = pool;
             this.selector = selector;
             this.messageSink = messageSink;
             this.torrentRegistry = torrentRegistry;
+            this.receiverIndex = receiverIndex;
+            this.numOfReceivers = numOfReceivers;
+        }
+
+        /**
+         * @return true, if connection with this peer is served by this receiver
+         */
+        private boolean isServing(Peer peer) {
+            return numOfReceivers == 1 || Math.floorMod(peer.hashCode(), numOfReceivers) == receiverIndex;
         }
 
         private synchronized void onPeerConnected(Peer peer) {
+            if (!isServing(peer)) {
+                return;
+            }
             PeerConnection connection = pool.getConnection(peer);
             if (connection != null) {
                 try {
@@ -186,9 +295,22 @@ public class MessageDispatcher implements IMessageDispatcher {
                 // TODO: move this to the main loop instead?
                 int interestOps = getInterestOps(connection.getTorrentId());
                 selector.wakeupAndRegister(channel, interestOps, connection);
+                // from now on, outgoing data, that the socket does not accept right away, is sent by this receiver
+                ((SocketPeerConnection) connection).setWriteInterestListener(() -> requestWrite(channel));
             }
         }
 
+        private void requestWrite(SocketChannel channel) {
+            selector.keyFor(channel).ifPresent(key -> {
+                synchronized (key) {
+                    if (key.isValid()) {
+                        key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    }
+                }
+                selector.wakeup();
+            });
+        }
+
         private int getInterestOps(TorrentId torrentId) {
             Optional<TorrentDescriptor> descriptor = torrentRegistry.getDescriptor(torrentId);
             boolean active = descriptor.isPresent() && descriptor.get().isActive();
@@ -198,6 +320,9 @@ public class MessageDispatcher implements IMessageDispatcher {
         private synchronized void onTorrentStarted(TorrentId torrentId) {
             pool.visitConnections(torrentId, connection -> {
                 Peer peer = connection.getRemotePeer();
+                if (!isServing(peer)) {
+                    return;
+                }
                 try {
                     if (LOGGER.isTraceEnabled()) {
                         LOGGER.trace("Activating connection for peer: {}", peer);
@@ -212,6 +337,9 @@ public class MessageDispatcher implements IMessageDispatcher {
         private synchronized void onTorrentStopped(TorrentId torrentId) {
             pool.visitConnections(torrentId, connection -> {
                 Peer peer = connection.getRemotePeer();
+                if (!isServing(peer)) {
+                    return;
+                }
                 try {
                     if (LOGGER.isTraceEnabled()) {
                         LOGGER.trace("De-activating connection for peer: {}", peer);
@@ -230,7 +358,8 @@ public class MessageDispatcher implements IMessageDispatcher {
                     // synchronizing on the selection key,
                     // as we will be using it in a separate, message receiving thread
                     synchronized (key) {
-                        key.interestOps(interestOps);
+                        // keep sending the queued data regardless of the torrent's state
+                        key.interestOps((key.interestOps() & SelectionKey.OP_WRITE) | interestOps);
                     }
                 });
             }
@@ -252,7 +381,7 @@ public class MessageDispatcher implements IMessageDispatcher {
                     // wakeup periodically to check if there are unprocessed keys left
                     long t1 = System.nanoTime();
                     long timeToBlockMillis = 1000;
-                    while (selector.select(timeToBlockMillis) == 0) {
+                    while (!shutdown && selector.select(timeToBlockMillis) == 0) {
                         Thread.yield();
                         long t2 = System.nanoTime();
                         // check that the selection timeout period is expired, before dealing with unprocessed keys;
@@ -295,6 +424,7 @@ public class MessageDispatcher implements IMessageDispatcher {
         private boolean processKey(final SelectionKey key) {
             PeerConnection connection;
             Peer peer;
+            boolean readable, writable;
 
             // synchronizing on the selection key,
             // as we will be updating it in a separate, event-listening thread
@@ -307,10 +437,12 @@ public class MessageDispatcher implements IMessageDispatcher {
 
                 connection = (PeerConnection) obj;
                 peer = connection.getRemotePeer();
-                if (!key.isValid() || !key.isReadable()) {
-                    LOGGER.warn("Selected connection for peer {}, but the key is cancelled or read op is not indicated. Skipping..", peer);
+                if (!key.isValid() || !(key.isReadable() || key.isWritable())) {
+                    LOGGER.warn("Selected connection for peer {}, but the key is cancelled or neither read nor write op is indicated. Skipping..", peer);
                     return false;
                 }
+                readable = key.isReadable();
+                writable = key.isWritable();
             }
 
             if (connection.isClosed()) {
@@ -318,6 +450,15 @@ public class MessageDispatcher implements IMessageDispatcher {
                 throw new RuntimeException("Connection closed");
             }
 
+            if (writable && connection instanceof SocketPeerConnection) {
+                if (!processWrite(key, (SocketPeerConnection) connection, peer)) {
+                    return true;
+                }
+            }
+            if (!readable) {
+                return true;
+            }
+
             TorrentId torrentId = connection.getTorrentId();
             if (torrentId == null) {
                 LOGGER.warn("Selected connection for peer {}, but the connection does not indicate a torrent ID. Skipping..", peer);
@@ -360,6 +501,33 @@ public class MessageDispatcher implements IMessageDispatcher {
             return true;
         }
 
+        /**
+         * @return false, if the connection has been closed due to an error
+         */
+        private boolean processWrite(SelectionKey key, SocketPeerConnection connection, Peer peer) {
+            // will be requested again, if the queued data is not sent fully
+            synchronized (key) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            }
+            boolean wasWritable = connection.isWritable();
+            try {
+                boolean flushed = connection.flush();
+                if (flushed || (!wasWritable && connection.isWritable())) {
+                    // message suppliers of this peer might have been waiting for the queue to drain
+                    notifyReady(peer);
+                }
+                return true;
+            } catch (Exception e) {
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("I/O error when writing message to peer: {}. Reason: {} ({})",
+                            peer, e.getClass().getName(), e.getMessage());
+                }
+                connection.closeQuietly();
+                key.cancel();
+                return false;
+            }
+        }
+
         public void shutdown() {
             shutdown = true;
         }
@@ -368,24 +536,53 @@ public class MessageDispatcher implements IMessageDispatcher {
     private class MessageDispatchingLoop implements Runnable {
 
         private final IPeerConnectionPool pool;
-        private final LoopControl loopControl;
-        private final Supplier<PeerMessage> messageSource;
+        private final long sweepInterval;
+        private final Queue<PeerMessage> messages;
+
+        /**
+         * Peers, whose message suppliers should be visited;
+         * each peer is added to the queue only once, until it's visited
+         */
+        private final Queue<Peer> readyPeers;
+        private final Set<Peer> readyPeersSet;
+        private final WorkSignal workSignal;
 
         private volatile boolean shutdown;
 
-        MessageDispatchingLoop(IPeerConnectionPool pool, LoopControl loopControl, Supplier<PeerMessage> messageSource) {
+        MessageDispatchingLoop(IPeerConnectionPool pool, long sweepInterval) {
             this.pool = pool;
-            this.loopControl = loopControl;
-            this.messageSource = messageSource;
+            this.sweepInterval = sweepInterval;
+            this.messages = new LinkedBlockingQueue<>();
+            this.readyPeers = new LinkedBlockingQueue<>();
+            this.readyPeersSet = ConcurrentHashMap.newKeySet();
+            this.workSignal = new WorkSignal();
+        }
+
+        void addMessage(PeerMessage message) {
+            messages.add(message);
+            workSignal.signal();
+        }
+
+        void notifyReady(Peer peer) {
+            markReady(peer);
+            workSignal.signal();
+        }
+
+        private void markReady(Peer peer) {
+            if (readyPeersSet.add(peer)) {
+                readyPeers.add(peer);
+            }
         }
 
         @Override
         public void run() {
+            long nextSweep = 0;
             while (!shutdown) {
                 // TODO: restrict max amount of incoming messages per iteration
+                int received = 0;
                 PeerMessage envelope;
-                while ((envelope = messageSource.get()) != null) {
-                    loopControl.incrementProcessed();
+                while ((envelope = messages.poll()) != null) {
+                    received++;
 
                     Peer peer = envelope.getPeer();
                     Message message = envelope.getMessage();
@@ -399,6 +596,8 @@ public class MessageDispatcher implements IMessageDispatcher {
                                 LOGGER.error("Unexpected exception when processing message " + message + " for peer " + peer, e);
                             }
                         }
+                        // consumers might have prepared a response
+                        markReady(peer);
                     } else {
                         if (LOGGER.isDebugEnabled()) {
                             LOGGER.debug("Discarding message {} for peer {}, because no consumers were registered", message, peer);
@@ -406,87 +605,119 @@ public class MessageDispatcher implements IMessageDispatcher {
                     }
                 }
 
-                if (!suppliers.isEmpty()) {
-                    for (Map.Entry<Peer, Collection<Supplier<Message>>> entry : suppliers.entrySet()) {
-                        Peer peer = entry.getKey();
-                        Collection<Supplier<Message>> suppliers = entry.getValue();
-
-                        PeerConnection connection = pool.getConnection(peer);
-                        if (connection != null && !connection.isClosed()) {
-                            if (isSupportedAndActive(connection.getTorrentId())) {
-                                for (Supplier<Message> messageSupplier : suppliers) {
-                                    Message message = null;
-                                    try {
-                                        message = messageSupplier.get();
-                                    } catch (Exception e) {
-                                        LOGGER.warn("Error in message supplier", e);
-                                    }
-
-                                    if (message != null) {
-                                        loopControl.incrementProcessed();
-                                        try {
-                                            connection.postMessage(message);
-                                        } catch (Exception e) {
-                                            LOGGER.error("Error when writing message", e);
-                                        }
-                                    }
-                                }
-                            }
+                long now = System.currentTimeMillis();
+                if (now >= nextSweep) {
+                    suppliers.keySet().forEach(peer -> {
+                        if (getDispatchingLoop(peer) == this) {
+                            markReady(peer);
                         }
+                    });
+                    nextSweep = now + sweepInterval;
+                }
+
+                // peers, that become ready in the meantime, will be visited in the next iteration,
+                // after the messages, that have been received in the meantime, are processed
+                int count = readyPeers.size();
+                for (int i = 0; i < count; i++) {
+                    Peer peer = readyPeers.poll();
+                    if (peer == null) {
+                        break;
+                    }
+                    readyPeersSet.remove(peer);
+                    if (visitSuppliers(peer)) {
+                        // there might be more messages to send
+                        markReady(peer);
                     }
                 }
 
-                loopControl.iterationFinished();
+                if (received == 0 && readyPeers.isEmpty()) {
+                    long timeToWait = nextSweep - System.currentTimeMillis();
+                    if (timeToWait > 0) {
+                        try {
+                            workSignal.await(timeToWait);
+                        } catch (InterruptedException e) {
+                            LOGGER.info("Message dispatcher has been interrupted, stopping...");
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return true, if at least one message has been sent to the peer
+         */
+        private boolean visitSuppliers(Peer peer) {
+            Collection<Supplier<Message>> peerSuppliers = suppliers.get(peer);
+            if (peerSuppliers == null) {
+                return false;
+            }
+
+            PeerConnection connection = pool.getConnection(peer);
+            if (connection == null || connection.isClosed() || !isSupportedAndActive(connection.getTorrentId())) {
+                return false;
+            } else if (!connection.isWritable()) {
+                // peer does not keep up with us; it will be marked as ready, when the queued data has been sent
+                return false;
+            }
+
+            boolean sent = false;
+            for (Supplier<Message> messageSupplier : peerSuppliers) {
+                Message message = null;
+                try {
+                    message = messageSupplier.get();
+                } catch (Exception e) {
+                    LOGGER.warn("Error in message supplier", e);
+                }
+
+                if (message != null) {
+                    sent = true;
+                    try {
+                        connection.postMessage(message);
+                    } catch (Exception e) {
+                        LOGGER.error("Error when writing message", e);
+                    }
+                    if (!connection.isWritable()) {
+                        break;
+                    }
+                }
             }
+            return sent;
         }
 
         public void shutdown() {
             shutdown = true;
+            workSignal.signal();
         }
     }
 
     /**
-     * Controls the amount of time to sleep after each iteration of the main message processing loop.
-     * It implements an adaptive strategy and increases the amount of time for the dispatcher to sleep
-     * after each iteration during which no messages were either received or sent.
-     * This strategy greatly reduces CPU load when there is little network activity.
+     * Wakes up the message dispatching loop, when there is something to do.
      */
-    private static class LoopControl {
+    private static class WorkSignal {
 
-        private long maxTimeToSleep;
-        private int messagesProcessed;
-        private long timeToSleep;
+        private volatile boolean signaled;
 
-        LoopControl(long maxTimeToSleep) {
-            this.maxTimeToSleep = maxTimeToSleep;
-            reset();
-        }
-
-        private void reset() {
-            messagesProcessed = 0;
-            timeToSleep = 1;
-        }
-
-        void incrementProcessed() {
-            messagesProcessed++;
-        }
-
-        synchronized void iterationFinished() {
-            if (messagesProcessed > 0) {
-                reset();
-            } else {
-                try {
-                    wait(timeToSleep);
-                } catch (InterruptedException e) {
-                    throw new RuntimeException("Unexpectedly interrupted", e);
+        void signal() {
+            if (!signaled) {
+                synchronized (this) {
+                    signaled = true;
+                    notify();
                 }
+            }
+        }
 
-                if (timeToSleep < maxTimeToSleep) {
-                    timeToSleep = Math.min(timeToSleep << 1, maxTimeToSleep);
-                } else {
-                    timeToSleep = maxTimeToSleep;
-                }
+        /**
+         * Wait until signaled or until the timeout expires, then reset the signal.
+         */
+        synchronized void await(long timeoutMillis) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            long remaining = timeoutMillis;
+            while (!signaled && remaining > 0) {
+                wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
             }
+            signaled = false;
         }
     }
 
@@ -507,6 +738,11 @@ public class MessageDispatcher implements IMessageDispatcher {
         peerConsumers.add(messageConsumer);
     }
 
+    @Override
+    public void notifyReady(Peer recipient) {
+        getDispatchingLoop(recipient).notifyReady(recipient);
+    }
+
     @Override
     public synchronized void addMessageSupplier(Peer recipient, Supplier<Message> messageSupplier) {
         Collection<Supplier<Message>> peerSuppliers = suppliers.get(recipient);
@@ -515,5 +751,6 @@ public class MessageDispatcher implements IMessageDispatcher {
             suppliers.put(recipient, peerSuppliers);
         }
         peerSuppliers.add(messageSupplier);
+        notifyReady(recipient);
     }
 }
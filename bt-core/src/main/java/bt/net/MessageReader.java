@@ -17,6 +17,8 @@
 package bt.net;
 
 import bt.BtException;
+import bt.net.buffer.BufferPool;
+import bt.net.buffer.PooledBuffer;
 import bt.protocol.DecodingContext;
 import bt.protocol.Message;
 import bt.protocol.handler.MessageHandler;
@@ -30,6 +32,12 @@ import java.util.Objects;
 /**
  * Reads and decodes peer messages from a byte channel.
  *
+ * <p>If the reader has been created with a buffer pool, it does not own a buffer permanently:
+ * a buffer is acquired from the pool, when data is about to be read from the channel,
+ * and returned to the pool, as soon as all received data has been decoded.
+ * Hence, an idle connection does not hold a buffer at all, and a buffer is retained only
+ * while a partially received message (e.g. a block of data) is waiting for the rest of its data.
+ *
  * Note that this class is not a part of the public API and is subject to change.
  *
  * @since 1.2
@@ -42,8 +50,10 @@ class MessageReader {
     private final Peer peer;
     private DecodingContext context;
 
-    private final ByteBuffer buffer;
-    private final ByteBuffer readOnlyBuffer;
+    private final BufferPool bufferPool;
+    private PooledBuffer pooledBuffer;
+    private ByteBuffer buffer;
+    private ByteBuffer readOnlyBuffer;
 
     private int dataOffset;
 
@@ -79,34 +89,91 @@ class MessageReader {
                          ReadableByteChannel channel,
                          MessageHandler<Message> messageHandler,
                          ByteBuffer buffer) {
+        this(peer, channel, messageHandler, buffer, null);
+    }
+
+    /**
+     * Create a message reader, that acquires buffers from the provided pool on demand.
+     * Data that is between position 0 and current position of the initial buffer will be decoded first.
+     * The initial buffer is used only until all of its data has been decoded.
+     *
+     * @param peer Remote peer
+     * @param channel Readable byte channel
+     * @param messageHandler Message decoder
+     * @param initialBuffer Buffer with the data, that has already been received
+     * @param bufferPool Pool of buffers, that are large enough to store any single message
+     * @since 1.6
+     */
+    public MessageReader(Peer peer,
+                         ReadableByteChannel channel,
+                         MessageHandler<Message> messageHandler,
+                         ByteBuffer initialBuffer,
+                         BufferPool bufferPool) {
         this.peer = peer;
         this.channel = channel;
         this.messageHandler = messageHandler;
         this.context = createDecodingContext(peer);
-        this.buffer = buffer;
-        this.readOnlyBuffer = buffer.asReadOnlyBuffer();
+        this.bufferPool = bufferPool;
+        this.buffer = initialBuffer;
+        this.readOnlyBuffer = initialBuffer.asReadOnlyBuffer();
         this.dataOffset = 0;
     }
 
     public Message readMessage() throws IOException {
-        Message message = readMessageFromBuffer();
-        if (message == null) {
-            if (!buffer.hasRemaining()) {
-                compactBuffer(buffer, dataOffset);
-                dataOffset = 0;
-            }
-            int read = readToBuffer(channel, buffer);;
-            if (read == -1) {
-                throw new EOFException("EOF");
-            } else if (read > 0) {
-                message = readMessageFromBuffer();
-                if (message == null && !buffer.hasRemaining()) {
-                    compactBuffer(buffer, dataOffset);
-                    dataOffset = 0;
+        try {
+            Message message = readMessageFromBuffer();
+            if (message == null) {
+                prepareBuffer();
+                int read = readToBuffer(channel, buffer);
+                if (read == -1) {
+                    throw new EOFException("EOF");
+                } else if (read > 0) {
+                    message = readMessageFromBuffer();
+                    if (message == null && !buffer.hasRemaining()) {
+                        compactBuffer(buffer, dataOffset);
+                        dataOffset = 0;
+                    }
                 }
             }
+            return message;
+        } finally {
+            releaseBufferIfEmpty();
+        }
+    }
+
+    private void prepareBuffer() {
+        if (buffer == null) {
+            acquireBuffer();
+        } else if (!buffer.hasRemaining()) {
+            compactBuffer(buffer, dataOffset);
+            dataOffset = 0;
+            if (!buffer.hasRemaining() && pooledBuffer == null && bufferPool != null) {
+                // initial buffer is full, move its data to a pooled buffer
+                ByteBuffer data = buffer;
+                data.flip();
+                acquireBuffer();
+                buffer.put(data);
+            }
+        }
+    }
+
+    private void acquireBuffer() {
+        pooledBuffer = bufferPool.acquire(bufferPool.getBufferSize());
+        buffer = pooledBuffer.getData();
+        readOnlyBuffer = buffer.asReadOnlyBuffer();
+        dataOffset = 0;
+    }
+
+    private void releaseBufferIfEmpty() {
+        if (bufferPool != null && buffer != null && dataOffset == buffer.position()) {
+            if (pooledBuffer != null) {
+                pooledBuffer.release();
+                pooledBuffer = null;
+            }
+            buffer = null;
+            readOnlyBuffer = null;
+            dataOffset = 0;
         }
-        return message;
     }
 
     protected int readToBuffer(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
@@ -114,6 +181,9 @@ class MessageReader {
     }
 
     private Message readMessageFromBuffer() {
+        if (buffer == null) {
+            return null;
+        }
         int dataEndsAtIndex = buffer.position();
         if (dataEndsAtIndex <= dataOffset) {
             return null;
@@ -16,30 +16,60 @@
 
 package bt.net;
 
+import bt.net.buffer.BufferPool;
+import bt.net.buffer.PooledBuffer;
+import bt.protocol.BlockReader;
 import bt.protocol.EncodingContext;
 import bt.protocol.Message;
+import bt.protocol.Piece;
+import bt.protocol.StandardBittorrentProtocol;
 import bt.protocol.handler.MessageHandler;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Optional;
 
 /**
  * Encodes and writes messages to a byte channel.
  *
+ * <p>If the channel is not encrypted, blocks of {@link Piece} messages, that are read on demand,
+ * are transferred directly from the storage to the channel (see {@link BlockReader#transferTo(long, WritableByteChannel)}),
+ * so that the block's contents are not copied to the internal buffer.
+ *
+ * <p>Writing never blocks: the writer sends as much data as the channel accepts,
+ * and keeps the rest in an outgoing queue (see {@link #getQueuedBytes()}).
+ * Queued data is sent on subsequent calls to {@link #flush()}, e.g. when the channel becomes writable,
+ * and all subsequent messages are queued behind it.
+ *
+ * <p>If the writer has been created with a buffer pool, a buffer for encoding the message
+ * is acquired from the pool for the duration of each write, so that the writer does not hold a buffer between writes.
+ * If the channel does not accept all of the message, the buffer is kept in the queue until it has been sent,
+ * and subsequent messages are appended to it, while it has enough space.
+ *
+ * <p>This class is not thread-safe: all writes and flushes must be performed under the same external lock.
+ *
  * Note that this class is not a part of the public API and is subject to change.
  *
  * @since 1.2
  */
 class MessageWriter {
 
-    private static final int WRITE_ATTEMPTS = 10;
+    // piece: <len=0009+X><id=7><index><begin><block>
+    private static final int PIECE_HEADER_LENGTH = StandardBittorrentProtocol.MESSAGE_PREFIX_SIZE + Integer.BYTES * 2;
 
     private final WritableByteChannel channel;
     private final EncodingContext context;
     private final MessageHandler<Message> messageHandler;
 
     private final ByteBuffer buffer;
+    private final BufferPool bufferPool;
+    private final boolean transferBlocks;
+
+    private final Deque<OutgoingData> queue;
+    private volatile long queuedBytes;
 
     /**
      * Create a message writer with a private buffer
@@ -70,45 +100,272 @@ class MessageWriter {
                          Peer peer,
                          MessageHandler<Message> messageHandler,
                          ByteBuffer buffer) {
+        this(channel, peer, messageHandler, buffer, null);
+    }
+
+    /**
+     * Create a message writer, that acquires a buffer from the provided pool for each message
+     *
+     * @param channel Writable byte channel
+     * @param peer Peer
+     * @param messageHandler Message encoder
+     * @param bufferPool Pool of buffers, that will be used to store encoded but not yet sent messages.
+     * @since 1.6
+     */
+    public MessageWriter(WritableByteChannel channel,
+                         Peer peer,
+                         MessageHandler<Message> messageHandler,
+                         BufferPool bufferPool) {
+        this(channel, peer, messageHandler, null, bufferPool);
+    }
+
+    private MessageWriter(WritableByteChannel channel,
+                          Peer peer,
+                          MessageHandler<Message> messageHandler,
+                          ByteBuffer buffer,
+                          BufferPool bufferPool) {
         this.channel = channel;
         this.context = new EncodingContext(peer);
         this.messageHandler = messageHandler;
         this.buffer = buffer;
+        this.bufferPool = bufferPool;
+        // encrypted data must go through the cipher
+        this.transferBlocks = !(channel instanceof EncryptedChannel);
+        this.queue = new ArrayDeque<>();
     }
 
+    /**
+     * Encode the message and send as much of it, as the channel accepts without blocking.
+     * The rest is queued and will be sent on subsequent calls to {@link #flush()}.
+     *
+     * @since 1.2
+     */
     public void writeMessage(Message message) throws IOException {
+        PooledBuffer pooledBuffer = null;
+        ByteBuffer buffer = this.buffer;
+        if (buffer == null) {
+            pooledBuffer = bufferPool.acquire(bufferPool.getBufferSize());
+            buffer = pooledBuffer.getData();
+        }
+        boolean queued = false;
+        try {
+            queued = writeMessage(message, buffer, pooledBuffer);
+        } finally {
+            if (pooledBuffer != null && !queued) {
+                pooledBuffer.release();
+            }
+        }
+    }
+
+    /**
+     * @param pooledBuffer Pooled buffer, that owns the provided buffer, or null
+     * @return true, if the pooled buffer has been queued, and will be released after its data is sent
+     */
+    private boolean writeMessage(Message message, ByteBuffer buffer, PooledBuffer pooledBuffer) throws IOException {
+        if (transferBlocks && message instanceof Piece) {
+            Piece piece = (Piece) message;
+            Optional<BlockReader> reader = piece.getBlockReader();
+            if (reader.isPresent()) {
+                return writePiece(piece, reader.get(), buffer, pooledBuffer);
+            }
+        }
+
         buffer.clear();
         if (!writeToBuffer(message, buffer)) {
             throw new IllegalStateException("Insufficient space in buffer for message: " + message);
         }
         buffer.flip();
-        writeMessageFromBuffer();
+        return write(buffer, pooledBuffer);
     }
 
     protected boolean writeToBuffer(Message message, ByteBuffer buffer) {
         return messageHandler.encode(context, message, buffer);
     }
 
-    private void writeMessageFromBuffer() throws IOException {
-        int offset = buffer.position();
-        int written;
-        int k = 0;
-        do {
-            buffer.position(offset);
-            written = channel.write(buffer);
-            offset = offset + written;
-
-            if (offset < buffer.limit()) {
-                if (++k <= WRITE_ATTEMPTS) {
-                    try {
-                        Thread.sleep(100);
-                    } catch (InterruptedException e) {
-                        throw new RuntimeException("Interrupted while writing message", e);
-                    }
-                } else {
-                    throw new RuntimeException("Failed to write message in " + WRITE_ATTEMPTS + " attempts");
+    private boolean writePiece(Piece piece, BlockReader reader, ByteBuffer buffer, PooledBuffer pooledBuffer)
+            throws IOException {
+        buffer.clear();
+        if (buffer.remaining() < PIECE_HEADER_LENGTH) {
+            throw new IllegalStateException("Insufficient space in buffer for message: " + piece);
+        }
+        buffer.putInt(PIECE_HEADER_LENGTH - StandardBittorrentProtocol.MESSAGE_LENGTH_PREFIX_SIZE + piece.getLength());
+        buffer.put((byte) StandardBittorrentProtocol.PIECE_ID);
+        buffer.putInt(piece.getPieceIndex());
+        buffer.putInt(piece.getOffset());
+        buffer.flip();
+        boolean queued = write(buffer, pooledBuffer);
+
+        enqueue(new BlockTransfer(reader, piece.getLength()));
+        flush();
+        return queued;
+    }
+
+    /**
+     * Send the data directly from the provided buffer, if nothing is queued;
+     * otherwise (or if the channel did not accept all of the data) queue the remaining data.
+     * The data is appended to the last queued pooled buffer, if it has enough space;
+     * otherwise the provided pooled buffer itself is queued, or, if there is none, a copy of the data.
+     *
+     * @param pooledBuffer Pooled buffer, that owns the provided buffer, or null
+     * @return true, if the pooled buffer has been queued, and will be released after its data is sent
+     */
+    private boolean write(ByteBuffer data, PooledBuffer pooledBuffer) throws IOException {
+        if (queue.isEmpty()) {
+            int written;
+            do {
+                written = channel.write(data);
+            } while (written > 0 && data.hasRemaining());
+
+            if (!data.hasRemaining()) {
+                return false;
+            }
+        }
+
+        int length = data.remaining();
+        OutgoingData last = queue.peekLast();
+        if (last instanceof BufferedData && ((BufferedData) last).append(data)) {
+            queuedBytes += length;
+            return false;
+        } else if (pooledBuffer != null) {
+            enqueue(new BufferedData(data, pooledBuffer));
+            return true;
+        }
+        ByteBuffer copy = ByteBuffer.allocate(data.remaining());
+        copy.put(data);
+        copy.flip();
+        enqueue(new BufferedData(copy, null));
+        return false;
+    }
+
+    private void enqueue(OutgoingData data) {
+        queue.add(data);
+        queuedBytes += data.remaining();
+    }
+
+    /**
+     * Send as much of the queued data, as the channel accepts without blocking.
+     *
+     * @return true, if all queued data has been sent
+     * @since 1.6
+     */
+    public boolean flush() throws IOException {
+        OutgoingData data;
+        while ((data = queue.peek()) != null) {
+            while (data.remaining() > 0) {
+                long written = data.writeTo(channel);
+                queuedBytes -= written;
+                if (written == 0) {
+                    // channel is not ready to accept more data
+                    return false;
                 }
             }
-        } while (offset < buffer.limit());
+            queue.poll().release();
+        }
+        return true;
+    }
+
+    /**
+     * @return Number of bytes, that have been queued, but not sent yet
+     * @since 1.6
+     */
+    public long getQueuedBytes() {
+        return queuedBytes;
+    }
+
+    /**
+     * @return true, if blocks, that are read on demand, are transferred directly from the storage to the channel
+     * @since 1.6
+     */
+    public boolean supportsBlockTransfer() {
+        return transferBlocks;
+    }
+
+    private interface OutgoingData {
+
+        /**
+         * @return Number of bytes written, possibly zero
+         */
+        long writeTo(WritableByteChannel channel) throws IOException;
+
+        long remaining();
+
+        /**
+         * Release the resources, that are held by this data, after it has been sent
+         */
+        default void release() {
+            // do nothing
+        }
+    }
+
+    private static class BufferedData implements OutgoingData {
+
+        private final ByteBuffer data;
+        private final PooledBuffer pooledBuffer;
+
+        /**
+         * @param pooledBuffer Pooled buffer, that owns the data, or null
+         */
+        BufferedData(ByteBuffer data, PooledBuffer pooledBuffer) {
+            this.data = data;
+            this.pooledBuffer = pooledBuffer;
+        }
+
+        /**
+         * Append the remaining contents of the provided buffer to this data, if there's enough space
+         *
+         * @return true, if the contents have been appended
+         */
+        boolean append(ByteBuffer src) {
+            if (pooledBuffer == null || data.capacity() - data.limit() < src.remaining()) {
+                return false;
+            }
+            int position = data.position();
+            data.position(data.limit());
+            data.limit(data.limit() + src.remaining());
+            data.put(src);
+            data.position(position);
+            return true;
+        }
+
+        @Override
+        public long writeTo(WritableByteChannel channel) throws IOException {
+            return channel.write(data);
+        }
+
+        @Override
+        public long remaining() {
+            return data.remaining();
+        }
+
+        @Override
+        public void release() {
+            if (pooledBuffer != null) {
+                pooledBuffer.release();
+            }
+        }
+    }
+
+    private static class BlockTransfer implements OutgoingData {
+
+        private final BlockReader reader;
+        private final long length;
+        private long position;
+
+        BlockTransfer(BlockReader reader, long length) {
+            this.reader = reader;
+            this.length = length;
+        }
+
+        @Override
+        public long writeTo(WritableByteChannel channel) throws IOException {
+            long transferred = reader.transferTo(position, channel);
+            position += transferred;
+            return transferred;
+        }
+
+        @Override
+        public long remaining() {
+            return length - position;
+        }
     }
 }
@@ -83,6 +83,27 @@ public interface PeerConnection extends Closeable {
      */
     void postMessage(Message message) throws IOException;
 
+    /**
+     * Messages may be posted regardless of the result of this method,
+     * but the callers are expected to hold off with producing new messages, while the connection is not writable.
+     *
+     * @return true, if the amount of outgoing data, that has been posted, but not sent yet,
+     *         is below the connection's limit
+     * @since 1.6
+     */
+    default boolean isWritable() {
+        return true;
+    }
+
+    /**
+     * @return true, if blocks can be transferred directly from the storage to the connection's channel,
+     *         without copying them to memory first (e.g. if the connection is not encrypted)
+     * @since 1.6
+     */
+    default boolean supportsBlockTransfer() {
+        return false;
+    }
+
     /**
      * @return Last time a message was received or sent via this connection
      * @since 1.0
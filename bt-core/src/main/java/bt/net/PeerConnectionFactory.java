@@ -17,6 +17,7 @@
 package bt.net;
 
 import bt.metainfo.TorrentId;
+import bt.net.buffer.BufferPool;
 import bt.protocol.Message;
 import bt.protocol.handler.MessageHandler;
 import bt.runtime.Config;
@@ -42,6 +43,7 @@ public class PeerConnectionFactory implements IPeerConnectionFactory {
     private MSEHandshakeProcessor cryptoHandshakeProcessor;
 
     private InetSocketAddress localOutgoingSocketAddress;
+    private int sendQueueHighWaterMark;
 
     public PeerConnectionFactory(Selector selector,
                                  IConnectionHandlerFactory connectionHandlerFactory,
@@ -50,9 +52,13 @@ public class PeerConnectionFactory implements IPeerConnectionFactory {
                                  Config config) {
         this.selector = selector;
         this.connectionHandlerFactory = connectionHandlerFactory;
+        // network buffers are shared by all connections and are held only while they are needed
+        BufferPool networkBufferPool = new BufferPool(getBufferSize(config.getMaxTransferBlockSize()),
+                config.getMaxPooledNetworkBuffers());
         this.cryptoHandshakeProcessor = new MSEHandshakeProcessor(torrentRegistry, messageHandler,
-                config.getEncryptionPolicy(), getBufferSize(config.getMaxTransferBlockSize()), config.getMsePrivateKeySize());
+                config.getEncryptionPolicy(), networkBufferPool, config.getMsePrivateKeySize());
         this.localOutgoingSocketAddress = new InetSocketAddress(config.getAcceptorAddress(), 0);
+        this.sendQueueHighWaterMark = config.getSendQueueHighWaterMark();
     }
 
     private static int getBufferSize(long maxTransferBlockSize) {
@@ -122,7 +128,7 @@ public class PeerConnectionFactory implements IPeerConnectionFactory {
                 cryptoHandshakeProcessor.negotiateIncoming(peer, channel)
                 : cryptoHandshakeProcessor.negotiateOutgoing(peer, channel, torrentId);
 
-        PeerConnection connection = new SocketPeerConnection(peer, channel, readerWriter);
+        PeerConnection connection = new SocketPeerConnection(peer, channel, readerWriter, sendQueueHighWaterMark);
         ConnectionHandler connectionHandler;
         if (incoming) {
             connectionHandler = connectionHandlerFactory.getIncomingHandler();
@@ -26,4 +26,30 @@ interface PeerConnectionMessageWorker {
     Optional<Message> readMessage() throws IOException;
 
     void writeMessage(Message message) throws IOException;
+
+    /**
+     * Send as much of the outgoing data, that has been queued by previous writes, as possible without blocking.
+     *
+     * @return true, if all queued data has been sent
+     * @since 1.6
+     */
+    default boolean flush() throws IOException {
+        return true;
+    }
+
+    /**
+     * @return Number of bytes, that have been queued, but not sent yet
+     * @since 1.6
+     */
+    default long getQueuedBytes() {
+        return 0;
+    }
+
+    /**
+     * @return true, if blocks, that are read on demand, are transferred directly from the storage to the channel
+     * @since 1.6
+     */
+    default boolean supportsBlockTransfer() {
+        return false;
+    }
 }
@@ -31,6 +31,12 @@ import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
+ * Outgoing messages are sent without blocking: the data, that the socket does not accept right away,
+ * is queued and sent later, when the socket becomes writable (see {@link #setWriteInterestListener(Runnable)}).
+ * Until then, {@link #isWritable()} indicates, whether the amount of queued data is below the high-water mark.
+ * While the connection is being initialized, and there's no listener yet, the queued data is sent
+ * when the connection waits for incoming messages (e.g. for the peer's reply to the handshake).
+ *
  * @since 1.0
  */
 class SocketPeerConnection implements PeerConnection {
@@ -51,9 +57,27 @@ class SocketPeerConnection implements PeerConnection {
     private final ReentrantLock readLock;
     private final Condition condition;
 
+    private final Object writeLock;
+    private final int sendQueueHighWaterMark;
+    // both guarded by the write lock
+    private Runnable writeInterestListener;
+    private boolean writeRequested;
+
     SocketPeerConnection(Peer remotePeer,
                          SocketChannel channel,
                          PeerConnectionMessageWorker readerWriter) {
+        this(remotePeer, channel, readerWriter, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param sendQueueHighWaterMark Amount of queued outgoing data (in bytes),
+     *                               upon reaching which the connection is no longer considered writable
+     * @since 1.6
+     */
+    SocketPeerConnection(Peer remotePeer,
+                         SocketChannel channel,
+                         PeerConnectionMessageWorker readerWriter,
+                         int sendQueueHighWaterMark) {
         this.torrentId = new AtomicReference<>();
         this.remotePeer = remotePeer;
         this.channel = channel;
@@ -61,6 +85,8 @@ class SocketPeerConnection implements PeerConnection {
         this.lastActive = new AtomicLong();
         this.readLock = new ReentrantLock(true);
         this.condition = this.readLock.newCondition();
+        this.writeLock = new Object();
+        this.sendQueueHighWaterMark = sendQueueHighWaterMark;
     }
 
     /**
@@ -78,6 +104,7 @@ class SocketPeerConnection implements PeerConnection {
 
     @Override
     public synchronized Message readMessageNow() throws IOException {
+        flushIfNotRegistered();
         Message message = null;
         Optional<Message> messageOptional = readerWriter.readMessage();
         if (messageOptional.isPresent()) {
@@ -131,12 +158,93 @@ class SocketPeerConnection implements PeerConnection {
     }
 
     @Override
-    public synchronized void postMessage(Message message) throws IOException {
+    public void postMessage(Message message) throws IOException {
         updateLastActive();
         if (LOGGER.isTraceEnabled()) {
             LOGGER.trace("Sending message to peer: " + remotePeer + " -- " + message);
         }
-        readerWriter.writeMessage(message);
+        Runnable listener = null;
+        synchronized (writeLock) {
+            readerWriter.writeMessage(message);
+            // without a listener the data stays queued until the connection reads or is registered
+            if (readerWriter.getQueuedBytes() > 0 && writeInterestListener != null && !writeRequested) {
+                writeRequested = true;
+                listener = writeInterestListener;
+            }
+        }
+        // listener updates the selection key, which might block while the selector is selecting,
+        // so it's invoked without holding the connection's lock
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Send as much of the queued outgoing data, as the socket accepts without blocking,
+     * unless the write interest listener has been set and will take care of it.
+     */
+    private void flushIfNotRegistered() throws IOException {
+        synchronized (writeLock) {
+            if (writeInterestListener == null && readerWriter.getQueuedBytes() > 0) {
+                readerWriter.flush();
+            }
+        }
+    }
+
+    /**
+     * Set the listener, that will be invoked each time there is queued outgoing data,
+     * and the caller should be notified of the socket becoming writable (by calling {@link #flush()}).
+     * Invoked immediately, if some data is already queued.
+     *
+     * @since 1.6
+     */
+    void setWriteInterestListener(Runnable writeInterestListener) {
+        boolean requested = false;
+        synchronized (writeLock) {
+            this.writeInterestListener = writeInterestListener;
+            if (readerWriter.getQueuedBytes() > 0) {
+                writeRequested = true;
+                requested = true;
+            }
+        }
+        if (requested) {
+            writeInterestListener.run();
+        }
+    }
+
+    /**
+     * Send as much of the queued outgoing data, as the socket accepts without blocking.
+     * If some data remains, the write interest listener is invoked again.
+     *
+     * @return true, if all queued data has been sent
+     * @since 1.6
+     */
+    boolean flush() throws IOException {
+        boolean flushed;
+        Runnable listener = null;
+        synchronized (writeLock) {
+            flushed = readerWriter.flush();
+            if (flushed) {
+                writeRequested = false;
+            } else if (writeInterestListener != null) {
+                writeRequested = true;
+                listener = writeInterestListener;
+            }
+        }
+        if (listener != null) {
+            listener.run();
+        }
+        return flushed;
+    }
+
+    @Override
+    public boolean isWritable() {
+        return readerWriter.getQueuedBytes() < sendQueueHighWaterMark;
+    }
+
+    @Override
+    public boolean supportsBlockTransfer() {
+        return readerWriter.supportsBlockTransfer();
     }
 
     private void updateLastActive() {
@@ -59,6 +59,16 @@ class WriteOnlyPeerConnection implements PeerConnection {
         delegate.postMessage(message);
     }
 
+    @Override
+    public boolean isWritable() {
+        return delegate.isWritable();
+    }
+
+    @Override
+    public boolean supportsBlockTransfer() {
+        return delegate.supportsBlockTransfer();
+    }
+
     @Override
     public long getLastActive() {
         return delegate.getLastActive();
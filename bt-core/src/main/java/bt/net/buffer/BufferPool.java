@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.net.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of reusable direct buffers for blocks of data,
+ * that are passed from the network to the storage and back.
+ *
+ * <p>All pooled buffers have the same capacity. Requests for larger blocks are served
+ * with non-pooled heap buffers, that are simply garbage collected after they have been released.
+ *
+ * <p>Pool does not keep track of the acquired buffers, so a buffer, that has never been released,
+ * does not cause a leak: it is garbage collected like any other object,
+ * and the pool will allocate a new buffer instead of it, when needed.
+ * The number of idle buffers, that are retained by the pool, is limited.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @since 1.6
+ */
+public class BufferPool {
+
+    private final int bufferSize;
+    private final int maxPooledBuffers;
+
+    private final ConcurrentLinkedQueue<PooledBuffer> pooledBuffers;
+    private final AtomicInteger pooledCount;
+    private final AtomicInteger inUseCount;
+
+    private final AtomicLong acquisitions;
+    private final AtomicLong allocations;
+    private final AtomicLong unpooledAllocations;
+
+    /**
+     * @param bufferSize Capacity of pooled buffers, in bytes
+     * @param maxPooledBuffers Max number of idle buffers, that are retained by this pool; 0 disables pooling
+     * @since 1.6
+     */
+    public BufferPool(int bufferSize, int maxPooledBuffers) {
+        if (bufferSize < 0) {
+            throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+        }
+        if (maxPooledBuffers < 0) {
+            throw new IllegalArgumentException("Invalid max number of pooled buffers: " + maxPooledBuffers);
+        }
+        this.bufferSize = bufferSize;
+        this.maxPooledBuffers = maxPooledBuffers;
+        this.pooledBuffers = new ConcurrentLinkedQueue<>();
+        this.pooledCount = new AtomicInteger();
+        this.inUseCount = new AtomicInteger();
+        this.acquisitions = new AtomicLong();
+        this.allocations = new AtomicLong();
+        this.unpooledAllocations = new AtomicLong();
+    }
+
+    /**
+     * Acquire a buffer for a block of data.
+     * The caller becomes the owner of the single reference to the returned buffer,
+     * and should call {@link PooledBuffer#release()}, when the data is no longer needed.
+     *
+     * @param length Length of the block
+     * @return Buffer, which data has position 0 and limit equal to {@code length}
+     * @since 1.6
+     */
+    public PooledBuffer acquire(int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("Invalid length: " + length);
+        }
+
+        acquisitions.incrementAndGet();
+        inUseCount.incrementAndGet();
+
+        PooledBuffer buffer;
+        if (length > bufferSize || maxPooledBuffers == 0) {
+            unpooledAllocations.incrementAndGet();
+            buffer = new PooledBuffer(this, ByteBuffer.allocate(length), false);
+        } else {
+            buffer = pooledBuffers.poll();
+            if (buffer != null) {
+                pooledCount.decrementAndGet();
+            } else {
+                allocations.incrementAndGet();
+                buffer = new PooledBuffer(this, ByteBuffer.allocateDirect(bufferSize), true);
+            }
+        }
+        buffer.reset(length);
+        return buffer;
+    }
+
+    void recycle(PooledBuffer buffer) {
+        inUseCount.decrementAndGet();
+        if (buffer.isPooled()) {
+            // might slightly exceed the limit under contention, which is harmless
+            if (pooledCount.get() < maxPooledBuffers) {
+                pooledCount.incrementAndGet();
+                pooledBuffers.offer(buffer);
+            }
+        }
+    }
+
+    /**
+     * @return Capacity of pooled buffers, in bytes
+     * @since 1.6
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @return Max number of idle buffers, that are retained by this pool
+     * @since 1.6
+     */
+    public int getMaxPooledBuffers() {
+        return maxPooledBuffers;
+    }
+
+    /**
+     * @return Number of idle buffers, that are currently retained by this pool
+     * @since 1.6
+     */
+    public int getPooledCount() {
+        return pooledCount.get();
+    }
+
+    /**
+     * @return Number of buffers, that have been acquired and not yet released
+     * @since 1.6
+     */
+    public int getInUseCount() {
+        return inUseCount.get();
+    }
+
+    /**
+     * @return Total number of acquired buffers
+     * @since 1.6
+     */
+    public long getAcquisitions() {
+        return acquisitions.get();
+    }
+
+    /**
+     * @return Number of pooled buffers, that have been allocated, because there were no idle buffers
+     * @since 1.6
+     */
+    public long getAllocations() {
+        return allocations.get();
+    }
+
+    /**
+     * @return Number of non-pooled buffers, that have been allocated for blocks, that are too large for this pool
+     * @since 1.6
+     */
+    public long getUnpooledAllocations() {
+        return unpooledAllocations.get();
+    }
+
+    @Override
+    public String toString() {
+        return "BufferPool{buffer size: " + bufferSize + ", pooled: " + pooledCount.get() + "/" + maxPooledBuffers +
+                ", in use: " + inUseCount.get() + ", acquisitions: " + acquisitions.get() +
+                ", allocations: " + allocations.get() + ", unpooled allocations: " + unpooledAllocations.get() + "}";
+    }
+}
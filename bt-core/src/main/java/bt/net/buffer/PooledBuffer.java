@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.net.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reference-counted block of data, that is returned to its pool,
+ * when the last reference to it has been released.
+ *
+ * <p>Each owner of a reference must call {@link #release()} exactly once,
+ * and must not access the data afterwards. Additional owners are introduced via {@link #retain()}.
+ *
+ * @since 1.6
+ */
+public final class PooledBuffer {
+
+    private final BufferPool pool;
+    private final ByteBuffer buffer;
+    private final boolean pooled;
+    private final AtomicInteger refCount;
+
+    private volatile int length;
+
+    PooledBuffer(BufferPool pool, ByteBuffer buffer, boolean pooled) {
+        this.pool = pool;
+        this.buffer = buffer;
+        this.pooled = pooled;
+        this.refCount = new AtomicInteger();
+    }
+
+    void reset(int length) {
+        this.length = length;
+        buffer.clear().limit(length);
+        refCount.set(1);
+    }
+
+    boolean isPooled() {
+        return pooled;
+    }
+
+    /**
+     * @return Length of the block
+     * @since 1.6
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Get the block's data. Position of the returned buffer is set to 0, and limit is set to {@link #length()}.
+     *
+     * <p>The same buffer instance is returned on each invocation,
+     * so concurrent readers should work with its duplicates instead.
+     *
+     * @return Buffer with the block's data
+     * @throws IllegalStateException if all references to this buffer have been released
+     * @since 1.6
+     */
+    public ByteBuffer getData() {
+        if (refCount.get() <= 0) {
+            throw new IllegalStateException("Buffer has been released");
+        }
+        buffer.limit(length).position(0);
+        return buffer;
+    }
+
+    /**
+     * Add a reference to this buffer.
+     *
+     * @return This buffer
+     * @throws IllegalStateException if all references to this buffer have been released
+     * @since 1.6
+     */
+    public PooledBuffer retain() {
+        int count;
+        do {
+            count = refCount.get();
+            if (count <= 0) {
+                throw new IllegalStateException("Buffer has been released");
+            }
+        } while (!refCount.compareAndSet(count, count + 1));
+        return this;
+    }
+
+    /**
+     * Release a reference to this buffer. When the last reference is released,
+     * the buffer is returned to its pool and must not be used anymore.
+     *
+     * @throws IllegalStateException if all references to this buffer have already been released
+     * @since 1.6
+     */
+    public void release() {
+        int count = refCount.decrementAndGet();
+        if (count == 0) {
+            pool.recycle(this);
+        } else if (count < 0) {
+            refCount.incrementAndGet();
+            throw new IllegalStateException("Buffer has already been released");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PooledBuffer{length: " + length + ", references: " + refCount.get() + "}";
+    }
+}
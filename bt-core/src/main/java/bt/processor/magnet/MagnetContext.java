@@ -16,14 +16,17 @@
 
 package bt.processor.magnet;
 
+import bt.data.FilePriority;
 import bt.data.Storage;
 import bt.magnet.MagnetUri;
+import bt.metainfo.TorrentFile;
 import bt.metainfo.TorrentId;
 import bt.processor.torrent.TorrentContext;
 import bt.torrent.messaging.BitfieldCollectingConsumer;
 import bt.torrent.selector.PieceSelector;
 
 import java.util.Optional;
+import java.util.function.Function;
 
 public class MagnetContext extends TorrentContext {
 
@@ -31,7 +34,18 @@ public class MagnetContext extends TorrentContext {
     private volatile BitfieldCollectingConsumer bitfieldConsumer;
 
     public MagnetContext(MagnetUri magnetUri, PieceSelector pieceSelector, Storage storage) {
-        super(pieceSelector, storage, null);
+        this(magnetUri, pieceSelector, storage, null);
+    }
+
+    /**
+     * @param filePriorities Priorities of torrent's files or null, if all files should be downloaded
+     * @since 1.6
+     */
+    public MagnetContext(MagnetUri magnetUri,
+                         PieceSelector pieceSelector,
+                         Storage storage,
+                         Function<TorrentFile, FilePriority> filePriorities) {
+        super(pieceSelector, storage, null, filePriorities);
         this.magnetUri = magnetUri;
     }
 
@@ -17,6 +17,8 @@
 package bt.processor.torrent;
 
 import bt.data.Bitfield;
+import bt.data.DataDescriptor;
+import bt.data.PiecePriorities;
 import bt.event.EventSource;
 import bt.metainfo.TorrentId;
 import bt.net.IConnectionSource;
@@ -70,13 +72,17 @@ public class CreateSessionStage<C extends TorrentContext> extends TerminateOnErr
         TorrentDescriptor descriptor = torrentRegistry.register(torrentId);
 
         MessageRouter router = new DefaultMessageRouter(messagingAgents);
-        IPeerWorkerFactory peerWorkerFactory = new PeerWorkerFactory(router);
+        IPeerWorkerFactory peerWorkerFactory = new PeerWorkerFactory(router, messageDispatcher::notifyReady);
 
         Supplier<Bitfield> bitfieldSupplier = context::getBitfield;
         Supplier<Assignments> assignmentsSupplier = context::getAssignments;
         Supplier<BitfieldBasedStatistics> statisticsSupplier = context::getPieceStatistics;
+        Supplier<PiecePriorities> prioritiesSupplier = () -> {
+            DataDescriptor dataDescriptor = descriptor.getDataDescriptor();
+            return (dataDescriptor == null) ? null : dataDescriptor.getPiecePriorities();
+        };
         TorrentWorker torrentWorker = new TorrentWorker(torrentId, messageDispatcher, connectionSource, peerWorkerFactory,
-                bitfieldSupplier, assignmentsSupplier, statisticsSupplier, eventSource, config);
+                bitfieldSupplier, assignmentsSupplier, statisticsSupplier, prioritiesSupplier, eventSource, config);
 
         context.setState(new DefaultTorrentSessionState(descriptor, torrentWorker));
         context.setRouter(router);
@@ -17,6 +17,7 @@
 package bt.processor.torrent;
 
 import bt.data.Bitfield;
+import bt.data.PiecePriorities;
 import bt.event.EventSink;
 import bt.metainfo.Torrent;
 import bt.processor.TerminateOnErrorProcessingStage;
@@ -37,6 +38,7 @@ import bt.torrent.messaging.PeerRequestConsumer;
 import bt.torrent.messaging.PieceConsumer;
 import bt.torrent.messaging.RequestProducer;
 import bt.torrent.selector.PieceSelector;
+import bt.torrent.selector.PrioritizingSelector;
 import bt.torrent.selector.ValidatingSelector;
 
 import java.util.function.Predicate;
@@ -63,20 +65,23 @@ public class InitializeTorrentProcessingStage<C extends TorrentContext> extends
     @Override
     protected void doExecute(C context) {
         Torrent torrent = context.getTorrent().get();
-        TorrentDescriptor descriptor = torrentRegistry.register(torrent, context.getStorage());
+        TorrentDescriptor descriptor =
+                torrentRegistry.register(torrent, context.getStorage(), context.getFilePriorities());
 
         Bitfield bitfield = descriptor.getDataDescriptor().getBitfield();
+        PiecePriorities priorities = descriptor.getDataDescriptor().getPiecePriorities();
         BitfieldBasedStatistics pieceStatistics = createPieceStatistics(bitfield);
-        PieceSelector selector = createSelector(context.getPieceSelector(), bitfield);
+        PieceSelector selector = createSelector(context.getPieceSelector(), bitfield, priorities);
 
         DataWorker dataWorker = createDataWorker(descriptor);
-        Assignments assignments = new Assignments(bitfield, selector, pieceStatistics, config);
+        descriptor.setDataWorker(dataWorker);
+        Assignments assignments = new Assignments(bitfield, priorities, selector, pieceStatistics, config);
 
         context.getRouter().registerMessagingAgent(GenericConsumer.consumer());
         context.getRouter().registerMessagingAgent(new BitfieldConsumer(bitfield, pieceStatistics, eventSink));
         context.getRouter().registerMessagingAgent(new PieceConsumer(bitfield, dataWorker));
         context.getRouter().registerMessagingAgent(new PeerRequestConsumer(dataWorker));
-        context.getRouter().registerMessagingAgent(new RequestProducer(descriptor.getDataDescriptor()));
+        context.getRouter().registerMessagingAgent(new RequestProducer(descriptor.getDataDescriptor(), dataWorker, config));
         context.getRouter().registerMessagingAgent(new MetadataProducer(() -> context.getTorrent().orElse(null), config));
 
         context.setBitfield(bitfield);
@@ -89,9 +94,14 @@ public class InitializeTorrentProcessingStage<C extends TorrentContext> extends
     }
 
     private PieceSelector createSelector(PieceSelector selector,
-                                         Bitfield bitfield) {
+                                         Bitfield bitfield,
+                                         PiecePriorities priorities) {
         Predicate<Integer> validator = new IncompletePiecesValidator(bitfield);
-        return new ValidatingSelector(validator, selector);
+        selector = new ValidatingSelector(validator, selector);
+        if (priorities.isSkippingPieces() || priorities.hasMixedPriorities()) {
+            selector = new PrioritizingSelector(priorities, selector);
+        }
+        return selector;
     }
 
     private DataWorker createDataWorker(TorrentDescriptor descriptor) {
@@ -17,8 +17,10 @@
 package bt.processor.torrent;
 
 import bt.data.Bitfield;
+import bt.data.FilePriority;
 import bt.data.Storage;
 import bt.metainfo.Torrent;
+import bt.metainfo.TorrentFile;
 import bt.metainfo.TorrentId;
 import bt.processor.ProcessingContext;
 import bt.torrent.BitfieldBasedStatistics;
@@ -29,6 +31,7 @@ import bt.torrent.messaging.MessageRouter;
 import bt.torrent.selector.PieceSelector;
 
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 /**
@@ -41,6 +44,7 @@ public class TorrentContext implements ProcessingContext {
     private final PieceSelector pieceSelector;
     private final Storage storage;
     private final Supplier<Torrent> torrentSupplier;
+    private final Function<TorrentFile, FilePriority> filePriorities;
 
     /* all of these can be missing, depending on which stage is currently being executed */
     private volatile TorrentId torrentId;
@@ -55,9 +59,21 @@ public class TorrentContext implements ProcessingContext {
     public TorrentContext(PieceSelector pieceSelector,
                           Storage storage,
                           Supplier<Torrent> torrentSupplier) {
+        this(pieceSelector, storage, torrentSupplier, null);
+    }
+
+    /**
+     * @param filePriorities Priorities of torrent's files or null, if all files should be downloaded
+     * @since 1.6
+     */
+    public TorrentContext(PieceSelector pieceSelector,
+                          Storage storage,
+                          Supplier<Torrent> torrentSupplier,
+                          Function<TorrentFile, FilePriority> filePriorities) {
         this.pieceSelector = pieceSelector;
         this.storage = storage;
         this.torrentSupplier = torrentSupplier;
+        this.filePriorities = filePriorities;
     }
 
     public PieceSelector getPieceSelector() {
@@ -72,6 +88,14 @@ public class TorrentContext implements ProcessingContext {
         return torrentSupplier;
     }
 
+    /**
+     * @return Priorities of torrent's files or null, if all files should be downloaded
+     * @since 1.6
+     */
+    public Function<TorrentFile, FilePriority> getFilePriorities() {
+        return filePriorities;
+    }
+
     ///////////////////////////////////////////////
 
     @Override
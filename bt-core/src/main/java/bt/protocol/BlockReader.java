@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.protocol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Provides the contents of a block on demand,
+ * so that the block does not have to be loaded into memory before being sent to a peer.
+ *
+ * @since 1.6
+ */
+public interface BlockReader {
+
+    /**
+     * Copy the block's contents into the buffer.
+     *
+     * @param buffer Buffer to copy the block into
+     * @return true, if the block has been copied; false, if there is not enough space in the buffer
+     * @since 1.6
+     */
+    boolean readTo(ByteBuffer buffer);
+
+    /**
+     * Transfer the block's contents (starting with some position) directly to the target channel,
+     * without copying it to an intermediate buffer, if possible.
+     *
+     * @param position Position in the block to start transferring from
+     * @param target Target channel
+     * @return Number of bytes transferred, possibly zero (e.g. if the target is a non-blocking channel,
+     *         that is not ready to accept more data)
+     * @throws IOException if an I/O error happens, when writing to the target channel
+     * @since 1.6
+     */
+    long transferTo(long position, WritableByteChannel target) throws IOException;
+}
@@ -16,6 +16,11 @@
 
 package bt.protocol;
 
+import bt.net.buffer.PooledBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
 /**
  * @since 1.0
  */
@@ -23,7 +28,10 @@ public final class Piece implements Message {
 
     private int pieceIndex;
     private int offset;
+    private int length;
     private byte[] block;
+    private BlockReader reader;
+    private PooledBuffer buffer;
 
     /**
      * @since 1.0
@@ -36,9 +44,49 @@ public final class Piece implements Message {
         }
         this.pieceIndex = pieceIndex;
         this.offset = offset;
+        this.length = block.length;
         this.block = block;
     }
 
+    /**
+     * Create a piece message, which block's contents will be read on demand.
+     *
+     * @param length Length of the block
+     * @param reader Provides the block's contents
+     * @since 1.6
+     */
+    public Piece(int pieceIndex, int offset, int length, BlockReader reader) throws InvalidMessageException {
+
+        if (pieceIndex < 0 || offset < 0 || length <= 0) {
+            throw new InvalidMessageException("Invalid arguments: piece index (" +
+                    pieceIndex + "), offset (" + offset + "), block length (" + length + ")");
+        }
+        this.pieceIndex = pieceIndex;
+        this.offset = offset;
+        this.length = length;
+        this.reader = reader;
+    }
+
+    /**
+     * Create a piece message, which block is kept in a pooled buffer.
+     * The message takes over the caller's reference to the buffer;
+     * whoever consumes the message is responsible for releasing it (see {@link #getBlockBuffer()}).
+     *
+     * @param buffer Buffer with the block's contents
+     * @since 1.6
+     */
+    public Piece(int pieceIndex, int offset, PooledBuffer buffer) throws InvalidMessageException {
+
+        if (pieceIndex < 0 || offset < 0 || buffer.length() == 0) {
+            throw new InvalidMessageException("Invalid arguments: piece index (" +
+                    pieceIndex + "), offset (" + offset + "), block length (" + buffer.length() + ")");
+        }
+        this.pieceIndex = pieceIndex;
+        this.offset = offset;
+        this.length = buffer.length();
+        this.buffer = buffer;
+    }
+
     /**
      * @since 1.0
      */
@@ -54,16 +102,75 @@ public final class Piece implements Message {
     }
 
     /**
+     * @since 1.6
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Get the block's contents.
+     * If this message has been created with a {@link BlockReader} or a {@link PooledBuffer},
+     * then the block will be copied into a new array on each invocation of this method.
+     *
      * @since 1.0
      */
     public byte[] getBlock() {
-        return block;
+        if (block != null) {
+            return block;
+        }
+        ByteBuffer copy = ByteBuffer.allocate(length);
+        writeBlockTo(copy);
+        return copy.array();
+    }
+
+    /**
+     * Copy the block's contents into the buffer.
+     *
+     * @return true, if the block has been copied; false, if there is not enough space in the buffer
+     * @since 1.6
+     */
+    public boolean writeBlockTo(ByteBuffer buffer) {
+        if (block != null) {
+            if (buffer.remaining() < block.length) {
+                return false;
+            }
+            buffer.put(block);
+            return true;
+        } else if (this.buffer != null) {
+            if (buffer.remaining() < length) {
+                return false;
+            }
+            buffer.put(this.buffer.getData().duplicate());
+            return true;
+        }
+        return reader.readTo(buffer);
+    }
+
+    /**
+     * @return Block reader, if this message has been created with a {@link BlockReader}
+     * @since 1.6
+     */
+    public Optional<BlockReader> getBlockReader() {
+        return Optional.ofNullable(reader);
+    }
+
+    /**
+     * Get the pooled buffer with the block's contents.
+     * The consumer of this message, that takes over the buffer,
+     * must eventually release it via {@link PooledBuffer#release()}.
+     *
+     * @return Buffer, if this message has been created with a {@link PooledBuffer}
+     * @since 1.6
+     */
+    public Optional<PooledBuffer> getBlockBuffer() {
+        return Optional.ofNullable(buffer);
     }
 
     @Override
     public String toString() {
         return "[" + this.getClass().getSimpleName() + "] piece index {" + pieceIndex + "}, offset {" + offset +
-                "}, block {" + block.length + " bytes}";
+                "}, block {" + length + " bytes}";
     }
 
     @Override
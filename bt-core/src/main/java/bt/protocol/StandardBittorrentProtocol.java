@@ -20,6 +20,7 @@ import bt.BtException;
 import bt.metainfo.TorrentId;
 import bt.module.MessageHandlers;
 import bt.net.PeerId;
+import bt.net.buffer.BufferPool;
 import bt.protocol.handler.BitfieldHandler;
 import bt.protocol.handler.CancelHandler;
 import bt.protocol.handler.ChokeHandler;
@@ -135,8 +136,20 @@ public class StandardBittorrentProtocol implements MessageHandler<Message> {
     private Map<Class<? extends Message>, MessageHandler<?>> handlersByType;
     private Map<Class<? extends Message>, Integer> idMap;
 
+    /**
+     * Create protocol, that does not pool the blocks of decoded piece messages.
+     */
+    public StandardBittorrentProtocol(Map<Integer, MessageHandler<?>> extraHandlers) {
+        this(extraHandlers, new BufferPool(0, 0));
+    }
+
+    /**
+     * @param bufferPool Pool of buffers for the blocks of decoded piece messages
+     * @since 1.6
+     */
     @Inject
-    public StandardBittorrentProtocol(@MessageHandlers Map<Integer, MessageHandler<?>> extraHandlers) {
+    public StandardBittorrentProtocol(@MessageHandlers Map<Integer, MessageHandler<?>> extraHandlers,
+                                      BufferPool bufferPool) {
 
         Map<Integer, MessageHandler<?>> handlers = new HashMap<>();
         handlers.put(CHOKE_ID, new ChokeHandler());
@@ -146,7 +159,7 @@ public class StandardBittorrentProtocol implements MessageHandler<Message> {
         handlers.put(HAVE_ID, new HaveHandler());
         handlers.put(BITFIELD_ID, new BitfieldHandler());
         handlers.put(REQUEST_ID, new RequestHandler());
-        handlers.put(PIECE_ID, new PieceHandler());
+        handlers.put(PIECE_ID, new PieceHandler(bufferPool));
         handlers.put(CANCEL_ID, new CancelHandler());
 
         extraHandlers.forEach((messageId, handler) -> {
@@ -16,6 +16,8 @@
 
 package bt.protocol.handler;
 
+import bt.net.buffer.BufferPool;
+import bt.net.buffer.PooledBuffer;
 import bt.protocol.EncodingContext;
 import bt.protocol.InvalidMessageException;
 import bt.protocol.DecodingContext;
@@ -28,42 +30,60 @@ import static bt.protocol.Protocols.readInt;
 
 public final class PieceHandler extends UniqueMessageHandler<Piece> {
 
+    private final BufferPool bufferPool;
+
     public PieceHandler() {
+        // no pooling
+        this(new BufferPool(0, 0));
+    }
+
+    /**
+     * @param bufferPool Pool of buffers for the blocks of decoded messages
+     * @since 1.6
+     */
+    public PieceHandler(BufferPool bufferPool) {
         super(Piece.class);
+        this.bufferPool = bufferPool;
     }
 
     @Override
     public int doDecode(DecodingContext context, ByteBuffer buffer) {
-        return decodePiece(context, buffer, buffer.remaining());
+        return decodePiece(context, buffer, buffer.remaining(), bufferPool);
     }
 
     @Override
     public boolean doEncode(EncodingContext context, Piece message, ByteBuffer buffer) {
-        return writePiece(message.getPieceIndex(), message.getOffset(), message.getBlock(), buffer);
+        return writePiece(message, buffer);
     }
 
     // piece: <len=0009+X><id=7><index><begin><block>
-    private static boolean writePiece(int pieceIndex, int offset, byte[] block, ByteBuffer buffer) {
+    private static boolean writePiece(Piece message, ByteBuffer buffer) {
+
+        int pieceIndex = message.getPieceIndex();
+        int offset = message.getOffset();
+        int length = message.getLength();
 
         if (pieceIndex < 0 || offset < 0) {
             throw new InvalidMessageException("Invalid arguments: pieceIndex (" + pieceIndex
                     + "), offset (" + offset + ")");
         }
-        if (block.length == 0) {
+        if (length == 0) {
             throw new InvalidMessageException("Invalid block: empty");
         }
-        if (buffer.remaining() < Integer.BYTES * 2 + block.length) {
+        if (buffer.remaining() < Integer.BYTES * 2 + length) {
             return false;
         }
 
         buffer.putInt(pieceIndex);
         buffer.putInt(offset);
-        buffer.put(block);
+        if (!message.writeBlockTo(buffer)) {
+            throw new IllegalStateException("Failed to write block: " + message);
+        }
 
         return true;
     }
 
-    private static int decodePiece(DecodingContext context, ByteBuffer buffer, int length) {
+    private static int decodePiece(DecodingContext context, ByteBuffer buffer, int length, BufferPool bufferPool) {
 
         int consumed = 0;
 
@@ -71,8 +91,17 @@ public final class PieceHandler extends UniqueMessageHandler<Piece> {
 
             int pieceIndex = Objects.requireNonNull(readInt(buffer));
             int blockOffset = Objects.requireNonNull(readInt(buffer));
-            byte[] block = new byte[length - Integer.BYTES * 2];
-            buffer.get(block);
+            int blockLength = length - Integer.BYTES * 2;
+            if (pieceIndex < 0 || blockOffset < 0 || blockLength == 0) {
+                throw new InvalidMessageException("Invalid arguments: piece index (" +
+                        pieceIndex + "), offset (" + blockOffset + "), block length (" + blockLength + ")");
+            }
+
+            PooledBuffer block = bufferPool.acquire(blockLength);
+            int limit = buffer.limit();
+            buffer.limit(buffer.position() + blockLength);
+            block.getData().put(buffer);
+            buffer.limit(limit);
 
             context.setMessage(new Piece(pieceIndex, blockOffset, block));
             consumed = length;
@@ -16,6 +16,7 @@
 
 package bt.runtime;
 
+import bt.data.file.FileHandleCache;
 import bt.peer.lan.AnnounceGroup;
 import bt.protocol.crypto.EncryptionPolicy;
 import bt.service.NetworkUtil;
@@ -23,6 +24,7 @@ import bt.service.NetworkUtil;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collection;
@@ -64,6 +66,20 @@ public class Config {
     private Duration localServiceDiscoveryAnnounceInterval;
     private int localServiceDiscoveryMaxTorrentsPerAnnounce;
     private Collection<AnnounceGroup> localServiceDiscoveryAnnounceGroups;
+    private int maxOpenFiles;
+    private int writeBackCacheSize;
+    private int readCacheSize;
+    private int maxPooledBlockBuffers;
+    private int numOfIOThreads;
+    private Path fastResumeDirectory;
+    private Duration fastResumeSaveInterval;
+    private int hashingReorderWindow;
+    private Duration diskSchedulerWindow;
+    private Duration diskSchedulerMaxLatency;
+    private int numOfNetworkThreads;
+    private int numOfDispatchingThreads;
+    private int sendQueueHighWaterMark;
+    private int maxPooledNetworkBuffers;
 
     /**
      * Create a config with default parameters.
@@ -100,6 +116,20 @@ public class Config {
         this.numberOfPeersToRequestFromTracker = 50;
         this.localServiceDiscoveryAnnounceInterval = Duration.ofSeconds(60);
         this.localServiceDiscoveryMaxTorrentsPerAnnounce = 5;
+        this.maxOpenFiles = FileHandleCache.DEFAULT_MAX_OPEN_FILES;
+        this.writeBackCacheSize = 32 * 1024 * 1024; // 32 MB
+        this.readCacheSize = 32 * 1024 * 1024; // 32 MB
+        this.maxPooledBlockBuffers = 1024;
+        this.numOfIOThreads = 4;
+        this.fastResumeDirectory = null;
+        this.fastResumeSaveInterval = Duration.ofMinutes(1);
+        this.hashingReorderWindow = 16;
+        this.diskSchedulerWindow = Duration.ZERO; // disabled
+        this.diskSchedulerMaxLatency = Duration.ofMillis(500);
+        this.numOfNetworkThreads = 1;
+        this.numOfDispatchingThreads = 1;
+        this.sendQueueHighWaterMark = 256 * 1024; // 256 KB
+        this.maxPooledNetworkBuffers = 64;
 
         try {
             InetAddress ip4multicast = InetAddress.getByName("239.192.152.143");
@@ -149,6 +179,20 @@ public class Config {
         this.localServiceDiscoveryAnnounceInterval = config.getLocalServiceDiscoveryAnnounceInterval();
         this.localServiceDiscoveryMaxTorrentsPerAnnounce = config.getLocalServiceDiscoveryMaxTorrentsPerAnnounce();
         this.localServiceDiscoveryAnnounceGroups = config.getLocalServiceDiscoveryAnnounceGroups();
+        this.maxOpenFiles = config.getMaxOpenFiles();
+        this.writeBackCacheSize = config.getWriteBackCacheSize();
+        this.readCacheSize = config.getReadCacheSize();
+        this.maxPooledBlockBuffers = config.getMaxPooledBlockBuffers();
+        this.numOfIOThreads = config.getNumOfIOThreads();
+        this.fastResumeDirectory = config.getFastResumeDirectory();
+        this.fastResumeSaveInterval = config.getFastResumeSaveInterval();
+        this.hashingReorderWindow = config.getHashingReorderWindow();
+        this.diskSchedulerWindow = config.getDiskSchedulerWindow();
+        this.diskSchedulerMaxLatency = config.getDiskSchedulerMaxLatency();
+        this.numOfNetworkThreads = config.getNumOfNetworkThreads();
+        this.numOfDispatchingThreads = config.getNumOfDispatchingThreads();
+        this.sendQueueHighWaterMark = config.getSendQueueHighWaterMark();
+        this.maxPooledNetworkBuffers = config.getMaxPooledNetworkBuffers();
     }
 
     /**
@@ -379,7 +423,9 @@ public class Config {
 
     /**
      * @param numOfHashingThreads Set this value to 2 or greater,
-     *                            if verification of the torrent data should be parallelized
+     *                            if verification of the torrent data should be parallelized.
+     *                            This is also the number of threads, that verify downloaded pieces;
+     *                            these threads are shared by all torrents in the runtime
      * @since 1.1
      */
     public void setNumOfHashingThreads(int numOfHashingThreads) {
@@ -442,13 +488,14 @@ public class Config {
     }
 
     /**
-     * This option is related to the adaptive message processing interval feature in the message dispatcher.
-     * The lower this value the higher the ingoing/outgoing message processing rate but also higher the CPU load.
-     * Reasonable value (in 100..1000 ms range) greatly reduces the CPU load when there is little network activity
-     * without compromising the overall message exchange rates.
+     * The message dispatcher visits the message suppliers of a peer immediately after a message has been received
+     * from this peer, or after the peer's messaging agents have signaled, that there are new messages to send
+     * (see {@link bt.net.IMessageDispatcher#notifyReady(bt.net.Peer)}). Other peers are visited periodically,
+     * so that the messages, that are produced on timer (e.g. keep-alives), are sent in time.
+     * The lower this value the more often the idle peers are visited, and the higher the CPU load.
      *
      * @see bt.net.MessageDispatcher
-     * @param maxMessageProcessingInterval Maximum time to sleep between message processing loop iterations, in millis.
+     * @param maxMessageProcessingInterval Max time between consecutive visits of an idle peer's message suppliers.
      * @since 1.1
      */
     public void setMaxMessageProcessingInterval(Duration maxMessageProcessingInterval) {
@@ -636,4 +683,249 @@ public class Config {
     public Collection<AnnounceGroup> getLocalServiceDiscoveryAnnounceGroups() {
         return localServiceDiscoveryAnnounceGroups;
     }
+
+    /**
+     * @param maxOpenFiles Maximum number of files, that can be kept open simultaneously by file-system based storages of this runtime.
+     *                     Least recently used files are closed, when this limit is reached.
+     * @since 1.6
+     */
+    public void setMaxOpenFiles(int maxOpenFiles) {
+        this.maxOpenFiles = maxOpenFiles;
+    }
+
+    /**
+     * @since 1.6
+     */
+    public int getMaxOpenFiles() {
+        return maxOpenFiles;
+    }
+
+    /**
+     * @param writeBackCacheSize Maximum amount of memory (in bytes), that can be used to keep the blocks of pieces being downloaded
+     *                           before the pieces are verified and written to the storage. Shared among all torrents in this runtime.
+     *                           Use 0 to write blocks to the storage immediately.
+     * @since 1.6
+     */
+    public void setWriteBackCacheSize(int writeBackCacheSize) {
+        this.writeBackCacheSize = writeBackCacheSize;
+    }
+
+    /**
+     * @since 1.6
+     */
+    public int getWriteBackCacheSize() {
+        return writeBackCacheSize;
+    }
+
+    /**
+     * @param readCacheSize Maximum amount of memory (in bytes), that can be used to keep recently read pieces,
+     *                      so that subsequent requests for the same pieces are served without reading from the storage.
+     *                      Shared among all torrents in this runtime. Use 0 to disable caching.
+     * @since 1.6
+     */
+    public void setReadCacheSize(int readCacheSize) {
+        this.readCacheSize = readCacheSize;
+    }
+
+    /**
+     * @since 1.6
+     */
+    public int getReadCacheSize() {
+        return readCacheSize;
+    }
+
+    /**
+     * @param maxPooledBlockBuffers Max number of idle buffers for blocks of data, that are retained in the pool
+     *                              for subsequent reuse (each buffer has the size of {@link #getTransferBlockSize()});
+     *                              0 disables pooling
+     * @since 1.6
+     */
+    public void setMaxPooledBlockBuffers(int maxPooledBlockBuffers) {
+        this.maxPooledBlockBuffers = maxPooledBlockBuffers;
+    }
+
+    /**
+     * @since 1.6
+     */
+    public int getMaxPooledBlockBuffers() {
+        return maxPooledBlockBuffers;
+    }
+
+    /**
+     * @param numOfIOThreads Number of threads, that read and write blocks of data;
+     *                       these threads are shared by all torrents in the runtime
+     * @since 1.6
+     */
+    public void setNumOfIOThreads(int numOfIOThreads) {
+        this.numOfIOThreads = numOfIOThreads;
+    }
+
+    /**
+     * @since 1.6
+     */
+    public int getNumOfIOThreads() {
+        return numOfIOThreads;
+    }
+
+    /**
+     * @param fastResumeDirectory Directory to keep the fast resume files in (one file per torrent).
+     *                            The state of each torrent's data is saved there periodically and on shutdown,
+     *                            so that after restart only the files, that have been modified in the meantime,
+     *                            need to be re-checked.
+     *                            Null value disables fast resume (default).
+     * @since 1.6
+     */
+    public void setFastResumeDirectory(Path fastResumeDirectory) {
+        this.fastResumeDirectory = fastResumeDirectory;
+    }
+
+    /**
+     * @since 1.6
+     */
+    public Path getFastResumeDirectory() {
+        return fastResumeDirectory;
+    }
+
+    /**
+     * @param fastResumeSaveInterval Interval between periodic saves of the fast resume state.
+     *                               Only used, if fast resume is enabled (see {@link #setFastResumeDirectory(Path)})
+     * @since 1.6
+     */
+    public void setFastResumeSaveInterval(Duration fastResumeSaveInterval) {
+        this.fastResumeSaveInterval = fastResumeSaveInterval;
+    }
+
+    /**
+     * @since 1.6
+     */
+    public Duration getFastResumeSaveInterval() {
+        return fastResumeSaveInterval;
+    }
+
+    /**
+     * @param hashingReorderWindow Max number of out-of-order blocks per piece, that are kept in memory,
+     *                             while the piece is being hashed incrementally (as its blocks are received).
+     *                             If the window overflows, the piece is verified by reading it back from the storage,
+     *                             after it has been downloaded. To keep the window small,
+     *                             blocks of each piece are requested in the order of their offsets.
+     *                             0 disables incremental hashing (blocks are then requested in random order)
+     * @since 1.6
+     */
+    public void setHashingReorderWindow(int hashingReorderWindow) {
+        this.hashingReorderWindow = hashingReorderWindow;
+    }
+
+    /**
+     * @since 1.6
+     */
+    public int getHashingReorderWindow() {
+        return hashingReorderWindow;
+    }
+
+    /**
+     * @param diskSchedulerWindow Time, during which block reads and writes are collected by the disk scheduler, before being
+     *                            reordered by their location on disk. Meant for storage on spinning disks, where seeks are expensive.
+     *                            When enabled, blocks of verified pieces are read through the scheduler
+     *                            instead of the read cache (see {@link #setReadCacheSize(int)}).
+     *                            Use {@link Duration#ZERO} to disable the disk scheduler.
+     * @since 1.6
+     */
+    public void setDiskSchedulerWindow(Duration diskSchedulerWindow) {
+        this.diskSchedulerWindow = diskSchedulerWindow;
+    }
+
+    /**
+     * @since 1.6
+     */
+    public Duration getDiskSchedulerWindow() {
+        return diskSchedulerWindow;
+    }
+
+    /**
+     * @param diskSchedulerMaxLatency Max time, that a block read or write may wait in the disk scheduler
+     *                                before being performed out of order. Only used, if the disk scheduler is enabled
+     *                                (see {@link #setDiskSchedulerWindow(Duration)})
+     * @since 1.6
+     */
+    public void setDiskSchedulerMaxLatency(Duration diskSchedulerMaxLatency) {
+        this.diskSchedulerMaxLatency = diskSchedulerMaxLatency;
+    }
+
+    /**
+     * @since 1.6
+     */
+    public Duration getDiskSchedulerMaxLatency() {
+        return diskSchedulerMaxLatency;
+    }
+
+    /**
+     * @param numOfNetworkThreads Number of threads, that receive and decode messages from peer connections.
+     *                            Each thread has its own selector and serves a part of the connections,
+     *                            so that reading from a large number of connections can make use of several CPU cores.
+     * @since 1.6
+     */
+    public void setNumOfNetworkThreads(int numOfNetworkThreads) {
+        this.numOfNetworkThreads = numOfNetworkThreads;
+    }
+
+    /**
+     * @since 1.6
+     */
+    public int getNumOfNetworkThreads() {
+        return numOfNetworkThreads;
+    }
+
+    /**
+     * @param numOfDispatchingThreads Number of threads, that dispatch received messages to the messaging agents and collect outgoing messages.
+     *                                All peers of a particular torrent are served by the same thread, so that a slow messaging agent of one torrent
+     *                                does not delay the messages of torrents, that are served by other threads.
+     * @since 1.6
+     */
+    public void setNumOfDispatchingThreads(int numOfDispatchingThreads) {
+        this.numOfDispatchingThreads = numOfDispatchingThreads;
+    }
+
+    /**
+     * @since 1.6
+     */
+    public int getNumOfDispatchingThreads() {
+        return numOfDispatchingThreads;
+    }
+
+    /**
+     * @param sendQueueHighWaterMark Amount of outgoing data (in bytes), that may be queued for a single peer connection,
+     *                               before the message suppliers of this peer are no longer visited. Suppliers are visited again,
+     *                               when the queued data has been sent, i.e. when the peer's socket becomes writable.
+     * @since 1.6
+     */
+    public void setSendQueueHighWaterMark(int sendQueueHighWaterMark) {
+        this.sendQueueHighWaterMark = sendQueueHighWaterMark;
+    }
+
+    /**
+     * @since 1.6
+     */
+    public int getSendQueueHighWaterMark() {
+        return sendQueueHighWaterMark;
+    }
+
+    /**
+     * @param maxPooledNetworkBuffers Max number of idle network buffers, that are retained in the pool
+     *                                for subsequent reuse (each buffer is twice the size of
+     *                                {@link #getMaxTransferBlockSize()}); 0 disables pooling.
+     *                                Network buffers are shared by all connections: a connection holds a buffer
+     *                                only while a message is being encoded, or while a partially received message
+     *                                is waiting for the rest of its data.
+     * @since 1.6
+     */
+    public void setMaxPooledNetworkBuffers(int maxPooledNetworkBuffers) {
+        this.maxPooledNetworkBuffers = maxPooledNetworkBuffers;
+    }
+
+    /**
+     * @since 1.6
+     */
+    public int getMaxPooledNetworkBuffers() {
+        return maxPooledNetworkBuffers;
+    }
 }
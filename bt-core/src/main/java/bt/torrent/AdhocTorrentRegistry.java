@@ -16,10 +16,12 @@
 
 package bt.torrent;
 
+import bt.data.FilePriority;
 import bt.data.IDataDescriptorFactory;
 import bt.data.Storage;
 import bt.event.EventSink;
 import bt.metainfo.Torrent;
+import bt.metainfo.TorrentFile;
 import bt.metainfo.TorrentId;
 import bt.service.IRuntimeLifecycleBinder;
 import com.google.inject.Inject;
@@ -32,6 +34,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 
 /**
  * Simple in-memory torrent registry, that creates new descriptors upon request.
@@ -97,6 +100,13 @@ public class AdhocTorrentRegistry implements TorrentRegistry {
 
     @Override
     public TorrentDescriptor register(Torrent torrent, Storage storage) {
+        return register(torrent, storage, null);
+    }
+
+    @Override
+    public TorrentDescriptor register(Torrent torrent,
+                                      Storage storage,
+                                      Function<TorrentFile, FilePriority> filePriorities) {
         TorrentId torrentId = torrent.getTorrentId();
 
         DefaultTorrentDescriptor descriptor = descriptors.get(torrentId);
@@ -105,11 +115,11 @@ public class AdhocTorrentRegistry implements TorrentRegistry {
                 throw new IllegalStateException(
                         "Torrent already registered and data descriptor created: " + torrent.getTorrentId());
             }
-            descriptor.setDataDescriptor(dataDescriptorFactory.createDescriptor(torrent, storage));
+            descriptor.setDataDescriptor(dataDescriptorFactory.createDescriptor(torrent, storage, filePriorities));
 
         } else {
             descriptor = new DefaultTorrentDescriptor(torrentId, eventSink);
-            descriptor.setDataDescriptor(dataDescriptorFactory.createDescriptor(torrent, storage));
+            descriptor.setDataDescriptor(dataDescriptorFactory.createDescriptor(torrent, storage, filePriorities));
 
             DefaultTorrentDescriptor existing = descriptors.putIfAbsent(torrentId, descriptor);
             if (existing != null) {
@@ -143,6 +153,10 @@ public class AdhocTorrentRegistry implements TorrentRegistry {
 
     private void addShutdownHook(TorrentId torrentId, TorrentDescriptor descriptor) {
         lifecycleBinder.onShutdown("Closing data descriptor for torrent ID: " + torrentId, () -> {
+            if (descriptor.isActive()) {
+                // let the torrent's components write out the data, that is still kept in memory
+                descriptor.stop();
+            }
             if (descriptor.getDataDescriptor() != null) {
                 try {
                     descriptor.getDataDescriptor().close();
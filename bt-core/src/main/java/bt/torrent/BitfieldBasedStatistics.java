@@ -17,7 +17,6 @@
 package bt.torrent;
 
 import bt.data.Bitfield;
-import bt.data.Bitfield.PieceStatus;
 import bt.net.Peer;
 
 import java.util.Map;
@@ -57,10 +56,8 @@ public class BitfieldBasedStatistics implements PieceStatistics {
         validateBitfieldLength(bitfield);
         peerBitfields.put(peer, bitfield);
 
-        for (int i = 0; i < pieceTotals.length; i++) {
-            if (bitfield.getPieceStatus(i) == PieceStatus.COMPLETE_VERIFIED) {
-                incrementPieceTotal(i);
-            }
+        for (int i = bitfield.nextSetBit(0); i >= 0; i = bitfield.nextSetBit(i + 1)) {
+            incrementPieceTotal(i);
         }
     }
 
@@ -80,10 +77,8 @@ public class BitfieldBasedStatistics implements PieceStatistics {
             return;
         }
 
-        for (int i = 0; i < pieceTotals.length; i++) {
-            if (bitfield.getPieceStatus(i) == PieceStatus.COMPLETE_VERIFIED) {
-                decrementPieceTotal(i);
-            }
+        for (int i = bitfield.nextSetBit(0); i >= 0; i = bitfield.nextSetBit(i + 1)) {
+            decrementPieceTotal(i);
         }
     }
 
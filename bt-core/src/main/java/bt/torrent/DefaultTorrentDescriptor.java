@@ -19,6 +19,7 @@ package bt.torrent;
 import bt.data.DataDescriptor;
 import bt.event.EventSink;
 import bt.metainfo.TorrentId;
+import bt.torrent.data.DataWorker;
 
 class DefaultTorrentDescriptor implements TorrentDescriptor {
 
@@ -28,6 +29,8 @@ class DefaultTorrentDescriptor implements TorrentDescriptor {
     // !! this can be null in case with magnets (and in the beginning of processing) !!
     private volatile DataDescriptor dataDescriptor;
 
+    private volatile DataWorker dataWorker;
+
     private volatile boolean active;
 
     DefaultTorrentDescriptor(TorrentId torrentId, EventSink eventSink) {
@@ -47,9 +50,16 @@ class DefaultTorrentDescriptor implements TorrentDescriptor {
     }
 
     @Override
-    public synchronized void stop() {
-        active = false;
-        eventSink.fireTorrentStopped(torrentId);
+    public void stop() {
+        synchronized (this) {
+            active = false;
+            eventSink.fireTorrentStopped(torrentId);
+        }
+        // blocks, that are kept in memory, must reach the storage before it's closed
+        DataWorker dataWorker = this.dataWorker;
+        if (dataWorker != null) {
+            dataWorker.flush();
+        }
     }
 
     @Override
@@ -63,6 +73,11 @@ class DefaultTorrentDescriptor implements TorrentDescriptor {
         return dataDescriptor;
     }
 
+    @Override
+    public void setDataWorker(DataWorker dataWorker) {
+        this.dataWorker = dataWorker;
+    }
+
     void setDataDescriptor(DataDescriptor dataDescriptor) {
         this.dataDescriptor = dataDescriptor;
     }
@@ -16,6 +16,7 @@
 
 package bt.torrent;
 
+import bt.data.DataDescriptor;
 import bt.net.Peer;
 import bt.torrent.messaging.ConnectionState;
 import bt.torrent.messaging.TorrentWorker;
@@ -71,7 +72,9 @@ public class DefaultTorrentSessionState implements TorrentSessionState {
     @Override
     public int getPiecesRemaining() {
         if (descriptor.getDataDescriptor() != null) {
-            return descriptor.getDataDescriptor().getBitfield().getPiecesRemaining();
+            DataDescriptor dataDescriptor = descriptor.getDataDescriptor();
+            // skipped pieces are not counted, so that the torrent is complete, when all wanted pieces are verified
+            return dataDescriptor.getPiecePriorities().getWantedPiecesRemaining(dataDescriptor.getBitfield());
         } else {
             return 1;
         }
@@ -17,6 +17,7 @@
 package bt.torrent;
 
 import bt.data.DataDescriptor;
+import bt.torrent.data.DataWorker;
 
 /**
  * Provides an interface for controlling
@@ -41,6 +42,8 @@ public interface TorrentDescriptor {
 
     /**
      * Issue a request to stop torrent processing
+     * <p>Blocks, that are kept in memory by the torrent's data worker (see {@link #setDataWorker(DataWorker)}),
+     * are written to the storage before this method returns.
      *
      * @since 1.0
      */
@@ -58,4 +61,15 @@ public interface TorrentDescriptor {
      * @since 1.0
      */
     DataDescriptor getDataDescriptor();
+
+    /**
+     * Set the worker, that performs I/O on this torrent's data during the current processing session.
+     * Default implementation does nothing.
+     *
+     * @param dataWorker Data worker, that must be flushed, when the torrent is stopped
+     * @since 1.6
+     */
+    default void setDataWorker(DataWorker dataWorker) {
+        // do nothing
+    }
 }
@@ -16,12 +16,15 @@
 
 package bt.torrent;
 
+import bt.data.FilePriority;
 import bt.data.Storage;
 import bt.metainfo.Torrent;
+import bt.metainfo.TorrentFile;
 import bt.metainfo.TorrentId;
 
 import java.util.Collection;
 import java.util.Optional;
+import java.util.function.Function;
 
 /**
  * Registry of all torrents known to the current runtime.
@@ -94,6 +97,23 @@ public interface TorrentRegistry {
      */
     TorrentDescriptor register(Torrent torrent, Storage storage);
 
+    /**
+     * Get an existing torrent descriptor for a given torrent
+     * or create a new one if it does not exist.
+     *
+     * @param storage Storage to use for storing this torrent's files.
+     *                Will be used when creating a new torrent descriptor.
+     * @param filePriorities Priorities of torrent's files or null, if all files should be downloaded.
+     *                       Will be used when creating a new torrent descriptor.
+     * @return Torrent descriptor
+     * @since 1.6
+     */
+    default TorrentDescriptor register(Torrent torrent,
+                                       Storage storage,
+                                       Function<TorrentFile, FilePriority> filePriorities) {
+        return register(torrent, storage);
+    }
+
     /**
      * Get an existing torrent descriptor for a given torrent ID
      * or create a new one if it does not exist.
@@ -35,6 +35,7 @@ public interface TorrentSessionState {
 
     /**
      * @return Number of pieces, that the local client does not have yet
+     *         (pieces of skipped files are not counted)
      * @since 1.0
      */
     int getPiecesRemaining();
@@ -17,6 +17,7 @@
 package bt.torrent.data;
 
 import bt.net.Peer;
+import bt.protocol.BlockReader;
 
 import java.util.Optional;
 
@@ -27,7 +28,10 @@ import java.util.Optional;
  * this means that the request was not accepted by the data worker.
  * If {@link #getError()} is not empty,
  * this means that an exception happened during the request processing.
- * Subsequently, {@link #getBlock()} will return {@link Optional#empty()} in both cases.
+ * Subsequently, {@link #getBlock()} and {@link #getReader()} will return {@link Optional#empty()} in both cases.
+ *
+ * <p>Successfully completed request provides either the block's contents ({@link #getBlock()})
+ * or a reader, that will read the block on demand ({@link #getReader()}).
  *
  * @since 1.0
  */
@@ -37,38 +41,50 @@ public class BlockRead {
      * @since 1.0
      */
     static BlockRead complete(Peer peer, int pieceIndex, int offset, byte[] block) {
-        return new BlockRead(peer, null, false, pieceIndex, offset, block);
+        return new BlockRead(peer, null, false, pieceIndex, offset, block.length, block, null);
+    }
+
+    /**
+     * @since 1.6
+     */
+    static BlockRead complete(Peer peer, int pieceIndex, int offset, int length, BlockReader reader) {
+        return new BlockRead(peer, null, false, pieceIndex, offset, length, null, reader);
     }
 
     /**
      * @since 1.0
      */
     static BlockRead rejected(Peer peer, int pieceIndex, int offset) {
-        return new BlockRead(peer, null, true, pieceIndex, offset, null);
+        return new BlockRead(peer, null, true, pieceIndex, offset, 0, null, null);
     }
 
     /**
      * @since 1.0
      */
     static BlockRead exceptional(Peer peer, Throwable error, int pieceIndex, int offset) {
-        return new BlockRead(peer, error, false, pieceIndex, offset, null);
+        return new BlockRead(peer, error, false, pieceIndex, offset, 0, null, null);
     }
 
     private Peer peer;
     private int pieceIndex;
     private int offset;
+    private int length;
     private Optional<byte[]> block;
+    private Optional<BlockReader> reader;
 
     private boolean rejected;
     private Optional<Throwable> error;
 
-    private BlockRead(Peer peer, Throwable error, boolean rejected, int pieceIndex, int offset, byte[] block) {
+    private BlockRead(Peer peer, Throwable error, boolean rejected,
+                      int pieceIndex, int offset, int length, byte[] block, BlockReader reader) {
         this.peer = peer;
         this.error = Optional.ofNullable(error);
         this.rejected = rejected;
         this.pieceIndex = pieceIndex;
         this.offset = offset;
+        this.length = length;
         this.block = Optional.ofNullable(block);
+        this.reader = Optional.ofNullable(reader);
     }
 
     /**
@@ -103,15 +119,34 @@ public class BlockRead {
         return offset;
     }
 
+    /**
+     * @return Length of the block
+     * @since 1.6
+     */
+    public int getLength() {
+        return length;
+    }
+
     /**
      * @return Block of data or {@link Optional#empty()},
-     *         if {@link #isRejected()} returns true or if {@link #getError()} is not empty
+     *         if {@link #isRejected()} returns true or if {@link #getError()} is not empty,
+     *         or if the block should be read on demand via {@link #getReader()}
      * @since 1.0
      */
     public Optional<byte[]> getBlock() {
         return block;
     }
 
+    /**
+     * @return Reader, that will read the block on demand, or {@link Optional#empty()},
+     *         if the block has already been read ({@link #getBlock()}),
+     *         or if {@link #isRejected()} returns true or if {@link #getError()} is not empty
+     * @since 1.6
+     */
+    public Optional<BlockReader> getReader() {
+        return reader;
+    }
+
     /**
      * @return {@link Optional#empty()} if processing of the request completed normally,
      *         or exception otherwise.
@@ -40,28 +40,30 @@ public class BlockWrite {
     static BlockWrite complete(Peer peer,
                                int pieceIndex,
                                int offset,
+                               int length,
                                byte[] block,
                                CompletableFuture<Boolean> verificationFuture) {
-        return new BlockWrite(peer, null, false, pieceIndex, offset, block, verificationFuture);
+        return new BlockWrite(peer, null, false, pieceIndex, offset, length, block, verificationFuture);
     }
 
     /**
      * @since 1.0
      */
-    static BlockWrite rejected(Peer peer, int pieceIndex, int offset, byte[] block) {
-        return new BlockWrite(peer, null, true, pieceIndex, offset, block, null);
+    static BlockWrite rejected(Peer peer, int pieceIndex, int offset, int length, byte[] block) {
+        return new BlockWrite(peer, null, true, pieceIndex, offset, length, block, null);
     }
 
     /**
      * @since 1.0
      */
-    static BlockWrite exceptional(Peer peer, Throwable error, int pieceIndex, int offset, byte[] block) {
-        return new BlockWrite(peer, error, false, pieceIndex, offset, block, null);
+    static BlockWrite exceptional(Peer peer, Throwable error, int pieceIndex, int offset, int length, byte[] block) {
+        return new BlockWrite(peer, error, false, pieceIndex, offset, length, block, null);
     }
 
     private Peer peer;
     private int pieceIndex;
     private int offset;
+    private int length;
     private byte[] block;
 
     private boolean rejected;
@@ -74,6 +76,7 @@ public class BlockWrite {
                        boolean rejected,
                        int pieceIndex,
                        int offset,
+                       int length,
                        byte[] block,
                        CompletableFuture<Boolean> verificationFuture) {
         this.peer = peer;
@@ -81,6 +84,7 @@ public class BlockWrite {
         this.rejected = rejected;
         this.pieceIndex = pieceIndex;
         this.offset = offset;
+        this.length = length;
         this.block = block;
         this.verificationFuture = Optional.ofNullable(verificationFuture);
     }
@@ -118,7 +122,16 @@ public class BlockWrite {
     }
 
     /**
-     * @return Block of data
+     * @return Length of the block
+     * @since 1.6
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return Block of data or null, if the block has been passed to the data worker in a pooled buffer
+     *         (such buffers are returned to the pool as soon as the block has been processed)
      * @since 1.0
      */
     public byte[] getBlock() {
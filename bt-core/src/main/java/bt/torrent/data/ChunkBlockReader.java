@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.torrent.data;
+
+import bt.data.ChunkDescriptor;
+import bt.protocol.BlockReader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Reads a block of a verified piece on demand.
+ *
+ * <p>Copying goes through the read cache, while transferring goes directly from the storage.
+ *
+ * @since 1.6
+ */
+class ChunkBlockReader implements BlockReader {
+
+    private final ChunkDescriptor chunk;
+    private final int offset;
+    private final int length;
+    private final ReadCache readCache;
+
+    ChunkBlockReader(ChunkDescriptor chunk, int offset, int length, ReadCache readCache) {
+        this.chunk = chunk;
+        this.offset = offset;
+        this.length = length;
+        this.readCache = readCache;
+    }
+
+    @Override
+    public boolean readTo(ByteBuffer buffer) {
+        if (buffer.remaining() < length) {
+            return false;
+        }
+        int limit = buffer.limit();
+        buffer.limit(buffer.position() + length);
+        try {
+            readCache.readBlock(chunk, offset, buffer);
+        } finally {
+            buffer.limit(limit);
+        }
+        return true;
+    }
+
+    @Override
+    public long transferTo(long position, WritableByteChannel target) throws IOException {
+        if (position < 0 || position >= length) {
+            throw new IllegalArgumentException("Invalid position: " + position + ", block length: " + length);
+        }
+
+        long[] transferred = new long[1];
+        IOException[] error = new IOException[1];
+        chunk.getData().getSubrange(offset + position, length - position).visitUnits((unit, off, lim) -> {
+            long count = lim - off;
+            long written;
+            try {
+                written = unit.transferTo(off, count, target);
+            } catch (IOException e) {
+                error[0] = e;
+                return false;
+            }
+            transferred[0] += written;
+            // stop, if the target channel can't accept more data at the moment
+            return written == count;
+        });
+
+        if (error[0] != null) {
+            throw error[0];
+        }
+        return transferred[0];
+    }
+}
@@ -17,6 +17,7 @@
 package bt.torrent.data;
 
 import bt.net.Peer;
+import bt.net.buffer.PooledBuffer;
 
 import java.util.concurrent.CompletableFuture;
 
@@ -50,4 +51,50 @@ public interface DataWorker {
      * @since 1.0
      */
     CompletableFuture<BlockWrite> addBlock(Peer peer, int pieceIndex, int offset, byte[] block);
+
+    /**
+     * Add a write block request for a block, that is kept in a pooled buffer.
+     * The data worker takes over the caller's reference to the buffer and releases it,
+     * when the block has been processed (or the request has been rejected).
+     *
+     * @param peer Peer, that the data has been received from
+     * @param pieceIndex Index of the piece to write to (0-based)
+     * @param offset Offset in piece to start writing to (0-based)
+     * @param block Data
+     * @return Future; rejected requests are returned immediately (see {@link BlockWrite#isRejected()})
+     * @since 1.6
+     */
+    default CompletableFuture<BlockWrite> addBlock(Peer peer, int pieceIndex, int offset, PooledBuffer block) {
+        byte[] bytes = new byte[block.length()];
+        try {
+            block.getData().get(bytes);
+        } finally {
+            block.release();
+        }
+        return addBlock(peer, pieceIndex, offset, bytes);
+    }
+
+    /**
+     * Check if a block has been received, but is kept in memory and is not in the storage yet,
+     * so that it should not be requested again.
+     *
+     * @param pieceIndex Index of the piece (0-based)
+     * @param blockIndex Index of the block in the piece (0-based)
+     * @return true, if the block is going to be written to the storage
+     * @since 1.6
+     */
+    default boolean isBlockBuffered(int pieceIndex, int blockIndex) {
+        return false;
+    }
+
+    /**
+     * Write all blocks, that are kept in memory, to the storage and wait for the writes to complete.
+     * No more blocks will be kept in memory after this method has been called.
+     * Invoked, when the torrent is stopped.
+     *
+     * @since 1.6
+     */
+    default void flush() {
+        // do nothing
+    }
 }
@@ -18,7 +18,12 @@ package bt.torrent.data;
 
 import bt.data.ChunkVerifier;
 import bt.data.DataDescriptor;
-import bt.service.IRuntimeLifecycleBinder;
+import bt.net.IPeerConnectionPool;
+import bt.net.Peer;
+import bt.net.PeerConnection;
+
+import java.time.Duration;
+import java.util.function.Predicate;
 
 /**
  *<p><b>Note that this class implements a service.
@@ -26,18 +31,63 @@ import bt.service.IRuntimeLifecycleBinder;
  */
 public class DataWorkerFactory implements IDataWorkerFactory {
 
-    private IRuntimeLifecycleBinder lifecycleBinder;
     private ChunkVerifier verifier;
+    private WriteBackCache writeBackCache;
+    private ReadCache readCache;
+    private DataWorkerPool pool;
+    private DiskScheduler diskScheduler;
+    private Predicate<Peer> blockTransferSupported;
     private int maxIOQueueSize;
 
-    public DataWorkerFactory(IRuntimeLifecycleBinder lifecycleBinder, ChunkVerifier verifier, int maxIOQueueSize) {
-        this.lifecycleBinder = lifecycleBinder;
+    public DataWorkerFactory(ChunkVerifier verifier,
+                             WriteBackCache writeBackCache,
+                             ReadCache readCache,
+                             DataWorkerPool pool,
+                             int maxIOQueueSize) {
+        this(verifier, writeBackCache, readCache, pool, new DiskScheduler(Duration.ZERO, Duration.ZERO), maxIOQueueSize);
+    }
+
+    /**
+     * @since 1.6
+     */
+    public DataWorkerFactory(ChunkVerifier verifier,
+                             WriteBackCache writeBackCache,
+                             ReadCache readCache,
+                             DataWorkerPool pool,
+                             DiskScheduler diskScheduler,
+                             int maxIOQueueSize) {
         this.verifier = verifier;
+        this.writeBackCache = writeBackCache;
+        this.readCache = readCache;
+        this.pool = pool;
+        this.diskScheduler = diskScheduler;
+        this.blockTransferSupported = peer -> true;
         this.maxIOQueueSize = maxIOQueueSize;
     }
 
+    /**
+     * @param connectionPool Blocks of verified pieces are read on demand only for those peers,
+     *                       whose connections support transferring blocks directly from the storage
+     *                       (see {@link PeerConnection#supportsBlockTransfer()})
+     * @since 1.6
+     */
+    public DataWorkerFactory(ChunkVerifier verifier,
+                             WriteBackCache writeBackCache,
+                             ReadCache readCache,
+                             DataWorkerPool pool,
+                             DiskScheduler diskScheduler,
+                             IPeerConnectionPool connectionPool,
+                             int maxIOQueueSize) {
+        this(verifier, writeBackCache, readCache, pool, diskScheduler, maxIOQueueSize);
+        this.blockTransferSupported = peer -> {
+            PeerConnection connection = (peer == null) ? null : connectionPool.getConnection(peer);
+            return connection != null && connection.supportsBlockTransfer();
+        };
+    }
+
     @Override
     public DataWorker createWorker(DataDescriptor dataDescriptor) {
-        return new DefaultDataWorker(lifecycleBinder, dataDescriptor, verifier, maxIOQueueSize);
+        return new DefaultDataWorker(dataDescriptor, verifier, writeBackCache, readCache, pool,
+                diskScheduler, blockTransferSupported, maxIOQueueSize);
     }
 }
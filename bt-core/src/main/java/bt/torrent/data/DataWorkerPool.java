@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.torrent.data;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads, that are shared by the data workers of all torrents in the runtime.
+ *
+ * <p>Block reads and writes are performed by a fixed number of I/O threads. Tasks are striped:
+ * each task is assigned to one of the I/O threads by its stripe key (e.g. piece index),
+ * so that all tasks with the same key are executed in the order of submission,
+ * while tasks with different keys run in parallel.
+ *
+ * <p>Piece verification is CPU-bound and is performed by a separate pool of hashing threads,
+ * so that it does not delay the I/O of other pieces.
+ *
+ * <p>Total number of threads does not depend on the number of torrents.
+ *
+ * @since 1.6
+ */
+public class DataWorkerPool {
+
+    private final ExecutorService[] ioExecutors;
+    private final ExecutorService hashingExecutor;
+
+    /**
+     * @param numOfIOThreads Number of threads, that perform block reads and writes
+     * @param numOfHashingThreads Number of threads, that verify pieces
+     * @since 1.6
+     */
+    public DataWorkerPool(int numOfIOThreads, int numOfHashingThreads) {
+        if (numOfIOThreads <= 0) {
+            throw new IllegalArgumentException("Invalid number of I/O threads: " + numOfIOThreads);
+        }
+        if (numOfHashingThreads <= 0) {
+            throw new IllegalArgumentException("Invalid number of hashing threads: " + numOfHashingThreads);
+        }
+
+        this.ioExecutors = new ExecutorService[numOfIOThreads];
+        for (int i = 0; i < numOfIOThreads; i++) {
+            String name = "bt.torrent.data.io-" + (i + 1);
+            ioExecutors[i] = Executors.newSingleThreadExecutor(r -> new Thread(r, name));
+        }
+        this.hashingExecutor = Executors.newFixedThreadPool(numOfHashingThreads, new ThreadFactory() {
+
+            private AtomicInteger i = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "bt.torrent.data.hashing-" + i.incrementAndGet());
+            }
+        });
+    }
+
+    /**
+     * @param stripe Stripe key; tasks with equal keys are executed sequentially in the order of submission
+     * @return Executor of the I/O thread, that the stripe is assigned to
+     */
+    Executor getIOExecutor(int stripe) {
+        return ioExecutors[Math.floorMod(stripe, ioExecutors.length)];
+    }
+
+    /**
+     * @return Executor for piece verification; also used for the initial verification of torrents' data
+     * @since 1.6
+     */
+    public Executor getHashingExecutor() {
+        return hashingExecutor;
+    }
+
+    /**
+     * @return Number of threads, that perform block reads and writes
+     * @since 1.6
+     */
+    public int getNumOfIOThreads() {
+        return ioExecutors.length;
+    }
+
+    /**
+     * Stop all threads. Pending tasks are not executed.
+     *
+     * @since 1.6
+     */
+    public void shutdown() {
+        for (ExecutorService executor : ioExecutors) {
+            executor.shutdownNow();
+        }
+        hashingExecutor.shutdownNow();
+    }
+}
@@ -17,50 +17,163 @@
 package bt.torrent.data;
 
 import bt.data.ChunkDescriptor;
+import bt.data.ChunkHasher;
 import bt.data.ChunkVerifier;
 import bt.data.DataDescriptor;
 import bt.net.Peer;
-import bt.service.IRuntimeLifecycleBinder;
+import bt.net.buffer.PooledBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
+/**
+ * Data worker, that issues reads and writes from the shared I/O threads (see {@link DataWorkerPool}),
+ * but does not wait for them to complete.
+ *
+ * <p>All tasks of a particular piece are executed by the same I/O thread in the order of submission,
+ * while different pieces are processed in parallel.
+ * Requests are completed from the I/O completion handlers of the underlying storage
+ * (see {@link bt.data.AsyncStorageUnit}), so up to {@code maxQueueLength} requests
+ * might be in flight at the same time. For synchronous storage units
+ * the I/O is performed in the I/O thread itself.
+ *
+ * <p>Pieces are verified by the shared hashing threads. If possible, pieces are hashed incrementally,
+ * as their blocks are being received (see {@link ChunkHasher}), so that they don't need to be read back
+ * from the storage upon completion.
+ *
+ * <p>Blocks, that are written to the storage directly (i.e. not buffered in the {@link WriteBackCache}),
+ * are batched: adjacent blocks of the same piece, that are waiting to be written at the same time,
+ * are written with a single vectored write.
+ *
+ * <p>If the {@link DiskScheduler} is enabled, block reads and direct writes are submitted to it instead,
+ * to be performed in the order of their location in the storage. In this case blocks of verified pieces
+ * are read eagerly rather than when being sent to the peer, bypassing the {@link ReadCache}.
+ *
+ * <p>Blocks of verified pieces are also read eagerly (through the {@link ReadCache}) for peers,
+ * whose connections can't transfer blocks directly from the storage (e.g. encrypted connections),
+ * so that the storage is never accessed from the messaging threads.
+ *
+ * <p>When the torrent is stopped, the blocks, that are kept in the {@link WriteBackCache},
+ * are written to the storage (see {@link #flush()}), and no more pieces are buffered.
+ */
 class DefaultDataWorker implements DataWorker {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultDataWorker.class);
 
     private DataDescriptor data;
     private ChunkVerifier verifier;
+    private WriteBackCache writeBackCache;
+    private ReadCache readCache;
+    private DiskScheduler diskScheduler;
+    private Predicate<Peer> blockTransferSupported;
+
+    /**
+     * Used to spread pieces with equal indices of different torrents among the I/O threads
+     */
+    private static final AtomicInteger STRIPE_OFFSETS = new AtomicInteger();
 
-    private final ExecutorService executor;
+    /**
+     * Buffers of pieces being downloaded or verified;
+     * each piece's buffer is accessed only from the I/O thread, that the piece is assigned to
+     */
+    private final Map<Integer, PieceBuffer> pieceBuffers;
+    /**
+     * Buffers, that have been evicted from the cache, but are still being written to the storage
+     */
+    private final ConcurrentMap<Integer, PieceBuffer> evictedBuffers;
+    /**
+     * Verifications of pieces, that have been written to the storage directly
+     */
+    private final ConcurrentMap<Integer, CompletableFuture<Boolean>> verifications;
+    /**
+     * Incremental hashers of pieces being downloaded;
+     * each piece's hasher is updated only from the I/O thread, that the piece is assigned to
+     */
+    private final Map<Integer, ChunkHasher> hashers;
+    /**
+     * Blocks, that are waiting to be written to the storage directly;
+     * each piece's list is accessed only from the I/O thread, that the piece is assigned to
+     */
+    private final Map<Integer, List<PendingWrite>> pendingWrites;
+
+    private final DataWorkerPool pool;
+    private final int stripeOffset;
     private final int maxPendingTasks;
     private final AtomicInteger pendingTasksCount;
 
-    public DefaultDataWorker(IRuntimeLifecycleBinder lifecycleBinder,
-                             DataDescriptor data,
+    private volatile boolean flushed;
+
+    public DefaultDataWorker(DataDescriptor data,
                              ChunkVerifier verifier,
+                             WriteBackCache writeBackCache,
+                             ReadCache readCache,
+                             DataWorkerPool pool,
                              int maxQueueLength) {
+        this(data, verifier, writeBackCache, readCache, pool, new DiskScheduler(Duration.ZERO, Duration.ZERO),
+                maxQueueLength);
+    }
 
-        this.data = data;
-        this.verifier = verifier;
-        this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+    /**
+     * @since 1.6
+     */
+    public DefaultDataWorker(DataDescriptor data,
+                             ChunkVerifier verifier,
+                             WriteBackCache writeBackCache,
+                             ReadCache readCache,
+                             DataWorkerPool pool,
+                             DiskScheduler diskScheduler,
+                             int maxQueueLength) {
+        this(data, verifier, writeBackCache, readCache, pool, diskScheduler, peer -> true, maxQueueLength);
+    }
 
-            private AtomicInteger i = new AtomicInteger();
+    /**
+     * @param blockTransferSupported Tells, if blocks can be transferred directly from the storage
+     *                               to the peer's connection; otherwise blocks are read by the I/O threads
+     * @since 1.6
+     */
+    public DefaultDataWorker(DataDescriptor data,
+                             ChunkVerifier verifier,
+                             WriteBackCache writeBackCache,
+                             ReadCache readCache,
+                             DataWorkerPool pool,
+                             DiskScheduler diskScheduler,
+                             Predicate<Peer> blockTransferSupported,
+                             int maxQueueLength) {
 
-            @Override
-            public Thread newThread(Runnable r) {
-                return new Thread(r, "bt.torrent.data.worker-" + i.incrementAndGet());
-            }
-        });
+        this.data = data;
+        this.verifier = verifier;
+        this.writeBackCache = writeBackCache;
+        this.readCache = readCache;
+        this.diskScheduler = diskScheduler;
+        this.blockTransferSupported = blockTransferSupported;
+        this.pieceBuffers = new ConcurrentHashMap<>();
+        this.evictedBuffers = new ConcurrentHashMap<>();
+        this.verifications = new ConcurrentHashMap<>();
+        this.hashers = new ConcurrentHashMap<>();
+        this.pendingWrites = new ConcurrentHashMap<>();
+        this.pool = pool;
+        this.stripeOffset = STRIPE_OFFSETS.getAndIncrement();
         this.maxPendingTasks = maxQueueLength;
         this.pendingTasksCount = new AtomicInteger();
+    }
 
-        lifecycleBinder.onShutdown("Shutdown data worker for descriptor: " + data, this.executor::shutdownNow);
+    private Executor getExecutor(int pieceIndex) {
+        return pool.getIOExecutor(stripeOffset + pieceIndex);
     }
 
     @Override
@@ -70,62 +183,389 @@ class DefaultDataWorker implements DataWorker {
             return CompletableFuture.completedFuture(BlockRead.rejected(peer, pieceIndex, offset));
         } else {
             pendingTasksCount.incrementAndGet();
-            return CompletableFuture.supplyAsync(() -> {
-                try {
-                    ChunkDescriptor chunk = data.getChunkDescriptors().get(pieceIndex);
-                    byte[] block = chunk.getData().getSubrange(offset, length).getBytes();
-                    return BlockRead.complete(peer, pieceIndex, offset, block);
-                } catch (Throwable e) {
-                    return BlockRead.exceptional(peer, e, pieceIndex, offset);
-                } finally {
-                    pendingTasksCount.decrementAndGet();
+            return CompletableFuture.supplyAsync(() -> readBlock(peer, pieceIndex, offset, length), getExecutor(pieceIndex))
+                    .thenCompose(Function.identity())
+                    .whenComplete((read, error) -> pendingTasksCount.decrementAndGet());
+        }
+    }
+
+    private CompletableFuture<BlockRead> readBlock(Peer peer, int pieceIndex, int offset, int length) {
+        try {
+            ChunkDescriptor chunk = data.getChunkDescriptors().get(pieceIndex);
+            if (offset < 0 || length <= 0 || offset > chunk.length() - length) {
+                throw new IllegalArgumentException("Block does not fit in the piece: offset (" + offset +
+                        "), block length (" + length + "), piece length (" + chunk.length() + ")");
+            }
+
+            if (data.getBitfield().isVerified(pieceIndex) && !diskScheduler.isEnabled()) {
+                ChunkBlockReader reader = new ChunkBlockReader(chunk, offset, length, readCache);
+                if (blockTransferSupported.test(peer)) {
+                    // contents of a verified piece won't change, so the block can be read later,
+                    // when it's actually being sent to the peer
+                    return CompletableFuture.completedFuture(
+                            BlockRead.complete(peer, pieceIndex, offset, length, reader));
                 }
-            }, executor);
+                // the block will have to be copied anyway, so do it now rather than in the messaging thread
+                byte[] block = new byte[length];
+                reader.readTo(ByteBuffer.wrap(block));
+                return CompletableFuture.completedFuture(BlockRead.complete(peer, pieceIndex, offset, block));
+            }
+
+            byte[] block = new byte[length];
+            CompletableFuture<Void> read = diskScheduler.isEnabled() ?
+                    diskScheduler.read(stripeOffset, pieceIndex, chunk.getData(), offset, ByteBuffer.wrap(block)) :
+                    chunk.getData().getSubrange(offset, length).getBytesAsync(ByteBuffer.wrap(block));
+            return read
+                    .handle((nothing, error) -> (error == null) ?
+                            BlockRead.complete(peer, pieceIndex, offset, block) :
+                            BlockRead.exceptional(peer, unwrap(error), pieceIndex, offset));
+        } catch (Throwable e) {
+            return CompletableFuture.completedFuture(BlockRead.exceptional(peer, e, pieceIndex, offset));
         }
     }
 
     @Override
     public CompletableFuture<BlockWrite> addBlock(Peer peer, int pieceIndex, int offset, byte[] block) {
+        return addBlock(peer, pieceIndex, offset, block, null);
+    }
+
+    @Override
+    public CompletableFuture<BlockWrite> addBlock(Peer peer, int pieceIndex, int offset, PooledBuffer block) {
+        return addBlock(peer, pieceIndex, offset, null, block);
+    }
+
+    /**
+     * @param block Data, if it has been passed as an array
+     * @param pooledBlock Data, if it has been passed in a pooled buffer; released, when the request is processed
+     */
+    private CompletableFuture<BlockWrite> addBlock(Peer peer, int pieceIndex, int offset,
+                                                   byte[] block, PooledBuffer pooledBlock) {
+        int length = (block != null) ? block.length : pooledBlock.length();
         if (pendingTasksCount.get() >= maxPendingTasks) {
             LOGGER.warn("Can't accept write block request -- queue is full");
-            return CompletableFuture.completedFuture(BlockWrite.rejected(peer, pieceIndex, offset, block));
+            if (pooledBlock != null) {
+                pooledBlock.release();
+            }
+            return CompletableFuture.completedFuture(BlockWrite.rejected(peer, pieceIndex, offset, length, block));
         } else {
             pendingTasksCount.incrementAndGet();
-            return CompletableFuture.supplyAsync(() -> {
-                try {
-                    if (data.getBitfield().isVerified(pieceIndex)) {
-                        if (LOGGER.isTraceEnabled()) {
-                            LOGGER.trace("Rejecting request to write block because the chunk is already complete and verified: " +
-                                    "piece index {" + pieceIndex + "}, offset {" + offset + "}, length {" + block.length + "}");
+            return CompletableFuture.supplyAsync(() ->
+                    writeBlock(peer, pieceIndex, offset, length, block, pooledBlock), getExecutor(pieceIndex))
+                    .thenCompose(Function.identity())
+                    .whenComplete((write, error) -> {
+                        if (pooledBlock != null) {
+                            pooledBlock.release();
                         }
-                        return BlockWrite.rejected(peer, pieceIndex, offset, block);
-                    }
+                        pendingTasksCount.decrementAndGet();
+                    });
+        }
+    }
 
-                    ChunkDescriptor chunk = data.getChunkDescriptors().get(pieceIndex);
-                    chunk.getData().getSubrange(offset).putBytes(block);
-                    if (LOGGER.isTraceEnabled()) {
-                        LOGGER.trace("Successfully processed block: " +
-                                "piece index {" + pieceIndex + "}, offset {" + offset + "}, length {" + block.length + "}");
-                    }
+    private CompletableFuture<BlockWrite> writeBlock(Peer peer, int pieceIndex, int offset, int length,
+                                                     byte[] block, PooledBuffer pooledBlock) {
+        try {
+            if (data.getBitfield().isVerified(pieceIndex)) {
+                if (LOGGER.isTraceEnabled()) {
+                    LOGGER.trace("Rejecting request to write block because the chunk is already complete and verified: " +
+                            "piece index {" + pieceIndex + "}, offset {" + offset + "}, length {" + length + "}");
+                }
+                return CompletableFuture.completedFuture(BlockWrite.rejected(peer, pieceIndex, offset, length, block));
+            }
 
-                    CompletableFuture<Boolean> verificationFuture = null;
-                    if (chunk.isComplete()) {
-                        verificationFuture = CompletableFuture.supplyAsync(() -> {
-                            boolean verified = verifier.verify(chunk);
-                            if (verified) {
-                                data.getBitfield().markVerified(pieceIndex);
-                            }
-                            return verified;
-                        }, executor);
-                    }
+            ChunkDescriptor chunk = data.getChunkDescriptors().get(pieceIndex);
+            ByteBuffer buffer = (block != null) ? ByteBuffer.wrap(block) : pooledBlock.getData();
+
+            ChunkHasher hasher = getHasher(pieceIndex, chunk);
+            if (hasher != null) {
+                hasher.update(offset, buffer);
+            }
 
-                    return BlockWrite.complete(peer, pieceIndex, offset, block, verificationFuture);
-                } catch (Throwable e) {
-                    return BlockWrite.exceptional(peer, e, pieceIndex, offset, block);
-                } finally {
-                    pendingTasksCount.decrementAndGet();
+            PieceBuffer pieceBuffer = getPieceBuffer(pieceIndex, chunk);
+            boolean wasComplete = (pieceBuffer != null) && pieceBuffer.isComplete();
+            if (pieceBuffer != null && pieceBuffer.putBlock(offset, buffer)) {
+                if (LOGGER.isTraceEnabled()) {
+                    LOGGER.trace("Successfully buffered block: " +
+                            "piece index {" + pieceIndex + "}, offset {" + offset + "}, length {" + length + "}");
                 }
-            }, executor);
+                CompletableFuture<Boolean> verificationFuture = null;
+                // verify only once, even if some of the blocks have been received twice
+                if (!wasComplete && pieceBuffer.isComplete()) {
+                    verificationFuture = verifyAndFlush(pieceIndex, chunk, pieceBuffer);
+                }
+                return CompletableFuture.completedFuture(
+                        BlockWrite.complete(peer, pieceIndex, offset, length, block, verificationFuture));
+            }
+
+            if (pieceBuffer != null) {
+                // buffer has been evicted to free memory for other pieces
+                pieceBuffers.remove(pieceIndex, pieceBuffer);
+                evictedBuffers.put(pieceIndex, pieceBuffer);
+                pieceBuffer.whenReleased().whenComplete((nothing, error) -> evictedBuffers.remove(pieceIndex, pieceBuffer));
+            }
+
+            CompletableFuture<Void> written = writeDirectly(pieceIndex, chunk, offset, buffer);
+            PieceBuffer evicted = evictedBuffers.get(pieceIndex);
+            if (evicted != null) {
+                // the rest of the piece's blocks might still be being written,
+                // and the piece can't be considered complete until they are
+                CompletableFuture<Void> released = evicted.whenReleased();
+                written = written.thenCompose(nothing -> released);
+            }
+
+            return written.handle((nothing, error) -> {
+                if (error != null) {
+                    return BlockWrite.exceptional(peer, unwrap(error), pieceIndex, offset, length, block);
+                }
+                if (LOGGER.isTraceEnabled()) {
+                    LOGGER.trace("Successfully processed block: " +
+                            "piece index {" + pieceIndex + "}, offset {" + offset + "}, length {" + length + "}");
+                }
+
+                CompletableFuture<Boolean> verificationFuture = null;
+                if (chunk.isComplete()) {
+                    verificationFuture = verify(pieceIndex, chunk);
+                }
+                return BlockWrite.complete(peer, pieceIndex, offset, length, block, verificationFuture);
+            });
+        } catch (Throwable e) {
+            return CompletableFuture.completedFuture(BlockWrite.exceptional(peer, e, pieceIndex, offset, length, block));
+        }
+    }
+
+    /**
+     * Schedule a block to be written to the storage directly. Adjacent blocks of the same piece,
+     * that are received before the write is performed, are written together (see {@link #flushPendingWrites}).
+     * If the disk scheduler is enabled, the block is submitted to it instead, and it will do the merging.
+     *
+     * @return Future, that completes, when the block has been written
+     */
+    private CompletableFuture<Void> writeDirectly(int pieceIndex, ChunkDescriptor chunk, int offset, ByteBuffer buffer) {
+        if (diskScheduler.isEnabled()) {
+            return diskScheduler.write(stripeOffset, pieceIndex, chunk.getData(), offset, buffer);
         }
+
+        PendingWrite write = new PendingWrite(offset, buffer);
+        List<PendingWrite> writes = pendingWrites.get(pieceIndex);
+        if (writes == null) {
+            writes = new ArrayList<>();
+            pendingWrites.put(pieceIndex, writes);
+            writes.add(write);
+            // will run after the tasks, that have already been submitted for this piece,
+            // so that their blocks can join the batch
+            try {
+                getExecutor(pieceIndex).execute(() -> flushPendingWrites(pieceIndex, chunk));
+            } catch (Throwable e) {
+                flushPendingWrites(pieceIndex, chunk);
+            }
+        } else {
+            writes.add(write);
+        }
+        return write.future;
+    }
+
+    /**
+     * Write the pending blocks of a piece, issuing a single vectored write for each run of adjacent blocks.
+     */
+    private void flushPendingWrites(int pieceIndex, ChunkDescriptor chunk) {
+        List<PendingWrite> writes = pendingWrites.remove(pieceIndex);
+        if (writes == null) {
+            return;
+        }
+        writes.sort(Comparator.comparingInt(write -> write.offset));
+
+        int from = 0;
+        while (from < writes.size()) {
+            int to = from + 1;
+            while (to < writes.size() && writes.get(to).offset == writes.get(to - 1).end()) {
+                to++;
+            }
+            List<PendingWrite> run = writes.subList(from, to);
+            ByteBuffer[] buffers = new ByteBuffer[run.size()];
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = run.get(i).buffer;
+            }
+
+            CompletableFuture<Void> written;
+            try {
+                written = chunk.getData().getSubrange(run.get(0).offset).putBytesAsync(buffers);
+            } catch (Throwable e) {
+                written = new CompletableFuture<>();
+                written.completeExceptionally(e);
+            }
+            written.whenComplete((nothing, error) -> run.forEach(write -> {
+                if (error == null) {
+                    write.future.complete(null);
+                } else {
+                    write.future.completeExceptionally(unwrap(error));
+                }
+            }));
+            from = to;
+        }
+    }
+
+    private static class PendingWrite {
+        private final int offset;
+        private final ByteBuffer buffer;
+        private final CompletableFuture<Void> future;
+
+        PendingWrite(int offset, ByteBuffer buffer) {
+            this.offset = offset;
+            this.buffer = buffer;
+            this.future = new CompletableFuture<>();
+        }
+
+        int end() {
+            return offset + buffer.remaining();
+        }
+    }
+
+    /**
+     * @return Buffer for the piece or null, if blocks of this piece should be written to the storage directly
+     */
+    private PieceBuffer getPieceBuffer(int pieceIndex, ChunkDescriptor chunk) {
+        PieceBuffer buffer = pieceBuffers.get(pieceIndex);
+        // buffer only those pieces, that don't have any blocks in the storage yet
+        if (buffer == null && !flushed && chunk.isEmpty() && !evictedBuffers.containsKey(pieceIndex)) {
+            buffer = writeBackCache.allocate(chunk).orElse(null);
+            if (buffer != null) {
+                pieceBuffers.put(pieceIndex, buffer);
+                if (flushed) {
+                    // raced against flush(); the buffer is still empty, so nothing is lost
+                    pieceBuffers.remove(pieceIndex, buffer);
+                    buffer.discard();
+                    writeBackCache.release(buffer);
+                    buffer = null;
+                }
+            }
+        }
+        return buffer;
+    }
+
+    @Override
+    public boolean isBlockBuffered(int pieceIndex, int blockIndex) {
+        PieceBuffer buffer = pieceBuffers.get(pieceIndex);
+        if (buffer == null) {
+            buffer = evictedBuffers.get(pieceIndex);
+        }
+        return buffer != null && buffer.isPresent(blockIndex);
+    }
+
+    @Override
+    public void flush() {
+        flushed = true;
+
+        Map<Integer, PieceBuffer> buffers = new HashMap<>(evictedBuffers);
+        buffers.putAll(pieceBuffers);
+        List<CompletableFuture<Void>> released = new ArrayList<>(buffers.size());
+        buffers.forEach((pieceIndex, buffer) -> {
+            // complete buffers are being verified, and will be written or discarded shortly
+            CompletableFuture<Boolean> evicted = buffer.evictAsync();
+            if (evicted != null) {
+                evicted.whenComplete((result, error) -> {
+                    if (error != null) {
+                        LOGGER.error("Failed to write piece buffer to the storage: piece index {" + pieceIndex + "}", error);
+                    }
+                });
+            }
+            released.add(buffer.whenReleased());
+        });
+        CompletableFuture.allOf(released.toArray(new CompletableFuture<?>[released.size()])).join();
+
+        buffers.forEach((pieceIndex, buffer) -> {
+            pieceBuffers.remove(pieceIndex, buffer);
+            evictedBuffers.remove(pieceIndex, buffer);
+            writeBackCache.release(buffer);
+        });
+    }
+
+    /**
+     * @return Incremental hasher for the piece or null, if the piece should be verified by reading its data
+     */
+    private ChunkHasher getHasher(int pieceIndex, ChunkDescriptor chunk) {
+        ChunkHasher hasher = hashers.get(pieceIndex);
+        // hash incrementally only those pieces, that have not received any blocks yet
+        if (hasher == null && chunk.isEmpty() && !pieceBuffers.containsKey(pieceIndex)) {
+            hasher = verifier.createHasher(chunk).orElse(null);
+            if (hasher != null) {
+                hashers.put(pieceIndex, hasher);
+            }
+        }
+        return hasher;
+    }
+
+    /**
+     * @return Incremental hasher for the piece, if all of the piece's data has been hashed, or null
+     */
+    private ChunkHasher getCompleteHasher(int pieceIndex) {
+        ChunkHasher hasher = hashers.get(pieceIndex);
+        return (hasher != null && hasher.isComplete()) ? hasher : null;
+    }
+
+    /**
+     * Verify a piece, that has been written to the storage directly.
+     * Last blocks of the piece might have been written concurrently,
+     * so there might be several requests to verify the same piece.
+     */
+    private CompletableFuture<Boolean> verify(int pieceIndex, ChunkDescriptor chunk) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        CompletableFuture<Boolean> existing = verifications.putIfAbsent(pieceIndex, future);
+        if (existing != null) {
+            return existing;
+        }
+
+        pool.getHashingExecutor().execute(() -> {
+            boolean verified;
+            try {
+                if (data.getBitfield().isVerified(pieceIndex)) {
+                    verified = true;
+                } else {
+                    // all blocks might have been hashed as they were received, then there's no need to read them
+                    ChunkHasher hasher = getCompleteHasher(pieceIndex);
+                    verified = (hasher != null) ? hasher.verify() : verifier.verify(chunk);
+                }
+                if (verified) {
+                    data.getBitfield().markVerified(pieceIndex);
+                }
+            } catch (Throwable e) {
+                hashers.remove(pieceIndex);
+                verifications.remove(pieceIndex, future);
+                future.completeExceptionally(e);
+                return;
+            }
+            hashers.remove(pieceIndex);
+            verifications.remove(pieceIndex, future);
+            future.complete(verified);
+        });
+        return future;
+    }
+
+    private CompletableFuture<Boolean> verifyAndFlush(int pieceIndex, ChunkDescriptor chunk, PieceBuffer buffer) {
+        ChunkHasher hasher = getCompleteHasher(pieceIndex);
+        CompletableFuture<Boolean> verification = (hasher != null) ?
+                CompletableFuture.completedFuture(hasher.verify()) :
+                CompletableFuture.supplyAsync(() -> verifier.verify(chunk, buffer.getData()), pool.getHashingExecutor());
+
+        return verification
+                .thenCompose(verified -> {
+                    if (verified) {
+                        return buffer.flushAsync().thenApply(flushed -> {
+                            data.getBitfield().markVerified(pieceIndex);
+                            return true;
+                        });
+                    } else {
+                        // corrupt data never reaches the storage, and the piece will be downloaded anew
+                        buffer.discard();
+                        return CompletableFuture.completedFuture(false);
+                    }
+                })
+                .whenCompleteAsync((verified, error) -> {
+                    pieceBuffers.remove(pieceIndex, buffer);
+                    hashers.remove(pieceIndex);
+                    writeBackCache.release(buffer);
+                }, getExecutor(pieceIndex));
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return (e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e;
     }
 }
@@ -0,0 +1,374 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.torrent.data;
+
+import bt.BtException;
+import bt.data.DataRange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Performs block reads and writes in the order of their location in the storage,
+ * rather than in the order of their arrival.
+ *
+ * <p>Requests are collected over a short window and then dispatched by a single thread in a circular sweep
+ * (C-SCAN): ordered by torrent, piece index and offset, starting from the position of the previous request
+ * and wrapping around to the beginning, when there are no more requests ahead.
+ * Requests, that arrive during the sweep, join it, if they are located ahead of the current position.
+ * Adjacent requests of the same type in the same piece are merged and performed
+ * with a single vectored read or write.
+ *
+ * <p>To prevent starvation, each request may wait in the scheduler for at most {@code maxLatency}.
+ * A request, that has been waiting longer, is dispatched next regardless of its location,
+ * and the sweep continues from there.
+ *
+ * <p>Pieces of a torrent are laid out in the storage in the order of their indices,
+ * so this order approximates the order of (storage unit, offset in unit). It's most beneficial for
+ * storage on spinning disks, which spend most of the time seeking, when serving many peers at once.
+ *
+ * @since 1.6
+ */
+public class DiskScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiskScheduler.class);
+
+    private static final Comparator<Request> LOCATION_ORDER = Comparator
+            .comparingInt((Request request) -> request.stream)
+            .thenComparingInt(request -> request.pieceIndex)
+            .thenComparingInt(request -> request.offset)
+            .thenComparingLong(request -> request.seq);
+
+    private final long windowNanos;
+    private final long maxLatencyNanos;
+    private final boolean enabled;
+
+    private final BlockingQueue<Request> incoming;
+    private final AtomicLong seq;
+    private final ExecutorService executor;
+    private volatile boolean shutdown;
+
+    private final AtomicLong requests;
+    private final AtomicLong operations;
+    private final AtomicLong overdue;
+
+    /**
+     * @param window Time, during which requests are collected, before the scheduler starts dispatching them;
+     *               {@link Duration#ZERO} disables the scheduler
+     * @param maxLatency Max time, that a request may wait in the scheduler, before it's dispatched out of order
+     * @since 1.6
+     */
+    public DiskScheduler(Duration window, Duration maxLatency) {
+        if (window.isNegative()) {
+            throw new IllegalArgumentException("Invalid window: " + window);
+        }
+        if (maxLatency.isNegative()) {
+            throw new IllegalArgumentException("Invalid max latency: " + maxLatency);
+        }
+        this.windowNanos = window.toNanos();
+        this.maxLatencyNanos = maxLatency.toNanos();
+        this.enabled = !window.isZero();
+
+        this.incoming = new LinkedBlockingQueue<>();
+        this.seq = new AtomicLong();
+        this.requests = new AtomicLong();
+        this.operations = new AtomicLong();
+        this.overdue = new AtomicLong();
+
+        if (enabled) {
+            this.executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "bt.torrent.data.disk-scheduler"));
+            executor.execute(this::dispatchLoop);
+        } else {
+            this.executor = null;
+        }
+    }
+
+    /**
+     * @return true, if reads and writes should be submitted to this scheduler;
+     *         false, if they should be performed directly
+     * @since 1.6
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Schedule a read of a block.
+     *
+     * @param stream Key of the requester's data (e.g. torrent); requests with different keys are not merged
+     * @param pieceIndex Index of the piece
+     * @param piece Piece's data
+     * @param offset Offset of the block in the piece
+     * @param buffer Buffer to read the block into; length of the block is equal to the buffer's remaining space
+     * @return Future, that completes, when the block has been read
+     */
+    CompletableFuture<Void> read(int stream, int pieceIndex, DataRange piece, int offset, ByteBuffer buffer) {
+        return submit(new Request(stream, pieceIndex, piece, offset, buffer, false, seq.getAndIncrement()));
+    }
+
+    /**
+     * Schedule a write of a block.
+     *
+     * @param stream Key of the requester's data (e.g. torrent); requests with different keys are not merged
+     * @param pieceIndex Index of the piece
+     * @param piece Piece's data
+     * @param offset Offset of the block in the piece
+     * @param buffer Block's data
+     * @return Future, that completes, when the block has been written
+     */
+    CompletableFuture<Void> write(int stream, int pieceIndex, DataRange piece, int offset, ByteBuffer buffer) {
+        return submit(new Request(stream, pieceIndex, piece, offset, buffer, true, seq.getAndIncrement()));
+    }
+
+    private CompletableFuture<Void> submit(Request request) {
+        if (!enabled) {
+            throw new IllegalStateException("Disk scheduler is disabled");
+        }
+        if (shutdown) {
+            request.future.completeExceptionally(new BtException("Disk scheduler has been shut down"));
+            return request.future;
+        }
+        requests.incrementAndGet();
+        incoming.add(request);
+        // dispatcher might have drained the queue in the meantime;
+        // whoever removes the request from the queue, completes it
+        if (shutdown && incoming.remove(request)) {
+            request.future.completeExceptionally(new BtException("Disk scheduler has been shut down"));
+        }
+        return request.future;
+    }
+
+    private void dispatchLoop() {
+        TreeSet<Request> pending = new TreeSet<>(LOCATION_ORDER);
+        // requests in the order of arrival, used to find the overdue ones
+        Deque<Request> arrivals = new ArrayDeque<>();
+        Request head = null;
+
+        try {
+            while (!shutdown) {
+                if (pending.isEmpty()) {
+                    Request first = incoming.take();
+                    pending.add(first);
+                    arrivals.add(first);
+
+                    // let more requests arrive, so that there is something to order
+                    long deadline = first.submittedAt + windowNanos;
+                    long remaining;
+                    while ((remaining = deadline - System.nanoTime()) > 0) {
+                        Request request = incoming.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (request != null) {
+                            pending.add(request);
+                            arrivals.add(request);
+                        }
+                    }
+                }
+
+                Request request;
+                while ((request = incoming.poll()) != null) {
+                    pending.add(request);
+                    arrivals.add(request);
+                }
+
+                List<Request> batch = collectBatch(selectNext(pending, arrivals, head), pending);
+                perform(batch);
+                head = batch.get(batch.size() - 1);
+            }
+        } catch (InterruptedException e) {
+            // shutdown
+        } finally {
+            // requests, that are submitted after this point, are failed by the submitter
+            shutdown = true;
+            BtException error = new BtException("Disk scheduler has been shut down");
+            pending.forEach(request -> request.future.completeExceptionally(error));
+            Request request;
+            while ((request = incoming.poll()) != null) {
+                request.future.completeExceptionally(error);
+            }
+        }
+    }
+
+    private Request selectNext(TreeSet<Request> pending, Deque<Request> arrivals, Request head) {
+        // requests, that have already been dispatched, are removed from the arrivals lazily
+        while (!arrivals.isEmpty() && arrivals.peekFirst().dispatched) {
+            arrivals.pollFirst();
+        }
+        Request oldest = arrivals.peekFirst();
+        if (oldest != null && System.nanoTime() - oldest.submittedAt >= maxLatencyNanos) {
+            overdue.incrementAndGet();
+            return oldest;
+        }
+
+        if (head != null) {
+            // position right after the end of the previous request
+            Request next = pending.ceiling(Request.position(head.stream, head.pieceIndex, head.end()));
+            if (next != null) {
+                return next;
+            }
+        }
+        // wrap around
+        return pending.first();
+    }
+
+    /**
+     * @return First request and the requests of the same type, that immediately follow it in the same piece
+     */
+    private List<Request> collectBatch(Request first, TreeSet<Request> pending) {
+        List<Request> batch = new ArrayList<>();
+        batch.add(first);
+        pending.remove(first);
+        first.dispatched = true;
+
+        Request last = first;
+        Request next;
+        while ((next = pending.higher(last)) != null
+                && next.stream == first.stream
+                && next.pieceIndex == first.pieceIndex
+                && next.write == first.write
+                && next.offset == last.end()) {
+            batch.add(next);
+            pending.remove(next);
+            next.dispatched = true;
+            last = next;
+        }
+        return batch;
+    }
+
+    private void perform(List<Request> batch) {
+        Request first = batch.get(0);
+        ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = batch.get(i).buffer;
+        }
+
+        Throwable error = null;
+        try {
+            DataRange range = first.piece.getSubrange(first.offset);
+            if (first.write) {
+                range.putBytes(buffers);
+            } else {
+                range.getBytes(buffers);
+            }
+        } catch (Throwable e) {
+            LOGGER.error("Failed to " + (first.write ? "write" : "read") + " " + batch.size() + " block(s): " +
+                    "piece index {" + first.pieceIndex + "}, offset {" + first.offset + "}", e);
+            error = e;
+        }
+        operations.incrementAndGet();
+
+        for (Request request : batch) {
+            if (error == null) {
+                request.future.complete(null);
+            } else {
+                request.future.completeExceptionally(error);
+            }
+        }
+    }
+
+    /**
+     * @return Total number of requests, that have been submitted to this scheduler
+     * @since 1.6
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * @return Total number of reads and writes, that have been performed;
+     *         less than the number of requests, if some of the requests have been merged
+     * @since 1.6
+     */
+    public long getOperations() {
+        return operations.get();
+    }
+
+    /**
+     * @return Total number of requests, that have been dispatched out of order,
+     *         because they had been waiting for longer than the max latency
+     * @since 1.6
+     */
+    public long getOverdue() {
+        return overdue.get();
+    }
+
+    /**
+     * Stop the dispatcher thread. Pending requests are completed exceptionally.
+     *
+     * @since 1.6
+     */
+    public void shutdown() {
+        shutdown = true;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static class Request {
+        private final int stream;
+        private final int pieceIndex;
+        private final DataRange piece;
+        private final int offset;
+        private final ByteBuffer buffer;
+        private final int length;
+        private final boolean write;
+        private final long seq;
+        private final long submittedAt;
+        private final CompletableFuture<Void> future;
+
+        // accessed only from the dispatcher thread
+        private boolean dispatched;
+
+        private Request(int stream, int pieceIndex, DataRange piece, int offset, ByteBuffer buffer,
+                        boolean write, long seq) {
+            this.stream = stream;
+            this.pieceIndex = pieceIndex;
+            this.piece = piece;
+            this.offset = offset;
+            this.buffer = buffer;
+            this.length = (buffer == null) ? 0 : buffer.remaining();
+            this.write = write;
+            this.seq = seq;
+            this.submittedAt = System.nanoTime();
+            this.future = new CompletableFuture<>();
+        }
+
+        /**
+         * @return Request, that is ordered before all requests at the given location or further
+         */
+        static Request position(int stream, int pieceIndex, int offset) {
+            return new Request(stream, pieceIndex, null, offset, null, false, Long.MIN_VALUE);
+        }
+
+        int end() {
+            return offset + length;
+        }
+    }
+}
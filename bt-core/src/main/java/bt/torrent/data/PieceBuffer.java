@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.torrent.data;
+
+import bt.data.ChunkDescriptor;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * In-memory buffer, that accumulates blocks of a single piece,
+ * until the piece is complete and can be verified and written to the storage at once.
+ *
+ * @since 1.6
+ */
+class PieceBuffer {
+
+    private enum State {
+        /**
+         * Accepting new blocks; can be evicted
+         */
+        ACTIVE,
+        /**
+         * All blocks are present; waiting for verification
+         */
+        COMPLETE,
+        /**
+         * Buffer has been written to the storage or discarded, and its memory has been returned to the cache
+         */
+        RELEASED
+    }
+
+    private final ChunkDescriptor chunk;
+    private final byte[] data;
+    private final long blockSize;
+    private final int blockCount;
+    private final BitSet presentBlocks;
+
+    private State state;
+    private boolean discarded;
+    private volatile long lastUpdated;
+    private final CompletableFuture<Void> released;
+
+    PieceBuffer(ChunkDescriptor chunk) {
+        this.chunk = chunk;
+        this.data = new byte[(int) chunk.length()];
+        this.blockSize = chunk.blockSize();
+        this.blockCount = chunk.blockCount();
+        this.presentBlocks = new BitSet(blockCount);
+        this.state = State.ACTIVE;
+        this.lastUpdated = System.currentTimeMillis();
+        this.released = new CompletableFuture<>();
+    }
+
+    /**
+     * @return false, if the buffer has already been released, and the block has not been accepted
+     */
+    boolean putBlock(int offset, byte[] block) {
+        return putBlock(offset, ByteBuffer.wrap(block));
+    }
+
+    /**
+     * Copies the remaining bytes of the buffer; buffer's position is not changed
+     *
+     * @return false, if the buffer has already been released, and the block has not been accepted
+     */
+    synchronized boolean putBlock(int offset, ByteBuffer block) {
+        int length = block.remaining();
+        if (state == State.RELEASED) {
+            return false;
+        } else if (offset < 0 || offset > data.length - length) {
+            throw new IllegalArgumentException("Block does not fit in the piece: offset (" + offset +
+                    "), block length (" + length + "), piece length (" + data.length + ")");
+        }
+
+        // block might be a duplicate, in which case the buffer is already complete
+        if (state == State.ACTIVE) {
+            int position = block.position();
+            block.get(data, offset, length);
+            block.position(position);
+            markPresent(offset, length);
+            if (presentBlocks.cardinality() == blockCount) {
+                state = State.COMPLETE;
+            }
+            lastUpdated = System.currentTimeMillis();
+        }
+        return true;
+    }
+
+    /**
+     * Only the blocks, that are fully contained in the written range, are considered present
+     */
+    private void markPresent(long offset, long length) {
+        int firstBlockIndex = (int) ((offset + blockSize - 1) / blockSize);
+        int lastBlockIndex;
+        if (offset + length == data.length) {
+            // the last block might be smaller than the others
+            lastBlockIndex = blockCount - 1;
+        } else {
+            lastBlockIndex = (int) ((offset + length) / blockSize) - 1;
+        }
+        if (lastBlockIndex >= firstBlockIndex) {
+            presentBlocks.set(firstBlockIndex, lastBlockIndex + 1);
+        }
+    }
+
+    /**
+     * @return true, if the block has been received and will reach the storage,
+     *         unless the piece fails verification
+     */
+    synchronized boolean isPresent(int blockIndex) {
+        return !discarded && presentBlocks.get(blockIndex);
+    }
+
+    synchronized boolean isComplete() {
+        return state == State.COMPLETE;
+    }
+
+    synchronized boolean isEvictable() {
+        return state == State.ACTIVE;
+    }
+
+    long getLastUpdated() {
+        return lastUpdated;
+    }
+
+    /**
+     * Should be called only after the buffer becomes complete.
+     */
+    byte[] getData() {
+        return data;
+    }
+
+    int size() {
+        return data.length;
+    }
+
+    /**
+     * @return Future, that completes, when the buffer has been discarded
+     *         or all of its writes have finished (successfully or not)
+     */
+    CompletableFuture<Void> whenReleased() {
+        return released;
+    }
+
+    /**
+     * Write the present blocks to the storage and release the buffer, waiting for the writes to complete.
+     *
+     * @return false, if the buffer has already been released
+     */
+    boolean flush() {
+        return flushAsync().join();
+    }
+
+    /**
+     * Write the present blocks to the storage and release the buffer.
+     * The buffer is released at once, so no more blocks will be accepted,
+     * but its data must be retained until the returned future completes.
+     *
+     * @return Future, that completes, when all writes have finished;
+     *         future's value is false, if the buffer has already been released
+     */
+    synchronized CompletableFuture<Boolean> flushAsync() {
+        if (state == State.RELEASED) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        CompletableFuture<Void> written;
+        if (state == State.COMPLETE) {
+            // single write for the whole piece
+            written = chunk.getData().putBytesAsync(ByteBuffer.wrap(data));
+        } else {
+            // write each run of adjacent blocks at once
+            List<CompletableFuture<Void>> writes = new ArrayList<>();
+            int from = presentBlocks.nextSetBit(0);
+            while (from >= 0) {
+                int to = presentBlocks.nextClearBit(from);
+                int offset = (int) (from * blockSize);
+                int limit = (int) Math.min(to * blockSize, data.length);
+                writes.add(chunk.getData().getSubrange(offset).putBytesAsync(ByteBuffer.wrap(data, offset, limit - offset)));
+                from = presentBlocks.nextSetBit(to);
+            }
+            written = CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[writes.size()]));
+        }
+
+        state = State.RELEASED;
+        return written.handle((nothing, error) -> {
+            if (error != null) {
+                // blocks did not reach the storage and must be received anew
+                synchronized (this) {
+                    discarded = true;
+                }
+            }
+            released.complete(null);
+            return true;
+        }).thenCombine(written, (flushed, nothing) -> flushed);
+    }
+
+    /**
+     * Same as {@link #flushAsync()}, but only if the buffer is still accepting new blocks.
+     *
+     * @return Future, that completes, when all writes have finished;
+     *         or null, if the buffer is complete or has already been released
+     */
+    synchronized CompletableFuture<Boolean> evictAsync() {
+        return (state == State.ACTIVE) ? flushAsync() : null;
+    }
+
+    /**
+     * Release the buffer without writing it to the storage.
+     *
+     * @return false, if the buffer has already been released
+     */
+    synchronized boolean discard() {
+        if (state == State.RELEASED) {
+            return false;
+        }
+        state = State.RELEASED;
+        discarded = true;
+        released.complete(null);
+        return true;
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.torrent.data;
+
+import bt.data.ChunkDescriptor;
+
+import java.nio.ByteBuffer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps recently read pieces in memory, so that consecutive block requests
+ * for the same piece are served without reading from the storage.
+ *
+ * <p>Upon the first request for some block of a piece, the whole piece is read from the storage at once.
+ * Total size of cached pieces is limited by the cache's capacity, which is shared among all torrents in the runtime;
+ * least recently used pieces are evicted first.
+ *
+ * <p>Only verified pieces should be cached, because the contents of other pieces may change.
+ *
+ * @since 1.6
+ */
+public class ReadCache {
+
+    private final long capacity;
+    private long used;
+    private final LinkedHashMap<ChunkDescriptor, byte[]> pieces;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param capacity Max total size of cached pieces, in bytes; 0 disables the cache
+     * @since 1.6
+     */
+    public ReadCache(long capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        this.capacity = capacity;
+        // access-ordered, i.e. iteration starts with the least recently used piece
+        this.pieces = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Read a block of a piece, loading the whole piece into the cache, if it's not there yet.
+     *
+     * @param chunk Verified piece
+     * @param offset Offset of the block in the piece
+     * @param length Length of the block
+     * @return Block's contents
+     */
+    byte[] readBlock(ChunkDescriptor chunk, int offset, int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("Invalid block length: " + length);
+        }
+        byte[] block = new byte[length];
+        readBlock(chunk, offset, ByteBuffer.wrap(block));
+        return block;
+    }
+
+    /**
+     * Read a block of a piece into the buffer, loading the whole piece into the cache, if it's not there yet.
+     *
+     * @param chunk Verified piece
+     * @param offset Offset of the block in the piece
+     * @param buffer Buffer to read the block into; length of the block is equal to the buffer's remaining space
+     */
+    void readBlock(ChunkDescriptor chunk, int offset, ByteBuffer buffer) {
+        int length = buffer.remaining();
+        long pieceLength = chunk.length();
+        if (pieceLength > capacity) {
+            // does not fit into the cache
+            chunk.getData().getSubrange(offset, length).getBytes(buffer);
+            return;
+        }
+
+        byte[] piece;
+        synchronized (this) {
+            piece = pieces.get(chunk);
+            if (piece != null) {
+                hits++;
+            } else {
+                misses++;
+            }
+        }
+
+        if (piece == null) {
+            // read outside of the cache's lock
+            piece = chunk.getData().getBytes();
+            put(chunk, piece);
+        }
+
+        if (offset < 0 || offset > piece.length - length) {
+            throw new IllegalArgumentException("Block does not fit in the piece: offset (" + offset +
+                    "), block length (" + length + "), piece length (" + piece.length + ")");
+        }
+        buffer.put(piece, offset, length);
+    }
+
+    private synchronized void put(ChunkDescriptor chunk, byte[] piece) {
+        byte[] existing = pieces.put(chunk, piece);
+        if (existing != null) {
+            used -= existing.length;
+        }
+        used += piece.length;
+
+        Iterator<Map.Entry<ChunkDescriptor, byte[]>> iter = pieces.entrySet().iterator();
+        while (used > capacity && iter.hasNext()) {
+            byte[] evicted = iter.next().getValue();
+            iter.remove();
+            used -= evicted.length;
+            evictions++;
+        }
+    }
+
+    /**
+     * @return Max total size of cached pieces, in bytes
+     * @since 1.6
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return Total size of cached pieces, in bytes
+     * @since 1.6
+     */
+    public synchronized long getUsed() {
+        return used;
+    }
+
+    /**
+     * @return Number of block reads, that have been served from the cache
+     * @since 1.6
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return Number of block reads, that required loading the piece from the storage
+     * @since 1.6
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return Number of pieces, that have been evicted from the cache
+     * @since 1.6
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ReadCache{used: " + used + "/" + capacity +
+                ", hits: " + hits + ", misses: " + misses + ", evictions: " + evictions + "}";
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.torrent.data;
+
+import bt.data.ChunkDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Keeps the blocks of pieces being downloaded in memory,
+ * so that each piece can be verified without reading it back from the storage,
+ * and is written to the storage only after it has been successfully verified.
+ *
+ * <p>Total size of all buffers is limited by the cache's capacity, which is shared among all torrents in the runtime.
+ * When there is not enough capacity for a new piece, incomplete buffers, that have not been updated
+ * for the longest time, are written to the storage as is and released.
+ * If the capacity still can't be reserved (e.g. the evicted buffers are still being written),
+ * blocks of the new piece are written to the storage directly.
+ *
+ * @since 1.6
+ */
+public class WriteBackCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBackCache.class);
+
+    private final long capacity;
+    private long used;
+    private long evicting;
+    private final Set<PieceBuffer> buffers;
+
+    private long allocations;
+    private long rejections;
+    private long evictions;
+
+    /**
+     * @param capacity Max total size of all buffers, in bytes; 0 disables the cache
+     * @since 1.6
+     */
+    public WriteBackCache(long capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        this.capacity = capacity;
+        this.buffers = new HashSet<>();
+    }
+
+    /**
+     * Reserve memory for a new piece buffer, evicting stale buffers if needed.
+     * Does not wait for the evicted buffers to be written to the storage:
+     * if their writes have not finished yet, the memory will be available for the subsequent allocations.
+     *
+     * @return Buffer or {@link Optional#empty()}, if there is not enough memory
+     */
+    Optional<PieceBuffer> allocate(ChunkDescriptor chunk) {
+        long size = chunk.length();
+        if (size > capacity) {
+            return Optional.empty();
+        }
+
+        while (true) {
+            PieceBuffer evicted;
+            synchronized (this) {
+                if (used + size <= capacity) {
+                    PieceBuffer buffer = new PieceBuffer(chunk);
+                    buffers.add(buffer);
+                    used += size;
+                    allocations++;
+                    return Optional.of(buffer);
+                }
+
+                // don't evict more buffers, if the ones being written will free enough memory
+                evicted = (used - evicting + size <= capacity) ? null : selectEvictionCandidate();
+                if (evicted == null) {
+                    rejections++;
+                    return Optional.empty();
+                }
+                // remove at once, so that no one else will try to evict it concurrently
+                buffers.remove(evicted);
+                evicting += evicted.size();
+            }
+
+            // write outside of the cache's lock
+            CompletableFuture<Boolean> flushed;
+            try {
+                flushed = evicted.evictAsync();
+            } catch (Exception e) {
+                flushed = new CompletableFuture<>();
+                flushed.completeExceptionally(e);
+            }
+            if (flushed == null) {
+                // buffer has become complete or has been released by its owner in the meantime
+                synchronized (this) {
+                    evicting -= evicted.size();
+                    if (evicted.isComplete()) {
+                        buffers.add(evicted);
+                    } else {
+                        used -= evicted.size();
+                    }
+                }
+                continue;
+            }
+            flushed.whenComplete((result, error) -> {
+                if (error != null) {
+                    LOGGER.error("Failed to write evicted piece buffer to the storage", error);
+                }
+                synchronized (this) {
+                    used -= evicted.size();
+                    evicting -= evicted.size();
+                    if (error == null && result) {
+                        evictions++;
+                    }
+                }
+            });
+            if (!flushed.isDone()) {
+                synchronized (this) {
+                    rejections++;
+                }
+                return Optional.empty();
+            }
+        }
+    }
+
+    private PieceBuffer selectEvictionCandidate() {
+        PieceBuffer candidate = null;
+        for (PieceBuffer buffer : buffers) {
+            if (buffer.isEvictable()
+                    && (candidate == null || buffer.getLastUpdated() < candidate.getLastUpdated())) {
+                candidate = buffer;
+            }
+        }
+        return candidate;
+    }
+
+    /**
+     * Return the buffer's memory to the cache.
+     * The buffer must be flushed or discarded before calling this method.
+     */
+    synchronized void release(PieceBuffer buffer) {
+        if (buffers.remove(buffer)) {
+            used -= buffer.size();
+        }
+    }
+
+    /**
+     * @return Max total size of all buffers, in bytes
+     * @since 1.6
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return Total size of all buffers, in bytes
+     * @since 1.6
+     */
+    public synchronized long getUsed() {
+        return used;
+    }
+
+    /**
+     * @return Number of pieces, that have been buffered in memory
+     * @since 1.6
+     */
+    public synchronized long getAllocations() {
+        return allocations;
+    }
+
+    /**
+     * @return Number of pieces, that could not be buffered due to lack of memory
+     * @since 1.6
+     */
+    public synchronized long getRejections() {
+        return rejections;
+    }
+
+    /**
+     * @return Number of incomplete pieces, that have been written to the storage to free memory
+     * @since 1.6
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+}
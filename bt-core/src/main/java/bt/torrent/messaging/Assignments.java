@@ -19,12 +19,12 @@ package bt.torrent.messaging;
 import bt.net.Peer;
 import bt.runtime.Config;
 import bt.data.Bitfield;
+import bt.data.PiecePriorities;
 import bt.torrent.BitfieldBasedStatistics;
 import bt.torrent.selector.PieceSelector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -43,6 +43,7 @@ public class Assignments {
     private Config config;
 
     private Bitfield bitfield;
+    private PiecePriorities priorities;
     private PieceSelector selector;
     private BitfieldBasedStatistics pieceStatistics;
 
@@ -53,7 +54,21 @@ public class Assignments {
     private Random random;
 
     public Assignments(Bitfield bitfield, PieceSelector selector, BitfieldBasedStatistics pieceStatistics, Config config) {
+        this(bitfield, PiecePriorities.uniform(bitfield.getPiecesTotal()), selector, pieceStatistics, config);
+    }
+
+    /**
+     * @param priorities Priorities of torrent's pieces; skipped pieces are neither assigned,
+     *                   nor taken into account when deciding whether a peer is interesting
+     * @since 1.6
+     */
+    public Assignments(Bitfield bitfield,
+                       PiecePriorities priorities,
+                       PieceSelector selector,
+                       BitfieldBasedStatistics pieceStatistics,
+                       Config config) {
         this.bitfield = bitfield;
+        this.priorities = priorities;
         this.selector = selector;
         this.pieceStatistics = pieceStatistics;
         this.config = config;
@@ -96,7 +111,7 @@ public class Assignments {
             buf.append("Trying to claim next assignment for peer ");
             buf.append(peer);
             buf.append(". Number of remaining pieces: ");
-            buf.append(bitfield.getPiecesRemaining());
+            buf.append(priorities.getWantedPiecesRemaining(bitfield));
             buf.append(", number of pieces in progress: ");
             buf.append(assignedPieces.size());
             buf.append(", endgame: " + endgame);
@@ -152,7 +167,7 @@ public class Assignments {
     private boolean isEndgame() {
         // if all remaining pieces are requested,
         // that would mean that we have entered the "endgame" mode
-        return bitfield.getPiecesRemaining() <= assignedPieces.size();
+        return priorities.getWantedPiecesRemaining(bitfield) <= assignedPieces.size();
     }
 
     private Assignment assign(Peer peer, Integer piece) {
@@ -236,9 +251,9 @@ public class Assignments {
         if (!peerBitfieldOptional.isPresent()) {
             return false;
         }
-        BitSet peerBitfield = BitSet.valueOf(peerBitfieldOptional.get().getBitmask());
-        BitSet localBitfield = BitSet.valueOf(bitfield.getBitmask());
-        peerBitfield.andNot(localBitfield);
-        return peerBitfield.cardinality() > 0;
+        if (priorities.isSkippingPieces()) {
+            return peerBitfieldOptional.get().hasPiecesNotIn(bitfield, priorities.getWantedPieces());
+        }
+        return peerBitfieldOptional.get().hasPiecesNotIn(bitfield);
     }
 }
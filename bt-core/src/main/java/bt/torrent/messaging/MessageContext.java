@@ -31,11 +31,18 @@ public class MessageContext {
     private Optional<TorrentId> torrentId;
     private Peer peer;
     private ConnectionState connectionState;
+    private Runnable readinessListener;
 
     MessageContext(Optional<TorrentId> torrentId, Peer peer, ConnectionState connectionState) {
+        this(torrentId, peer, connectionState, () -> {});
+    }
+
+    MessageContext(Optional<TorrentId> torrentId, Peer peer, ConnectionState connectionState,
+                   Runnable readinessListener) {
         this.torrentId = torrentId;
         this.peer = peer;
         this.connectionState = connectionState;
+        this.readinessListener = readinessListener;
     }
 
     /**
@@ -62,4 +69,15 @@ public class MessageContext {
     public ConnectionState getConnectionState() {
         return connectionState;
     }
+
+    /**
+     * Signal, that there are new messages to produce for the remote peer,
+     * e.g. when an asynchronous operation, that has been started by a message consumer, completes.
+     * Message producers will be invoked as soon as possible.
+     *
+     * @since 1.6
+     */
+    public void notifyReady() {
+        readinessListener.run();
+    }
 }
@@ -71,6 +71,7 @@ public class PeerRequestConsumer {
                     connectionState.setShouldChoke(true);
                 } else {
                     getCompletedRequestsForPeer(context.getPeer()).add(block);
+                    context.notifyReady();
                 }
             });
         }
@@ -99,7 +100,13 @@ public class PeerRequestConsumer {
         BlockRead block;
         while ((block = queue.poll()) != null) {
             try {
-                messageConsumer.accept(new Piece(block.getPieceIndex(), block.getOffset(), block.getBlock().get()));
+                Piece piece;
+                if (block.getReader().isPresent()) {
+                    piece = new Piece(block.getPieceIndex(), block.getOffset(), block.getLength(), block.getReader().get());
+                } else {
+                    piece = new Piece(block.getPieceIndex(), block.getOffset(), block.getBlock().get());
+                }
+                messageConsumer.accept(piece);
             } catch (InvalidMessageException e) {
                 throw new BtException("Failed to send PIECE", e);
             }
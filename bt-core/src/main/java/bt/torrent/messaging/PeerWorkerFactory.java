@@ -20,6 +20,7 @@ import bt.metainfo.TorrentId;
 import bt.net.Peer;
 
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  *<p><b>Note that this class implements a service.
@@ -28,9 +29,20 @@ import java.util.Optional;
 public class PeerWorkerFactory implements IPeerWorkerFactory {
 
     private MessageRouter router;
+    private Consumer<Peer> readinessListener;
 
     public PeerWorkerFactory(MessageRouter router) {
+        this(router, peer -> {});
+    }
+
+    /**
+     * @param readinessListener Called with the remote peer, when its messaging agents signal,
+     *                          that there are new messages to send (see {@link MessageContext#notifyReady()})
+     * @since 1.6
+     */
+    public PeerWorkerFactory(MessageRouter router, Consumer<Peer> readinessListener) {
         this.router = router;
+        this.readinessListener = readinessListener;
     }
 
     @Override
@@ -44,6 +56,6 @@ public class PeerWorkerFactory implements IPeerWorkerFactory {
     }
 
     private PeerWorker createPeerWorker(Optional<TorrentId> torrentId, Peer peer) {
-        return new RoutingPeerWorker(peer, torrentId, router);
+        return new RoutingPeerWorker(peer, torrentId, router, () -> readinessListener.accept(peer));
     }
 }
@@ -17,6 +17,7 @@
 package bt.torrent.messaging;
 
 import bt.net.Peer;
+import bt.net.buffer.PooledBuffer;
 import bt.protocol.Have;
 import bt.protocol.Message;
 import bt.protocol.Piece;
@@ -59,6 +60,7 @@ public class PieceConsumer {
 
         // check that this block was requested in the first place
         if (!checkBlockIsExpected(peer, connectionState, piece)) {
+            piece.getBlockBuffer().ifPresent(PooledBuffer::release);
             return;
         }
 
@@ -69,8 +71,9 @@ public class PieceConsumer {
                         "Discarding received block because the chunk is already complete and verified: " +
                         "piece index {" + piece.getPieceIndex() + "}, " +
                         "offset {" + piece.getOffset() + "}, " +
-                        "length {" + piece.getBlock().length + "}");
+                        "length {" + piece.getLength() + "}");
             }
+            piece.getBlockBuffer().ifPresent(PooledBuffer::release);
             return;
         }
 
@@ -92,6 +95,7 @@ public class PieceConsumer {
                             throw new RuntimeException("Failed to verify block", error1);
                         }
                         completedBlocks.add(block);
+                        context.notifyReady();
                     });
                 }
             }
@@ -99,7 +103,7 @@ public class PieceConsumer {
     }
 
     private boolean checkBlockIsExpected(Peer peer, ConnectionState connectionState, Piece piece) {
-        Object key = Mapper.mapper().buildKey(piece.getPieceIndex(), piece.getOffset(), piece.getBlock().length);
+        Object key = Mapper.mapper().buildKey(piece.getPieceIndex(), piece.getOffset(), piece.getLength());
         boolean expected = connectionState.getPendingRequests().remove(key);
         if (!expected && LOGGER.isTraceEnabled()) {
             LOGGER.trace("Discarding unexpected block {} from peer: {}", piece, peer);
@@ -109,11 +113,10 @@ public class PieceConsumer {
 
     private CompletableFuture<BlockWrite> addBlock(Peer peer, ConnectionState connectionState, Piece piece) {
         int pieceIndex = piece.getPieceIndex(),
-                offset = piece.getOffset();
+                offset = piece.getOffset(),
+                length = piece.getLength();
 
-        byte[] block = piece.getBlock();
-
-        connectionState.incrementDownloaded(block.length);
+        connectionState.incrementDownloaded(length);
         if (connectionState.getCurrentAssignment().isPresent()) {
             Assignment assignment = connectionState.getCurrentAssignment().get();
             if (pieceIndex == assignment.getPiece()) {
@@ -121,9 +124,16 @@ public class PieceConsumer {
             }
         }
 
-        CompletableFuture<BlockWrite> future = dataWorker.addBlock(peer, pieceIndex, offset, block);
+        CompletableFuture<BlockWrite> future;
+        Optional<PooledBuffer> buffer = piece.getBlockBuffer();
+        if (buffer.isPresent()) {
+            // data worker takes over the buffer
+            future = dataWorker.addBlock(peer, pieceIndex, offset, buffer.get());
+        } else {
+            future = dataWorker.addBlock(peer, pieceIndex, offset, piece.getBlock());
+        }
         connectionState.getPendingWrites().put(
-                Mapper.mapper().buildKey(pieceIndex, offset, block.length), future);
+                Mapper.mapper().buildKey(pieceIndex, offset, length), future);
         return future;
     }
 
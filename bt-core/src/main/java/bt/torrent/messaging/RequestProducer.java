@@ -24,9 +24,11 @@ import bt.protocol.Cancel;
 import bt.protocol.InvalidMessageException;
 import bt.protocol.Message;
 import bt.protocol.Request;
+import bt.runtime.Config;
 import bt.data.Bitfield;
 import bt.torrent.annotation.Produces;
 import bt.torrent.data.BlockWrite;
+import bt.torrent.data.DataWorker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,6 +37,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.BiPredicate;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -51,10 +54,28 @@ public class RequestProducer {
 
     private Bitfield bitfield;
     private List<ChunkDescriptor> chunks;
+    private BiPredicate<Integer, Integer> bufferedBlocks;
+    private boolean requestInOrder;
 
     public RequestProducer(DataDescriptor dataDescriptor) {
         this.bitfield = dataDescriptor.getBitfield();
         this.chunks = dataDescriptor.getChunkDescriptors();
+        this.bufferedBlocks = (pieceIndex, blockIndex) -> false;
+        this.requestInOrder = false;
+    }
+
+    /**
+     * @param dataWorker Data worker, that keeps the blocks, which have been received,
+     *                   but have not been written to the storage yet; such blocks are not requested again
+     * @param config Blocks are requested in the order of their offsets, if pieces are hashed incrementally
+     *               (see {@link Config#getHashingReorderWindow()}), so that they rarely arrive out of order
+     * @since 1.6
+     */
+    public RequestProducer(DataDescriptor dataDescriptor, DataWorker dataWorker, Config config) {
+        this.bitfield = dataDescriptor.getBitfield();
+        this.chunks = dataDescriptor.getChunkDescriptors();
+        this.bufferedBlocks = dataWorker::isBlockBuffered;
+        this.requestInOrder = config.getHashingReorderWindow() > 0;
     }
 
     @Produces
@@ -130,7 +151,9 @@ public class RequestProducer {
 
             }).collect(Collectors.toList());
 
-        Collections.shuffle(requests);
+        if (!requestInOrder) {
+            Collections.shuffle(requests);
+        }
         connectionState.getRequestQueue().addAll(requests);
         connectionState.setInitializedRequestQueue(true);
     }
@@ -142,7 +165,7 @@ public class RequestProducer {
         long blockSize = chunk.blockSize();
 
         for (int blockIndex = 0; blockIndex < chunk.blockCount(); blockIndex++) {
-            if (!chunk.isPresent(blockIndex)) {
+            if (!chunk.isPresent(blockIndex) && !bufferedBlocks.test(pieceIndex, blockIndex)) {
                 int offset = (int) (blockIndex * blockSize);
                 int length = (int) Math.min(blockSize, chunkSize - offset);
                 try {
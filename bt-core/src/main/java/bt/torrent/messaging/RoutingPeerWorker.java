@@ -49,9 +49,19 @@ class RoutingPeerWorker implements PeerWorker {
     private Choker choker;
 
     public RoutingPeerWorker(Peer peer, Optional<TorrentId> torrentId, MessageRouter router) {
+        this(peer, torrentId, router, () -> {});
+    }
+
+    /**
+     * @param readinessListener Called, when messaging agents signal, that there are new messages to send
+     *                          (see {@link MessageContext#notifyReady()})
+     * @since 1.6
+     */
+    public RoutingPeerWorker(Peer peer, Optional<TorrentId> torrentId, MessageRouter router,
+                             Runnable readinessListener) {
         this.connectionState = new ConnectionState();
         this.router = router;
-        this.context = new MessageContext(torrentId, peer, connectionState);
+        this.context = new MessageContext(torrentId, peer, connectionState, readinessListener);
         this.outgoingMessages = new LinkedBlockingDeque<>();
         this.choker = Choker.choker();
     }
@@ -113,7 +123,7 @@ class RoutingPeerWorker implements PeerWorker {
                 // dispose of message
                 return null;
             } else {
-                connectionState.incrementUploaded(piece.getBlock().length);
+                connectionState.incrementUploaded(piece.getLength());
             }
         }
         if (Interested.class.equals(messageType)) {
@@ -136,7 +146,7 @@ class RoutingPeerWorker implements PeerWorker {
 
         int pieceIndex = piece.getPieceIndex(),
                 offset = piece.getOffset(),
-                length = piece.getBlock().length;
+                length = piece.getLength();
 
         return connectionState.getCancelledPeerRequests().remove(Mapper.mapper().buildKey(pieceIndex, offset, length));
     }
@@ -17,6 +17,7 @@
 package bt.torrent.messaging;
 
 import bt.data.Bitfield;
+import bt.data.PiecePriorities;
 import bt.event.EventSource;
 import bt.metainfo.TorrentId;
 import bt.net.IConnectionSource;
@@ -73,6 +74,7 @@ public class TorrentWorker {
     private Supplier<Bitfield> bitfieldSupplier;
     private Supplier<Assignments> assignmentsSupplier;
     private Supplier<BitfieldBasedStatistics> statisticsSupplier;
+    private Supplier<PiecePriorities> prioritiesSupplier;
 
     public TorrentWorker(TorrentId torrentId,
                          IMessageDispatcher dispatcher,
@@ -83,6 +85,26 @@ public class TorrentWorker {
                          Supplier<BitfieldBasedStatistics> statisticsSupplier,
                          EventSource eventSource,
                          Config config) {
+        this(torrentId, dispatcher, connectionSource, peerWorkerFactory, bitfieldSupplier, assignmentsSupplier,
+                statisticsSupplier, () -> null, eventSource, config);
+    }
+
+    /**
+     * @param prioritiesSupplier Priorities of torrent's pieces; skipped pieces are not taken into account
+     *                           when deciding whether there is anything left to download.
+     *                           May supply null, in which case all pieces are considered wanted.
+     * @since 1.6
+     */
+    public TorrentWorker(TorrentId torrentId,
+                         IMessageDispatcher dispatcher,
+                         IConnectionSource connectionSource,
+                         IPeerWorkerFactory peerWorkerFactory,
+                         Supplier<Bitfield> bitfieldSupplier,
+                         Supplier<Assignments> assignmentsSupplier,
+                         Supplier<BitfieldBasedStatistics> statisticsSupplier,
+                         Supplier<PiecePriorities> prioritiesSupplier,
+                         EventSource eventSource,
+                         Config config) {
         this.torrentId = torrentId;
         this.dispatcher = dispatcher;
         this.config = config;
@@ -99,6 +121,7 @@ public class TorrentWorker {
         this.bitfieldSupplier = bitfieldSupplier;
         this.assignmentsSupplier = assignmentsSupplier;
         this.statisticsSupplier = statisticsSupplier;
+        this.prioritiesSupplier = prioritiesSupplier;
 
         eventSource.onPeerDiscovered(e -> {
             if (torrentId.equals(e.getTorrentId())) {
@@ -131,6 +154,11 @@ public class TorrentWorker {
         return statisticsSupplier.get();
     }
 
+    private int getWantedPiecesRemaining(Bitfield bitfield) {
+        PiecePriorities priorities = prioritiesSupplier.get();
+        return (priorities == null) ? bitfield.getPiecesRemaining() : priorities.getWantedPiecesRemaining(bitfield);
+    }
+
     /**
      * Called when a peer joins the torrent processing session.
      *
@@ -161,7 +189,7 @@ public class TorrentWorker {
             Bitfield bitfield = getBitfield();
             Assignments assignments = getAssignments();
 
-            if (bitfield != null && assignments != null && (bitfield.getPiecesRemaining() > 0 || assignments.count() > 0)) {
+            if (bitfield != null && assignments != null && (getWantedPiecesRemaining(bitfield) > 0 || assignments.count() > 0)) {
                 inspectAssignment(peer, worker, assignments);
                 if (shouldUpdateAssignments(assignments)) {
                     processDisconnectedPeers(assignments, getStatistics());
@@ -305,6 +333,7 @@ public class TorrentWorker {
                 if (connectionState.isInterested()) {
                     interestUpdates.put(peer, NotInterested.instance());
                     connectionState.setInterested(false);
+                    dispatcher.notifyReady(peer);
                 }
             });
         });
@@ -316,10 +345,12 @@ public class TorrentWorker {
                     if (!connectionState.isInterested()) {
                         interestUpdates.put(peer, Interested.instance());
                         connectionState.setInterested(true);
+                        dispatcher.notifyReady(peer);
                     }
                 } else if (connectionState.isInterested()) {
                     interestUpdates.put(peer, NotInterested.instance());
                     connectionState.setInterested(false);
+                    dispatcher.notifyReady(peer);
                 }
             });
         });
@@ -396,9 +427,10 @@ public class TorrentWorker {
             message = delegate.get();
             if (message != null && Have.class.equals(message.getClass())) {
                 Have have = (Have) message;
-                peerMap.values().forEach(worker -> {
+                peerMap.forEach((peer, worker) -> {
                     if (this != worker) {
                         worker.getPieceAnnouncements().add(have);
+                        dispatcher.notifyReady(peer);
                     }
                 });
             }
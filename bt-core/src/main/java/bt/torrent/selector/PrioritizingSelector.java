@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.torrent.selector;
+
+import bt.data.FilePriority;
+import bt.data.PiecePriorities;
+import bt.torrent.PieceStatistics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Decorator that takes into account priorities of torrent's files.
+ *
+ * <p>Pieces, that belong only to skipped files, are never selected.
+ * If wanted pieces have different priorities, then pieces with higher priority are selected first,
+ * while the order of pieces with the same priority is the one chosen by the delegate selector.
+ *
+ * @since 1.6
+ */
+public class PrioritizingSelector implements PieceSelector {
+
+    private final PiecePriorities priorities;
+    private final PieceSelector delegate;
+
+    /**
+     * @param priorities Priorities of torrent's pieces
+     * @param delegate Delegate selector
+     * @since 1.6
+     */
+    public PrioritizingSelector(PiecePriorities priorities, PieceSelector delegate) {
+        this.priorities = priorities;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Stream<Integer> getNextPieces(PieceStatistics pieceStatistics) {
+        Stream<Integer> pieces = delegate.getNextPieces(pieceStatistics);
+        if (priorities.isSkippingPieces()) {
+            pieces = pieces.filter(priorities::isWanted);
+        }
+        if (!priorities.hasMixedPriorities()) {
+            return pieces;
+        }
+
+        // group by priority, preserving the delegate's order within each group
+        FilePriority[] values = FilePriority.values();
+        List<List<Integer>> groups = new ArrayList<>(values.length);
+        for (int i = 0; i < values.length; i++) {
+            groups.add(new ArrayList<>());
+        }
+        pieces.forEach(piece -> groups.get(priorities.getPriority(piece).ordinal()).add(piece));
+
+        Stream<Integer> result = Stream.empty();
+        for (int i = values.length - 1; i >= 0; i--) {
+            List<Integer> group = groups.get(i);
+            if (!group.isEmpty()) {
+                result = Stream.concat(result, group.stream());
+            }
+        }
+        return result;
+    }
+}
@@ -34,19 +34,29 @@ class DefaultSwarmPeerFactory implements SwarmPeerFactory {
     private TorrentFiles torrentFiles;
     private Supplier<Torrent> torrentSupplier;
     private PrimitiveIterator.OfInt ports;
+    private boolean useInMemoryStorage;
 
     DefaultSwarmPeerFactory(Path root, TorrentFiles torrentFiles, Supplier<Torrent> torrentSupplier, int startingPort) {
+        this(root, torrentFiles, torrentSupplier, startingPort, false);
+    }
+
+    DefaultSwarmPeerFactory(Path root,
+                            TorrentFiles torrentFiles,
+                            Supplier<Torrent> torrentSupplier,
+                            int startingPort,
+                            boolean useInMemoryStorage) {
         this.root = root;
         this.torrentFiles = torrentFiles;
         this.torrentSupplier = torrentSupplier;
         this.ports = IntStream.range(startingPort, 65536).iterator();
+        this.useInMemoryStorage = useInMemoryStorage;
     }
 
     @Override
     public SwarmPeer createSeeder(BtRuntimeBuilder runtimeBuilder) {
         int port = ports.next();
         BtRuntime runtime = createRuntime(runtimeBuilder, port);
-        return new SeederPeer(createLocalRoot(port), torrentFiles, torrentSupplier, runtime);
+        return new SeederPeer(createPeerData(port), torrentSupplier, runtime);
     }
 
     @Override
@@ -62,7 +72,7 @@ class DefaultSwarmPeerFactory implements SwarmPeerFactory {
     private SwarmPeer createLeecher(BtRuntimeBuilder runtimeBuilder, boolean useMagnet) {
         int port = ports.next();
         BtRuntime runtime = createRuntime(runtimeBuilder, port);
-        return new LeecherPeer(createLocalRoot(port), torrentFiles, torrentSupplier, runtime, useMagnet, true);
+        return new LeecherPeer(createPeerData(port), torrentSupplier, runtime, useMagnet, true);
     }
 
     private BtRuntime createRuntime(BtRuntimeBuilder runtimeBuilder, int port) {
@@ -76,7 +86,8 @@ class DefaultSwarmPeerFactory implements SwarmPeerFactory {
         return Inet4Address.getLoopbackAddress();
     }
 
-    private Path createLocalRoot(int port) {
-        return root.resolve(String.valueOf(port));
+    private SwarmPeerData createPeerData(int port) {
+        return useInMemoryStorage ?
+                new InMemoryPeerData(torrentFiles) : new FileSystemPeerData(root.resolve(String.valueOf(port)), torrentFiles);
     }
 }
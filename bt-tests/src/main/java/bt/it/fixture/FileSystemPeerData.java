@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package bt.it.fixture;
+
+import bt.data.Storage;
+import bt.data.file.FileHandleCache;
+import bt.data.file.FileSystemStorage;
+import bt.metainfo.Torrent;
+import bt.runtime.BtRuntime;
+
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Keeps participant's data in a directory on the file system.
+ *
+ * @since 1.6
+ */
+class FileSystemPeerData implements SwarmPeerData {
+
+    private final Path localRoot;
+    private final TorrentFiles files;
+
+    FileSystemPeerData(Path localRoot, TorrentFiles files) {
+        this.localRoot = Objects.requireNonNull(localRoot);
+        this.files = Objects.requireNonNull(files);
+    }
+
+    @Override
+    public Storage createStorage(BtRuntime runtime) {
+        return new FileSystemStorage(localRoot, runtime.service(FileHandleCache.class));
+    }
+
+    @Override
+    public void createFiles(Torrent torrent) {
+        files.createFiles(localRoot);
+    }
+
+    @Override
+    public boolean verifyFiles(Torrent torrent) {
+        return files.verifyFiles(localRoot);
+    }
+}
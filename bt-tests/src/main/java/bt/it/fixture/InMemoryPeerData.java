@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package bt.it.fixture;
+
+import bt.data.Storage;
+import bt.data.memory.InMemoryStorage;
+import bt.metainfo.Torrent;
+import bt.runtime.BtRuntime;
+
+import java.util.Objects;
+
+/**
+ * Keeps participant's data in memory, so that the swarm does not touch the file system at all.
+ *
+ * @since 1.6
+ */
+class InMemoryPeerData implements SwarmPeerData {
+
+    private final InMemoryStorage storage;
+    private final TorrentFiles files;
+
+    InMemoryPeerData(TorrentFiles files) {
+        this.storage = new InMemoryStorage(Long.MAX_VALUE);
+        this.files = Objects.requireNonNull(files);
+    }
+
+    @Override
+    public Storage createStorage(BtRuntime runtime) {
+        return storage;
+    }
+
+    @Override
+    public void createFiles(Torrent torrent) {
+        files.createFiles(storage, torrent);
+    }
+
+    @Override
+    public boolean verifyFiles(Torrent torrent) {
+        return files.verifyFiles(storage, torrent);
+    }
+}
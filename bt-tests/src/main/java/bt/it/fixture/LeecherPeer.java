@@ -18,25 +18,22 @@ package bt.it.fixture;
 
 import bt.Bt;
 import bt.BtClientBuilder;
-import bt.data.file.FileSystemStorage;
 import bt.magnet.MagnetUri;
 import bt.metainfo.Torrent;
 import bt.runtime.BtClient;
 import bt.runtime.BtRuntime;
 import bt.tracker.AnnounceKey;
 
-import java.nio.file.Path;
 import java.util.Objects;
 import java.util.function.Supplier;
 
 class LeecherPeer extends SwarmPeer {
 
     private BtClient handle;
-    private Path localRoot;
-    private TorrentFiles files;
+    private SwarmPeerData data;
+    private Torrent torrent;
 
-    LeecherPeer(Path localRoot,
-                TorrentFiles files,
+    LeecherPeer(SwarmPeerData data,
                 Supplier<Torrent> torrentSupplier,
                 BtRuntime runtime,
                 boolean useMagnet,
@@ -46,7 +43,8 @@ class LeecherPeer extends SwarmPeer {
 
         Torrent torrent = torrentSupplier.get();
 
-        BtClientBuilder builder = Bt.client(runtime).storage(new FileSystemStorage(localRoot));
+        BtClientBuilder builder = Bt.client(runtime)
+                .storage(data.createStorage(runtime));
 
         if (useMagnet) {
             // TODO: this is a bandaid fix; the issue of connecting to peers when using magnets should be solved in a different way
@@ -67,8 +65,12 @@ class LeecherPeer extends SwarmPeer {
 
         this.handle = builder.build();
 
-        this.localRoot = Objects.requireNonNull(localRoot);
-        this.files = Objects.requireNonNull(files);
+        this.data = Objects.requireNonNull(data);
+        this.torrent = torrent;
+    }
+
+    Torrent getTorrent() {
+        return torrent;
     }
 
     @Override
@@ -80,6 +82,6 @@ class LeecherPeer extends SwarmPeer {
     public boolean isSeeding() {
         // intentionally do not cache the result because
         // leecher may become seeder eventually
-        return files.verifyFiles(localRoot);
+        return data.verifyFiles(torrent);
     }
 }
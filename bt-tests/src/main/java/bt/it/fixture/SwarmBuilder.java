@@ -54,6 +54,7 @@ public class SwarmBuilder {
     private TorrentFiles torrentFiles;
     private Supplier<Torrent> torrentSupplier;
 
+    private boolean useInMemoryStorage;
     private Supplier<Path> swarmFileRootSupplier;
     private Collection<Closeable> swarmResources;
 
@@ -192,13 +193,25 @@ public class SwarmBuilder {
         return this;
     }
 
+    /**
+     * Keep participants' data in memory (see {@link bt.data.memory.InMemoryStorage})
+     * instead of the file system, so that the swarm's throughput depends only on networking and messaging.
+     *
+     * @since 1.6
+     */
+    public SwarmBuilder useInMemoryStorage() {
+        this.useInMemoryStorage = true;
+        return this;
+    }
+
     /**
      * Build swarm.
      *
      * @since 1.0
      */
     public Swarm build() {
-        SwarmPeerFactory swarmPeerFactory = new DefaultSwarmPeerFactory(getFileRoot(), torrentFiles, torrentSupplier, startingPort);
+        SwarmPeerFactory swarmPeerFactory = new DefaultSwarmPeerFactory(
+                getFileRoot(), torrentFiles, torrentSupplier, startingPort, useInMemoryStorage);
         BtRuntimeFactory runtimeFactory = createRuntimeFactory(modules);
 
         Collection<SwarmPeer> peers = new ArrayList<>(seedersCount + leechersCount + 1);
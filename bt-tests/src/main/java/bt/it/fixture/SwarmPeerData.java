@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package bt.it.fixture;
+
+import bt.data.Storage;
+import bt.metainfo.Torrent;
+import bt.runtime.BtRuntime;
+
+/**
+ * Local data of a swarm participant.
+ *
+ * @since 1.6
+ */
+interface SwarmPeerData {
+
+    /**
+     * @return Storage, that will be used by the participant's client
+     */
+    Storage createStorage(BtRuntime runtime);
+
+    /**
+     * Populate the storage with the torrent's files.
+     */
+    void createFiles(Torrent torrent);
+
+    /**
+     * @return true, if the storage contains all of the torrent's files with the expected contents
+     */
+    boolean verifyFiles(Torrent torrent);
+}
@@ -16,6 +16,11 @@
 
 package bt.it.fixture;
 
+import bt.data.Storage;
+import bt.data.StorageUnit;
+import bt.metainfo.Torrent;
+import bt.metainfo.TorrentFile;
+
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ByteChannel;
@@ -87,6 +92,43 @@ class TorrentFiles {
         return true;
     }
 
+    /**
+     * Write the contents of the torrent's files to a storage.
+     */
+    public void createFiles(Storage storage, Torrent torrent) {
+        for (TorrentFile torrentFile : torrent.getFiles()) {
+            byte[] content = getContent(torrentFile);
+            if (content.length > 0) {
+                storage.getUnit(torrent, torrentFile).writeBlock(content, 0);
+            }
+        }
+    }
+
+    /**
+     * @return true, if the storage contains all of the torrent's files with the expected contents
+     */
+    public boolean verifyFiles(Storage storage, Torrent torrent) {
+        for (TorrentFile torrentFile : torrent.getFiles()) {
+            byte[] expectedContent = getContent(torrentFile);
+            StorageUnit unit = storage.getUnit(torrent, torrentFile);
+            if (unit.size() != expectedContent.length
+                    || !Arrays.equals(expectedContent, unit.readBlock(0, expectedContent.length))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] getContent(TorrentFile torrentFile) {
+        String[] path = torrentFile.getPathElements().toArray(new String[0]);
+        for (Map.Entry<String[], byte[]> entry : files.entrySet()) {
+            if (Arrays.equals(path, entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        throw new IllegalStateException("Unknown torrent file: " + torrentFile.getPathElements());
+    }
+
     private BiConsumer<Path, byte[]> writeContents = (file, content) -> {
         try {
             ByteBuffer buf = ByteBuffer.wrap(content);
@@ -20,6 +20,7 @@ import bt.data.range.BlockRange;
 import bt.data.range.Ranges;
 import bt.metainfo.Torrent;
 import bt.metainfo.TorrentFile;
+import bt.metainfo.TorrentId;
 import bt.tracker.AnnounceKey;
 
 import java.io.BufferedInputStream;
@@ -73,6 +74,20 @@ public class ChunkDescriptorTestUtil {
         return torrent;
     }
 
+    /**
+     * Mock torrent, that provides only the information, which is needed to create storage units for it.
+     */
+    public static Torrent mockTorrent(TorrentId torrentId, String name, TorrentFile... files) {
+        Torrent torrent = mock(Torrent.class);
+
+        when(torrent.getTorrentId()).thenReturn(torrentId);
+        when(torrent.getName()).thenReturn(name);
+        when(torrent.getSize()).thenReturn(Arrays.stream(files).mapToLong(TorrentFile::getSize).sum());
+        when(torrent.getFiles()).thenReturn(Arrays.asList(files));
+
+        return torrent;
+    }
+
     public static TorrentFile mockTorrentFile(long size, String... pathElements) {
         TorrentFile file = mock(TorrentFile.class);
 
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package bt.data;
+
+import bt.TestUtil;
+import bt.service.CryptoUtil;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ChunkHasherTest {
+
+    private static final int BLOCK_SIZE = 4;
+
+    private final byte[] data = TestUtil.sequence(BLOCK_SIZE * 8 - 1);
+
+    @Test
+    public void testUpdate_InOrder() throws Exception {
+        ChunkHasher hasher = createHasher(0);
+        for (int i = 0; i < 8; i++) {
+            assertFalse(hasher.isComplete());
+            assertTrue(hasher.update(i * BLOCK_SIZE, block(i)));
+        }
+        assertTrue(hasher.isComplete());
+        assertTrue(hasher.verify());
+        // result is cached
+        assertTrue(hasher.verify());
+    }
+
+    @Test
+    public void testUpdate_OutOfOrder_WithinWindow() throws Exception {
+        ChunkHasher hasher = createHasher(3);
+        int[] order = new int[]{2, 1, 3, 0, 5, 4, 7, 6};
+        for (int i : order) {
+            assertTrue(hasher.update(i * BLOCK_SIZE, block(i)));
+        }
+        assertTrue(hasher.isComplete());
+        assertTrue(hasher.verify());
+    }
+
+    @Test
+    public void testUpdate_BufferPositionNotChanged() throws Exception {
+        ChunkHasher hasher = createHasher(1);
+        ByteBuffer block1 = block(1);
+        ByteBuffer block0 = block(0);
+        hasher.update(BLOCK_SIZE, block1);
+        hasher.update(0, block0);
+        assertEquals(0, block0.position());
+        assertEquals(0, block1.position());
+    }
+
+    @Test
+    public void testUpdate_WindowOverflow() throws Exception {
+        ChunkHasher hasher = createHasher(2);
+        assertTrue(hasher.update(BLOCK_SIZE, block(1)));
+        assertTrue(hasher.update(2 * BLOCK_SIZE, block(2)));
+        assertFalse(hasher.update(3 * BLOCK_SIZE, block(3)));
+        assertTrue(hasher.isFailed());
+        // no more blocks are accepted
+        assertFalse(hasher.update(0, block(0)));
+        assertFalse(hasher.isComplete());
+    }
+
+    @Test
+    public void testUpdate_DuplicateBlock() throws Exception {
+        ChunkHasher hasher = createHasher(2);
+        assertTrue(hasher.update(0, block(0)));
+        assertFalse(hasher.update(0, block(0)));
+        assertTrue(hasher.isFailed());
+    }
+
+    @Test
+    public void testUpdate_DuplicatePendingBlock() throws Exception {
+        ChunkHasher hasher = createHasher(2);
+        assertTrue(hasher.update(2 * BLOCK_SIZE, block(2)));
+        assertFalse(hasher.update(2 * BLOCK_SIZE, block(2)));
+        assertTrue(hasher.isFailed());
+    }
+
+    @Test
+    public void testVerify_WrongData() throws Exception {
+        ChunkHasher hasher = createHasher(0);
+        for (int i = 0; i < 8; i++) {
+            ByteBuffer block = block(i);
+            if (i == 5) {
+                block.put(0, (byte) (block.get(0) + 1));
+            }
+            hasher.update(i * BLOCK_SIZE, block);
+        }
+        assertTrue(hasher.isComplete());
+        assertFalse(hasher.verify());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testVerify_Incomplete() throws Exception {
+        ChunkHasher hasher = createHasher(0);
+        hasher.update(0, block(0));
+        hasher.verify();
+    }
+
+    private ChunkHasher createHasher(int maxPendingBlocks) throws NoSuchAlgorithmException {
+        return new ChunkHasher(MessageDigest.getInstance("SHA-1"),
+                CryptoUtil.getSha1Digest(data), data.length, maxPendingBlocks);
+    }
+
+    private ByteBuffer block(int index) {
+        int offset = index * BLOCK_SIZE;
+        byte[] block = new byte[Math.min(BLOCK_SIZE, data.length - offset)];
+        System.arraycopy(data, offset, block, 0, block.length);
+        return ByteBuffer.wrap(block);
+    }
+}
@@ -0,0 +1,383 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package bt.data;
+
+import bt.TestUtil;
+import bt.data.digest.SHA1Digester;
+import bt.data.file.AllocationPolicy;
+import bt.data.file.FileHandleCache;
+import bt.data.file.FileSystemStorage;
+import bt.data.resume.FileResumeStateStore;
+import bt.data.resume.ResumeState;
+import bt.data.resume.ResumeStateStore;
+import bt.metainfo.Torrent;
+import bt.metainfo.TorrentFile;
+import bt.metainfo.TorrentId;
+import bt.metainfo.TorrentSource;
+import bt.service.CryptoUtil;
+import bt.tracker.AnnounceKey;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DataDescriptor_FastResumeTest {
+
+    private static final int CHUNK_SIZE = 8;
+    private static final int BLOCK_SIZE = 4;
+
+    // second chunk of the torrent spans both files
+    private static final int FILE1_SIZE = 20;
+    private static final int FILE2_SIZE = 28;
+
+    private Path root;
+    private Path dataDirectory;
+    private Path torrentDirectory;
+    private byte[] data;
+    private Torrent torrent;
+
+    private CountingVerifier verifier;
+    private ResumeStateStore resumeStateStore;
+
+    @Before
+    public void before() throws IOException {
+        root = Files.createTempDirectory("bt-resume");
+        dataDirectory = root.resolve("data");
+        // multi-file torrents are stored in a separate directory
+        torrentDirectory = dataDirectory.resolve("torrent");
+        Files.createDirectories(torrentDirectory);
+
+        data = TestUtil.sequence(FILE1_SIZE + FILE2_SIZE);
+        torrent = new TestTorrent(data);
+
+        verifier = new CountingVerifier(new DefaultChunkVerifier(SHA1Digester.rolling(CHUNK_SIZE), 1));
+        resumeStateStore = new FileResumeStateStore(root.resolve("resume"));
+    }
+
+    @After
+    public void after() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void testFullCheck_NoSavedState() throws Exception {
+        writeFiles(data);
+
+        DataDescriptor descriptor = createDescriptor();
+        assertEquals(6, verifier.checkedChunks);
+        assertEquals(6, descriptor.getBitfield().getPiecesComplete());
+        descriptor.close();
+    }
+
+    @Test
+    public void testNoCheck_FilesUnchanged() throws Exception {
+        writeFiles(data);
+        createDescriptor().close();
+
+        verifier.checkedChunks = 0;
+        DataDescriptor descriptor = createDescriptor();
+        assertEquals(0, verifier.checkedChunks);
+        assertEquals(6, descriptor.getBitfield().getPiecesComplete());
+        descriptor.close();
+    }
+
+    @Test
+    public void testPartialCheck_OneFileChanged() throws Exception {
+        writeFiles(data);
+        createDescriptor().close();
+
+        Path file1 = torrentDirectory.resolve("file1");
+        Files.setLastModifiedTime(file1, FileTime.from(Files.getLastModifiedTime(file1).toInstant().plusSeconds(10)));
+
+        verifier.checkedChunks = 0;
+        DataDescriptor descriptor = createDescriptor();
+        // chunks 0..2 overlap with the first file
+        assertEquals(3, verifier.checkedChunks);
+        assertEquals(6, descriptor.getBitfield().getPiecesComplete());
+        descriptor.close();
+    }
+
+    @Test
+    public void testPartialCheck_ChangedFileIsNoLongerVerified() throws Exception {
+        writeFiles(data);
+        createDescriptor().close();
+
+        byte[] corrupted = Arrays.copyOf(data, data.length);
+        corrupted[data.length - 1]++;
+        Path file2 = torrentDirectory.resolve("file2");
+        Files.write(file2, Arrays.copyOfRange(corrupted, FILE1_SIZE, corrupted.length));
+        Files.setLastModifiedTime(file2, FileTime.from(Files.getLastModifiedTime(file2).toInstant().plusSeconds(10)));
+
+        verifier.checkedChunks = 0;
+        DataDescriptor descriptor = createDescriptor();
+        // chunks 2..5 overlap with the second file
+        assertEquals(4, verifier.checkedChunks);
+        assertEquals(5, descriptor.getBitfield().getPiecesComplete());
+        assertFalse(descriptor.getBitfield().isVerified(5));
+        descriptor.close();
+    }
+
+    @Test
+    public void testFullCheck_CorruptedState() throws Exception {
+        writeFiles(data);
+        createDescriptor().close();
+
+        // replace the number of files, that follows the number of pieces and the bitmask
+        Path resumeFile = root.resolve("resume").resolve(torrent.getTorrentId() + ".resume");
+        byte[] state = Files.readAllBytes(resumeFile);
+        ByteBuffer.wrap(state).putInt(4 + 4 + 4 + 4 + 1, Integer.MAX_VALUE);
+        Files.write(resumeFile, state);
+
+        verifier.checkedChunks = 0;
+        DataDescriptor descriptor = createDescriptor();
+        assertEquals(6, verifier.checkedChunks);
+        assertEquals(6, descriptor.getBitfield().getPiecesComplete());
+        descriptor.close();
+    }
+
+    @Test
+    public void testPartialPieceBlocksRestored() throws Exception {
+        byte[] incomplete = Arrays.copyOf(data, data.length);
+        Arrays.fill(incomplete, 40, 48, (byte) 0);
+        writeFiles(incomplete);
+
+        DataDescriptor descriptor = createDescriptor();
+        assertFalse(descriptor.getBitfield().isVerified(5));
+        ChunkDescriptor chunk = descriptor.getChunkDescriptors().get(5);
+        chunk.getData().getSubrange(0, BLOCK_SIZE).putBytes(Arrays.copyOfRange(data, 40, 40 + BLOCK_SIZE));
+        descriptor.close();
+
+        verifier.checkedChunks = 0;
+        descriptor = createDescriptor();
+        assertEquals(0, verifier.checkedChunks);
+        assertEquals(5, descriptor.getBitfield().getPiecesComplete());
+        chunk = descriptor.getChunkDescriptors().get(5);
+        assertTrue(chunk.isPresent(0));
+        assertFalse(chunk.isPresent(1));
+        descriptor.close();
+    }
+
+    @Test
+    public void testNoCheck_PreallocatedFilesUnchanged() throws Exception {
+        FileHandleCache handleCache = new FileHandleCache(4);
+        Storage storage = new FileSystemStorage(dataDirectory, handleCache, AllocationPolicy.SPARSE);
+        DataDescriptor descriptor = createDescriptor(storage);
+        assertEquals(6, verifier.checkedChunks);
+        for (int i : new int[]{0, 5}) {
+            byte[] chunkData = Arrays.copyOfRange(data, i * CHUNK_SIZE, (i + 1) * CHUNK_SIZE);
+            descriptor.getChunkDescriptors().get(i).getData().putBytes(chunkData);
+            descriptor.getBitfield().markVerified(i);
+        }
+        descriptor.close();
+        handleCache.clear();
+        assertEquals(FILE1_SIZE, Files.size(torrentDirectory.resolve("file1")));
+
+        // files are preallocated, but it's known from the saved state, how much data has been written into them
+        verifier.checkedChunks = 0;
+        descriptor = createDescriptor(storage);
+        assertEquals(0, verifier.checkedChunks);
+        assertEquals(2, descriptor.getBitfield().getPiecesComplete());
+        descriptor.close();
+        handleCache.clear();
+    }
+
+    @Test
+    public void testConcurrentSaves() throws Exception {
+        TorrentId torrentId = torrent.getTorrentId();
+        byte[] bitmask = new byte[]{(byte) 0b1010_0000};
+        ResumeState state = new ResumeState(6, bitmask, new long[]{FILE1_SIZE, FILE2_SIZE}, new long[]{1, 2},
+                Collections.emptyMap());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> saves = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                saves.add(executor.submit(() -> resumeStateStore.save(torrentId, state)));
+            }
+            for (Future<?> save : saves) {
+                save.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Optional<ResumeState> loaded = resumeStateStore.load(torrentId);
+        assertTrue(loaded.isPresent());
+        assertArrayEquals(bitmask, loaded.get().getBitmask());
+        // no temporary files are left behind
+        try (Stream<Path> files = Files.list(root.resolve("resume"))) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    private DataDescriptor createDescriptor() {
+        return createDescriptor(new FileSystemStorage(dataDirectory));
+    }
+
+    private DataDescriptor createDescriptor(Storage storage) {
+        return new DataDescriptorFactory(verifier, resumeStateStore, BLOCK_SIZE).createDescriptor(torrent, storage);
+    }
+
+    private void writeFiles(byte[] contents) throws IOException {
+        Files.write(torrentDirectory.resolve("file1"), Arrays.copyOfRange(contents, 0, FILE1_SIZE));
+        Files.write(torrentDirectory.resolve("file2"), Arrays.copyOfRange(contents, FILE1_SIZE, contents.length));
+    }
+
+    private static class CountingVerifier implements ChunkVerifier {
+
+        private final ChunkVerifier delegate;
+        private volatile int checkedChunks;
+
+        CountingVerifier(ChunkVerifier delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean verify(List<ChunkDescriptor> chunks, Bitfield bitfield) {
+            checkedChunks += chunks.size();
+            return delegate.verify(chunks, bitfield);
+        }
+
+        @Override
+        public boolean verify(ChunkDescriptor chunk) {
+            return delegate.verify(chunk);
+        }
+
+        @Override
+        public boolean verify(ChunkDescriptor chunk, byte[] data) {
+            return delegate.verify(chunk, data);
+        }
+    }
+
+    private static class TestTorrent implements Torrent {
+
+        private final List<byte[]> chunkHashes;
+
+        TestTorrent(byte[] data) {
+            this.chunkHashes = new ArrayList<>();
+            for (int i = 0; i < data.length; i += CHUNK_SIZE) {
+                chunkHashes.add(CryptoUtil.getSha1Digest(Arrays.copyOfRange(data, i, Math.min(data.length, i + CHUNK_SIZE))));
+            }
+        }
+
+        @Override
+        public TorrentSource getSource() {
+            return null;
+        }
+
+        @Override
+        public Optional<AnnounceKey> getAnnounceKey() {
+            return Optional.empty();
+        }
+
+        @Override
+        public TorrentId getTorrentId() {
+            return TorrentId.fromBytes(new byte[TorrentId.length()]);
+        }
+
+        @Override
+        public String getName() {
+            return "torrent";
+        }
+
+        @Override
+        public long getChunkSize() {
+            return CHUNK_SIZE;
+        }
+
+        @Override
+        public Iterable<byte[]> getChunkHashes() {
+            return chunkHashes;
+        }
+
+        @Override
+        public long getSize() {
+            return FILE1_SIZE + FILE2_SIZE;
+        }
+
+        @Override
+        public List<TorrentFile> getFiles() {
+            return Arrays.asList(new TestTorrentFile(FILE1_SIZE, "file1"), new TestTorrentFile(FILE2_SIZE, "file2"));
+        }
+
+        @Override
+        public boolean isPrivate() {
+            return false;
+        }
+
+        @Override
+        public Optional<Instant> getCreationDate() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<String> getCreatedBy() {
+            return Optional.empty();
+        }
+    }
+
+    private static class TestTorrentFile implements TorrentFile {
+
+        private final long size;
+        private final String name;
+
+        TestTorrentFile(long size, String name) {
+            this.size = size;
+            this.name = name;
+        }
+
+        @Override
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public List<String> getPathElements() {
+            return Collections.singletonList(name);
+        }
+    }
+}
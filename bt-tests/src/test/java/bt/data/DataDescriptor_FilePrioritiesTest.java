@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.data;
+
+import bt.BtException;
+import bt.TestUtil;
+import bt.data.digest.SHA1Digester;
+import bt.data.file.FileSystemStorage;
+import bt.metainfo.Torrent;
+import bt.metainfo.TorrentFile;
+import bt.metainfo.TorrentId;
+import bt.metainfo.TorrentSource;
+import bt.service.CryptoUtil;
+import bt.tracker.AnnounceKey;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DataDescriptor_FilePrioritiesTest {
+
+    private static final int CHUNK_SIZE = 8;
+    private static final int BLOCK_SIZE = 4;
+
+    // file1: chunks 0..1, file2: chunks 2..4, file3: chunks 4..5 (chunk 4 is shared by file2 and file3)
+    private static final int FILE1_SIZE = 16;
+    private static final int FILE2_SIZE = 20;
+    private static final int FILE3_SIZE = 12;
+
+    private Path root;
+    private Path torrentDirectory;
+    private byte[] data;
+    private Torrent torrent;
+
+    @Before
+    public void before() throws IOException {
+        root = Files.createTempDirectory("bt-priorities");
+        torrentDirectory = root.resolve("torrent");
+        data = TestUtil.sequence(FILE1_SIZE + FILE2_SIZE + FILE3_SIZE);
+        torrent = new TestTorrent(data);
+    }
+
+    @After
+    public void after() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void testDefaultPriorities() throws Exception {
+        DataDescriptor descriptor = createDescriptor(null);
+        PiecePriorities priorities = descriptor.getPiecePriorities();
+        assertEquals(6, priorities.getPiecesTotal());
+        assertFalse(priorities.isSkippingPieces());
+        assertFalse(priorities.hasMixedPriorities());
+        assertEquals(6, priorities.getWantedPiecesRemaining(descriptor.getBitfield()));
+        descriptor.close();
+    }
+
+    @Test
+    public void testSkippedFile_NoStorageAllocated() throws Exception {
+        DataDescriptor descriptor = createDescriptor(priorities("file1", FilePriority.SKIP));
+        PiecePriorities priorities = descriptor.getPiecePriorities();
+        assertFalse(priorities.isWanted(0));
+        assertFalse(priorities.isWanted(1));
+        assertTrue(priorities.isWanted(2));
+        assertEquals(4, priorities.getWantedPiecesRemaining(descriptor.getBitfield()));
+
+        // reading from a skipped file does not touch the storage
+        assertArrayEquals(new byte[CHUNK_SIZE], descriptor.getChunkDescriptors().get(0).getData().getBytes());
+
+        // data of wanted files is stored as usual
+        descriptor.getChunkDescriptors().get(2).getData().putBytes(Arrays.copyOfRange(data, 16, 24));
+        descriptor.close();
+
+        assertFalse(Files.exists(torrentDirectory.resolve("file1")));
+        assertTrue(Files.exists(torrentDirectory.resolve("file2")));
+    }
+
+    @Test(expected = BtException.class)
+    public void testSkippedFile_WriteFails() throws Exception {
+        DataDescriptor descriptor = createDescriptor(priorities("file1", FilePriority.SKIP));
+        try {
+            descriptor.getChunkDescriptors().get(0).getData().putBytes(Arrays.copyOfRange(data, 0, 8));
+        } finally {
+            descriptor.close();
+        }
+    }
+
+    @Test
+    public void testSkippedFile_SharedPieceIsWanted() throws Exception {
+        DataDescriptor descriptor = createDescriptor(priorities("file3", FilePriority.SKIP));
+        PiecePriorities priorities = descriptor.getPiecePriorities();
+        assertTrue(priorities.isWanted(4));
+        assertFalse(priorities.isWanted(5));
+        assertEquals(5, priorities.getWantedPiecesRemaining(descriptor.getBitfield()));
+
+        // boundary piece must be written to both files
+        descriptor.getChunkDescriptors().get(4).getData().putBytes(Arrays.copyOfRange(data, 32, 40));
+        descriptor.close();
+        assertTrue(Files.exists(torrentDirectory.resolve("file3")));
+    }
+
+    @Test
+    public void testMixedPriorities() throws Exception {
+        DataDescriptor descriptor = createDescriptor(priorities("file2", FilePriority.HIGH));
+        PiecePriorities priorities = descriptor.getPiecePriorities();
+        assertFalse(priorities.isSkippingPieces());
+        assertTrue(priorities.hasMixedPriorities());
+        assertEquals(FilePriority.NORMAL, priorities.getPriority(1));
+        assertEquals(FilePriority.HIGH, priorities.getPriority(2));
+        // boundary piece takes the highest priority of the files, that it belongs to
+        assertEquals(FilePriority.HIGH, priorities.getPriority(4));
+        assertEquals(FilePriority.NORMAL, priorities.getPriority(5));
+        descriptor.close();
+    }
+
+    private static Function<TorrentFile, FilePriority> priorities(String name, FilePriority priority) {
+        return file -> file.getPathElements().get(0).equals(name) ? priority : FilePriority.NORMAL;
+    }
+
+    private DataDescriptor createDescriptor(Function<TorrentFile, FilePriority> filePriorities) {
+        ChunkVerifier verifier = new DefaultChunkVerifier(SHA1Digester.rolling(CHUNK_SIZE), 1);
+        return new DataDescriptorFactory(verifier, BLOCK_SIZE)
+                .createDescriptor(torrent, new FileSystemStorage(root), filePriorities);
+    }
+
+    private static class TestTorrent implements Torrent {
+
+        private final List<byte[]> chunkHashes;
+
+        TestTorrent(byte[] data) {
+            this.chunkHashes = new ArrayList<>();
+            for (int i = 0; i < data.length; i += CHUNK_SIZE) {
+                chunkHashes.add(CryptoUtil.getSha1Digest(Arrays.copyOfRange(data, i, Math.min(data.length, i + CHUNK_SIZE))));
+            }
+        }
+
+        @Override
+        public TorrentSource getSource() {
+            return null;
+        }
+
+        @Override
+        public Optional<AnnounceKey> getAnnounceKey() {
+            return Optional.empty();
+        }
+
+        @Override
+        public TorrentId getTorrentId() {
+            return TorrentId.fromBytes(new byte[TorrentId.length()]);
+        }
+
+        @Override
+        public String getName() {
+            return "torrent";
+        }
+
+        @Override
+        public long getChunkSize() {
+            return CHUNK_SIZE;
+        }
+
+        @Override
+        public Iterable<byte[]> getChunkHashes() {
+            return chunkHashes;
+        }
+
+        @Override
+        public long getSize() {
+            return FILE1_SIZE + FILE2_SIZE + FILE3_SIZE;
+        }
+
+        @Override
+        public List<TorrentFile> getFiles() {
+            return Arrays.asList(new TestTorrentFile(FILE1_SIZE, "file1"),
+                    new TestTorrentFile(FILE2_SIZE, "file2"),
+                    new TestTorrentFile(FILE3_SIZE, "file3"));
+        }
+
+        @Override
+        public boolean isPrivate() {
+            return false;
+        }
+
+        @Override
+        public Optional<Instant> getCreationDate() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<String> getCreatedBy() {
+            return Optional.empty();
+        }
+    }
+
+    private static class TestTorrentFile implements TorrentFile {
+
+        private final long size;
+        private final String name;
+
+        TestTorrentFile(long size, String name) {
+            this.size = size;
+            this.name = name;
+        }
+
+        @Override
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public List<String> getPathElements() {
+            return Collections.singletonList(name);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package bt.data;
+
+import bt.BtException;
+import bt.TestUtil;
+import bt.data.digest.SHA1Digester;
+import bt.data.range.BlockRange;
+import bt.data.range.Ranges;
+import bt.service.CryptoUtil;
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DefaultChunkVerifier_RecheckTest {
+
+    private static final int CHUNK_SIZE = 8;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testVerify_AllChunksPresent() {
+        byte[] data = TestUtil.sequence(CHUNK_SIZE * 20 - 3);
+        List<ArrayStorageUnit> units = Arrays.asList(
+                new ArrayStorageUnit(data, 0, 50), new ArrayStorageUnit(data, 50, data.length));
+        List<ChunkDescriptor> chunks = buildChunks(data, units);
+
+        Bitfield bitfield = new Bitfield(chunks.size());
+        List<int[]> progress = new ArrayList<>();
+        boolean complete = createVerifier().verify(chunks, bitfield,
+                (checked, verified, total) -> progress.add(new int[]{checked, verified, total}));
+
+        assertTrue(complete);
+        assertEquals(chunks.size(), bitfield.getPiecesComplete());
+        assertEquals(chunks.size(), progress.size());
+        for (int i = 0; i < progress.size(); i++) {
+            assertEquals(i + 1, progress.get(i)[0]);
+            assertEquals(chunks.size(), progress.get(i)[2]);
+        }
+        assertEquals(chunks.size(), progress.get(progress.size() - 1)[1]);
+    }
+
+    @Test
+    public void testVerify_MissingFileIsNotRead() {
+        byte[] data = TestUtil.sequence(CHUNK_SIZE * 8);
+        ArrayStorageUnit present = new ArrayStorageUnit(data, 0, CHUNK_SIZE * 4);
+        ArrayStorageUnit missing = new ArrayStorageUnit(data, CHUNK_SIZE * 4, data.length);
+        missing.size = 0;
+        List<ChunkDescriptor> chunks = buildChunks(data, Arrays.asList(present, missing));
+
+        Bitfield bitfield = new Bitfield(chunks.size());
+        assertFalse(createVerifier().verify(chunks, bitfield));
+
+        assertEquals(4, bitfield.getPiecesComplete());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(bitfield.isVerified(i));
+        }
+        assertEquals(4, present.reads.get());
+        assertEquals(0, missing.reads.get());
+    }
+
+    @Test
+    public void testVerify_CorruptChunk() {
+        byte[] data = TestUtil.sequence(CHUNK_SIZE * 8);
+        ArrayStorageUnit unit = new ArrayStorageUnit(data, 0, data.length);
+        List<ChunkDescriptor> chunks = buildChunks(data, Arrays.asList(unit));
+        unit.data[CHUNK_SIZE * 3 + 1]++;
+
+        Bitfield bitfield = new Bitfield(chunks.size());
+        assertFalse(createVerifier().verify(chunks, bitfield));
+
+        assertEquals(7, bitfield.getPiecesComplete());
+        assertFalse(bitfield.isVerified(3));
+    }
+
+    @Test
+    public void testVerify_SingleThread() {
+        byte[] data = TestUtil.sequence(CHUNK_SIZE * 8);
+        List<ChunkDescriptor> chunks = buildChunks(data, Arrays.asList(new ArrayStorageUnit(data, 0, data.length)));
+
+        Bitfield bitfield = new Bitfield(chunks.size());
+        assertTrue(new DefaultChunkVerifier(SHA1Digester.rolling(CHUNK_SIZE), 1).verify(chunks, bitfield));
+        assertEquals(8, bitfield.getPiecesComplete());
+    }
+
+    @Test(expected = BtException.class)
+    public void testVerify_ReadError() {
+        byte[] data = TestUtil.sequence(CHUNK_SIZE * 8);
+        ArrayStorageUnit unit = new ArrayStorageUnit(data, 0, data.length);
+        List<ChunkDescriptor> chunks = buildChunks(data, Arrays.asList(unit));
+        unit.failReads = true;
+
+        createVerifier().verify(chunks, new Bitfield(chunks.size()));
+    }
+
+    private DefaultChunkVerifier createVerifier() {
+        return new DefaultChunkVerifier(SHA1Digester.rolling(CHUNK_SIZE), 4, 0, executor);
+    }
+
+    private static List<ChunkDescriptor> buildChunks(byte[] data, List<? extends StorageUnit> units) {
+        DataRange range = new ReadWriteDataRange(new ArrayList<>(units), 0, units.get(units.size() - 1).capacity());
+        List<ChunkDescriptor> chunks = new ArrayList<>();
+        for (int offset = 0; offset < data.length; offset += CHUNK_SIZE) {
+            int length = Math.min(CHUNK_SIZE, data.length - offset);
+            BlockRange<DataRange> blockData = Ranges.blockRange(range.getSubrange(offset, length), 4);
+            byte[] checksum = CryptoUtil.getSha1Digest(Arrays.copyOfRange(data, offset, offset + length));
+            chunks.add(new DefaultChunkDescriptor(Ranges.dataRange(blockData), blockData.getBlockSet(), checksum));
+        }
+        return chunks;
+    }
+
+    private static class ArrayStorageUnit implements StorageUnit {
+
+        private final byte[] data;
+        private volatile long size;
+        private volatile boolean failReads;
+        private final AtomicInteger reads;
+
+        ArrayStorageUnit(byte[] source, int from, int to) {
+            this.data = Arrays.copyOfRange(source, from, to);
+            this.size = data.length;
+            this.reads = new AtomicInteger();
+        }
+
+        @Override
+        public void readBlock(ByteBuffer buffer, long offset) {
+            if (failReads) {
+                throw new BtException("Read failed");
+            }
+            reads.incrementAndGet();
+            buffer.put(data, (int) offset, buffer.remaining());
+        }
+
+        @Override
+        public byte[] readBlock(long offset, int length) {
+            byte[] block = new byte[length];
+            readBlock(ByteBuffer.wrap(block), offset);
+            return block;
+        }
+
+        @Override
+        public void writeBlock(ByteBuffer buffer, long offset) {
+            buffer.get(data, (int) offset, buffer.remaining());
+        }
+
+        @Override
+        public void writeBlock(byte[] block, long offset) {
+            System.arraycopy(block, 0, data, (int) offset, block.length);
+        }
+
+        @Override
+        public long capacity() {
+            return data.length;
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
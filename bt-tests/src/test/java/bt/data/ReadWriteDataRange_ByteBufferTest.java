@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.data;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static bt.TestUtil.sequence;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ReadWriteDataRange_ByteBufferTest {
+
+    @Test
+    public void testPutBytes_AcrossUnits() {
+        List<StorageUnit> units = Arrays.asList(new ArrayStorageUnit(5), new ArrayStorageUnit(3), new ArrayStorageUnit(8));
+        DataRange range = new ReadWriteDataRange(units, 2, 8);
+
+        // 3 bytes in the first unit, 3 bytes in the second unit, 1 byte in the last unit
+        byte[] block = sequence(7);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(block.length);
+        buffer.put(block);
+        buffer.flip();
+
+        range.putBytes(buffer);
+        assertEquals(buffer.limit(), buffer.position());
+
+        assertArrayEquals(new byte[]{0, 0, 1, 2, 3}, ((ArrayStorageUnit) units.get(0)).data);
+        assertArrayEquals(new byte[]{4, 5, 6}, ((ArrayStorageUnit) units.get(1)).data);
+        assertArrayEquals(new byte[]{7, 0, 0, 0, 0, 0, 0, 0}, ((ArrayStorageUnit) units.get(2)).data);
+    }
+
+    @Test
+    public void testGetBytes_AcrossUnits() {
+        List<StorageUnit> units = Arrays.asList(new ArrayStorageUnit(5), new ArrayStorageUnit(3), new ArrayStorageUnit(8));
+        DataRange range = new ReadWriteDataRange(units, 2, 8);
+
+        byte[] block = sequence(13);
+        range.putBytes(block);
+
+        ByteBuffer buffer = ByteBuffer.allocate(20);
+        buffer.position(4);
+        buffer.limit(4 + 7);
+        range.getSubrange(1).getBytes(buffer);
+        assertEquals(11, buffer.position());
+        assertEquals(11, buffer.limit());
+
+        buffer.flip().position(4);
+        byte[] actual = new byte[7];
+        buffer.get(actual);
+        assertArrayEquals(Arrays.copyOfRange(block, 1, 8), actual);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetBytes_InsufficientData() {
+        List<StorageUnit> units = Arrays.asList(new ArrayStorageUnit(5), new ArrayStorageUnit(3));
+        DataRange range = new ReadWriteDataRange(units, 2, 3);
+        range.getBytes(ByteBuffer.allocate(7));
+    }
+
+    @Test
+    public void testPutBytes_Vectored_SingleWritePerUnit() {
+        List<StorageUnit> units = Arrays.asList(new ArrayStorageUnit(5), new ArrayStorageUnit(3), new ArrayStorageUnit(8));
+        DataRange range = new ReadWriteDataRange(units, 2, 8);
+
+        // blocks of 4 bytes: first block spans the first two units, second block spans the last two units
+        byte[] block = sequence(8);
+        ByteBuffer[] buffers = new ByteBuffer[]{ByteBuffer.wrap(block, 0, 4), ByteBuffer.wrap(block, 4, 4)};
+        range.putBytes(buffers);
+        assertEquals(0, buffers[0].remaining());
+        assertEquals(0, buffers[1].remaining());
+
+        assertArrayEquals(new byte[]{0, 0, 1, 2, 3}, ((ArrayStorageUnit) units.get(0)).data);
+        assertArrayEquals(new byte[]{4, 5, 6}, ((ArrayStorageUnit) units.get(1)).data);
+        assertArrayEquals(new byte[]{7, 8, 0, 0, 0, 0, 0, 0}, ((ArrayStorageUnit) units.get(2)).data);
+        for (StorageUnit unit : units) {
+            assertEquals(1, ((ArrayStorageUnit) unit).vectoredWrites);
+        }
+        // parts of the second block in the second unit and in the last unit
+        assertEquals(2, ((ArrayStorageUnit) units.get(1)).buffersWritten);
+    }
+
+    @Test
+    public void testGetBytes_Vectored() {
+        List<StorageUnit> units = Arrays.asList(new ArrayStorageUnit(5), new ArrayStorageUnit(3), new ArrayStorageUnit(8));
+        DataRange range = new ReadWriteDataRange(units, 2, 8);
+
+        byte[] block = sequence(13);
+        range.putBytes(block);
+
+        ByteBuffer first = ByteBuffer.allocate(2);
+        ByteBuffer second = ByteBuffer.allocateDirect(6);
+        range.getSubrange(1).getBytes(new ByteBuffer[]{first, second});
+        assertEquals(2, first.position());
+        assertEquals(6, second.position());
+
+        assertArrayEquals(Arrays.copyOfRange(block, 1, 3), first.array());
+        byte[] actual = new byte[6];
+        second.flip();
+        second.get(actual);
+        assertArrayEquals(Arrays.copyOfRange(block, 3, 9), actual);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPutBytes_Vectored_DataDoesNotFit() {
+        List<StorageUnit> units = Arrays.asList(new ArrayStorageUnit(5), new ArrayStorageUnit(3));
+        DataRange range = new ReadWriteDataRange(units, 2, 3);
+        range.putBytes(new ByteBuffer[]{ByteBuffer.allocate(4), ByteBuffer.allocate(3)});
+    }
+
+    private static class ArrayStorageUnit implements StorageUnit {
+
+        private final byte[] data;
+        private int vectoredWrites;
+        private int buffersWritten;
+
+        ArrayStorageUnit(int capacity) {
+            this.data = new byte[capacity];
+        }
+
+        @Override
+        public void readBlock(ByteBuffer buffer, long offset) {
+            buffer.put(data, (int) offset, buffer.remaining());
+        }
+
+        @Override
+        public byte[] readBlock(long offset, int length) {
+            return Arrays.copyOfRange(data, (int) offset, (int) offset + length);
+        }
+
+        @Override
+        public void writeBlock(ByteBuffer buffer, long offset) {
+            buffer.get(data, (int) offset, buffer.remaining());
+        }
+
+        @Override
+        public void writeBlock(byte[] block, long offset) {
+            System.arraycopy(block, 0, data, (int) offset, block.length);
+        }
+
+        @Override
+        public void writeBlocks(ByteBuffer[] buffers, long offset) {
+            vectoredWrites++;
+            buffersWritten += buffers.length;
+            StorageUnit.super.writeBlocks(buffers, offset);
+        }
+
+        @Override
+        public long capacity() {
+            return data.length;
+        }
+
+        @Override
+        public long size() {
+            return data.length;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
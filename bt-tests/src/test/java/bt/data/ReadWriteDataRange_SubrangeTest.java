@@ -179,4 +179,50 @@ public class ReadWriteDataRange_SubrangeTest {
         List<UnitAccess> expectedUnits = Collections.singletonList(new UnitAccess(units.get(1), off, off + 1));
         assertHasUnits(expectedUnits, range);
     }
+
+    /**************************************************************************************************/
+
+    @Test
+    public void testSubrange_OfSubrange() {
+        long len1 = 256, len2 = 64, len3 = 192;
+        long off = 32;
+        List<StorageUnit> units = mockStorageUnits(len1, len2, len3);
+        DataRange range = new ReadWriteDataRange(units, off, len3)
+                .getSubrange(len1 - off - 1)
+                .getSubrange(1, len2 + 1);
+        assertEquals(len2 + 1, range.length());
+
+        List<UnitAccess> expectedUnits = Arrays.asList(
+                new UnitAccess(units.get(1), 0, len2),
+                new UnitAccess(units.get(2), 0, 1));
+        assertHasUnits(expectedUnits, range);
+    }
+
+    @Test
+    public void testSubrange_ManyUnits() {
+        int count = 10000;
+        long len = 16;
+        long[] capacities = new long[count];
+        Arrays.fill(capacities, len);
+        List<StorageUnit> units = mockStorageUnits(capacities);
+        DataRange range = new ReadWriteDataRange(units, 1, len);
+
+        for (int i = 0; i < count - 1; i += 997) {
+            DataRange subrange = range.getSubrange(len * i, len + 1);
+            List<UnitAccess> expectedUnits = Arrays.asList(
+                    new UnitAccess(units.get(i), 1, len),
+                    new UnitAccess(units.get(i + 1), 0, 2));
+            assertHasUnits(expectedUnits, subrange);
+        }
+    }
+
+    @Test
+    public void testSubrange_EmptyUnitsAreSkipped() {
+        long len1 = 64, len3 = 64;
+        List<StorageUnit> units = mockStorageUnits(len1, 0, len3);
+        DataRange range = new ReadWriteDataRange(units, 0, len3).getSubrange(len1, 1);
+
+        List<UnitAccess> expectedUnits = Collections.singletonList(new UnitAccess(units.get(2), 0, 1));
+        assertHasUnits(expectedUnits, range);
+    }
 }
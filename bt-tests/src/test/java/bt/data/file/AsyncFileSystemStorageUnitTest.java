@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.data.file;
+
+import bt.BtException;
+import bt.TestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncFileSystemStorageUnitTest {
+
+    private Path root;
+    private ExecutorService executor;
+
+    @Before
+    public void before() throws IOException {
+        root = Files.createTempDirectory("bt-async");
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void after() throws IOException {
+        executor.shutdownNow();
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void testWriteAsync_ManyBlocksInFlight() throws IOException {
+        int blockSize = 16;
+        byte[] data = TestUtil.sequence(blockSize * 64 + 5);
+        AsyncFileSystemStorageUnit unit = new AsyncFileSystemStorageUnit(root, "dir/file.bin", data.length, executor);
+        try {
+            // issue all writes in reverse order without waiting for any of them
+            List<CompletableFuture<Void>> writes = new ArrayList<>();
+            for (int offset = (data.length - 1) / blockSize * blockSize; offset >= 0; offset -= blockSize) {
+                int length = Math.min(blockSize, data.length - offset);
+                writes.add(unit.writeBlockAsync(ByteBuffer.wrap(data, offset, length), offset));
+            }
+            CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[writes.size()])).join();
+
+            assertEquals(data.length, unit.size());
+
+            ByteBuffer read = ByteBuffer.allocateDirect(data.length - 10);
+            unit.readBlockAsync(read, 10).join();
+            assertFalse(read.hasRemaining());
+            read.flip();
+            byte[] actual = new byte[read.remaining()];
+            read.get(actual);
+            assertArrayEquals(Arrays.copyOfRange(data, 10, data.length), actual);
+        } finally {
+            unit.close();
+        }
+
+        assertArrayEquals(data, Files.readAllBytes(root.resolve("dir/file.bin")));
+    }
+
+    @Test
+    public void testReadWrite_Synchronous() throws IOException {
+        byte[] data = TestUtil.sequence(40);
+        AsyncFileSystemStorageUnit unit = new AsyncFileSystemStorageUnit(root, "file.bin", data.length, executor);
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            buffer.position(5).limit(37);
+            unit.writeBlock(buffer, 5);
+            assertEquals(37, buffer.position());
+            unit.writeBlock(Arrays.copyOfRange(data, 0, 5), 0);
+
+            assertArrayEquals(Arrays.copyOfRange(data, 0, 37), unit.readBlock(0, 37));
+        } finally {
+            unit.close();
+        }
+    }
+
+    @Test
+    public void testRead_FileDoesNotExist() throws IOException {
+        AsyncFileSystemStorageUnit unit = new AsyncFileSystemStorageUnit(root, "file.bin", 20, executor);
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(20);
+            unit.readBlockAsync(buffer, 0).join();
+            assertEquals(0, buffer.position());
+            assertFalse(Files.exists(root.resolve("file.bin")));
+            assertEquals(0, unit.size());
+        } finally {
+            unit.close();
+        }
+    }
+
+    @Test
+    public void testReopen_AfterClose() throws IOException {
+        byte[] data = TestUtil.sequence(20);
+        AsyncFileSystemStorageUnit unit = new AsyncFileSystemStorageUnit(root, "file.bin", data.length, executor);
+        unit.writeBlock(data, 0);
+        unit.close();
+        try {
+            assertArrayEquals(data, unit.readBlock(0, data.length));
+        } finally {
+            unit.close();
+        }
+    }
+
+    @Test
+    public void testWrite_PastEndOfFile() throws IOException {
+        AsyncFileSystemStorageUnit unit = new AsyncFileSystemStorageUnit(root, "file.bin", 20, executor);
+        try {
+            unit.writeBlockAsync(ByteBuffer.allocate(8), 16);
+        } catch (BtException e) {
+            assertTrue(e.getMessage().startsWith("Received a request to write past the end of file"));
+            return;
+        } finally {
+            unit.close();
+        }
+        throw new AssertionError("Expected exception");
+    }
+}
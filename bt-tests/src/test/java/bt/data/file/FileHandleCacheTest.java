@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.data.file;
+
+import bt.BtException;
+import bt.TestUtil;
+import bt.data.StorageUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FileHandleCacheTest {
+
+    private Path root;
+
+    @Before
+    public void before() throws IOException {
+        root = Files.createTempDirectory("bt-handles");
+    }
+
+    @After
+    public void after() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void testCache_HitsAndMisses() throws IOException {
+        FileHandleCache cache = new FileHandleCache(2);
+        Path file = Files.createFile(root.resolve("1"));
+
+        cache.release(cache.acquire(file));
+        cache.release(cache.acquire(file));
+        cache.release(cache.acquire(file));
+
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.getHits());
+        assertEquals(0, cache.getEvictions());
+        assertEquals(1, cache.getOpenFilesCount());
+    }
+
+    @Test
+    public void testCache_EvictsLeastRecentlyUsed() throws IOException {
+        FileHandleCache cache = new FileHandleCache(2);
+        Path file1 = Files.createFile(root.resolve("1")),
+             file2 = Files.createFile(root.resolve("2")),
+             file3 = Files.createFile(root.resolve("3"));
+
+        FileHandleCache.Handle handle1 = cache.acquire(file1);
+        cache.release(handle1);
+        cache.release(cache.acquire(file2));
+        // file1 becomes the most recently used
+        cache.release(cache.acquire(file1));
+
+        cache.release(cache.acquire(file3));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2, cache.getOpenFilesCount());
+        assertTrue(handle1.getChannel().isOpen());
+
+        // file2 has been evicted
+        cache.release(cache.acquire(file2));
+        assertEquals(5, cache.getMisses() + cache.getHits());
+        assertEquals(4, cache.getMisses());
+        assertEquals(2, cache.getEvictions());
+        assertFalse(handle1.getChannel().isOpen());
+    }
+
+    @Test
+    public void testCache_DoesNotCloseFilesInUse() throws IOException {
+        FileHandleCache cache = new FileHandleCache(1);
+        Path file1 = Files.createFile(root.resolve("1")),
+             file2 = Files.createFile(root.resolve("2"));
+
+        FileHandleCache.Handle handle1 = cache.acquire(file1);
+        FileHandleCache.Handle handle2 = cache.acquire(file2);
+        assertEquals(2, cache.getOpenFilesCount());
+        assertTrue(handle1.getChannel().isOpen());
+
+        cache.release(handle1);
+        assertEquals(1, cache.getOpenFilesCount());
+        assertFalse(handle1.getChannel().isOpen());
+        assertTrue(handle2.getChannel().isOpen());
+        cache.release(handle2);
+
+        handle2 = cache.acquire(file2);
+        cache.invalidate(file2);
+        assertTrue(handle2.getChannel().isOpen());
+        cache.release(handle2);
+        assertFalse(handle2.getChannel().isOpen());
+        assertEquals(0, cache.getOpenFilesCount());
+    }
+
+    @Test
+    public void testStorageUnit_ReopensEvictedFiles() throws IOException {
+        FileHandleCache cache = new FileHandleCache(1);
+        byte[] data = TestUtil.sequence(16);
+
+        FileSystemStorageUnit unit1 = new FileSystemStorageUnit(cache, root, "1", data.length),
+                              unit2 = new FileSystemStorageUnit(cache, root, "2", data.length);
+
+        unit1.writeBlock(data, 0);
+        unit2.writeBlock(data, 0);
+        assertEquals(1, cache.getOpenFilesCount());
+
+        assertArrayEquals(data, unit1.readBlock(0, data.length));
+        assertArrayEquals(data, unit2.readBlock(0, data.length));
+        assertEquals(4, cache.getMisses());
+        assertEquals(3, cache.getEvictions());
+
+        unit1.close();
+        unit2.close();
+        assertEquals(0, cache.getOpenFilesCount());
+    }
+
+    @Test
+    public void testCache_FailedOpenIsNotCached() {
+        FileHandleCache cache = new FileHandleCache(2);
+        try {
+            cache.acquire(root.resolve("missing"));
+            fail("Expected exception");
+        } catch (BtException e) {
+            // expected
+        }
+        assertEquals(0, cache.getOpenFilesCount());
+    }
+
+    @Test
+    public void testStorage_UsesBoundCache() throws IOException {
+        FileHandleCache cache = new FileHandleCache(2);
+        FileSystemStorage storage = new FileSystemStorage(root);
+        storage.bindDefaultHandleCache(cache);
+
+        StorageUnit unit = storage.createUnit(root, "1", 16);
+        unit.writeBlock(TestUtil.sequence(16), 0);
+        assertEquals(1, cache.getOpenFilesCount());
+
+        unit.close();
+        assertEquals(0, cache.getOpenFilesCount());
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package bt.data.file;
+
+import bt.TestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class FileSystemStorageUnit_AllocationTest {
+
+    private static final int CAPACITY = 3 * 1024 * 1024 + 7;
+
+    private Path root;
+    private FileHandleCache handleCache;
+
+    @Before
+    public void before() throws IOException {
+        root = Files.createTempDirectory("bt-allocation");
+        handleCache = new FileHandleCache(4);
+    }
+
+    @After
+    public void after() throws IOException {
+        handleCache.clear();
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void testAllocation_Lazy() throws IOException {
+        FileSystemStorageUnit unit = writeBlockInTheMiddle(AllocationPolicy.LAZY);
+        assertEquals(1024 + 16, unit.size());
+    }
+
+    @Test
+    public void testAllocation_Sparse() throws IOException {
+        FileSystemStorageUnit unit = writeBlockInTheMiddle(AllocationPolicy.SPARSE);
+        // preallocated file reports the amount of written data
+        assertEquals(1024 + 16, unit.size());
+        assertEquals(CAPACITY, Files.size(root.resolve("dir/file")));
+    }
+
+    @Test
+    public void testAllocation_Full() throws IOException {
+        FileSystemStorageUnit unit = writeBlockInTheMiddle(AllocationPolicy.FULL);
+        assertEquals(1024 + 16, unit.size());
+
+        byte[] expected = new byte[CAPACITY];
+        System.arraycopy(TestUtil.sequence(16), 0, expected, 1024, 16);
+        assertArrayEquals(expected, Files.readAllBytes(root.resolve("dir/file")));
+    }
+
+    @Test
+    public void testAllocation_ExistingFileIsNotAllocated() throws IOException {
+        Files.createDirectories(root.resolve("dir"));
+        Files.write(root.resolve("dir/file"), new byte[]{1, 2, 3});
+
+        FileSystemStorageUnit unit = new FileSystemStorageUnit(handleCache, root, "dir/file", CAPACITY, AllocationPolicy.FULL);
+        unit.writeBlock(new byte[]{4}, 3);
+        assertEquals(4, unit.size());
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, unit.readBlock(0, 4));
+        unit.close();
+    }
+
+    @Test
+    public void testAllocation_PreallocatedFileIsEmptyUntilFirstWrite() throws IOException {
+        FileSystemStorageUnit unit = new FileSystemStorageUnit(handleCache, root, "dir/file", CAPACITY, AllocationPolicy.SPARSE);
+        unit.writeBlocks(new ByteBuffer[]{ByteBuffer.allocate(0), ByteBuffer.allocate(0)}, 0);
+        assertEquals(CAPACITY, Files.size(root.resolve("dir/file")));
+        assertEquals(0, unit.size());
+
+        unit.writeBlock(new byte[8], 64);
+        unit.writeBlock(new byte[8], 16);
+        assertEquals(72, unit.size());
+        unit.close();
+    }
+
+    @Test
+    public void testAllocation_RestoreSize() throws IOException {
+        writeBlockInTheMiddle(AllocationPolicy.SPARSE);
+
+        // next session
+        handleCache.clear();
+        FileSystemStorageUnit unit = new FileSystemStorageUnit(handleCache, root, "dir/file", CAPACITY, AllocationPolicy.SPARSE);
+        assertEquals(CAPACITY, unit.size());
+        unit.restoreSize(1024 + 16);
+        assertEquals(1024 + 16, unit.size());
+        unit.writeBlock(new byte[8], 2048);
+        assertEquals(2048 + 8, unit.size());
+        unit.close();
+    }
+
+    @Test
+    public void testAllocation_RestoreSize_Lazy() throws IOException {
+        writeBlockInTheMiddle(AllocationPolicy.LAZY);
+
+        handleCache.clear();
+        FileSystemStorageUnit unit = new FileSystemStorageUnit(handleCache, root, "dir/file", CAPACITY, AllocationPolicy.LAZY);
+        unit.restoreSize(16);
+        assertEquals(1024 + 16, unit.size());
+        unit.close();
+    }
+
+    private FileSystemStorageUnit writeBlockInTheMiddle(AllocationPolicy policy) throws IOException {
+        FileSystemStorageUnit unit = new FileSystemStorageUnit(handleCache, root, "dir/file", CAPACITY, policy);
+        // file is not created by reads
+        assertArrayEquals(new byte[8], unit.readBlock(0, 8));
+        assertEquals(0, unit.size());
+
+        byte[] block = TestUtil.sequence(16);
+        unit.writeBlock(block, 1024);
+        assertArrayEquals(block, unit.readBlock(1024, 16));
+        assertArrayEquals(new byte[16], unit.readBlock(0, 16));
+        unit.close();
+        return unit;
+    }
+}
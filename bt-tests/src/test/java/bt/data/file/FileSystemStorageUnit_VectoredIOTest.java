@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.data.file;
+
+import bt.BtException;
+import bt.TestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class FileSystemStorageUnit_VectoredIOTest {
+
+    private Path root;
+    private FileHandleCache handleCache;
+    private FileSystemStorageUnit unit;
+
+    @Before
+    public void before() throws IOException {
+        root = Files.createTempDirectory("bt-vectored");
+        handleCache = new FileHandleCache(4);
+        unit = new FileSystemStorageUnit(handleCache, root, "file", 64);
+    }
+
+    @After
+    public void after() throws IOException {
+        handleCache.clear();
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void testWriteBlocks() throws IOException {
+        byte[] data = TestUtil.sequence(24);
+        ByteBuffer[] buffers = new ByteBuffer[] {
+                ByteBuffer.wrap(data, 0, 8),
+                ByteBuffer.wrap(data, 8, 0),
+                directBuffer(Arrays.copyOfRange(data, 8, 20)),
+                ByteBuffer.wrap(data, 20, 4)
+        };
+        unit.writeBlocks(buffers, 10);
+
+        for (ByteBuffer buffer : buffers) {
+            assertFalse(buffer.hasRemaining());
+        }
+        byte[] expected = new byte[34];
+        System.arraycopy(data, 0, expected, 10, data.length);
+        assertArrayEquals(expected, Files.readAllBytes(root.resolve("file")));
+    }
+
+    @Test
+    public void testReadBlocks() {
+        byte[] data = TestUtil.sequence(64);
+        unit.writeBlock(data, 0);
+
+        ByteBuffer first = ByteBuffer.allocate(5);
+        ByteBuffer second = ByteBuffer.allocateDirect(16);
+        ByteBuffer third = ByteBuffer.allocate(3);
+        unit.readBlocks(new ByteBuffer[] {first, second, third}, 40);
+
+        assertEquals(5, first.position());
+        assertEquals(16, second.position());
+        assertEquals(3, third.position());
+        assertArrayEquals(Arrays.copyOfRange(data, 40, 45), first.array());
+        assertArrayEquals(Arrays.copyOfRange(data, 45, 61), contents(second));
+        assertArrayEquals(Arrays.copyOfRange(data, 61, 64), third.array());
+    }
+
+    @Test
+    public void testReadBlocks_MissingFile() {
+        ByteBuffer first = ByteBuffer.allocate(4);
+        ByteBuffer second = ByteBuffer.allocate(4);
+        unit.readBlocks(new ByteBuffer[] {first, second}, 0);
+        assertFalse(Files.exists(root.resolve("file")));
+    }
+
+    @Test(expected = BtException.class)
+    public void testWriteBlocks_PastTheEndOfFile() {
+        unit.writeBlocks(new ByteBuffer[] {ByteBuffer.allocate(32), ByteBuffer.allocate(32)}, 1);
+    }
+
+    @Test
+    public void testTransferTo() throws IOException {
+        byte[] data = TestUtil.sequence(64);
+        unit.writeBlock(data, 0);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long transferred = unit.transferTo(8, 16, Channels.newChannel(out));
+        assertEquals(16, transferred);
+        assertArrayEquals(Arrays.copyOfRange(data, 8, 24), out.toByteArray());
+    }
+
+    @Test(expected = BtException.class)
+    public void testTransferTo_TruncatedFile() throws IOException {
+        unit.writeBlock(TestUtil.sequence(64), 0);
+        handleCache.clear();
+        try (FileChannel channel = FileChannel.open(root.resolve("file"), StandardOpenOption.WRITE)) {
+            channel.truncate(16);
+        }
+        unit.transferTo(8, 16, Channels.newChannel(new ByteArrayOutputStream()));
+    }
+
+    @Test(expected = BtException.class)
+    public void testTransferTo_MissingFile() throws IOException {
+        unit.transferTo(8, 16, Channels.newChannel(new ByteArrayOutputStream()));
+    }
+
+    private static ByteBuffer directBuffer(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+        buffer.put(data);
+        buffer.flip();
+        return buffer;
+    }
+
+    private static byte[] contents(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.capacity()];
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.clear();
+        duplicate.get(bytes);
+        return bytes;
+    }
+}
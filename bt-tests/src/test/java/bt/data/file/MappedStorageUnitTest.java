@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.data.file;
+
+import bt.BtException;
+import bt.TestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MappedStorageUnitTest {
+
+    private static final int REGION_SIZE = 16;
+
+    private Path root;
+
+    @Before
+    public void before() throws IOException {
+        root = Files.createTempDirectory("bt-mapped");
+    }
+
+    @After
+    public void after() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void testReadWrite_AcrossRegions() throws IOException {
+        byte[] data = TestUtil.sequence(50);
+        MappedStorageUnit unit = new MappedStorageUnit(root, "dir/file.bin", data.length, REGION_SIZE);
+        try {
+            // first and last blocks are written partially
+            unit.writeBlock(Arrays.copyOfRange(data, 0, 10), 0);
+            unit.writeBlock(Arrays.copyOfRange(data, 10, 45), 10);
+            unit.writeBlock(ByteBuffer.wrap(data, 45, 5), 45);
+
+            assertEquals(data.length, unit.size());
+            assertArrayEquals(data, unit.readBlock(0, data.length));
+            assertArrayEquals(Arrays.copyOfRange(data, 14, 35), unit.readBlock(14, 21));
+        } finally {
+            unit.close();
+        }
+
+        assertArrayEquals(data, Files.readAllBytes(root.resolve("dir/file.bin")));
+    }
+
+    @Test
+    public void testReadWrite_ByteBufferPositionAndLimit() throws IOException {
+        byte[] data = TestUtil.sequence(40);
+        MappedStorageUnit unit = new MappedStorageUnit(root, "file.bin", data.length, REGION_SIZE);
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            buffer.position(5).limit(37);
+            unit.writeBlock(buffer, 5);
+            assertEquals(37, buffer.position());
+            assertEquals(37, buffer.limit());
+
+            ByteBuffer read = ByteBuffer.allocate(32);
+            unit.readBlock(read, 5);
+            assertFalse(read.hasRemaining());
+            assertArrayEquals(Arrays.copyOfRange(data, 5, 37), read.array());
+        } finally {
+            unit.close();
+        }
+    }
+
+    @Test
+    public void testRead_FileDoesNotExist() throws IOException {
+        MappedStorageUnit unit = new MappedStorageUnit(root, "file.bin", 20, REGION_SIZE);
+        try {
+            assertArrayEquals(new byte[20], unit.readBlock(0, 20));
+            assertFalse(Files.exists(root.resolve("file.bin")));
+            assertEquals(0, unit.size());
+        } finally {
+            unit.close();
+        }
+    }
+
+    @Test
+    public void testRead_ShortFile_DoesNotExtendFile() throws IOException {
+        byte[] data = TestUtil.sequence(10);
+        MappedStorageUnit unit = new MappedStorageUnit(root, "file.bin", 40, REGION_SIZE);
+        try {
+            unit.writeBlock(data, 0);
+            long size = unit.size();
+
+            byte[] expected = new byte[20];
+            System.arraycopy(data, 0, expected, 0, data.length);
+            assertArrayEquals(expected, unit.readBlock(0, 20));
+            assertArrayEquals(new byte[10], unit.readBlock(30, 10));
+            assertEquals(size, unit.size());
+        } finally {
+            unit.close();
+        }
+    }
+
+    @Test(expected = BtException.class)
+    public void testTransferTo_ShortFile() throws IOException {
+        MappedStorageUnit unit = new MappedStorageUnit(root, "file.bin", 40, REGION_SIZE);
+        try {
+            unit.writeBlock(new byte[10], 0);
+            unit.transferTo(32, 8, Channels.newChannel(new ByteArrayOutputStream()));
+        } finally {
+            unit.close();
+        }
+    }
+
+    @Test
+    public void testReopen_AfterClose() throws IOException {
+        byte[] data = TestUtil.sequence(20);
+        MappedStorageUnit unit = new MappedStorageUnit(root, "file.bin", data.length, REGION_SIZE);
+        unit.writeBlock(data, 0);
+        unit.close();
+        try {
+            assertArrayEquals(data, unit.readBlock(0, data.length));
+        } finally {
+            unit.close();
+        }
+    }
+
+    @Test
+    public void testWrite_PastEndOfFile() throws IOException {
+        MappedStorageUnit unit = new MappedStorageUnit(root, "file.bin", 20, REGION_SIZE);
+        try {
+            unit.writeBlock(new byte[8], 16);
+        } catch (BtException e) {
+            assertTrue(e.getMessage().startsWith("Received a request to write past the end of file"));
+            return;
+        } finally {
+            unit.close();
+        }
+        throw new AssertionError("Expected exception");
+    }
+}
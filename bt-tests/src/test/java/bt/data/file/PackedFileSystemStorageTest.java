@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package bt.data.file;
+
+import bt.BtException;
+import bt.TestUtil;
+import bt.data.StorageUnit;
+import bt.metainfo.Torrent;
+import bt.metainfo.TorrentFile;
+import bt.metainfo.TorrentId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static bt.data.ChunkDescriptorTestUtil.mockTorrent;
+import static bt.data.ChunkDescriptorTestUtil.mockTorrentFile;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PackedFileSystemStorageTest {
+
+    private Path root;
+
+    @Before
+    public void before() throws IOException {
+        root = Files.createTempDirectory("bt-packed");
+    }
+
+    @After
+    public void after() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void testUnits_SharePreallocatedContainer() throws IOException {
+        Torrent torrent = torrent("torrent", mockTorrentFile(10, "a"), mockTorrentFile(0, "empty"),
+                mockTorrentFile(7, "dir", "b"), mockTorrentFile(5, "c"));
+        PackedFileSystemStorage storage = new PackedFileSystemStorage(root);
+        List<StorageUnit> units = getUnits(storage, torrent);
+        Path container = storage.getContainer(torrent);
+
+        assertFalse(Files.exists(container));
+        assertEquals(0, units.get(0).size());
+        assertArrayEquals(new byte[10], units.get(0).readBlock(0, 10));
+
+        byte[] data = TestUtil.sequence(7);
+        units.get(2).writeBlock(data, 0);
+
+        assertTrue(Files.exists(container));
+        assertEquals(22, Files.size(container));
+        // only the container is created, not the files themselves
+        try (Stream<Path> paths = Files.list(root)) {
+            assertEquals(1, paths.count());
+        }
+        for (StorageUnit unit : units) {
+            assertEquals(unit.capacity(), unit.size());
+        }
+
+        assertArrayEquals(data, units.get(2).readBlock(0, 7));
+        byte[] contents = Files.readAllBytes(container);
+        assertArrayEquals(data, Arrays.copyOfRange(contents, 10, 17));
+
+        units.get(3).writeBlock(new byte[]{1, 2}, 3);
+        assertArrayEquals(new byte[]{0, 0, 0, 1, 2}, units.get(3).readBlock(0, 5));
+
+        for (StorageUnit unit : units) {
+            unit.close();
+        }
+    }
+
+    @Test
+    public void testExport() throws IOException {
+        Torrent torrent = torrent("torrent", mockTorrentFile(3, "a"), mockTorrentFile(0, "empty"),
+                mockTorrentFile(2_000_000, "dir", "b"));
+        PackedFileSystemStorage storage = new PackedFileSystemStorage(root);
+        List<StorageUnit> units = getUnits(storage, torrent);
+
+        byte[] a = TestUtil.sequence(3);
+        byte[] b = TestUtil.sequence(2_000_000);
+        units.get(0).writeBlock(a, 0);
+        units.get(2).writeBlock(b, 0);
+
+        Path target = root.resolve("export");
+        storage.export(torrent, target);
+
+        assertArrayEquals(a, Files.readAllBytes(target.resolve("torrent").resolve("a")));
+        assertEquals(0, Files.size(target.resolve("torrent").resolve("empty")));
+        assertArrayEquals(b, Files.readAllBytes(target.resolve("torrent").resolve("dir").resolve("b")));
+
+        for (StorageUnit unit : units) {
+            unit.close();
+        }
+    }
+
+    @Test
+    public void testExport_AnotherTorrentInstance() throws IOException {
+        Torrent torrent = torrent("torrent", mockTorrentFile(3, "a"), mockTorrentFile(5, "dir", "b"));
+        PackedFileSystemStorage storage = new PackedFileSystemStorage(root);
+        List<StorageUnit> units = getUnits(storage, torrent);
+
+        byte[] b = TestUtil.sequence(5);
+        units.get(1).writeBlock(b, 0);
+
+        // e.g. metainfo, that has been parsed again
+        Torrent sameTorrent = torrent("torrent", mockTorrentFile(3, "a"), mockTorrentFile(5, "dir", "b"));
+        Path target = root.resolve("export");
+        storage.export(sameTorrent, target);
+
+        assertArrayEquals(new byte[3], Files.readAllBytes(target.resolve("torrent").resolve("a")));
+        assertArrayEquals(b, Files.readAllBytes(target.resolve("torrent").resolve("dir").resolve("b")));
+
+        for (StorageUnit unit : units) {
+            unit.close();
+        }
+    }
+
+    @Test
+    public void testExport_InactiveTorrent_ContainerIsClosed() throws IOException {
+        Torrent torrent = torrent("torrent", mockTorrentFile(3, "a"), mockTorrentFile(5, "b"));
+        FileHandleCache handleCache = new FileHandleCache(4);
+        PackedFileSystemStorage storage = new PackedFileSystemStorage(root, handleCache);
+
+        List<StorageUnit> units = getUnits(storage, torrent);
+        units.get(1).writeBlock(TestUtil.sequence(5), 0);
+        for (StorageUnit unit : units) {
+            unit.close();
+        }
+        assertEquals(0, handleCache.getOpenFilesCount());
+
+        storage.export(torrent, root.resolve("export"));
+        assertEquals(0, handleCache.getOpenFilesCount());
+    }
+
+    @Test(expected = BtException.class)
+    public void testExport_NoContainer() {
+        Torrent torrent = torrent("torrent", mockTorrentFile(3, "a"), mockTorrentFile(5, "b"));
+        new PackedFileSystemStorage(root).export(torrent, root.resolve("export"));
+    }
+
+    private static List<StorageUnit> getUnits(PackedFileSystemStorage storage, Torrent torrent) {
+        List<StorageUnit> units = new ArrayList<>();
+        for (TorrentFile file : torrent.getFiles()) {
+            units.add(storage.getUnit(torrent, file));
+        }
+        return units;
+    }
+
+    private static Torrent torrent(String name, TorrentFile... files) {
+        return mockTorrent(TorrentId.fromBytes(new byte[TorrentId.length()]), name, files);
+    }
+}
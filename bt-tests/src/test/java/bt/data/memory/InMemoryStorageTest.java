@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package bt.data.memory;
+
+import bt.BtException;
+import bt.TestUtil;
+import bt.data.StorageUnit;
+import bt.metainfo.Torrent;
+import bt.metainfo.TorrentFile;
+import bt.metainfo.TorrentId;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+import static bt.data.ChunkDescriptorTestUtil.mockTorrent;
+import static bt.data.ChunkDescriptorTestUtil.mockTorrentFile;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class InMemoryStorageTest {
+
+    private static final int REGION_SIZE = 16;
+
+    @Test
+    public void testWriteAndRead_AcrossRegions() {
+        for (boolean offHeap : new boolean[]{false, true}) {
+            InMemoryStorage storage = new InMemoryStorage(1024, offHeap, REGION_SIZE);
+            StorageUnit unit = storage.getUnit(torrent(1), mockTorrentFile(100, "file"));
+
+            byte[] block = TestUtil.sequence(40);
+            unit.writeBlock(block, 10);
+            assertEquals(50, unit.size());
+            // regions 0..3 have been allocated
+            assertEquals(REGION_SIZE * 4, storage.getMemoryUsed());
+
+            assertArrayEquals(block, unit.readBlock(10, 40));
+
+            ByteBuffer buffer = ByteBuffer.allocate(20);
+            unit.readBlock(buffer, 5);
+            assertEquals(0, buffer.remaining());
+            byte[] expected = new byte[20];
+            System.arraycopy(block, 0, expected, 5, 15);
+            assertArrayEquals(expected, buffer.array());
+        }
+    }
+
+    @Test
+    public void testRead_NotWritten() {
+        InMemoryStorage storage = new InMemoryStorage(1024, false, REGION_SIZE);
+        StorageUnit unit = storage.getUnit(torrent(1), mockTorrentFile(100, "file"));
+
+        assertArrayEquals(new byte[100], unit.readBlock(0, 100));
+        assertEquals(0, unit.size());
+        assertEquals(0, storage.getMemoryUsed());
+    }
+
+    @Test
+    public void testGetUnit_SameFile() {
+        InMemoryStorage storage = new InMemoryStorage(1024, false, REGION_SIZE);
+        TorrentFile file = mockTorrentFile(100, "dir", "file");
+
+        StorageUnit unit = storage.getUnit(torrent(1), file);
+        assertSame(unit, storage.getUnit(torrent(1), file));
+        assertEquals(false, unit == storage.getUnit(torrent(2), file));
+    }
+
+    @Test
+    public void testWrite_MemoryLimitExceeded() {
+        InMemoryStorage storage = new InMemoryStorage(REGION_SIZE * 2, false, REGION_SIZE);
+        StorageUnit unit = storage.getUnit(torrent(1), mockTorrentFile(100, "file"));
+
+        unit.writeBlock(new byte[REGION_SIZE * 2], 0);
+        try {
+            unit.writeBlock(new byte[1], REGION_SIZE * 2);
+            throw new AssertionError("Expected memory limit to be exceeded");
+        } catch (BtException e) {
+            // expected
+        }
+        assertEquals(REGION_SIZE * 2, storage.getMemoryUsed());
+    }
+
+    @Test
+    public void testRemove_ReleasesMemory() {
+        InMemoryStorage storage = new InMemoryStorage(1024, false, REGION_SIZE);
+        storage.getUnit(torrent(1), mockTorrentFile(100, "file")).writeBlock(new byte[100], 0);
+        storage.getUnit(torrent(2), mockTorrentFile(20, "file")).writeBlock(new byte[20], 0);
+        // the last region of each file is only as large as the remainder of the file
+        assertEquals(100 + 20, storage.getMemoryUsed());
+
+        storage.remove(torrent(1));
+        assertEquals(20, storage.getMemoryUsed());
+        // data of the removed torrent is gone
+        assertEquals(0, storage.getUnit(torrent(1), mockTorrentFile(100, "file")).size());
+    }
+
+    @Test
+    public void testTransferTo() throws Exception {
+        InMemoryStorage storage = new InMemoryStorage(1024, true, REGION_SIZE);
+        StorageUnit unit = storage.getUnit(torrent(1), mockTorrentFile(100, "file"));
+        byte[] data = TestUtil.sequence(100);
+        unit.writeBlock(data, 0);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WritableByteChannel channel = Channels.newChannel(out);
+        long position = 5;
+        while (position < 100) {
+            position += unit.transferTo(position, 100 - position, channel);
+        }
+        assertArrayEquals(Arrays.copyOfRange(data, 5, 100), out.toByteArray());
+    }
+
+    @Test(expected = BtException.class)
+    public void testWrite_PastEndOfFile() {
+        InMemoryStorage storage = new InMemoryStorage(1024, false, REGION_SIZE);
+        storage.getUnit(torrent(1), mockTorrentFile(10, "file")).writeBlock(new byte[5], 6);
+    }
+
+    private static Torrent torrent(int id) {
+        byte[] bytes = new byte[TorrentId.length()];
+        bytes[0] = (byte) id;
+        return mockTorrent(TorrentId.fromBytes(bytes), "torrent" + id);
+    }
+}
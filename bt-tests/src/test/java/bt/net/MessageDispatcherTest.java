@@ -0,0 +1,326 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.net;
+
+import bt.data.Storage;
+import bt.event.EventBus;
+import bt.metainfo.Torrent;
+import bt.metainfo.TorrentId;
+import bt.protocol.KeepAlive;
+import bt.protocol.Message;
+import bt.runtime.Config;
+import bt.service.IRuntimeLifecycleBinder.LifecycleEvent;
+import bt.service.RuntimeLifecycleBinder;
+import bt.torrent.TorrentDescriptor;
+import bt.torrent.TorrentRegistry;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.channels.Selector;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class MessageDispatcherTest {
+
+    private static final TorrentId TORRENT_ID = TorrentId.fromBytes(new byte[TorrentId.length()]);
+
+    private RuntimeLifecycleBinder lifecycleBinder;
+    private ConnectionPool pool;
+    private BlockingQueue<Message> sentMessages;
+    private Peer peer;
+
+    private MessageDispatcher createDispatcher(Duration maxMessageProcessingInterval) throws IOException {
+        return createDispatcher(maxMessageProcessingInterval, 1);
+    }
+
+    private MessageDispatcher createDispatcher(Duration maxMessageProcessingInterval,
+                                               int numOfDispatchingThreads) throws IOException {
+        Config config = new Config();
+        config.setMaxMessageProcessingInterval(maxMessageProcessingInterval);
+        config.setNumOfDispatchingThreads(numOfDispatchingThreads);
+
+        lifecycleBinder = new RuntimeLifecycleBinder();
+        sentMessages = new LinkedBlockingQueue<>();
+        peer = new InetPeer(InetAddress.getLoopbackAddress(), 6891);
+        pool = new ConnectionPool();
+        pool.addConnectionIfAbsent(new RecordingConnection(peer, TORRENT_ID, sentMessages));
+
+        MessageDispatcher dispatcher = new MessageDispatcher(lifecycleBinder, pool,
+                new ActiveTorrentsRegistry(pool), new EventBus(), new SharedSelector(Selector.open()), config);
+        lifecycleBinder.visitBindings(LifecycleEvent.STARTUP, binding -> binding.getRunnable().run());
+        return dispatcher;
+    }
+
+    @After
+    public void after() {
+        if (lifecycleBinder != null) {
+            lifecycleBinder.visitBindings(LifecycleEvent.SHUTDOWN, binding -> binding.getRunnable().run());
+        }
+    }
+
+    @Test
+    public void testSupplier_VisitedImmediatelyWhenNotifiedReady() throws Exception {
+        // idle peers are visited very rarely
+        MessageDispatcher dispatcher = createDispatcher(Duration.ofSeconds(30));
+
+        CountDownLatch firstVisit = new CountDownLatch(1);
+        AtomicReference<Message> nextMessage = new AtomicReference<>();
+        dispatcher.addMessageSupplier(peer, () -> {
+            firstVisit.countDown();
+            return nextMessage.getAndSet(null);
+        });
+
+        // new supplier is visited right away
+        assertTrue(firstVisit.await(5, TimeUnit.SECONDS));
+
+        // next sweep is not due for a long time, so only the readiness signal can make the message go out
+        nextMessage.set(KeepAlive.instance());
+        dispatcher.notifyReady(peer);
+        Message sent = sentMessages.poll(5, TimeUnit.SECONDS);
+        assertNotNull(sent);
+        assertEquals(KeepAlive.class, sent.getClass());
+    }
+
+    @Test
+    public void testSupplier_IdlePeerVisitedPeriodically() throws Exception {
+        long interval = 100;
+        MessageDispatcher dispatcher = createDispatcher(Duration.ofMillis(interval));
+
+        int expectedVisits = 5;
+        List<Long> visitTimes = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch visited = new CountDownLatch(expectedVisits);
+        dispatcher.addMessageSupplier(peer, () -> {
+            visitTimes.add(System.nanoTime());
+            visited.countDown();
+            return null;
+        });
+
+        assertTrue("Too few visits: " + visitTimes.size(), visited.await(10, TimeUnit.SECONDS));
+
+        // the first two visits might be caused by the new supplier's readiness signal and the first sweep;
+        // the rest are made on sweeps, that are at least an interval apart, i.e. the peer is not polled in a loop
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(visitTimes.get(expectedVisits - 1) - visitTimes.get(2));
+        assertTrue("Visited too often: " + elapsed + " ms between sweeps", elapsed >= interval);
+    }
+
+    @Test
+    public void testTorrents_DispatchedIndependently() throws Exception {
+        MessageDispatcher dispatcher = createDispatcher(Duration.ofSeconds(30), 2);
+
+        // torrent, that is pinned to a different dispatching thread than the first one
+        TorrentId otherTorrentId = null;
+        for (int i = 1; otherTorrentId == null; i++) {
+            byte[] bytes = new byte[TorrentId.length()];
+            bytes[0] = (byte) i;
+            TorrentId torrentId = TorrentId.fromBytes(bytes);
+            if (Math.floorMod(torrentId.hashCode(), 2) != Math.floorMod(TORRENT_ID.hashCode(), 2)) {
+                otherTorrentId = torrentId;
+            }
+        }
+        Peer otherPeer = new InetPeer(InetAddress.getLoopbackAddress(), 6892);
+        BlockingQueue<Message> otherSentMessages = new LinkedBlockingQueue<>();
+        pool.addConnectionIfAbsent(new RecordingConnection(otherPeer, otherTorrentId, otherSentMessages));
+
+        // supplier of the first torrent blocks its dispatching thread
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        dispatcher.addMessageSupplier(peer, () -> {
+            blocked.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        });
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+        try {
+            AtomicBoolean sent = new AtomicBoolean();
+            dispatcher.addMessageSupplier(otherPeer, () -> sent.getAndSet(true) ? null : KeepAlive.instance());
+            Message message = otherSentMessages.poll(5, TimeUnit.SECONDS);
+            assertNotNull(message);
+            assertEquals(KeepAlive.class, message.getClass());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private static class RecordingConnection implements PeerConnection {
+
+        private final Peer peer;
+        private final TorrentId torrentId;
+        private final BlockingQueue<Message> sentMessages;
+
+        RecordingConnection(Peer peer, TorrentId torrentId, BlockingQueue<Message> sentMessages) {
+            this.peer = peer;
+            this.torrentId = torrentId;
+            this.sentMessages = sentMessages;
+        }
+
+        @Override
+        public Peer getRemotePeer() {
+            return peer;
+        }
+
+        @Override
+        public TorrentId setTorrentId(TorrentId torrentId) {
+            return this.torrentId;
+        }
+
+        @Override
+        public TorrentId getTorrentId() {
+            return torrentId;
+        }
+
+        @Override
+        public Message readMessageNow() {
+            return null;
+        }
+
+        @Override
+        public Message readMessage(long timeout) {
+            return null;
+        }
+
+        @Override
+        public void postMessage(Message message) {
+            sentMessages.add(message);
+        }
+
+        @Override
+        public long getLastActive() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public void closeQuietly() {
+        }
+
+        @Override
+        public boolean isClosed() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class ConnectionPool implements IPeerConnectionPool {
+
+        private final Map<Peer, PeerConnection> connections = new ConcurrentHashMap<>();
+
+        @Override
+        public PeerConnection getConnection(Peer peer) {
+            return connections.get(peer);
+        }
+
+        @Override
+        public void visitConnections(TorrentId torrentId, Consumer<PeerConnection> visitor) {
+            connections.values().stream()
+                    .filter(connection -> torrentId.equals(connection.getTorrentId()))
+                    .forEach(visitor);
+        }
+
+        @Override
+        public int size() {
+            return connections.size();
+        }
+
+        @Override
+        public PeerConnection addConnectionIfAbsent(PeerConnection connection) {
+            PeerConnection existing = connections.putIfAbsent(connection.getRemotePeer(), connection);
+            return (existing == null) ? connection : existing;
+        }
+
+        Set<TorrentId> getTorrentIds() {
+            return connections.values().stream().map(PeerConnection::getTorrentId).collect(Collectors.toSet());
+        }
+    }
+
+    private static class ActiveTorrentsRegistry implements TorrentRegistry {
+
+        private final ConnectionPool pool;
+
+        ActiveTorrentsRegistry(ConnectionPool pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public Collection<Torrent> getTorrents() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Collection<TorrentId> getTorrentIds() {
+            return pool.getTorrentIds();
+        }
+
+        @Override
+        public Optional<Torrent> getTorrent(TorrentId torrentId) {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<TorrentDescriptor> getDescriptor(Torrent torrent) {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<TorrentDescriptor> getDescriptor(TorrentId torrentId) {
+            // descriptor is not required for the torrent to be considered active
+            return Optional.empty();
+        }
+
+        @Override
+        public TorrentDescriptor getOrCreateDescriptor(Torrent torrent, Storage storage) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public TorrentDescriptor register(Torrent torrent, Storage storage) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public TorrentDescriptor register(TorrentId torrentId) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
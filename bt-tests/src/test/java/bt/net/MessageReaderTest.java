@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.net;
+
+import bt.net.buffer.BufferPool;
+import bt.protocol.EncodingContext;
+import bt.protocol.Have;
+import bt.protocol.Message;
+import bt.protocol.StandardBittorrentProtocol;
+import bt.protocol.handler.MessageHandler;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class MessageReaderTest {
+
+    private static final int BUFFER_SIZE = 2 << 6;
+
+    private final Peer peer = new InetPeer(InetAddress.getLoopbackAddress(), 6891);
+    private final MessageHandler<Message> messageHandler = new StandardBittorrentProtocol(Collections.emptyMap());
+
+    @Test
+    public void testReadMessage_BufferIsHeldOnlyForPartialMessage() throws Exception {
+        BufferPool bufferPool = new BufferPool(BUFFER_SIZE, 1);
+        FeedChannel channel = new FeedChannel();
+        MessageReader reader = new MessageReader(peer, channel, messageHandler, ByteBuffer.allocate(0), bufferPool);
+
+        // nothing has been received
+        assertNull(reader.readMessage());
+        assertEquals(0, bufferPool.getInUseCount());
+
+        byte[] have1 = encode(new Have(1));
+        byte[] have2 = encode(new Have(2));
+        channel.feed(have1);
+        channel.feed(Arrays.copyOfRange(have2, 0, 3));
+
+        assertHave(1, reader.readMessage());
+        assertNull(reader.readMessage());
+        // waiting for the rest of the second message
+        assertEquals(1, bufferPool.getInUseCount());
+
+        channel.feed(Arrays.copyOfRange(have2, 3, have2.length));
+        assertHave(2, reader.readMessage());
+        assertEquals(0, bufferPool.getInUseCount());
+        assertEquals(1, bufferPool.getPooledCount());
+    }
+
+    @Test
+    public void testReadMessage_InitialDataIsDecodedFirst() throws Exception {
+        BufferPool bufferPool = new BufferPool(BUFFER_SIZE, 1);
+        FeedChannel channel = new FeedChannel();
+
+        // first message and a part of the second one have been received during the handshake
+        byte[] have1 = encode(new Have(1));
+        byte[] have2 = encode(new Have(2));
+        ByteBuffer initialBuffer = ByteBuffer.allocate(have1.length + 2);
+        initialBuffer.put(have1);
+        initialBuffer.put(have2, 0, 2);
+        MessageReader reader = new MessageReader(peer, channel, messageHandler, initialBuffer, bufferPool);
+
+        assertHave(1, reader.readMessage());
+        assertEquals(0, bufferPool.getInUseCount());
+
+        channel.feed(Arrays.copyOfRange(have2, 2, have2.length));
+        assertHave(2, reader.readMessage());
+        assertNull(reader.readMessage());
+        assertEquals(0, bufferPool.getInUseCount());
+    }
+
+    private byte[] encode(Message message) {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        messageHandler.encode(new EncodingContext(peer), message, buffer);
+        buffer.flip();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static void assertHave(int pieceIndex, Message message) {
+        assertNotNull(message);
+        assertEquals(Have.class, message.getClass());
+        assertEquals(pieceIndex, ((Have) message).getPieceIndex());
+    }
+
+    /**
+     * Emulates a non-blocking channel, that returns the data, that has been fed to it so far
+     */
+    private static class FeedChannel implements ReadableByteChannel {
+
+        private ByteBuffer data = ByteBuffer.allocate(0);
+
+        void feed(byte[] bytes) {
+            ByteBuffer newData = ByteBuffer.allocate(data.remaining() + bytes.length);
+            newData.put(data);
+            newData.put(bytes);
+            newData.flip();
+            data = newData;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            int length = Math.min(dst.remaining(), data.remaining());
+            for (int i = 0; i < length; i++) {
+                dst.put(data.get());
+            }
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
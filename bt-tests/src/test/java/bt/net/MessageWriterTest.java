@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.net;
+
+import bt.TestUtil;
+import bt.net.buffer.BufferPool;
+import bt.protocol.BlockReader;
+import bt.protocol.EncodingContext;
+import bt.protocol.Have;
+import bt.protocol.Message;
+import bt.protocol.Piece;
+import bt.protocol.StandardBittorrentProtocol;
+import bt.protocol.handler.MessageHandler;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MessageWriterTest {
+
+    private static final int BUFFER_SIZE = 2 << 6;
+
+    private final Peer peer = new InetPeer(InetAddress.getLoopbackAddress(), 6891);
+    private final MessageHandler<Message> messageHandler = new StandardBittorrentProtocol(Collections.emptyMap());
+
+    @Test
+    public void testWritePiece_TransferredBlockIsEncodedAsUsual() throws Exception {
+        byte[] block = TestUtil.sequence(100);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new MessageWriter(Channels.newChannel(expected), peer, messageHandler, BUFFER_SIZE)
+                .writeMessage(new Piece(1, 2, block));
+
+        // transfer in small portions to emulate a non-blocking channel
+        TestBlockReader reader = new TestBlockReader(block, 30);
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        new MessageWriter(Channels.newChannel(actual), peer, messageHandler, BUFFER_SIZE)
+                .writeMessage(new Piece(1, 2, block.length, reader));
+
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+        assertEquals(0, reader.reads);
+        assertEquals(4, reader.transfers);
+    }
+
+    @Test
+    public void testWritePiece_BlockIsCopiedToBuffer() throws Exception {
+        byte[] block = TestUtil.sequence(100);
+        TestBlockReader reader = new TestBlockReader(block, block.length);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new MessageWriter(Channels.newChannel(expected), peer, messageHandler, BUFFER_SIZE)
+                .writeMessage(new Piece(1, 2, block));
+
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        assertTrue(messageHandler.encode(new EncodingContext(peer),
+                new Piece(1, 2, block.length, reader), buffer));
+        buffer.flip();
+        byte[] actual = new byte[buffer.remaining()];
+        buffer.get(actual);
+
+        assertArrayEquals(expected.toByteArray(), actual);
+        assertEquals(1, reader.reads);
+        assertEquals(0, reader.transfers);
+    }
+
+    @Test
+    public void testWriteMessage_QueuedWhenChannelIsNotReady() throws Exception {
+        byte[] block = TestUtil.sequence(100);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        MessageWriter expectedWriter = new MessageWriter(Channels.newChannel(expected), peer, messageHandler, BUFFER_SIZE);
+        expectedWriter.writeMessage(new Have(1));
+        expectedWriter.writeMessage(new Piece(1, 2, block));
+        expectedWriter.writeMessage(new Have(2));
+
+        ThrottledChannel channel = new ThrottledChannel(5);
+        MessageWriter writer = new MessageWriter(channel, peer, messageHandler, BUFFER_SIZE);
+        writer.writeMessage(new Have(1));
+        writer.writeMessage(new Piece(1, 2, block.length, new TestBlockReader(block, block.length)));
+        writer.writeMessage(new Have(2));
+        assertEquals(5, channel.out.size());
+        assertEquals(expected.size() - 5, writer.getQueuedBytes());
+
+        // nothing is sent, until the channel is ready
+        assertFalse(writer.flush());
+        assertEquals(expected.size() - 5, writer.getQueuedBytes());
+
+        channel.limit = 7;
+        while (!writer.flush()) {
+            channel.limit += 7;
+        }
+        assertEquals(0, writer.getQueuedBytes());
+        assertArrayEquals(expected.toByteArray(), channel.out.toByteArray());
+    }
+
+    @Test
+    public void testWriteMessage_PooledBufferIsReleasedAfterSend() throws Exception {
+        byte[] block = TestUtil.sequence(100);
+        BufferPool bufferPool = new BufferPool(BUFFER_SIZE, 1);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new MessageWriter(Channels.newChannel(expected), peer, messageHandler, BUFFER_SIZE)
+                .writeMessage(new Piece(1, 2, block));
+
+        ThrottledChannel channel = new ThrottledChannel(Integer.MAX_VALUE);
+        MessageWriter writer = new MessageWriter(channel, peer, messageHandler, bufferPool);
+        writer.writeMessage(new Have(1));
+        // buffer is released right away, if all of the data has been sent
+        assertEquals(0, bufferPool.getInUseCount());
+        assertEquals(1, bufferPool.getPooledCount());
+        channel.out.reset();
+
+        channel.limit = 10;
+        writer.writeMessage(new Piece(1, 2, block));
+        // unsent data is kept in the pooled buffer, instead of being copied
+        assertEquals(1, bufferPool.getInUseCount());
+        assertEquals(1, bufferPool.getAllocations());
+
+        // subsequent message is appended to the queued buffer, and its own buffer is released
+        writer.writeMessage(new Have(1));
+        assertEquals(1, bufferPool.getInUseCount());
+        assertEquals(1, bufferPool.getPooledCount());
+
+        channel.limit = Integer.MAX_VALUE;
+        assertTrue(writer.flush());
+        assertEquals(0, bufferPool.getInUseCount());
+
+        new MessageWriter(Channels.newChannel(expected), peer, messageHandler, BUFFER_SIZE)
+                .writeMessage(new Have(1));
+        assertArrayEquals(expected.toByteArray(), channel.out.toByteArray());
+    }
+
+    /**
+     * Emulates a non-blocking channel, that accepts a limited amount of data
+     */
+    private static class ThrottledChannel implements WritableByteChannel {
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private int limit;
+
+        ThrottledChannel(int limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            int length = Math.min(src.remaining(), limit - out.size());
+            byte[] bytes = new byte[length];
+            src.get(bytes);
+            out.write(bytes, 0, length);
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class TestBlockReader implements BlockReader {
+
+        private final byte[] block;
+        private final int maxTransferSize;
+
+        private int reads;
+        private int transfers;
+
+        TestBlockReader(byte[] block, int maxTransferSize) {
+            this.block = block;
+            this.maxTransferSize = maxTransferSize;
+        }
+
+        @Override
+        public boolean readTo(ByteBuffer buffer) {
+            reads++;
+            if (buffer.remaining() < block.length) {
+                return false;
+            }
+            buffer.put(block);
+            return true;
+        }
+
+        @Override
+        public long transferTo(long position, WritableByteChannel target) throws IOException {
+            transfers++;
+            int length = (int) Math.min(maxTransferSize, block.length - position);
+            return target.write(ByteBuffer.wrap(block, (int) position, length));
+        }
+    }
+}
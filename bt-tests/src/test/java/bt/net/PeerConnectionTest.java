@@ -40,8 +40,11 @@ import java.nio.ByteBuffer;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.spi.SelectorProvider;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
@@ -100,6 +103,87 @@ public class PeerConnectionTest {
         assertEquals(3, ((Request) message).getLength());
     }
 
+    @Test
+    public void testPostMessage_QueuedDataIsSentWhenSocketIsWritable() throws Exception {
+        QueueingMessageWorker readerWriter = new QueueingMessageWorker();
+        SocketPeerConnection connection = new SocketPeerConnection(mock(Peer.class), clientChannel, readerWriter, 100);
+        AtomicInteger writeRequests = new AtomicInteger();
+        connection.setWriteInterestListener(writeRequests::incrementAndGet);
+
+        readerWriter.pending = 50;
+        connection.postMessage(new Request(1, 2, 3));
+        assertEquals(1, writeRequests.get());
+        assertTrue(connection.isWritable());
+
+        // write interest is requested only once, until the queued data is sent
+        readerWriter.pending = 150;
+        connection.postMessage(new Request(1, 2, 3));
+        assertEquals(1, writeRequests.get());
+        assertFalse(connection.isWritable());
+
+        readerWriter.flushable = 80;
+        assertFalse(connection.flush());
+        assertEquals(2, writeRequests.get());
+        assertTrue(connection.isWritable());
+
+        readerWriter.flushable = 70;
+        assertTrue(connection.flush());
+        assertEquals(2, writeRequests.get());
+
+        readerWriter.pending = 10;
+        connection.postMessage(new Request(1, 2, 3));
+        assertEquals(3, writeRequests.get());
+    }
+
+    @Test
+    public void testPostMessage_QueuedDataIsSentOnReadBeforeRegistration() throws Exception {
+        QueueingMessageWorker readerWriter = new QueueingMessageWorker();
+        SocketPeerConnection connection = new SocketPeerConnection(mock(Peer.class), clientChannel, readerWriter, 100);
+
+        // socket does not accept the data, and it stays queued without blocking the caller
+        readerWriter.pending = 50;
+        connection.postMessage(new Request(1, 2, 3));
+        assertEquals(50, readerWriter.getQueuedBytes());
+
+        // waiting for the peer's reply sends the queued data
+        readerWriter.flushable = 30;
+        connection.readMessageNow();
+        assertEquals(20, readerWriter.getQueuedBytes());
+
+        // the rest is sent after the registration
+        AtomicInteger writeRequests = new AtomicInteger();
+        connection.setWriteInterestListener(writeRequests::incrementAndGet);
+        assertEquals(1, writeRequests.get());
+    }
+
+    private static class QueueingMessageWorker implements PeerConnectionMessageWorker {
+
+        private long pending;
+        private long flushable;
+
+        @Override
+        public Optional<Message> readMessage() {
+            return Optional.empty();
+        }
+
+        @Override
+        public void writeMessage(Message message) {
+        }
+
+        @Override
+        public boolean flush() {
+            long flushed = Math.min(pending, flushable);
+            pending -= flushed;
+            flushable -= flushed;
+            return pending == 0;
+        }
+
+        @Override
+        public long getQueuedBytes() {
+            return pending;
+        }
+    }
+
     @After
     public void tearDown() {
         try {
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.net.buffer;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BufferPoolTest {
+
+    @Test
+    public void testPool_ReleasedBufferIsReused() {
+        BufferPool pool = new BufferPool(16, 4);
+
+        PooledBuffer buffer = pool.acquire(10);
+        assertEquals(10, buffer.length());
+        ByteBuffer data = buffer.getData();
+        assertTrue(data.isDirect());
+        assertEquals(0, data.position());
+        assertEquals(10, data.limit());
+        assertEquals(1, pool.getInUseCount());
+
+        buffer.release();
+        assertEquals(0, pool.getInUseCount());
+        assertEquals(1, pool.getPooledCount());
+
+        PooledBuffer reused = pool.acquire(16);
+        assertSame(buffer, reused);
+        assertEquals(16, reused.length());
+        assertEquals(16, reused.getData().limit());
+        assertEquals(0, pool.getPooledCount());
+
+        assertEquals(2, pool.getAcquisitions());
+        assertEquals(1, pool.getAllocations());
+        assertEquals(0, pool.getUnpooledAllocations());
+    }
+
+    @Test
+    public void testPool_BufferIsReturnedAfterLastRelease() {
+        BufferPool pool = new BufferPool(16, 4);
+
+        PooledBuffer buffer = pool.acquire(16).retain();
+        buffer.release();
+        assertEquals(1, pool.getInUseCount());
+        assertEquals(0, pool.getPooledCount());
+
+        buffer.release();
+        assertEquals(0, pool.getInUseCount());
+        assertEquals(1, pool.getPooledCount());
+    }
+
+    @Test
+    public void testPool_LargeBlockIsNotPooled() {
+        BufferPool pool = new BufferPool(16, 4);
+
+        PooledBuffer buffer = pool.acquire(17);
+        assertFalse(buffer.getData().isDirect());
+        buffer.release();
+
+        assertEquals(0, pool.getPooledCount());
+        assertEquals(0, pool.getAllocations());
+        assertEquals(1, pool.getUnpooledAllocations());
+    }
+
+    @Test
+    public void testPool_NumberOfIdleBuffersIsLimited() {
+        BufferPool pool = new BufferPool(16, 2);
+
+        PooledBuffer b1 = pool.acquire(16), b2 = pool.acquire(16), b3 = pool.acquire(16);
+        assertEquals(3, pool.getInUseCount());
+        b1.release();
+        b2.release();
+        b3.release();
+
+        assertEquals(0, pool.getInUseCount());
+        assertEquals(2, pool.getPooledCount());
+        assertEquals(3, pool.getAllocations());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testPool_DoubleRelease() {
+        PooledBuffer buffer = new BufferPool(16, 4).acquire(16);
+        buffer.release();
+        buffer.release();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testPool_AccessAfterRelease() {
+        PooledBuffer buffer = new BufferPool(16, 4).acquire(16);
+        buffer.release();
+        buffer.getData();
+    }
+}
@@ -25,7 +25,9 @@ import java.util.List;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 
 public class BitfieldTest extends BaseBitfieldTest {
 
@@ -59,4 +61,96 @@ public class BitfieldTest extends BaseBitfieldTest {
         assertEquals(0, bitfield.getPiecesComplete());
         assertEquals(12, bitfield.getPiecesRemaining());
     }
+
+    @Test
+    public void testBitfield_FromBitmask() {
+        // 70 pieces, spanning two words
+        byte[] bitmask = new byte[9];
+        bitmask[0] = (byte) 0b1000_0001;
+        bitmask[8] = (byte) 0b0100_0000;
+        Bitfield bitfield = new Bitfield(bitmask, 70);
+
+        assertEquals(3, bitfield.getPiecesComplete());
+        assertTrue(bitfield.isVerified(0));
+        assertTrue(bitfield.isVerified(7));
+        assertTrue(bitfield.isVerified(65));
+        assertFalse(bitfield.isVerified(64));
+        assertArrayEquals(bitmask, bitfield.getBitmask());
+    }
+
+    @Test
+    public void testBitfield_MarkVerifiedTwice() {
+        Bitfield bitfield = new Bitfield(100);
+        bitfield.markVerified(99);
+        bitfield.markVerified(99);
+        assertEquals(1, bitfield.getPiecesComplete());
+        assertEquals(99, bitfield.getPiecesRemaining());
+    }
+
+    @Test
+    public void testBitfield_NextSetBit() {
+        Bitfield bitfield = new Bitfield(200);
+        assertEquals(-1, bitfield.nextSetBit(0));
+
+        bitfield.markVerified(3);
+        bitfield.markVerified(64);
+        bitfield.markVerified(199);
+
+        assertEquals(3, bitfield.nextSetBit(0));
+        assertEquals(3, bitfield.nextSetBit(3));
+        assertEquals(64, bitfield.nextSetBit(4));
+        assertEquals(199, bitfield.nextSetBit(65));
+        assertEquals(-1, bitfield.nextSetBit(200));
+    }
+
+    @Test
+    public void testBitfield_SetOperations() {
+        Bitfield local = new Bitfield(130);
+        Bitfield peer = new Bitfield(130);
+        assertFalse(peer.intersects(local));
+        assertFalse(peer.hasPiecesNotIn(local));
+
+        local.markVerified(1);
+        local.markVerified(100);
+        peer.markVerified(1);
+        peer.markVerified(70);
+        peer.markVerified(129);
+
+        assertTrue(peer.intersects(local));
+        assertTrue(peer.hasPiecesNotIn(local));
+        assertEquals(2, peer.andNotCardinality(local));
+        assertEquals(1, local.andNotCardinality(peer));
+
+        Bitfield interesting = peer.andNot(local);
+        assertEquals(2, interesting.getPiecesComplete());
+        assertEquals(70, interesting.nextSetBit(0));
+        assertEquals(129, interesting.nextSetBit(71));
+
+        local.markVerified(70);
+        local.markVerified(129);
+        assertFalse(peer.hasPiecesNotIn(local));
+        assertEquals(0, peer.andNotCardinality(local));
+    }
+
+    @Test
+    public void testBitfield_HasPiecesNotIn_Masked() {
+        Bitfield local = new Bitfield(130);
+        Bitfield peer = new Bitfield(130);
+        Bitfield wanted = new Bitfield(130);
+        peer.markVerified(5);
+        peer.markVerified(129);
+        wanted.markVerified(70);
+        wanted.markVerified(129);
+
+        assertTrue(peer.hasPiecesNotIn(local, wanted));
+        local.markVerified(129);
+        // peer still has piece 5, but it's not wanted
+        assertTrue(peer.hasPiecesNotIn(local));
+        assertFalse(peer.hasPiecesNotIn(local, wanted));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBitfield_SetOperations_DifferentSize() {
+        new Bitfield(10).intersects(new Bitfield(11));
+    }
 }
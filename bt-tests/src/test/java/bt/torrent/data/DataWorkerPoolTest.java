@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.torrent.data;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DataWorkerPoolTest {
+
+    private DataWorkerPool pool;
+
+    @Before
+    public void before() {
+        pool = new DataWorkerPool(4, 2);
+    }
+
+    @After
+    public void after() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testIOExecutor_SameStripeIsSequential() throws InterruptedException {
+        int count = 1000;
+        List<Integer> executed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            int task = i;
+            // stripes 1 and 5 are mapped to the same thread
+            pool.getIOExecutor(task % 2 == 0 ? 1 : 5).execute(() -> {
+                executed.add(task);
+                latch.countDown();
+            });
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, (int) executed.get(i));
+        }
+    }
+
+    @Test
+    public void testIOExecutor_DifferentStripesUseDifferentThreads() throws InterruptedException {
+        Thread[] threads = new Thread[2];
+        CountDownLatch latch = new CountDownLatch(2);
+        pool.getIOExecutor(0).execute(() -> {
+            threads[0] = Thread.currentThread();
+            latch.countDown();
+        });
+        pool.getIOExecutor(-1).execute(() -> {
+            threads[1] = Thread.currentThread();
+            latch.countDown();
+        });
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+        assertNotEquals(threads[0], threads[1]);
+        assertTrue(threads[1].getName().startsWith("bt.torrent.data.io-"));
+    }
+}
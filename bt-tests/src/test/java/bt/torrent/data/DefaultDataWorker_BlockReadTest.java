@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.torrent.data;
+
+import bt.data.ChunkDescriptor;
+import bt.data.ChunkDescriptorTestUtil;
+import bt.data.DataDescriptor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static bt.TestUtil.sequence;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DefaultDataWorker_BlockReadTest {
+
+    private static final int BLOCK_SIZE = 4;
+
+    private DataWorkerPool pool;
+    private DataDescriptor descriptor;
+    private byte[] data;
+
+    @Before
+    public void before() {
+        pool = new DataWorkerPool(1, 1);
+        RecordingStorageUnit unit = new RecordingStorageUnit(4 * BLOCK_SIZE);
+        data = sequence(4 * BLOCK_SIZE);
+
+        ChunkDescriptor chunk = ChunkDescriptorTestUtil.buildChunk(Collections.singletonList(unit), BLOCK_SIZE);
+        chunk.getData().putBytes(data);
+        descriptor = new TestDataDescriptor(Collections.singletonList(chunk));
+        descriptor.getBitfield().markVerified(0);
+    }
+
+    @After
+    public void after() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testBlockIsReadOnDemand_TransferSupported() throws Exception {
+        BlockRead read = createWorker(true).addBlockRequest(null, 0, BLOCK_SIZE, BLOCK_SIZE).get(10, TimeUnit.SECONDS);
+
+        assertTrue(read.getReader().isPresent());
+        assertFalse(read.getBlock().isPresent());
+    }
+
+    @Test
+    public void testBlockIsReadEagerly_TransferNotSupported() throws Exception {
+        BlockRead read = createWorker(false).addBlockRequest(null, 0, BLOCK_SIZE, BLOCK_SIZE).get(10, TimeUnit.SECONDS);
+
+        assertFalse(read.getReader().isPresent());
+        assertArrayEquals(Arrays.copyOfRange(data, BLOCK_SIZE, 2 * BLOCK_SIZE), read.getBlock().get());
+    }
+
+    private DefaultDataWorker createWorker(boolean blockTransferSupported) {
+        return new DefaultDataWorker(descriptor, new RejectingVerifier(), new WriteBackCache(0), new ReadCache(0),
+                pool, new DiskScheduler(Duration.ZERO, Duration.ZERO), peer -> blockTransferSupported, 100);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.torrent.data;
+
+import bt.data.ChunkDescriptor;
+import bt.data.ChunkDescriptorTestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static bt.TestUtil.sequence;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DefaultDataWorker_WriteBackTest {
+
+    private static final int BLOCK_SIZE = 4;
+
+    private DataWorkerPool pool;
+    private RecordingStorageUnit unit;
+    private ChunkDescriptor chunk;
+    private WriteBackCache cache;
+    private DefaultDataWorker worker;
+
+    @Before
+    public void before() {
+        pool = new DataWorkerPool(1, 1);
+        unit = new RecordingStorageUnit(4 * BLOCK_SIZE);
+        chunk = ChunkDescriptorTestUtil.buildChunk(Collections.singletonList(unit), BLOCK_SIZE);
+        cache = new WriteBackCache(4 * BLOCK_SIZE);
+        worker = new DefaultDataWorker(new TestDataDescriptor(Collections.singletonList(chunk)),
+                new RejectingVerifier(), cache, new ReadCache(0), pool, 100);
+    }
+
+    @After
+    public void after() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testBufferedBlocksAreNotRequestedAgain() throws Exception {
+        byte[] data = sequence(4 * BLOCK_SIZE);
+        worker.addBlock(null, 0, BLOCK_SIZE, Arrays.copyOfRange(data, BLOCK_SIZE, 2 * BLOCK_SIZE))
+                .get(10, TimeUnit.SECONDS);
+
+        assertFalse(chunk.isPresent(1));
+        assertTrue(worker.isBlockBuffered(0, 1));
+        assertFalse(worker.isBlockBuffered(0, 0));
+        assertTrue(unit.writeOffsets.isEmpty());
+    }
+
+    @Test
+    public void testBufferedBlocksAreWrittenOnFlush() throws Exception {
+        byte[] data = sequence(4 * BLOCK_SIZE);
+        worker.addBlock(null, 0, 0, Arrays.copyOfRange(data, 0, BLOCK_SIZE)).get(10, TimeUnit.SECONDS);
+        worker.addBlock(null, 0, BLOCK_SIZE, Arrays.copyOfRange(data, BLOCK_SIZE, 2 * BLOCK_SIZE))
+                .get(10, TimeUnit.SECONDS);
+
+        worker.flush();
+
+        assertTrue(chunk.isPresent(0));
+        assertTrue(chunk.isPresent(1));
+        assertFalse(worker.isBlockBuffered(0, 0));
+        assertEquals(0, cache.getUsed());
+        assertArrayEquals(Arrays.copyOf(data, 2 * BLOCK_SIZE), Arrays.copyOf(unit.data, 2 * BLOCK_SIZE));
+
+        // no more blocks are buffered after the flush
+        worker.addBlock(null, 0, 3 * BLOCK_SIZE, Arrays.copyOfRange(data, 3 * BLOCK_SIZE, 4 * BLOCK_SIZE))
+                .get(10, TimeUnit.SECONDS);
+        assertTrue(chunk.isPresent(3));
+        assertEquals(0, cache.getUsed());
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.torrent.data;
+
+import bt.data.ChunkDescriptor;
+import bt.data.ChunkDescriptorTestUtil;
+import bt.data.DataDescriptor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static bt.TestUtil.sequence;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DefaultDataWorker_WriteBatchingTest {
+
+    private static final int BLOCK_SIZE = 4;
+
+    private DataWorkerPool pool;
+    private RecordingStorageUnit unit;
+    private DefaultDataWorker worker;
+
+    @Before
+    public void before() {
+        // single I/O thread, so that all pieces are processed sequentially
+        pool = new DataWorkerPool(1, 1);
+        unit = new RecordingStorageUnit(8 * BLOCK_SIZE);
+
+        ChunkDescriptor chunk = ChunkDescriptorTestUtil.buildChunk(Collections.singletonList(unit), BLOCK_SIZE);
+        DataDescriptor descriptor = new TestDataDescriptor(Collections.singletonList(chunk));
+
+        // write-back cache is disabled, so that blocks are written to the storage directly
+        worker = new DefaultDataWorker(descriptor, new RejectingVerifier(),
+                new WriteBackCache(0), new ReadCache(0), pool, 100);
+    }
+
+    @After
+    public void after() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testAdjacentBlocksAreWrittenTogether() throws Exception {
+        byte[] data = sequence(8 * BLOCK_SIZE);
+
+        // hold the I/O thread, so that all blocks are queued before the first one is processed
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        pool.getIOExecutor(0).execute(() -> {
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        // blocks 0..2 and 5..6 are adjacent, block 3 and 4 are missing
+        int[] blocks = new int[]{1, 0, 2, 5, 6};
+        List<CompletableFuture<BlockWrite>> writes = new ArrayList<>();
+        for (int block : blocks) {
+            int offset = block * BLOCK_SIZE;
+            writes.add(worker.addBlock(null, 0, offset, Arrays.copyOfRange(data, offset, offset + BLOCK_SIZE)));
+        }
+        release.countDown();
+
+        for (CompletableFuture<BlockWrite> write : writes) {
+            BlockWrite result = write.get(10, TimeUnit.SECONDS);
+            assertFalse(result.isRejected());
+            assertFalse(result.getError().isPresent());
+        }
+
+        synchronized (unit) {
+            assertEquals(Arrays.asList(0L, 5L * BLOCK_SIZE), unit.writeOffsets);
+            assertEquals(Arrays.asList(3, 2), unit.writeBufferCounts);
+        }
+        byte[] expected = Arrays.copyOf(data, data.length);
+        Arrays.fill(expected, 3 * BLOCK_SIZE, 5 * BLOCK_SIZE, (byte) 0);
+        Arrays.fill(expected, 7 * BLOCK_SIZE, 8 * BLOCK_SIZE, (byte) 0);
+        assertArrayEquals(expected, unit.data);
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.torrent.data;
+
+import bt.data.ChunkDescriptorTestUtil;
+import bt.data.DataRange;
+import bt.data.StorageUnit;
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static bt.TestUtil.sequence;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DiskSchedulerTest {
+
+    private static final int PIECE_SIZE = 16;
+    private static final int BLOCK_SIZE = 4;
+
+    private DiskScheduler scheduler;
+
+    @After
+    public void after() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testRequests_OrderedByLocationAndMerged() throws Exception {
+        scheduler = new DiskScheduler(Duration.ofMillis(300), Duration.ofSeconds(10));
+        List<String> log = new ArrayList<>();
+        DataRange[] pieces = buildPieces(3, log);
+
+        byte[] data = sequence(PIECE_SIZE);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        futures.add(write(2, pieces, 0, data));
+        futures.add(write(0, pieces, 4, data));
+        futures.add(write(0, pieces, 0, data));
+        futures.add(write(1, pieces, 8, data));
+        futures.add(write(0, pieces, 8, data));
+        ByteBuffer readBuffer = ByteBuffer.allocate(BLOCK_SIZE);
+        futures.add(scheduler.read(0, 1, pieces[1], 0, readBuffer));
+
+        for (CompletableFuture<Void> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+
+        synchronized (log) {
+            assertEquals(Arrays.asList(
+                    "write 0:0 x3",
+                    "read 1:0 x1",
+                    "write 1:8 x1",
+                    "write 2:0 x1"), log);
+        }
+        assertEquals(6, scheduler.getRequests());
+        assertEquals(4, scheduler.getOperations());
+        assertEquals(0, scheduler.getOverdue());
+
+        byte[] expected = new byte[PIECE_SIZE];
+        System.arraycopy(data, 0, expected, 0, 3 * BLOCK_SIZE);
+        byte[] actual = new byte[PIECE_SIZE];
+        pieces[0].getBytes(ByteBuffer.wrap(actual));
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void testRequests_OverdueDispatchedInOrderOfArrival() throws Exception {
+        // every request exceeds the max latency, before it's dispatched
+        scheduler = new DiskScheduler(Duration.ofMillis(100), Duration.ZERO);
+        List<String> log = new ArrayList<>();
+        DataRange[] pieces = buildPieces(3, log);
+
+        byte[] data = sequence(PIECE_SIZE);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        futures.add(write(2, pieces, 0, data));
+        futures.add(write(0, pieces, 0, data));
+        futures.add(write(1, pieces, 0, data));
+
+        for (CompletableFuture<Void> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+
+        synchronized (log) {
+            assertEquals(Arrays.asList(
+                    "write 2:0 x1",
+                    "write 0:0 x1",
+                    "write 1:0 x1"), log);
+        }
+        assertEquals(3, scheduler.getOverdue());
+    }
+
+    @Test
+    public void testRequests_DifferentStreamsNotMerged() throws Exception {
+        scheduler = new DiskScheduler(Duration.ofMillis(300), Duration.ofSeconds(10));
+        List<String> log = new ArrayList<>();
+        DataRange[] pieces = buildPieces(1, log);
+
+        byte[] data = sequence(PIECE_SIZE);
+        CompletableFuture<Void> first = scheduler.write(1, 0, pieces[0], 0,
+                ByteBuffer.wrap(data, 0, BLOCK_SIZE));
+        CompletableFuture<Void> second = scheduler.write(0, 0, pieces[0], BLOCK_SIZE,
+                ByteBuffer.wrap(data, BLOCK_SIZE, BLOCK_SIZE));
+        first.get(10, TimeUnit.SECONDS);
+        second.get(10, TimeUnit.SECONDS);
+
+        synchronized (log) {
+            assertEquals(Arrays.asList(
+                    "write 0:4 x1",
+                    "write 0:0 x1"), log);
+        }
+    }
+
+    @Test
+    public void testDisabled() {
+        scheduler = new DiskScheduler(Duration.ZERO, Duration.ofSeconds(1));
+        assertFalse(scheduler.isEnabled());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDisabled_RequestRejected() {
+        scheduler = new DiskScheduler(Duration.ZERO, Duration.ofSeconds(1));
+        DataRange[] pieces = buildPieces(1, new ArrayList<>());
+        scheduler.write(0, 0, pieces[0], 0, ByteBuffer.allocate(BLOCK_SIZE));
+    }
+
+    @Test
+    public void testShutdown_PendingRequestsFailed() throws Exception {
+        scheduler = new DiskScheduler(Duration.ofSeconds(10), Duration.ofSeconds(10));
+        DataRange[] pieces = buildPieces(1, new ArrayList<>());
+        CompletableFuture<Void> future = scheduler.write(0, 0, pieces[0], 0, ByteBuffer.allocate(BLOCK_SIZE));
+        scheduler.shutdown();
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("Exception expected");
+        } catch (ExecutionException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testShutdown_RequestsSubmittedConcurrentlyAreCompleted() throws Exception {
+        scheduler = new DiskScheduler(Duration.ofMillis(1), Duration.ofSeconds(10));
+        DataRange[] pieces = buildPieces(1, new ArrayList<>());
+
+        List<CompletableFuture<Void>> futures = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch submitting = new CountDownLatch(1);
+        Thread submitter = new Thread(() -> {
+            for (int i = 0; i < 10_000; i++) {
+                futures.add(scheduler.write(0, 0, pieces[0], 0, ByteBuffer.allocate(BLOCK_SIZE)));
+                submitting.countDown();
+            }
+        });
+        submitter.start();
+        assertTrue(submitting.await(10, TimeUnit.SECONDS));
+        scheduler.shutdown();
+        submitter.join();
+
+        // none of the requests is lost: each one is either performed or failed
+        for (CompletableFuture<Void> future : futures) {
+            try {
+                future.get(10, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                // expected for the requests, that have not been performed before shutdown
+            }
+        }
+    }
+
+    private CompletableFuture<Void> write(int pieceIndex, DataRange[] pieces, int offset, byte[] data) {
+        return scheduler.write(0, pieceIndex, pieces[pieceIndex], offset, ByteBuffer.wrap(data, offset, BLOCK_SIZE));
+    }
+
+    private static DataRange[] buildPieces(int count, List<String> log) {
+        DataRange[] pieces = new DataRange[count];
+        for (int i = 0; i < count; i++) {
+            StorageUnit unit = new RecordingStorageUnit(i, log);
+            pieces[i] = ChunkDescriptorTestUtil.buildChunk(Collections.singletonList(unit), BLOCK_SIZE).getData();
+        }
+        return pieces;
+    }
+
+    private static class RecordingStorageUnit implements StorageUnit {
+
+        private final int id;
+        private final List<String> log;
+        private final byte[] data;
+
+        RecordingStorageUnit(int id, List<String> log) {
+            this.id = id;
+            this.log = log;
+            this.data = new byte[PIECE_SIZE];
+        }
+
+        @Override
+        public void readBlock(ByteBuffer buffer, long offset) {
+            readBlocks(new ByteBuffer[]{buffer}, offset);
+        }
+
+        @Override
+        public byte[] readBlock(long offset, int length) {
+            return Arrays.copyOfRange(data, (int) offset, (int) offset + length);
+        }
+
+        @Override
+        public void readBlocks(ByteBuffer[] buffers, long offset) {
+            record("read", offset, buffers.length);
+            for (ByteBuffer buffer : buffers) {
+                int length = buffer.remaining();
+                buffer.put(data, (int) offset, length);
+                offset += length;
+            }
+        }
+
+        @Override
+        public void writeBlock(ByteBuffer buffer, long offset) {
+            writeBlocks(new ByteBuffer[]{buffer}, offset);
+        }
+
+        @Override
+        public void writeBlock(byte[] block, long offset) {
+            writeBlock(ByteBuffer.wrap(block), offset);
+        }
+
+        @Override
+        public void writeBlocks(ByteBuffer[] buffers, long offset) {
+            record("write", offset, buffers.length);
+            for (ByteBuffer buffer : buffers) {
+                int length = buffer.remaining();
+                buffer.get(data, (int) offset, length);
+                offset += length;
+            }
+        }
+
+        private void record(String type, long offset, int buffers) {
+            synchronized (log) {
+                log.add(type + " " + id + ":" + offset + " x" + buffers);
+            }
+        }
+
+        @Override
+        public long capacity() {
+            return data.length;
+        }
+
+        @Override
+        public long size() {
+            return data.length;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
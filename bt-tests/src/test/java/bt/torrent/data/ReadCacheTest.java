@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.torrent.data;
+
+import bt.TestUtil;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ReadCacheTest {
+
+    private static TestChunkDescriptor createChunk(int length) {
+        TestChunkDescriptor chunk = new TestChunkDescriptor(length);
+        byte[] data = TestUtil.sequence(length);
+        System.arraycopy(data, 0, chunk.contents, 0, length);
+        return chunk;
+    }
+
+    @Test
+    public void testCache_ReadsWholePieceOnce() {
+        ReadCache cache = new ReadCache(64);
+        TestChunkDescriptor chunk = createChunk(16);
+
+        for (int offset = 0; offset < 16; offset += 4) {
+            assertArrayEquals(Arrays.copyOfRange(chunk.contents, offset, offset + 4), cache.readBlock(chunk, offset, 4));
+        }
+
+        assertEquals(1, chunk.reads.size());
+        assertEquals(1, cache.getMisses());
+        assertEquals(3, cache.getHits());
+        assertEquals(16, cache.getUsed());
+    }
+
+    @Test
+    public void testCache_EvictsLeastRecentlyUsed() {
+        ReadCache cache = new ReadCache(32);
+        TestChunkDescriptor chunk1 = createChunk(16), chunk2 = createChunk(16), chunk3 = createChunk(16);
+
+        cache.readBlock(chunk1, 0, 4);
+        cache.readBlock(chunk2, 0, 4);
+        // chunk1 becomes the most recently used
+        cache.readBlock(chunk1, 4, 4);
+        cache.readBlock(chunk3, 0, 4);
+        assertEquals(1, cache.getEvictions());
+        assertEquals(32, cache.getUsed());
+
+        cache.readBlock(chunk1, 8, 4);
+        assertEquals(1, chunk1.reads.size());
+        cache.readBlock(chunk2, 8, 4);
+        assertEquals(2, chunk2.reads.size());
+    }
+
+    @Test
+    public void testCache_PieceLargerThanCapacity() {
+        ReadCache cache = new ReadCache(8);
+        TestChunkDescriptor chunk = createChunk(16);
+
+        assertArrayEquals(Arrays.copyOfRange(chunk.contents, 4, 8), cache.readBlock(chunk, 4, 4));
+        assertArrayEquals(Arrays.copyOfRange(chunk.contents, 8, 12), cache.readBlock(chunk, 8, 4));
+        assertEquals(2, chunk.reads.size());
+        assertEquals(0, cache.getUsed());
+    }
+}
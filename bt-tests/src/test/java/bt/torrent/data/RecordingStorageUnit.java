@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.torrent.data;
+
+import bt.data.StorageUnit;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+class RecordingStorageUnit implements StorageUnit {
+
+    final byte[] data;
+    final List<Long> writeOffsets;
+    final List<Integer> writeBufferCounts;
+
+    RecordingStorageUnit(int capacity) {
+        this.data = new byte[capacity];
+        this.writeOffsets = new ArrayList<>();
+        this.writeBufferCounts = new ArrayList<>();
+    }
+
+    @Override
+    public void readBlock(ByteBuffer buffer, long offset) {
+        buffer.put(data, (int) offset, buffer.remaining());
+    }
+
+    @Override
+    public byte[] readBlock(long offset, int length) {
+        return Arrays.copyOfRange(data, (int) offset, (int) offset + length);
+    }
+
+    @Override
+    public synchronized void writeBlock(ByteBuffer buffer, long offset) {
+        writeBlocks(new ByteBuffer[]{buffer}, offset);
+    }
+
+    @Override
+    public void writeBlock(byte[] block, long offset) {
+        writeBlock(ByteBuffer.wrap(block), offset);
+    }
+
+    @Override
+    public synchronized void writeBlocks(ByteBuffer[] buffers, long offset) {
+        writeOffsets.add(offset);
+        writeBufferCounts.add(buffers.length);
+        for (ByteBuffer buffer : buffers) {
+            int length = buffer.remaining();
+            buffer.get(data, (int) offset, length);
+            offset += length;
+        }
+    }
+
+    @Override
+    public long capacity() {
+        return data.length;
+    }
+
+    @Override
+    public long size() {
+        return data.length;
+    }
+
+    @Override
+    public void close() {
+    }
+}
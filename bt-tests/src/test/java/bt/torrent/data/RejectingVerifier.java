@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.torrent.data;
+
+import bt.data.Bitfield;
+import bt.data.ChunkDescriptor;
+import bt.data.ChunkVerifier;
+
+import java.util.List;
+
+class RejectingVerifier implements ChunkVerifier {
+
+    @Override
+    public boolean verify(List<ChunkDescriptor> chunks, Bitfield bitfield) {
+        return false;
+    }
+
+    @Override
+    public boolean verify(ChunkDescriptor chunk) {
+        return false;
+    }
+
+    @Override
+    public boolean verify(ChunkDescriptor chunk, byte[] data) {
+        return false;
+    }
+}
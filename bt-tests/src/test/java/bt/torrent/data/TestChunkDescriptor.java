@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.torrent.data;
+
+import bt.data.ChunkDescriptor;
+import bt.data.DataRange;
+import bt.data.DataRangeVisitor;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+class TestChunkDescriptor implements ChunkDescriptor {
+
+    static final int BLOCK_SIZE = 4;
+
+    final byte[] contents;
+    final List<long[]> writes;
+    final List<long[]> reads;
+
+    /**
+     * If set, asynchronous writes complete only when this future completes
+     */
+    CompletableFuture<Void> writeCompletion;
+
+    TestChunkDescriptor(int length) {
+        this.contents = new byte[length];
+        this.writes = new ArrayList<>();
+        this.reads = new ArrayList<>();
+    }
+
+    @Override
+    public byte[] getChecksum() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DataRange getData() {
+        return new TestRange(0, contents.length);
+    }
+
+    @Override
+    public int blockCount() {
+        return (contents.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    @Override
+    public long length() {
+        return contents.length;
+    }
+
+    @Override
+    public long blockSize() {
+        return BLOCK_SIZE;
+    }
+
+    @Override
+    public long lastBlockSize() {
+        return contents.length - (blockCount() - 1) * BLOCK_SIZE;
+    }
+
+    @Override
+    public boolean isPresent(int blockIndex) {
+        return false;
+    }
+
+    @Override
+    public boolean isComplete() {
+        return false;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return true;
+    }
+
+    private class TestRange implements DataRange {
+
+        private final long offset;
+        private final long length;
+
+        TestRange(long offset, long length) {
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public void visitUnits(DataRangeVisitor visitor) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public DataRange getSubrange(long offset, long length) {
+            return new TestRange(this.offset + offset, length);
+        }
+
+        @Override
+        public DataRange getSubrange(long offset) {
+            return new TestRange(this.offset + offset, this.length - offset);
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public byte[] getBytes() {
+            reads.add(new long[]{offset, length});
+            return Arrays.copyOfRange(contents, (int) offset, (int) (offset + length));
+        }
+
+        @Override
+        public void putBytes(byte[] block) {
+            System.arraycopy(block, 0, contents, (int) offset, block.length);
+            writes.add(new long[]{offset, block.length});
+        }
+
+        @Override
+        public CompletableFuture<Void> putBytesAsync(ByteBuffer buffer) {
+            putBytes(buffer);
+            return (writeCompletion != null) ? writeCompletion : CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public CompletableFuture<Void> putBytesAsync(ByteBuffer[] buffers) {
+            putBytes(buffers);
+            return (writeCompletion != null) ? writeCompletion : CompletableFuture.completedFuture(null);
+        }
+    }
+}
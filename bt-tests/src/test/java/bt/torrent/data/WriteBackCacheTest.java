@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.torrent.data;
+
+import bt.TestUtil;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WriteBackCacheTest {
+
+    @Test
+    public void testBuffer_WrittenOnceWhenComplete() {
+        WriteBackCache cache = new WriteBackCache(64);
+        TestChunkDescriptor chunk = new TestChunkDescriptor(10);
+        byte[] data = TestUtil.sequence(10);
+
+        PieceBuffer buffer = cache.allocate(chunk).get();
+        assertEquals(10, cache.getUsed());
+
+        assertTrue(buffer.putBlock(8, Arrays.copyOfRange(data, 8, 10)));
+        assertTrue(buffer.putBlock(0, Arrays.copyOfRange(data, 0, 4)));
+        assertFalse(buffer.isComplete());
+        assertTrue(buffer.putBlock(4, Arrays.copyOfRange(data, 4, 8)));
+        assertTrue(buffer.isComplete());
+        assertTrue(chunk.writes.isEmpty());
+
+        assertTrue(buffer.flush());
+        cache.release(buffer);
+
+        assertEquals(1, chunk.writes.size());
+        assertArrayEquals(data, chunk.contents);
+        assertEquals(0, cache.getUsed());
+    }
+
+    @Test
+    public void testBuffer_Discarded() {
+        WriteBackCache cache = new WriteBackCache(64);
+        TestChunkDescriptor chunk = new TestChunkDescriptor(8);
+
+        PieceBuffer buffer = cache.allocate(chunk).get();
+        buffer.putBlock(0, TestUtil.sequence(8));
+        assertTrue(buffer.isPresent(1));
+        assertTrue(buffer.discard());
+        cache.release(buffer);
+
+        assertTrue(chunk.writes.isEmpty());
+        assertFalse(buffer.isPresent(1));
+        assertTrue(buffer.whenReleased().isDone());
+        assertFalse(buffer.putBlock(0, TestUtil.sequence(4)));
+        assertEquals(0, cache.getUsed());
+    }
+
+    @Test
+    public void testCache_EvictsStaleIncompleteBuffer() {
+        WriteBackCache cache = new WriteBackCache(16);
+        TestChunkDescriptor chunk1 = new TestChunkDescriptor(16), chunk2 = new TestChunkDescriptor(16);
+        byte[] data = TestUtil.sequence(16);
+
+        PieceBuffer buffer1 = cache.allocate(chunk1).get();
+        buffer1.putBlock(0, Arrays.copyOfRange(data, 0, 4));
+        buffer1.putBlock(4, Arrays.copyOfRange(data, 4, 8));
+        buffer1.putBlock(12, Arrays.copyOfRange(data, 12, 16));
+
+        PieceBuffer buffer2 = cache.allocate(chunk2).get();
+        assertEquals(1, cache.getEvictions());
+        assertEquals(16, cache.getUsed());
+
+        // adjacent blocks are written together
+        assertEquals(2, chunk1.writes.size());
+        assertArrayEquals(Arrays.copyOfRange(data, 0, 8), Arrays.copyOfRange(chunk1.contents, 0, 8));
+        assertArrayEquals(Arrays.copyOfRange(data, 12, 16), Arrays.copyOfRange(chunk1.contents, 12, 16));
+        assertFalse(buffer1.putBlock(8, Arrays.copyOfRange(data, 8, 12)));
+
+        // complete buffers are not evicted
+        buffer2.putBlock(0, data);
+        assertFalse(cache.allocate(new TestChunkDescriptor(16)).isPresent());
+        assertEquals(1, cache.getRejections());
+    }
+
+    @Test
+    public void testCache_DoesNotWaitForEvictedBufferToBeWritten() {
+        WriteBackCache cache = new WriteBackCache(16);
+        TestChunkDescriptor chunk = new TestChunkDescriptor(16);
+        chunk.writeCompletion = new CompletableFuture<>();
+
+        PieceBuffer buffer = cache.allocate(chunk).get();
+        buffer.putBlock(0, TestUtil.sequence(4));
+
+        // memory is not available, until the evicted buffer has been written
+        assertFalse(cache.allocate(new TestChunkDescriptor(16)).isPresent());
+        assertFalse(buffer.putBlock(4, TestUtil.sequence(4)));
+        assertTrue(buffer.isPresent(0));
+        assertFalse(buffer.whenReleased().isDone());
+        assertEquals(16, cache.getUsed());
+
+        // nothing else is evicted in the meantime
+        assertFalse(cache.allocate(new TestChunkDescriptor(16)).isPresent());
+        assertEquals(2, cache.getRejections());
+
+        chunk.writeCompletion.complete(null);
+        assertTrue(buffer.whenReleased().isDone());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(0, cache.getUsed());
+        assertTrue(cache.allocate(new TestChunkDescriptor(16)).isPresent());
+    }
+
+    @Test
+    public void testCache_PieceLargerThanCapacity() {
+        WriteBackCache cache = new WriteBackCache(8);
+        assertFalse(cache.allocate(new TestChunkDescriptor(16)).isPresent());
+        assertEquals(0, cache.getUsed());
+    }
+}
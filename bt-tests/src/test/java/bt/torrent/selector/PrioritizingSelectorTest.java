@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2016—2017 Andrei Tomashpolskiy and individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package bt.torrent.selector;
+
+import bt.data.FilePriority;
+import bt.data.PiecePriorities;
+import bt.metainfo.TorrentFile;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class PrioritizingSelectorTest {
+
+    private static final long CHUNK_SIZE = 10;
+
+    // each file occupies two pieces
+    private static final List<TorrentFile> FILES = Arrays.asList(file("a", 20), file("b", 20), file("c", 20));
+
+    // pieces in reverse order, so that it's visible that the delegate's order is preserved
+    private static final PieceSelector DELEGATE = statistics -> Stream.of(5, 4, 3, 2, 1, 0);
+
+    @Test
+    public void testSelector_UniformPriorities() {
+        PiecePriorities priorities = PiecePriorities.uniform(6);
+        assertArrayEquals(new Integer[] {5, 4, 3, 2, 1, 0}, select(priorities));
+    }
+
+    @Test
+    public void testSelector_SkippedFile() {
+        PiecePriorities priorities = priorities(FilePriority.NORMAL, FilePriority.SKIP, FilePriority.NORMAL);
+        assertArrayEquals(new Integer[] {5, 4, 1, 0}, select(priorities));
+    }
+
+    @Test
+    public void testSelector_MixedPriorities() {
+        PiecePriorities priorities = priorities(FilePriority.LOW, FilePriority.HIGH, FilePriority.NORMAL);
+        assertArrayEquals(new Integer[] {3, 2, 5, 4, 1, 0}, select(priorities));
+    }
+
+    @Test
+    public void testSelector_MixedPrioritiesAndSkippedFile() {
+        PiecePriorities priorities = priorities(FilePriority.HIGH, FilePriority.LOW, FilePriority.SKIP);
+        assertArrayEquals(new Integer[] {1, 0, 3, 2}, select(priorities));
+    }
+
+    private static PiecePriorities priorities(FilePriority... filePriorities) {
+        return PiecePriorities.fromFiles(FILES, CHUNK_SIZE, 6,
+                file -> filePriorities[FILES.indexOf(file)]);
+    }
+
+    private static Object[] select(PiecePriorities priorities) {
+        List<Integer> list = new PrioritizingSelector(priorities, DELEGATE).getNextPieces(null)
+                .collect(Collectors.toList());
+        return list.toArray(new Object[list.size()]);
+    }
+
+    private static TorrentFile file(String name, long size) {
+        return new TorrentFile() {
+            @Override
+            public long getSize() {
+                return size;
+            }
+
+            @Override
+            public List<String> getPathElements() {
+                return Collections.singletonList(name);
+            }
+        };
+    }
+}